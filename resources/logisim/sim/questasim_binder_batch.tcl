@@ -0,0 +1,219 @@
+#!/sw/bin/tclsh
+# -------------------------------------------------------------------------------
+# HEIG-VD
+#  Haute Ecole d'Ingenerie et de Gestion du Canton de Vaud
+#  School of Business and Engineering in Canton de Vaud
+# REDS Institute
+#  Reconfigurable Embedded Digital Systems
+# ------------------------------------------------------------------------------
+# File         : questasim_binder_batch.tcl
+# Authors      : christian.mueller@heig-vd.ch (CMR)
+# Date         : 19.05.2014
+#
+# Context      : This socket client is binded to Questsim/Modelsim simulation
+#								 and drive the signals received from Logisim. After a simulation
+#								 step, it returns the output signals to Logisim through the
+#								 socket.
+#
+#--| Modifications |------------------------------------------------------------
+# Version   Author Date               Description
+#	v1.1			CMR			25.06.14					- Exit if socket fails
+#	v1.2			CMR			23.07.14					- Better error handling, add reset option
+#	v1.3						18.10.26					- Binary framing, one request per propagation step
+#-------------------------------------------------------------------------------
+set Version 1.3
+
+set channel 0
+
+# Port declarations, by handle
+array set names {}
+array set types {}
+array set widths {}
+
+# Reads one frame: a 4-byte big-endian length, then that many bytes
+proc ReadFrame {channel} {
+	set header [read $channel 4]
+	if {[string length $header] < 4} {
+		return -code error "connection closed"
+	}
+	binary scan $header Iu len
+	set frame [read $channel $len]
+	if {[string length $frame] < $len} {
+		return -code error "connection closed"
+	}
+	return $frame
+}
+
+# Converts a value and an unknown plane, msb first, to a std_logic string
+proc BitsToLogic {vbits ubits} {
+	set s ""
+	foreach v [split $vbits ""] u [split $ubits ""] {
+		if {$u == 1} {
+			append s "X"
+		} else {
+			append s $v
+		}
+	}
+	return $s
+}
+
+# Converts a std_logic string to the value and unknown planes
+proc LogicToBits {logic width} {
+	set logic [string map {"{" "" "}" "" " " ""} $logic]
+	set n [string length $logic]
+	if {$n < $width} {
+		set logic "[string repeat X [expr {$width - $n}]]$logic"
+	} elseif {$n > $width} {
+		set logic [string range $logic [expr {$n - $width}] end]
+	}
+	set vbits ""
+	set ubits ""
+	foreach c [split $logic ""] {
+		if {$c == "1"} {
+			append vbits 1
+			append ubits 0
+		} elseif {$c == "0"} {
+			append vbits 0
+			append ubits 0
+		} else {
+			append vbits 0
+			append ubits 1
+		}
+	}
+	return [binary format B${width}B${width} $vbits $ubits]
+}
+
+proc MessageReceived {channel} {
+	global names types widths
+
+	if {[eof $channel] || [catch {ReadFrame $channel} frame]} {
+		end_binder $channel
+		return
+	}
+
+	binary scan $frame a op
+
+	# If end of communication is asked
+	if {$op == "E"} {
+
+		# Sim end procedure
+		end_binder $channel
+
+	# When restart is requested
+	} elseif {$op == "R"} {
+		puts "Restart simulation"
+		if {[catch {restart -f} errmsg]} {
+			puts "Error at simulation reset: $errmsg"
+		}
+
+	# A step: declarations, then the ports of every entity to evaluate
+	} elseif {$op == "S"} {
+		set off 1
+		binary scan $frame @${off}Su ndecls
+		incr off 2
+		for {set i 0} {$i < $ndecls} {incr i} {
+			binary scan $frame @${off}SucuSuSu handle type width len
+			incr off 7
+			set names($handle) [encoding convertfrom utf-8 [string range $frame $off [expr {$off + $len - 1}]]]
+			set types($handle) $type
+			set widths($handle) $width
+			incr off $len
+		}
+
+		binary scan $frame @${off}Su nports
+		incr off 2
+		set handles {}
+		for {set i 0} {$i < $nports} {incr i} {
+			binary scan $frame @${off}Sucu handle hasValue
+			incr off 3
+			lappend handles $handle
+			if {$hasValue} {
+				set width $widths($handle)
+				set nbytes [expr {($width + 7) / 8}]
+				binary scan $frame @${off}B${width} vbits
+				binary scan $frame @[expr {$off + $nbytes}]B${width} ubits
+				incr off [expr {2 * $nbytes}]
+				set value [BitsToLogic $vbits $ubits]
+				set name $names($handle)
+
+				# If signal is "in"
+				if {$types($handle) == 1} {
+					# Drive simulation signal (force signal, no internal logic changes possible)
+					if {[catch {force -freeze sim:/top_sim/$name $value} errmsg]} {
+						puts "Error forcing simulation signal: $errmsg"
+					}
+
+				# If signal is "inout"
+				} elseif {$types($handle) == 3} {
+
+					# Use deposit so value can be changed by internal logic
+					if {[catch {force -deposit sim:/top_sim/$name $value} errmsg]} {
+						puts "Error forcing simulation signal: $errmsg"
+					}
+				}
+			}
+		}
+
+		# Run the simulation
+		if {[catch {run 100} errmsg]} {
+			puts "Error running simulation: $errmsg"
+		}
+
+		# Read output signals from simulation
+		set reply ""
+		set count 0
+		foreach handle $handles {
+			# If signal is "out" or "inout"
+			if {$types($handle) == 2 || $types($handle) == 3} {
+				set width $widths($handle)
+				if {[catch {set value [examine sim:/top_sim/$names($handle)]} errmsg]} {
+					puts "Error examining simulation signal: $errmsg"
+					set value ""
+				}
+				append reply [binary format Su $handle] [LogicToBits $value $width]
+				incr count
+			}
+		}
+
+		# Send the outputs to logisim, which ends the step
+		set reply "S[binary format Su $count]$reply"
+		puts -nonewline $channel [binary format Iu [string length $reply]]
+		puts -nonewline $channel $reply
+		flush $channel
+	}
+}
+
+proc {main} {port} {
+
+	global argv
+	global channel
+
+	set server localhost
+
+	if {[catch {set channel [socket $server $port]} errmsg]} {
+		puts "Error : $errmsg"
+		exit
+	} else {
+		puts "TCL_BINDER_CONNECTED"
+		puts "TCL_BINDER_RUNNING"
+
+		fconfigure $channel -translation binary -encoding binary -blocking 1
+
+		fileevent $channel readable [list MessageReceived $channel]
+
+		vwait forever
+	}
+}
+
+proc end_binder {channel} {
+
+	if {[catch {quit -force} errmsg]} {
+		puts "Error at simulator exit: $errmsg"
+	}
+
+	close $channel
+	puts "TCL_BINDER_ENDED"
+	exit
+}
+
+main $1
@@ -39,6 +39,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.cburch.logisim.analyze.model.Var;
 import com.cburch.logisim.analyze.model.AnalyzerModel;
@@ -56,6 +58,7 @@ import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.wiring.Pin;
 import com.cburch.logisim.std.base.Text;
+import com.cburch.logisim.util.UniquelyNamedThread;
 
 public class Analyze {
   public static class LocationBit {
@@ -189,49 +192,195 @@ public class Analyze {
   /** Returns a truth table corresponding to the circuit. */
   public static void computeTable(AnalyzerModel model, Project proj,
       Circuit circuit, Map<Instance, String> pinLabels) {
-    ArrayList<Instance> inputPins = new ArrayList<>();
-    ArrayList<Var> inputVars = new ArrayList<>();
-    ArrayList<String> inputNames = new ArrayList<>();
-    ArrayList<Instance> outputPins = new ArrayList<>();
-    ArrayList<Var> outputVars = new ArrayList<>();
-    ArrayList<String> outputNames = new ArrayList<>();
+    computeTable(proj, circuit, pinLabels, null).applyTo(model);
+  }
+
+  // Progress callback for computeTable. It is called with the number of rows
+  // finished so far, from whichever thread finished them, and can return
+  // false to abandon the computation.
+  public interface TableProgress {
+    boolean update(int rowsDone, int rowCount);
+  }
+
+  // A truth table computed by simulation, not yet stored in any model.
+  public static class Table {
+    final ArrayList<Instance> inputPins = new ArrayList<>();
+    final ArrayList<Var> inputVars = new ArrayList<>();
+    final ArrayList<Instance> outputPins = new ArrayList<>();
+    final ArrayList<Var> outputVars = new ArrayList<>();
+    int inputCount, rowCount;
+    Entry[][] columns;
+
+    public void applyTo(AnalyzerModel model) {
+      model.setVariables(inputVars, outputVars);
+      for (int i = 0; i < columns.length; i++)
+        model.getTruthTable().setOutputColumn(i, columns[i]);
+    }
+  }
+
+  // Rows are handed out to worker threads in chunks of this many, and
+  // progress is reported once per chunk.
+  private static final int TABLE_CHUNK = 64;
+
+  // Each row is simulated independently. Rather than build a fresh root state
+  // for every row, each worker thread keeps one state and resets it between
+  // rows, then re-drives the input pins. A reset keeps the contents of
+  // non-volatile RAMs, though, so circuits containing RAM do get a fresh root
+  // state for every row. Workers share nothing but the
+  // (read-only) circuit and claim chunks of rows from a common counter. The
+  // calling thread does the first chunk alone, which builds the connectivity
+  // of every subcircuit before any other thread needs it (see
+  // CircuitWires.getConnectivity), then joins the others as a worker. Returns
+  // null if progress asked to stop early.
+  public static Table computeTable(Project proj, Circuit circuit,
+      Map<Instance, String> pinLabels, TableProgress progress) {
+    return computeTable(proj, circuit, pinLabels, progress, true,
+        Runtime.getRuntime().availableProcessors());
+  }
+
+  // With bitSlice false, every row is simulated even when the circuit could
+  // be done by BitSliceEvaluator. At most maxThreads threads simulate rows.
+  static Table computeTable(Project proj, Circuit circuit,
+      Map<Instance, String> pinLabels, TableProgress progress, boolean bitSlice,
+      int maxThreads) {
+    Table t = newTable(pinLabels);
+
+    // Purely combinational circuits of gates can be done without simulating.
+    BitSliceEvaluator fast = bitSlice ? BitSliceEvaluator.compile(circuit, t,
+        proj.getOptions().getAttributeSet()) : null;
+    if (fast != null)
+      return fast.computeTable(t, progress) ? t : null;
+
+    boolean fresh = circuit.containsRam();
+    AtomicInteger nextRow = new AtomicInteger();
+    AtomicInteger rowsDone = new AtomicInteger();
+    AtomicBoolean stop = new AtomicBoolean();
+    Runnable work = () -> {
+      RowSimulator sim = new RowSimulator(proj, circuit, t, fresh);
+      while (!stop.get()) {
+        int start = nextRow.getAndAdd(TABLE_CHUNK);
+        if (start >= t.rowCount)
+          break;
+        int end = Math.min(t.rowCount, start + TABLE_CHUNK);
+        for (int i = start; i < end; i++)
+          sim.simulate(i);
+        int done = rowsDone.addAndGet(end - start);
+        if (progress != null && !progress.update(done, t.rowCount))
+          stop.set(true);
+      }
+    };
+
+    // first chunk, alone
+    int chunks = (t.rowCount + TABLE_CHUNK - 1) / TABLE_CHUNK;
+    int threads = Math.min(chunks, maxThreads);
+    if (threads <= 1) {
+      work.run();
+    } else {
+      RowSimulator sim = new RowSimulator(proj, circuit, t, fresh);
+      int end = nextRow.addAndGet(TABLE_CHUNK);
+      for (int i = 0; i < end; i++)
+        sim.simulate(i);
+      rowsDone.set(end);
+      if (progress != null && !progress.update(end, t.rowCount))
+        stop.set(true);
+      Throwable[] failure = new Throwable[1];
+      Thread[] helpers = new Thread[threads - 1];
+      for (int k = 0; k < helpers.length; k++) {
+        helpers[k] = new UniquelyNamedThread(work, "TruthTable");
+        helpers[k].setUncaughtExceptionHandler((th, e) -> {
+          stop.set(true);
+          synchronized (failure) {
+            if (failure[0] == null)
+              failure[0] = e;
+          }
+        });
+        helpers[k].start();
+      }
+      try {
+        work.run();
+      } finally {
+        for (Thread h : helpers) {
+          while (true) {
+            try {
+              h.join();
+              break;
+            } catch (InterruptedException e) {
+              stop.set(true);
+            }
+          }
+        }
+      }
+      synchronized (failure) {
+        if (failure[0] instanceof RuntimeException)
+          throw (RuntimeException)failure[0];
+        else if (failure[0] != null)
+          throw new RuntimeException(failure[0]);
+      }
+    }
+    return stop.get() ? null : t;
+  }
+
+  // A table with its pins and variables, and room for all of its rows.
+  static Table newTable(Map<Instance, String> pinLabels) {
+    Table t = new Table();
+    int outputCount = 0;
     for (Map.Entry<Instance, String> entry : pinLabels.entrySet()) {
       Instance pin = entry.getKey();
       int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
       Var var = new Var(entry.getValue(), width);
       if (Pin.FACTORY.isInputPin(pin)) {
-        inputPins.add(pin);
-        for (String name : var)
-          inputNames.add(name);
-        inputVars.add(var);
+        t.inputPins.add(pin);
+        t.inputVars.add(var);
+        t.inputCount += width;
       } else {
-        outputPins.add(pin);
-        for (String name : var)
-          outputNames.add(name);
-        outputVars.add(var);
+        t.outputPins.add(pin);
+        t.outputVars.add(var);
+        outputCount += width;
       }
     }
+    t.rowCount = 1 << t.inputCount;
+    t.columns = new Entry[outputCount][t.rowCount];
+    return t;
+  }
 
-    int inputCount = inputNames.size();
-    int rowCount = 1 << inputCount;
-    Entry[][] columns = new Entry[outputNames.size()][rowCount];
+  private static class RowSimulator {
+    final Project proj;
+    final Circuit circuit;
+    final Table t;
+    final boolean fresh; // a new root state for every row
+    CircuitState state;
+    Propagator prop;
+    boolean used;
+
+    RowSimulator(Project proj, Circuit circuit, Table t, boolean fresh) {
+      this.proj = proj;
+      this.circuit = circuit;
+      this.t = t;
+      this.fresh = fresh;
+      state = CircuitState.createRootState(proj, circuit);
+      prop = state.getPropagator();
+    }
 
-    for (int i = 0; i < rowCount; i++) {
-      CircuitState circuitState = CircuitState.createRootState(proj, circuit);
+    void simulate(int row) {
+      if (used && fresh) {
+        state = CircuitState.createRootState(proj, circuit);
+        prop = state.getPropagator();
+      } else if (used) {
+        prop.reset();
+      }
+      used = true;
       int incol = 0;
-      for (int j = 0; j < inputPins.size(); j++) {
-        Instance pin = inputPins.get(j);
+      for (Instance pin : t.inputPins) {
         int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
         Value v[] = new Value[width];
         for (int b = width-1; b >= 0; b--) {
-          boolean value = TruthTable.isInputSet(i, incol++, inputCount);
+          boolean value = TruthTable.isInputSet(row, incol++, t.inputCount);
           v[b] = value ?  Value.TRUE : Value.FALSE;
         }
-        InstanceState pinState = circuitState.getInstanceState(pin);
+        InstanceState pinState = state.getInstanceState(pin);
         Pin.FACTORY.driveInputPin(pinState, Value.create(v));
       }
 
-      Propagator prop = circuitState.getPropagator();
       prop.propagate();
       /*
        * TODO for the SimulatorPrototype class do { prop.step(); } while
@@ -239,19 +388,20 @@ public class Analyze {
        */
       // TODO: Search for circuit state
 
+      Entry[][] columns = t.columns;
       if (prop.isOscillating()) {
         for (int j = 0; j < columns.length; j++) {
-          columns[j][i] = Entry.OSCILLATE_ERROR;
+          columns[j][row] = Entry.OSCILLATE_ERROR;
         }
       } else {
         int outcol = 0;
-        for (int j = 0; j < outputPins.size(); j++) {
-          Instance pin = outputPins.get(j);
+        for (Instance pin : t.outputPins) {
           int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
-          InstanceState pinState = circuitState.getInstanceState(pin);
+          InstanceState pinState = state.getInstanceState(pin);
+          Value val = Pin.FACTORY.getValue(pinState);
           Entry out;
           for (int b = width-1; b >= 0; b--) {
-            Value outValue = Pin.FACTORY.getValue(pinState).get(b);
+            Value outValue = val.get(b);
             if (outValue == Value.TRUE)
               out = Entry.ONE;
             else if (outValue == Value.FALSE)
@@ -260,16 +410,11 @@ public class Analyze {
               out = Entry.BUS_ERROR;
             else
               out = Entry.DONT_CARE;
-            columns[outcol++][i] = out;
+            columns[outcol++][row] = out;
           }
         }
       }
     }
-
-    model.setVariables(inputVars, outputVars);
-    for (int i = 0; i < columns.length; i++) {
-      model.getTruthTable().setOutputColumn(i, columns[i]);
-    }
   }
 
   // computes outputs of affected components
@@ -0,0 +1,77 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Location;
+
+public interface BitSliceComputer {
+  /**
+   * Describes the component's behavior, for circuits where every wire carries
+   * only 0 or 1, as bitwise operations over the supplied builder. The
+   * component should fetch each input bit it uses with
+   * <code>builder.input()</code>, combine them using the builder's operators,
+   * and hand each result to <code>builder.output()</code>.
+   *
+   * If the component can't be described this way (e.g., it needs clocked
+   * state, or it could produce floating or error values under its current
+   * attributes), the method returns false, and the caller falls back to
+   * ordinary simulation.
+   */
+  public boolean computeBitSlice(Builder builder);
+
+  /**
+   * Returns the delay with which the component drives its outputs in ordinary
+   * simulation. ClusterEvaluator drives them with the same delay.
+   */
+  public default int getDelay() {
+    return 1;
+  }
+
+  /**
+   * Each operand and result is a slot number, standing for one bit of the
+   * circuit as evaluated for many input combinations at once.
+   */
+  public interface Builder {
+    // Returns -1 if nothing else in the circuit touches the given point.
+    public int input(Location point, int bit);
+    public void output(Location point, int bit, int slot);
+    public AttributeSet getOptions();
+
+    public int constant(boolean value);
+    public int not(int a);
+    public int and(int a, int b);
+    public int or(int a, int b);
+    public int xor(int a, int b);
+    public int mux(int sel, int ifTrue, int ifFalse);
+  }
+
+}
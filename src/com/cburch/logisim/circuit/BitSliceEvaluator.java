@@ -0,0 +1,350 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.cburch.logisim.analyze.model.Entry;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.PullResistor;
+import com.cburch.logisim.std.wiring.Tunnel;
+
+// BitSliceEvaluator computes a truth table 64 rows at a time. Each bit of the
+// circuit becomes one long word, with bit r of the word holding that bit's
+// value in row (base + r), and each component becomes a few bitwise
+// operations on those words (see BitSliceComputer). Splitters and tunnels cost
+// nothing, since they only decide which wire threads are the same net.
+//
+// This only works when every net carries 0 or 1 in every row: each net needs
+// exactly one driver, there can't be any feedback loops, and every component
+// with outputs has to describe itself as a BitSliceComputer. Anything else
+// (subcircuits, arithmetic, memory, floating or conflicting nets) makes
+// compile() return null, and Analyze simulates the rows one at a time instead.
+class BitSliceEvaluator {
+
+  // node kinds, and also program opcodes
+  private static final int NET = 0; // a = driving node, or -1 if undriven
+  private static final int VAR = 1; // a = truth table input column
+  private static final int ZERO = 2;
+  private static final int ONE = 3;
+  private static final int NOT = 4; // ~a
+  private static final int AND = 5; // a & b
+  private static final int OR = 6; // a | b
+  private static final int XOR = 7; // a ^ b
+  private static final int MUX = 8; // a ? b : c
+
+  // Input column col of the truth table is bit (inputCount - col - 1) of the
+  // row number. For the low six bits of the row number, the word for rows
+  // base..base+63 doesn't depend on base.
+  private static final long[] LOW_BITS = {
+    0xaaaaaaaaaaaaaaaaL, 0xccccccccccccccccL, 0xf0f0f0f0f0f0f0f0L,
+    0xff00ff00ff00ff00L, 0xffff0000ffff0000L, 0xffffffff00000000L };
+
+  private final int inputCount;
+  // Straight-line program. Instruction i leaves its result in register i, and
+  // its operands name earlier registers.
+  private final int[] op, a, b, c;
+  private final int[] outputs; // register for each truth table output column
+
+  private BitSliceEvaluator(int inputCount, int[] op, int[] a, int[] b, int[] c, int[] outputs) {
+    this.inputCount = inputCount;
+    this.op = op;
+    this.a = a;
+    this.b = b;
+    this.c = c;
+    this.outputs = outputs;
+  }
+
+  // Fills in all of t.columns, or returns false if progress asked to stop.
+  boolean computeTable(Analyze.Table t, Analyze.TableProgress progress) {
+    long[] reg = new long[op.length];
+    for (int base = 0; base < t.rowCount; base += 64) {
+      evaluate(base, reg);
+      int rows = Math.min(64, t.rowCount - base);
+      for (int j = 0; j < outputs.length; j++) {
+        long w = reg[outputs[j]];
+        Entry[] column = t.columns[j];
+        for (int r = 0; r < rows; r++)
+          column[base + r] = ((w >>> r) & 1) != 0 ? Entry.ONE : Entry.ZERO;
+      }
+      if (progress != null && !progress.update(base + rows, t.rowCount))
+        return false;
+    }
+    return true;
+  }
+
+  private void evaluate(int base, long[] reg) {
+    for (int i = 0; i < op.length; i++) {
+      switch (op[i]) {
+      case VAR:
+        int bit = inputCount - a[i] - 1;
+        if (bit < LOW_BITS.length)
+          reg[i] = LOW_BITS[bit];
+        else
+          reg[i] = ((base >>> bit) & 1) != 0 ? -1L : 0L;
+        break;
+      case ZERO: reg[i] = 0L; break;
+      case ONE: reg[i] = -1L; break;
+      case NOT: reg[i] = ~reg[a[i]]; break;
+      case AND: reg[i] = reg[a[i]] & reg[b[i]]; break;
+      case OR: reg[i] = reg[a[i]] | reg[b[i]]; break;
+      case XOR: reg[i] = reg[a[i]] ^ reg[b[i]]; break;
+      case MUX: {
+        long s = reg[a[i]];
+        reg[i] = (s & reg[b[i]]) | (~s & reg[c[i]]);
+        break;
+      }
+      }
+    }
+  }
+
+  // Returns null if the circuit can't be evaluated this way.
+  static BitSliceEvaluator compile(Circuit circuit, Analyze.Table t, AttributeSet options) {
+    Set<WidthIncompatibilityData> bad = circuit.getWidthIncompatibilityData();
+    if (bad != null && !bad.isEmpty())
+      return null;
+
+    Compiler cc = new Compiler(circuit, options);
+    HashSet<Component> pins = new HashSet<>();
+    int col = 0;
+    for (Instance pin : t.inputPins) {
+      pins.add(pin.getComponent());
+      int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
+      for (int bit = width - 1; bit >= 0; bit--)
+        cc.output(pin.getLocation(), bit, cc.node(VAR, col++, -1, -1));
+    }
+    for (Instance pin : t.outputPins)
+      pins.add(pin.getComponent());
+
+    for (Component comp : circuit.getNonWires()) {
+      Object factory = comp.getFactory();
+      if (factory instanceof Pin) {
+        if (!pins.contains(comp))
+          return null; // not part of the table, but could still drive something
+      } else if (factory instanceof SplitterFactory
+          || factory instanceof Tunnel || factory instanceof PullResistor) {
+        ; // handled by CircuitWires
+      } else {
+        BitSliceComputer computer = (BitSliceComputer) comp.getFeature(BitSliceComputer.class);
+        if (computer != null) {
+          cc.current = comp;
+          if (!computer.computeBitSlice(cc))
+            return null;
+        } else {
+          // Components without outputs, like probes and LEDs, only observe.
+          for (EndData end : comp.getEnds()) {
+            if (end.isOutput())
+              return null;
+          }
+        }
+      }
+      if (cc.failed)
+        return null;
+    }
+
+    ArrayList<Integer> outNets = new ArrayList<>();
+    for (Instance pin : t.outputPins) {
+      int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
+      for (int bit = width - 1; bit >= 0; bit--)
+        outNets.add(cc.net(pin.getLocation(), bit));
+    }
+    return cc.link(t.inputCount, outNets);
+  }
+
+  private static class Compiler implements BitSliceComputer.Builder {
+    final Circuit circuit;
+    final AttributeSet options;
+    Component current;
+    boolean failed;
+
+    int count;
+    int[] kind = new int[64], a = new int[64], b = new int[64], c = new int[64];
+    HashMap<WireThread, Integer> nets = new HashMap<>();
+    int zero = -1, one = -1;
+
+    Compiler(Circuit circuit, AttributeSet options) {
+      this.circuit = circuit;
+      this.options = options;
+    }
+
+    int node(int k, int x, int y, int z) {
+      if (count == kind.length) {
+        int n = 2 * count;
+        kind = Arrays.copyOf(kind, n);
+        a = Arrays.copyOf(a, n);
+        b = Arrays.copyOf(b, n);
+        c = Arrays.copyOf(c, n);
+      }
+      kind[count] = k;
+      a[count] = x;
+      b[count] = y;
+      c[count] = z;
+      return count++;
+    }
+
+    int net(Location loc, int bit) {
+      WireBundle bundle = circuit.wires.getWireBundle(loc);
+      if (bundle == null || !bundle.isValid() || bundle.threads == null
+          || bit >= bundle.threads.length)
+        return node(NET, -1, -1, -1); // touches nothing that could drive it
+      WireThread thread = bundle.threads[bit];
+      Integer n = nets.get(thread);
+      if (n == null) {
+        n = node(NET, -1, -1, -1);
+        nets.put(thread, n);
+      }
+      return n;
+    }
+
+    public int input(Location loc, int bit) {
+      if (!circuit.isConnected(loc, current))
+        return -1;
+      return net(loc, bit);
+    }
+
+    public void output(Location loc, int bit, int slot) {
+      int n = net(loc, bit);
+      if (slot < 0 || a[n] >= 0)
+        failed = true; // no value, or more than one driver
+      else
+        a[n] = slot;
+    }
+
+    public AttributeSet getOptions() { return options; }
+
+    public int constant(boolean value) {
+      if (value)
+        return one >= 0 ? one : (one = node(ONE, -1, -1, -1));
+      else
+        return zero >= 0 ? zero : (zero = node(ZERO, -1, -1, -1));
+    }
+
+    public int not(int x) { return node(NOT, x, -1, -1); }
+    public int and(int x, int y) { return node(AND, x, y, -1); }
+    public int or(int x, int y) { return node(OR, x, y, -1); }
+    public int xor(int x, int y) { return node(XOR, x, y, -1); }
+    public int mux(int s, int x, int y) { return node(MUX, s, x, y); }
+
+    // Orders the nodes that the outputs depend on so each comes after its
+    // operands, with nets replaced by whatever drives them. Every other node
+    // is still checked for loops, since a loop anywhere can make the circuit
+    // oscillate.
+    BitSliceEvaluator link(int inputCount, ArrayList<Integer> outNets) {
+      int[] reg = new int[count];
+      Arrays.fill(reg, -1);
+      byte[] mark = new byte[count]; // 0 = unvisited, 1 = in progress, 2 = done
+      int[] order = new int[count];
+      int[] len = new int[1];
+      for (int n : outNets) {
+        if (!visit(n, mark, reg, order, len))
+          return null;
+      }
+      int used = len[0];
+      for (int n = 0; n < count; n++) {
+        if (!visit(n, mark, null, null, null))
+          return null;
+      }
+
+      int[] xop = new int[used], xa = new int[used], xb = new int[used], xc = new int[used];
+      for (int i = 0; i < used; i++) {
+        int n = order[i];
+        xop[i] = kind[n];
+        xa[i] = kind[n] == VAR ? a[n] : operand(reg, a[n]);
+        xb[i] = operand(reg, b[n]);
+        xc[i] = operand(reg, c[n]);
+      }
+      int[] outputs = new int[outNets.size()];
+      for (int j = 0; j < outputs.length; j++)
+        outputs[j] = reg[outNets.get(j)];
+      return new BitSliceEvaluator(inputCount, xop, xa, xb, xc, outputs);
+    }
+
+    private static int operand(int[] reg, int n) {
+      return n < 0 ? -1 : reg[n];
+    }
+
+    // Depth-first, with an explicit stack, because a long chain of gates
+    // could otherwise overflow the thread's stack. When order is non-null, the
+    // finished nodes are appended to it and assigned registers, and an
+    // undriven net is a failure; otherwise only loops are a failure.
+    private boolean visit(int root, byte[] mark, int[] reg, int[] order, int[] len) {
+      if (mark[root] == 2)
+        return true;
+      int[] stack = new int[16];
+      int sp = 0;
+      stack[sp++] = root;
+      while (sp > 0) {
+        int n = stack[sp - 1];
+        if (mark[n] == 2) {
+          sp--;
+        } else if (mark[n] == 1) {
+          sp--;
+          mark[n] = 2;
+          if (order != null) {
+            if (kind[n] == NET) {
+              reg[n] = reg[a[n]];
+            } else {
+              reg[n] = len[0];
+              order[len[0]++] = n;
+            }
+          }
+        } else {
+          mark[n] = 1;
+          if (kind[n] == NET && a[n] < 0 && order != null)
+            return false; // floating
+          if (sp + 3 > stack.length)
+            stack = Arrays.copyOf(stack, 2 * stack.length);
+          if (kind[n] != VAR) {
+            for (int m : new int[] { a[n], b[n], c[n] }) {
+              if (m < 0)
+                continue;
+              if (mark[m] == 1)
+                return false; // loop
+              if (mark[m] == 0)
+                stack[sp++] = m;
+            }
+          }
+        }
+      }
+      return true;
+    }
+  }
+}
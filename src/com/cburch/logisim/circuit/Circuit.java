@@ -31,7 +31,9 @@
 package com.cburch.logisim.circuit;
 
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -42,6 +44,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import com.bfh.logisim.fpga.PinBindings;
 import com.bfh.logisim.gui.FPGAReport;
@@ -71,6 +75,7 @@ import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.hdl.VhdlEntity;
+import com.cburch.logisim.std.memory.Ram;
 import com.cburch.logisim.std.memory.Rom;
 import com.cburch.logisim.std.wiring.Clock;
 import com.cburch.logisim.std.wiring.Pin;
@@ -115,6 +120,7 @@ public class Circuit implements AttributeDefaultProvider {
 
   private class MyComponentListener implements ComponentListener {
     public void componentInvalidated(ComponentEvent e) {
+      index.update(e.getSource());
       fireEvent(CircuitEvent.ACTION_INVALIDATE, e.getSource());
     }
 
@@ -126,6 +132,7 @@ public class Circuit implements AttributeDefaultProvider {
       EndChangedTransaction xn = new EndChangedTransaction(comp,
           toRemove, toAdd);
       locker.execute(xn);
+      index.update(comp);
       fireEvent(CircuitEvent.ACTION_INVALIDATE, comp);
     }
 
@@ -157,8 +164,17 @@ public class Circuit implements AttributeDefaultProvider {
   private SubcircuitFactory subcircuitFactory;
   private EventSourceWeakSupport<CircuitListener> listeners = new EventSourceWeakSupport<CircuitListener>();
   private HashSet<Component> comps = new HashSet<Component>(); // doesn't include wires
-  CircuitWires wires = new CircuitWires();
+  // Slots in use, see Component.getSlot(). A removed component's slot is given
+  // to the next component added, lowest first, so the per-slot arrays of each
+  // CircuitState grow with the size of the circuit, not its edit history.
+  private BitSet usedSlots = new BitSet();
+  private int slotCount; // usedSlots.length(), readable without the lock
+  private volatile ClusterEvaluator clusters; // compiled on demand
+  private final Object clustersLock = new Object();
+  CircuitWires wires = new CircuitWires(this);
   // wires is package-protected for CircuitState and Analyze only.
+  private final AtomicInteger connectivityVersion = new AtomicInteger();
+  private ComponentIndex index = new ComponentIndex(); // comps and wires, by location
   private ArrayList<Component> clocks = new ArrayList<Component>();
   private CircuitLocker locker;
 
@@ -249,7 +265,13 @@ public class Circuit implements AttributeDefaultProvider {
    */
   public void doTestVector(Project project, Instance pin[], Value[] val)
       throws TestException {
-    CircuitState state = project.getCircuitState();
+    doTestVector(project.getCircuitState(), pin, val);
+  }
+
+  // Same as above, but on a given root state of this circuit, so that several
+  // threads can each test rows on their own state.
+  public void doTestVector(CircuitState state, Instance pin[], Value[] val)
+      throws TestException {
     state.reset();
 
     for (int i = 0; i < pin.length; ++i) {
@@ -297,13 +319,39 @@ public class Circuit implements AttributeDefaultProvider {
   // Graphics methods
   //
   public void draw(ComponentDrawContext context, Collection<Component> hidden) {
+    draw(context, hidden, true, null);
+  }
+
+  // Draws the visible wires, if requested, and those visible components
+  // accepted by the filter (all, if the filter is null). CanvasPainter uses
+  // this to draw its cached static layer separately from everything else.
+  public void draw(ComponentDrawContext context, Collection<Component> hidden,
+      boolean drawWires, Predicate<Component> filter) {
     Graphics g = context.getGraphics();
     Graphics g_copy = g.create();
     context.setGraphics(g_copy);
-    wires.draw(context, hidden);
 
-    if (hidden == null || hidden.size() == 0) {
-      for (Component c : comps) {
+    // Only the components and wires that overlap the clip need painting.
+    Collection<? extends Component> visible = comps;
+    Collection<Wire> visibleWires = wires.getWires();
+    Rectangle clip = g.getClipBounds();
+    if (clip != null) {
+      ArrayList<Component> vc = new ArrayList<>();
+      ArrayList<Wire> vw = new ArrayList<>();
+      for (Component c : index.query(Bounds.create(clip))) {
+        if (c instanceof Wire)
+          vw.add((Wire) c);
+        else
+          vc.add(c);
+      }
+      visible = vc;
+      visibleWires = vw;
+    }
+    if (drawWires)
+      wires.draw(context, hidden, visibleWires, clip);
+
+    if ((hidden == null || hidden.size() == 0) && filter == null) {
+      for (Component c : visible) {
         Graphics g_new = g.create();
         context.setGraphics(g_new);
         g_copy.dispose();
@@ -312,8 +360,9 @@ public class Circuit implements AttributeDefaultProvider {
         c.draw(context);
       }
     } else {
-      for (Component c : comps) {
-        if (!hidden.contains(c)) {
+      for (Component c : visible) {
+        if ((hidden == null || !hidden.contains(c))
+            && (filter == null || filter.test(c))) {
           Graphics g_new = g.create();
           context.setGraphics(g_new);
           g_copy.dispose();
@@ -333,6 +382,8 @@ public class Circuit implements AttributeDefaultProvider {
   }
 
   private void fireEvent(CircuitEvent event) {
+    if (event.getAction() != CircuitEvent.ACTION_DISPLAY_CHANGE)
+      clusters = null;
     for (CircuitListener l : listeners)
       l.circuitChanged(event);
   }
@@ -347,7 +398,7 @@ public class Circuit implements AttributeDefaultProvider {
 
   public Collection<Component> getAllContaining(Location pt) {
     HashSet<Component> ret = new HashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : index.query(Bounds.create(pt))) {
       if (comp.contains(pt))
         ret.add(comp);
     }
@@ -356,16 +407,25 @@ public class Circuit implements AttributeDefaultProvider {
 
   public Collection<Component> getAllContaining(Location pt, Graphics g) {
     HashSet<Component> ret = new HashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : index.query(Bounds.create(pt))) {
       if (comp.contains(pt, g))
         ret.add(comp);
     }
     return ret;
   }
 
+  public Collection<Component> getAllIntersecting(Bounds bds, Graphics g) {
+    HashSet<Component> ret = new HashSet<>();
+    for (Component comp : index.query(bds)) {
+      if (bds.overlaps(comp.getBounds(g)))
+        ret.add(comp);
+    }
+    return ret;
+  }
+
   public Collection<Component> getAllWithin(Bounds bds) {
     HashSet<Component> ret = new HashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : index.query(bds)) {
       if (bds.contains(comp.getBounds()))
         ret.add(comp);
     }
@@ -374,7 +434,7 @@ public class Circuit implements AttributeDefaultProvider {
 
   public Collection<Component> getAllWithin(Bounds bds, Graphics g) {
     HashSet<Component> ret = new HashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : index.query(bds)) {
       if (bds.contains(comp.getBounds(g)))
         ret.add(comp);
     }
@@ -383,7 +443,10 @@ public class Circuit implements AttributeDefaultProvider {
 
   public Collection<Wire> getWiresIntersecting(Bounds bds) {
     HashSet<Wire> ret = new HashSet<>();
-    for (Wire w: wires.getWires()) {
+    for (Component c : index.query(bds)) {
+      if (!(c instanceof Wire))
+        continue;
+      Wire w = (Wire) c;
       Bounds b = w.getBounds();
       if (bds.overlaps(b)) // && !bds.contains(b)
         ret.add(w);
@@ -434,10 +497,62 @@ public class Circuit implements AttributeDefaultProvider {
     return circuitsUsingThis.values();
   }
 
+  // The connectivity version counts changes to the wiring of this circuit or
+  // of any circuit used (directly or indirectly) within it. CircuitState
+  // uses it to find the states whose wire data needs to be rebuilt, without
+  // visiting states of circuits that didn't change. Called by CircuitWires
+  // (on the AWT thread) whenever connectivity is voided.
+  void connectivityChanged() {
+    // Each circuit is counted only after every changed circuit within it, so
+    // a simulator that sees a new version for some circuit also sees the new
+    // versions of the changed circuits within it.
+    ArrayList<Circuit> order = new ArrayList<>();
+    addCircuitsUsing(this, new HashSet<>(), order);
+    for (int i = order.size() - 1; i >= 0; i--)
+      order.get(i).connectivityVersion.incrementAndGet();
+  }
+
+  // Adds circ and every circuit using it to order, each after all the
+  // circuits that use it.
+  private static void addCircuitsUsing(Circuit circ, HashSet<Circuit> seen,
+      ArrayList<Circuit> order) {
+    seen.add(circ);
+    for (Circuit other : circ.circuitsUsingThis.values())
+      if (!seen.contains(other))
+        addCircuitsUsing(other, seen, order);
+    order.add(circ);
+  }
+
+  int getConnectivityVersion() {
+    return connectivityVersion.get();
+  }
+
   public ArrayList<Component> getClocks() {
     return clocks;
   }
 
+  // Returns true if this circuit, or any circuit used within it, has a RAM.
+  // CircuitState.reset() keeps the contents of non-volatile RAMs, so a reset
+  // state of such a circuit isn't the same as a new one.
+  public boolean containsRam() {
+    return containsRam(this, new HashSet<>());
+  }
+
+  private static boolean containsRam(Circuit circ, HashSet<Circuit> seen) {
+    seen.add(circ);
+    for (Component c : circ.getNonWires()) {
+      ComponentFactory factory = c.getFactory();
+      if (factory instanceof Ram)
+        return true;
+      if (factory instanceof SubcircuitFactory) {
+        Circuit sub = ((SubcircuitFactory) factory).getSubcircuit();
+        if (!seen.contains(sub) && containsRam(sub, seen))
+          return true;
+      }
+    }
+    return false;
+  }
+
   private Set<Component> getComponents() {
     return CollectionUtil.createUnmodifiableSetUnion(comps,
         wires.getWires());
@@ -466,6 +581,25 @@ public class Circuit implements AttributeDefaultProvider {
     return comps;
   }
 
+  int getSlotCount() {
+    return slotCount;
+  }
+
+  // Returns the compiled combinational clusters of this circuit, for the given
+  // project options, recompiling them after any change to the circuit. Changes
+  // to the options themselves aren't noticed, but this is only used headless.
+  ClusterEvaluator getClusterEvaluator(AttributeSet options) {
+    ClusterEvaluator ret = clusters;
+    if (ret != null && ret.options == options)
+      return ret;
+    synchronized (clustersLock) {
+      ret = clusters;
+      if (ret == null || ret.options != options)
+        clusters = ret = ClusterEvaluator.compile(this, options);
+      return ret;
+    }
+  }
+
   public boolean isEmpty() {
     return comps.isEmpty() && wires.getWires().isEmpty();
   }
@@ -519,6 +653,12 @@ public class Circuit implements AttributeDefaultProvider {
     return subcircuitFactory;
   }
 
+  // Approximate memory used by each simulation state for this circuit (i.e.
+  // each instance of it) to hold the values on its wires and ports.
+  public long getValueBytesPerState() {
+    return wires.getValueBytesPerState();
+  }
+
   public BitWidth getWidth(Location p) {
     return wires.getWidth(p);
   }
@@ -571,13 +711,21 @@ public class Circuit implements AttributeDefaultProvider {
       boolean added = wires.add(w);
       if (!added)
         return;
+      index.add(w);
     } else {
       // add it into the circuit
       boolean added = comps.add(c);
       if (!added)
         return;
+      int slot = usedSlots.nextClearBit(0);
+      c.setSlot(slot);
+      if (c.getSlot() == slot) {
+        usedSlots.set(slot);
+        slotCount = usedSlots.length();
+      }
 
       wires.add(c);
+      index.add(c);
       ComponentFactory factory = c.getFactory();
       if (factory instanceof Clock) {
         clocks.add(c);
@@ -599,8 +747,11 @@ public class Circuit implements AttributeDefaultProvider {
 
     Set<Component> oldComps = comps;
     comps = new HashSet<Component>();
-    wires = new CircuitWires();
+    wires = new CircuitWires(this);
+    index.clear();
     clocks.clear();
+    usedSlots.clear();
+    slotCount = 0;
     for (Component comp : oldComps) {
       if (comp.getFactory() instanceof SubcircuitFactory) {
         SubcircuitFactory sub = (SubcircuitFactory) comp.getFactory();
@@ -610,6 +761,7 @@ public class Circuit implements AttributeDefaultProvider {
         vhdl.removeCircuitUsing(comp);
       }
     }
+    connectivityChanged();
     fireEvent(CircuitEvent.ACTION_CLEAR, oldComps);
   }
 
@@ -617,11 +769,15 @@ public class Circuit implements AttributeDefaultProvider {
 
     locker.checkForWritePermission("remove", this);
 
+    index.remove(c);
     if (c instanceof Wire) {
       wires.remove(c);
     } else {
       wires.remove(c);
-      comps.remove(c);
+      if (comps.remove(c) && c.getSlot() >= 0) {
+        usedSlots.clear(c.getSlot());
+        slotCount = usedSlots.length();
+      }
       ComponentFactory factory = c.getFactory();
       if (factory instanceof Clock) {
         clocks.remove(c);
@@ -31,12 +31,13 @@
 package com.cburch.logisim.circuit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 // import com.cburch.logisim.circuit.Propagator.DrivenValue;
 import com.cburch.logisim.comp.Component;
@@ -124,9 +125,11 @@ public class CircuitState implements InstanceData {
           // Propagator.checkComponentEnds(CircuitState.this, comp);
           // DEBUG: System.out.println("removed comp " + comp);
           synchronized (dirtyLock) {
-            // dirtyComponents.remove(comp);
-            while (dirtyComponents.remove(comp))
-              ;
+            dirtyComponents.remove(comp); // listed at most once
+            // the circuit may give its slot to the next component added
+            int slot = comp.getSlot();
+            if (slot >= 0 && slot < dirtyStamps.length)
+              dirtyStamps[slot] = 0;
           }
         }
       }
@@ -137,17 +140,22 @@ public class CircuitState implements InstanceData {
         knownClocks = false;
         wireData = null;
         componentData.clear();
-        synchronized (valuesLock) {
-          slowpath_values.clear(); // slow path
-          clearFastpathGrid(); // fast path
-        }
+        instanceStates = new InstanceStateImpl[0];
+        values = ValueStore.EMPTY;
+        publishedValues = ValueStore.EMPTY;
         synchronized (dirtyLock) {
-          dirtyComponents.clear();
+          clearDirtyComponents();
           dirtyPoints.clear();
           // dirtyPointVals.clear();
           substates.clear();
           substatesWorking = new CircuitState[0];
           substatesDirty = true;
+          for (CircuitState sub : dirtySubstates)
+            sub.inDirtySubstates = false;
+          dirtySubstates.clear();
+          for (CircuitState sub : unpublishedSubstates)
+            sub.inUnpublishedSubstates = false;
+          unpublishedSubstates.clear();
         }
         // slowpath_drivers.clear();
       }
@@ -202,20 +210,52 @@ public class CircuitState implements InstanceData {
   private Component parentComp; // subcircuit component containing this state
 
   private CircuitWires.State wireData;
-  private HashMap<Component, Object> componentData = new HashMap<>();
+  private final ComponentDataMap componentData;
+  private InstanceStateImpl[] instanceStates = new InstanceStateImpl[0]; // by slot
   
-  private static final int FASTPATH_GRID_WIDTH = 200;
-  private static final int FASTPATH_GRID_HEIGHT = 200;
-
-  // slowpath_values and fastpath_values store values resulting from propagation
-  // *within* this circuit, i.e. the outputs of componnents in this circuit
-  // together with the values carried on wires and buses in this circuit. When
-  // components embedded in this circuit are called upon to re-calculate /
-  // propagate, the components will call getValue() to pick out values from
-  // these data structures. These are the values you would see if you stick a
-  // probe at some location on the circuit sheet.
-  Map<Location, Value> slowpath_values = new HashMap<>(); // protected by valuesLock
-  Value[][] fastpath_values = new Value[FASTPATH_GRID_HEIGHT][FASTPATH_GRID_WIDTH]; // protected by valuesLock
+  // values stores values resulting from propagation *within* this circuit,
+  // i.e. the outputs of componnents in this circuit together with the values
+  // carried on wires and buses in this circuit. When components embedded in
+  // this circuit are called upon to re-calculate / propagate, the components
+  // will call getValue() to pick out values from this array. These are the
+  // values you would see if you stick a probe at some location on the circuit
+  // sheet. The array is indexed by a LocationIndex, which is shared by all
+  // states for the circuit, and which maps each location along each bus to a
+  // slot for that bus. This used to be a fixed 200x200 grid (for locations near
+  // the origin) plus a HashMap (for all other locations), but that cost 160 KB
+  // or more for every state, even for tiny subcircuits.
+  //
+  // There is no locking. The values array is written only by the simulator,
+  // and read by the simulator (and, harmlessly, by anyone else who calls
+  // getValue()). At the end of each propagation, the simulator publishes an
+  // immutable copy of the array (for each state where something changed) in
+  // publishedValues, and the GUI paints from that copy using
+  // getPublishedValue(). So the painter always sees a consistent snapshot, and
+  // the painter and simulator never block each other. The index and array are
+  // kept together in a ValueStore so each can be replaced as a unit, e.g. when
+  // connectivity changes.
+  static final class ValueStore {
+    static final ValueStore EMPTY = new ValueStore(LocationIndex.EMPTY, new Value[0]);
+    final LocationIndex index;
+    final Value[] values;
+    ValueStore(LocationIndex index, Value[] values) {
+      this.index = index;
+      this.values = values;
+    }
+    Value get(Location p) {
+      int slot = index.get(p);
+      return slot < 0 ? null : values[slot];
+    }
+  }
+  private volatile ValueStore values = ValueStore.EMPTY; // written only by simulator
+  private volatile ValueStore publishedValues = ValueStore.EMPTY; // never modified
+  private boolean valuesChanged; // since last publication, used only by simulator
+  // Substates with values to publish somewhere in their subtree, so that
+  // publishValues() visits only those, in the same way that dirtySubstates
+  // limits the work of each step to the active states.
+  private ArrayList<CircuitState> unpublishedSubstates = new ArrayList<>(); // protected by dirtyLock
+  private boolean inUnpublishedSubstates; // protected by parentState.dirtyLock
+  private CircuitState[] unpublishedSubstatesWorking = new CircuitState[0]; // used only by simulator
 
   // slowpath_drivers and fastpass_drivers store {component,value} pairs for each
   // component that is currently emitting a value *into* this circuit, i.e.
@@ -228,8 +268,6 @@ public class CircuitState implements InstanceData {
   // HashMap<Location, DrivenValue> slowpath_drivers = new HashMap<>(); // used by Propagator, protected by valuesLock
   // DrivenValue[][] fastpath_drivers = new DrivenValue[FASTPATH_GRID_HEIGHT][FASTPATH_GRID_WIDTH]; // used by Propagator, protected by valuesLock
 
-  Object valuesLock = new Object();
-
   // HashSet<Propagator.ComponentPoint> visited = new HashSet<>(); // used by Propagator
   // int visitedNonce; // used by Propagator;
   // The visited member holds the set of every [component,loc] pair (where the
@@ -239,6 +277,13 @@ public class CircuitState implements InstanceData {
   // private CopyOnWriteArraySet<Component> dirtyComponents = new CopyOnWriteArraySet<>();
   // private HashSet<Component> dirtyComponents = new HashSet<>(); // protected by dirtyLock
   private ArrayList<Component> dirtyComponents = new ArrayList<>(); // protected by dirtyLock
+  // A component is listed in dirtyComponents at most once, however many of its
+  // inputs change, so it is propagated at most once per pass. Membership is
+  // kept by slot (see Component.getSlot): dirtyStamps[slot] == dirtyEpoch for
+  // each listed component. Taking the list for processing just starts a new
+  // epoch.
+  private int[] dirtyStamps = new int[0]; // protected by dirtyLock
+  private int dirtyEpoch = 1; // protected by dirtyLock
   // private CopyOnWriteArraySet<Location> dirtyPoints = new CopyOnWriteArraySet<>();
   // private HashSet<Location> dirtyPoints = new HashSet<>();
   // private ArrayList<Location> dirtyPoints = new ArrayList<>(); // protected by dirtyLock
@@ -247,13 +292,35 @@ public class CircuitState implements InstanceData {
   private HashSet<CircuitState> substates = new HashSet<>(); // protected by dirtyLock
   private Object dirtyLock = new Object();
 
-
-  private static int lastId = 0;
-  private int id = lastId++;
+  // Substates are visited by processDirtyPoints() and processDirtyComponents()
+  // only when there is something to do in their subtree. A state adds itself
+  // to its parent's dirtySubstates when it first gets a dirty point or
+  // component, and the parent does the same with its own parent, and so on up
+  // the tree. So each step costs time in proportion to the number of active
+  // states, rather than the number of states in the whole tree. A change to
+  // the connectivity of a circuit means the wire data of its states needs to
+  // be rebuilt, so processDirtyPoints() also visits every substate whose
+  // circuit has a connectivity version it hasn't seen yet. The version of a
+  // circuit also counts changes to the circuits within it, so only states
+  // whose own version changed need to look for such substates, and an edit
+  // to one circuit leaves the states of unrelated circuits alone.
+  private ArrayList<CircuitState> dirtySubstates = new ArrayList<>(); // protected by dirtyLock
+  private boolean inDirtySubstates; // protected by parentState.dirtyLock
+  private int connectivitySeen = -1; // see Circuit.getConnectivityVersion()
+  private int substateIndex; // position within parentState.substatesWorking
+  private CircuitState[] dirtySubstatesWorking = new CircuitState[1];
+  private static final Comparator<CircuitState> BY_SUBSTATE_INDEX =
+      Comparator.comparingInt(s -> s.substateIndex);
+
+
+  // atomic because batch jobs (see TtyInterface) create states concurrently
+  private static final AtomicInteger lastId = new AtomicInteger();
+  private int id = lastId.getAndIncrement();
 
   private CircuitState(Project proj, Circuit circuit, Propagator prop) {
     this.proj = proj;
     this.circuit = circuit;
+    this.componentData = new ComponentDataMap(circuit);
     this.base = prop != null ? prop : new Propagator(this);
     circuit.addCircuitWeakListener(null, myCircuitListener);
     markAllComponentsDirty();
@@ -296,10 +363,14 @@ public class CircuitState implements InstanceData {
         newSub.parentState = this;
         this.substates.add(newSub);
         this.substatesDirty = true;
+        newSub.inDirtySubstates = true;
+        this.dirtySubstates.add(newSub);
+        newSub.inUnpublishedSubstates = true;
+        this.unpublishedSubstates.add(newSub);
         substateData.put(oldSub, newSub);
       }
     }
-    for (Component key : src.componentData.keySet()) {
+    for (Component key : src.componentData.keys()) {
       Object oldValue = src.componentData.get(key);
       if (oldValue instanceof CircuitState) {
         Object newValue = substateData.get(oldValue);
@@ -318,30 +389,27 @@ public class CircuitState implements InstanceData {
       }
     }
     // Propagator.copyDrivenValues(this, src);
-    // note: we don't bother with our this.valuesLock here: it isn't needed
-    // (b/c no other threads have a reference to this yet), and to avoid the
-    // possibility of deadlock (though that shouldn't happen either since no
-    // other threads have references to this yet).
-    this.slowpath_values.clear(); // slow path
-    synchronized (src.valuesLock) {
-      this.slowpath_values.putAll(src.slowpath_values); // slow path
-      for(int y = 0; y < FASTPATH_GRID_HEIGHT; y++) { // fast path
-        System.arraycopy(src.fastpath_values[y], 0,
-            this.fastpath_values[y], 0, FASTPATH_GRID_WIDTH);
-      }
-    }
+    ValueStore vs = src.values;
+    this.values = new ValueStore(vs.index, vs.values.clone());
+    this.publishedValues = src.publishedValues; // immutable, so can be shared
+    this.valuesChanged = true;
     synchronized(src.dirtyLock) {
       // note: we don't bother with our this.dirtyLock here: it isn't needed
       // (b/c no other threads have a reference to this yet), and to avoid the
       // possibility of deadlock (though that shouldn't happen either since no
       // other threads have references to this yet).
-      this.dirtyComponents.addAll(src.dirtyComponents);
-      this.dirtyPoints.addAll(src.dirtyPoints);
+      for (Component comp : src.dirtyComponents)
+        this.addDirtyComponent(comp);
+      // Events can't be shared, as each propagator recycles its own events.
+      for (Propagator.SimulatorEvent ev : src.dirtyPoints)
+        this.dirtyPoints.add(ev.cloneFor(this));
       // this.dirtyPointVals.addAll(src.dirtyPointVals);
     }
     if (src.wireData != null) {
       this.wireData = circuit.wires.newState(this); // all buses will be marked as dirty
       // this.wireData = (CircuitWires.State) src.wireData.clone();
+      if (this.wireData.index != this.values.index) // connectivity changed
+        resetValuesByWire(this.wireData.index);
     }
   }
 
@@ -357,7 +425,25 @@ public class CircuitState implements InstanceData {
     return componentData.get(comp);
   }
 
-  private InstanceStateImpl reusableInstanceState = new InstanceStateImpl(this, null);
+  // Returns the InstanceState for comp in this state, which is kept for the
+  // next call, so propagating a component doesn't allocate one. Each component
+  // has its own, so one component's propagate() can look at another's state.
+  private InstanceState instanceStateFor(Component comp) {
+    int slot = comp.getSlot();
+    if (slot < 0)
+      return new InstanceStateImpl(this, comp);
+    InstanceStateImpl[] states = instanceStates;
+    if (slot >= states.length) {
+      states = Arrays.copyOf(states, Math.max(slot + 1, circuit.getSlotCount()));
+      instanceStates = states;
+    }
+    InstanceStateImpl ret = states[slot];
+    if (ret == null || ret.getComponent() != comp) {
+      ret = new InstanceStateImpl(this, comp);
+      states[slot] = ret;
+    }
+    return ret;
+  }
 
   // FIXME: wtf?
   public InstanceState getInstanceState(Component comp) {
@@ -366,8 +452,7 @@ public class CircuitState implements InstanceData {
       if (comp != ((InstanceComponent)comp).getInstance().getComponent()) 
         throw new IllegalStateException("instanceComponent.getInstance().getComponent() is wrong");
       // return ((InstanceFactory) factory).createInstanceState(this, comp);
-      reusableInstanceState.repurpose(this, comp);
-      return reusableInstanceState;
+      return instanceStateFor(comp);
     } else {
       throw new RuntimeException("getInstanceState requires instance component");
     }
@@ -378,8 +463,7 @@ public class CircuitState implements InstanceData {
     Object factory = instance.getFactory();
     if (factory instanceof InstanceFactory) {
       // return ((InstanceFactory) factory).createInstanceState(this, instance);
-      reusableInstanceState.repurpose(this, instance.getComponent());
-      return reusableInstanceState;
+      return instanceStateFor(instance.getComponent());
     } else {
       throw new RuntimeException("getInstanceState requires instance component");
     }
@@ -413,23 +497,7 @@ public class CircuitState implements InstanceData {
   }
 
   public Value getValue(Location p) {
-    Value v = null;
-    if (p.x >= 0 && p.y >= 0
-        && p.x % 10 == 0 && p.y % 10 == 0
-        && p.x < FASTPATH_GRID_WIDTH*10
-        && p.y < FASTPATH_GRID_HEIGHT*10) {
-      // fast path
-      int x = p.x/10;
-      int y = p.y/10;
-      synchronized (valuesLock) {
-        v = fastpath_values[y][x];
-      }
-    } else {
-      // slow path
-      synchronized (valuesLock) {
-        v = slowpath_values.get(p);
-      }
-    }
+    Value v = values.get(p);
     if (v != null)
       return v;
     v = CircuitWires.getBusValue(this, p);
@@ -438,6 +506,77 @@ public class CircuitState implements InstanceData {
     return Value.createUnknown(circuit.getWidth(p));
   }
 
+  // Returns the value at p as of the end of the most recent propagation. This
+  // is meant for painting, from the AWT thread, while simulation proceeds.
+  // Locations not yet in the published snapshot (e.g. before the first
+  // publication, or points outside the value index) fall back to the bus value
+  // and then to an unknown value of the right width, as getValue() does.
+  public Value getPublishedValue(Location p) {
+    Value v = publishedValues.get(p);
+    if (v != null)
+      return v;
+    v = CircuitWires.getBusValue(this, p);
+    if (v != null && v != Value.NIL)
+      return v;
+    return Value.createUnknown(circuit.getWidth(p));
+  }
+
+  // Publish values for painting, for this state and all substates whose
+  // values changed since the last publication. Called by the simulator at the
+  // end of each propagation.
+  void publishValues() {
+    base.stateVisited();
+    if (valuesChanged) {
+      valuesChanged = false;
+      ValueStore vs = values;
+      publishedValues = new ValueStore(vs.index, vs.values.clone());
+    }
+    CircuitState[] subs;
+    int n = 0;
+    synchronized (dirtyLock) {
+      if (unpublishedSubstates.isEmpty())
+        return;
+      subs = unpublishedSubstatesWorking;
+      if (subs.length < unpublishedSubstates.size())
+        subs = unpublishedSubstatesWorking = new CircuitState[unpublishedSubstates.size()];
+      for (CircuitState sub : unpublishedSubstates) {
+        sub.inUnpublishedSubstates = false;
+        if (sub.parentState == this)
+          subs[n++] = sub;
+      }
+      unpublishedSubstates.clear();
+    }
+    for (int i = 0; i < n; i++) {
+      subs[i].publishValues();
+      subs[i] = null;
+    }
+  }
+
+  // Notes that values changed since the last publication, and adds this state
+  // to its parent's unpublishedSubstates, and so on up the tree, the same way
+  // as registerAsDirty(). Called only by the simulator.
+  private void markValuesChanged() {
+    if (valuesChanged)
+      return;
+    valuesChanged = true;
+    registerAsUnpublished();
+  }
+
+  private void registerAsUnpublished() {
+    CircuitState child = this;
+    CircuitState parent = parentState;
+    while (parent != null) {
+      synchronized (parent.dirtyLock) {
+        if (child.inUnpublishedSubstates)
+          return;
+        child.inUnpublishedSubstates = true;
+        parent.unpublishedSubstates.add(child);
+      }
+      child = parent;
+      parent = child.parentState;
+    }
+  }
+
   CircuitWires.State getWireData() {
     return wireData;
   }
@@ -446,28 +585,132 @@ public class CircuitState implements InstanceData {
     return parentState != null;
   }
 
+  // Precondition: dirtyLock is held.
+  private void addDirtyComponent(Component comp) {
+    int slot = comp.getSlot();
+    if (slot >= 0) {
+      if (slot >= dirtyStamps.length)
+        dirtyStamps = Arrays.copyOf(dirtyStamps,
+            Math.max(slot + 1, circuit.getSlotCount()));
+      if (dirtyStamps[slot] == dirtyEpoch)
+        return;
+      dirtyStamps[slot] = dirtyEpoch;
+    }
+    dirtyComponents.add(comp);
+  }
+
+  // Precondition: dirtyLock is held.
+  private void newDirtyEpoch() {
+    if (++dirtyEpoch == 0) {
+      Arrays.fill(dirtyStamps, 0);
+      dirtyEpoch = 1;
+    }
+  }
+
+  // Precondition: dirtyLock is held.
+  private void clearDirtyComponents() {
+    dirtyComponents.clear();
+    newDirtyEpoch();
+  }
+
   private void markAllComponentsDirty() {
     synchronized (dirtyLock) {
-      dirtyComponents.addAll(circuit.getNonWires());
+      for (Component comp : circuit.getNonWires())
+        addDirtyComponent(comp);
     }
+    registerAsDirty();
   }
 
   public void markComponentAsDirty(Component comp) {
     synchronized (dirtyLock) {
-      dirtyComponents.add(comp);
+      addDirtyComponent(comp);
     }
+    registerAsDirty();
   }
 
   public void markComponentsDirty(Collection<Component> comps) {
     synchronized (dirtyLock) {
-      dirtyComponents.addAll(comps);
+      for (Component comp : comps)
+        addDirtyComponent(comp);
     }
+    registerAsDirty();
   }
 
   void markPointAsDirty(Propagator.SimulatorEvent ev) {
     synchronized(dirtyLock) {
       dirtyPoints.add(ev);
     }
+    registerAsDirty();
+  }
+
+  // Adds this state to its parent's dirtySubstates, and so on up the tree,
+  // stopping at the first state that is already there. Only one lock is held
+  // at a time, so this can't deadlock with reset(), which locks from the top
+  // down.
+  private void registerAsDirty() {
+    CircuitState child = this;
+    CircuitState parent = parentState;
+    while (parent != null) {
+      synchronized (parent.dirtyLock) {
+        if (child.inDirtySubstates)
+          return;
+        child.inDirtySubstates = true;
+        parent.dirtySubstates.add(child);
+      }
+      child = parent;
+      parent = child.parentState;
+    }
+  }
+
+  // Precondition: dirtyLock is held.
+  private void updateSubstatesWorking() {
+    if (substatesDirty) {
+      substatesDirty = false;
+      substatesWorking = substates.toArray(substatesWorking);
+      for (int i = 0; i < substatesWorking.length && substatesWorking[i] != null; i++)
+        substatesWorking[i].substateIndex = i;
+    }
+  }
+
+  // Returns the substates that need to be visited, in the same order as
+  // substatesWorking, followed by null if there are fewer. If connectivity is
+  // true, that includes the substates with an outdated connectivity version.
+  // The list of dirty substates is only emptied for the components phase, as
+  // a substate listed before the points phase (say, because a clock in it
+  // ticked) may have dirty components but no dirty points, and still needs
+  // to be visited for its components. Precondition: dirtyLock is held.
+  private CircuitState[] takeDirtySubstates(boolean points, boolean connectivity) {
+    updateSubstatesWorking();
+    int n = 0;
+    CircuitState[] ret = dirtySubstatesWorking;
+    if (connectivity) {
+      if (ret.length <= substatesWorking.length)
+        ret = dirtySubstatesWorking = new CircuitState[substatesWorking.length + 1];
+      for (CircuitState sub : substatesWorking) {
+        if (sub == null)
+          break;
+        if (sub.inDirtySubstates
+            || sub.connectivitySeen != sub.circuit.getConnectivityVersion())
+          ret[n++] = sub;
+      }
+    } else {
+      if (ret.length <= dirtySubstates.size())
+        ret = dirtySubstatesWorking = new CircuitState[dirtySubstates.size() + 1];
+      for (CircuitState sub : dirtySubstates) {
+        int i = sub.substateIndex;
+        if (sub.parentState == this && i < substatesWorking.length
+            && substatesWorking[i] == sub)
+          ret[n++] = sub;
+      }
+      Arrays.sort(ret, 0, n, BY_SUBSTATE_INDEX);
+    }
+    if (!points) {
+      for (CircuitState sub : dirtySubstates)
+        sub.inDirtySubstates = false;
+      dirtySubstates.clear();
+    }
+    ret[n] = null;
+    return ret;
   }
 
   // DEBUG: private void dumpDirty() {
@@ -490,6 +733,7 @@ public class CircuitState implements InstanceData {
   // DEBUG: }
 
   ArrayList<Component> dirtyComponentsWorking = new ArrayList<>();
+  private ClusterEvaluator.State clusterState; // see getClusterState()
   // DEBUG: void processDirtyComponents() { processDirtyComponents("-="); }
   void processDirtyComponents(/* DEBUG: String tab */) {
     // DEBUG: System.out.printf(tab+" Start of processDirtyComponents(%s)\n", this);
@@ -499,36 +743,51 @@ public class CircuitState implements InstanceData {
     synchronized (dirtyLock) {
       ArrayList<Component> other = dirtyComponents;
       dirtyComponents = dirtyComponentsWorking; // dirtyComponents is now empty
+      newDirtyEpoch();
       dirtyComponentsWorking = other; // working set is now ready to process
-      if (substatesDirty) {
-        substatesDirty = false;
-        substatesWorking = substates.toArray(substatesWorking);
-			}
+      substatesToVisit = takeDirtySubstates(false, false);
       // DEBUG: dumpDirty();
     }
+    base.stateVisited();
 
     // DEBUG: boolean finished = false, progress = false;
+    ClusterEvaluator.State clusters = getClusterState();
+    int propagated = dirtyComponentsWorking.size();
     try { // comp.propagate() can fail if external (or std) library is buggy
       for (Component comp : dirtyComponentsWorking) {
         // DEBUG: progress = true;
 				// DEBUG: System.out.printf("Propagating (from %s) for dirty component %s\n", this, comp);
+        if (clusters != null && clusters.intercept(comp)) {
+          propagated--;
+          continue;
+        }
         comp.propagate(this);
         // pin values also get propagated to parent state
-        if (comp.getFactory() instanceof Pin && parentState != null)
+        if (comp.getFactory() instanceof Pin && parentState != null
+            && !base.deferParentPropagate(this))
           parentComp.propagate(parentState);
       }
+      if (clusters != null)
+        propagated += clusters.evaluate(this);
       // DEBUG: finished = true;
     } finally {
       // DEBUG: if (!finished)
       // DEBUG:   System.out.printf(tab+" ERROR in processDirtyComponents(%s)\n", this);
       dirtyComponentsWorking.clear();
+      base.componentsPropagated(propagated);
     }
 
     // DEBUG: if (progress)
     // DEBUG:   dumpDirty();
 
     // DEBUG: boolean moreprogress = false;
-    for (CircuitState substate : substatesWorking) {
+    CircuitState[] substates = substatesToVisit;
+    substatesToVisit = null;
+    if (base.shouldFork(substates)) {
+      base.processSubstates(substates, false);
+      return;
+    }
+    for (CircuitState substate : substates) {
       // DEBUG: moreprogress = true;
 			// DEBUG: System.out.printf("Recurse down for substate %s\n", substate);
       if (substate == null)
@@ -544,11 +803,35 @@ public class CircuitState implements InstanceData {
     // DEBUG: System.out.printf(tab+" End of processDirtyComponents(%s)\n", this);
   }
 
+  // When the propagator is compiled, returns the state of the compiled
+  // clusters of combinational components in this circuit (see
+  // ClusterEvaluator), or null if there are none. Clusters start out
+  // simulated one component at a time, like everything else.
+  private ClusterEvaluator.State getClusterState() {
+    if (!base.isCompiled() || proj == null) {
+      if (clusterState != null) {
+        clusterState.release(this);
+        clusterState = null;
+      }
+      return null;
+    }
+    ClusterEvaluator eval = circuit.getClusterEvaluator(
+        proj.getOptions().getAttributeSet());
+    if (clusterState == null || clusterState.getEvaluator() != eval) {
+      if (clusterState != null)
+        clusterState.release(this);
+      clusterState = eval.isEmpty() ? null : eval.createState();
+    }
+    return clusterState;
+  }
+
   // private ArrayList<Location> dirtyPointsWorking = new ArrayList<>();
   // private ArrayList<Value> dirtyPointValsWorking = new ArrayList<>();
   private ArrayList<Propagator.SimulatorEvent> dirtyPointsWorking = new ArrayList<>();
   private CircuitState[] substatesWorking = new CircuitState[0];
+  private CircuitState[] substatesToVisit; // from takeDirtySubstates()
   private boolean substatesDirty = true;
+  Propagator.Deferral deferral; // used only by Propagator.processSubstates()
   void processDirtyPoints() {
     if (!dirtyPointsWorking.isEmpty())
       throw new IllegalStateException("INTERNAL ERROR: dirtyPointsWorking not empty");
@@ -559,11 +842,12 @@ public class CircuitState implements InstanceData {
       // dirtyPointVals = dirtyPointValsWorking; // dirtyPointVals is now empty
       dirtyPointsWorking = other; // working set is now ready to process
       // dirtyPointValsWorking = otherVals; // working set is now ready to process
-      if (substatesDirty) {
-        substatesDirty = false;
-        substatesWorking = substates.toArray(substatesWorking);
-      }
+      int version = circuit.getConnectivityVersion();
+      boolean changed = version != connectivitySeen;
+      connectivitySeen = version;
+      substatesToVisit = takeDirtySubstates(true, changed);
     }
+    base.stateVisited();
     // Note: When a new wire map is created (because wires or splitters have
     // changed, for example), we need to mark all the splitter locations as
     // dirty. This used to be handled here by detecting when the map was voided,
@@ -601,11 +885,18 @@ public class CircuitState implements InstanceData {
     // if (!dirtyPointsWorking.isEmpty()) {
       // circuit.wires.propagate(this, dirtyPointsWorking, dirtyPointValsWorking);
       circuit.wires.propagate(this, dirtyPointsWorking);
+      base.recycle(dirtyPointsWorking);
       dirtyPointsWorking.clear();
       // dirtyPointValsWorking.clear();
     // }
 
-    for (CircuitState substate : substatesWorking) {
+    CircuitState[] substates = substatesToVisit;
+    substatesToVisit = null;
+    if (base.shouldFork(substates)) {
+      base.processSubstates(substates, true);
+      return;
+    }
+    for (CircuitState substate : substates) {
       if (substate == null)
         break;
       substate.processDirtyPoints();
@@ -615,23 +906,21 @@ public class CircuitState implements InstanceData {
   public void reset() {
     temporaryClock = null;
     wireData = null;
-    for (Iterator<Component> it = componentData.keySet().iterator(); it.hasNext();) {
-      Component comp = it.next();
+    clusterState = null;
+    for (Component comp : componentData.keys()) {
       if (comp.getFactory() instanceof Ram) {
         Ram ram = (Ram)comp.getFactory();
         boolean remove = ram.reset(this, Instance.getInstanceFor(comp));
         if (remove)
-          it.remove();
+          componentData.remove(comp);
       } else if (!(comp.getFactory() instanceof SubcircuitFactory)) {
-        it.remove();
+        componentData.remove(comp);
       }
     }
-    synchronized (valuesLock) {
-      slowpath_values.clear(); // slow path
-      clearFastpathGrid(); // fast path
-    }
+    Arrays.fill(values.values, null);
+    markValuesChanged();
     synchronized (dirtyLock) {
-      dirtyComponents.clear();
+      clearDirtyComponents();
       dirtyPoints.clear();
       // dirtyPointVals.clear();
       for (CircuitState sub : substates)
@@ -666,6 +955,9 @@ public class CircuitState implements InstanceData {
       newState.parentState = this;
       newState.parentComp = comp;
       componentData.put(comp, newState);
+      newState.registerAsDirty();
+      if (newState.valuesChanged)
+        newState.registerAsUnpublished();
       return newState;
   }
   
@@ -699,8 +991,13 @@ public class CircuitState implements InstanceData {
         sub.parentState = this;
 				substates.add(sub);
 				substatesDirty = true;
-				dirtyComponents.add(comp);
+				addDirtyComponent(comp);
 			}
+      registerAsDirty();
+      if (sub.valuesChanged) {
+        sub.inUnpublishedSubstates = false; // may be listed by a former parent
+        sub.registerAsUnpublished();
+      }
     } else {
 			componentData.put(comp, data);
 		}
@@ -720,40 +1017,29 @@ public class CircuitState implements InstanceData {
     base.setValue(this, pt, val, cause, delay);
   }
 
-  private void clearFastpathGrid() { // precondition: valuesLock held
-    for (int y = 0; y < FASTPATH_GRID_HEIGHT; y++)
-      for (int x = 0; x < FASTPATH_GRID_WIDTH; x++)
-        fastpath_values[y][x] = null;
-  }
-
-  // for CircuitWires - to set value at point
-  void setValueByWire(Value v, Location[] points, CircuitWires.BusConnection[] connections) {
-    for (Location p : points) {
-      if (p.x >= 0 && p.y >= 0
-          && p.x % 10 == 0 && p.y % 10 == 0
-          && p.x < FASTPATH_GRID_WIDTH*10
-          && p.y < FASTPATH_GRID_HEIGHT*10) {
-        synchronized (valuesLock) {
-          fastpath(p, v);
-        }
-      } else {
-        synchronized (valuesLock) {
-          slowpath(p, v);
-        }
-      }
+  // for CircuitWires - to set value at all points along a bus, given the
+  // bus's slot in the current value index
+  void setValueByWire(Value v, int slot, Location[] points, CircuitWires.BusConnection[] connections) {
+    values.values[slot] = v;
+    markValuesChanged();
+    for (Location p : points)
       base.locationTouched(this, p);
-    }
     for (CircuitWires.BusConnection bc : connections) {
       if (bc.isSink || (bc.isBidirectional && !Value.equal(v, bc.drivenValue)))
         markComponentAsDirty(bc.component);
     }
   }
 
-  void clearValuesByWire() {
-    synchronized (valuesLock) {
-      slowpath_values.clear(); // slow path
-      clearFastpathGrid(); // fast path
-    }
+  // for CircuitWires - to discard all values when connectivity changes
+  void resetValuesByWire(LocationIndex index) {
+    values = new ValueStore(index, new Value[index.getSlotCount()]);
+    markValuesChanged();
+  }
+
+  // Approximate memory used by this state to hold the values on its wires and
+  // ports (not counting the published copy, which is similar).
+  public long getValueBytes() {
+    return values.index.getValueArrayBytes();
   }
 
   // // for CircuitWires - to set value at point where there is no bus, just a
@@ -776,36 +1062,6 @@ public class CircuitState implements InstanceData {
   //     markDirtyComponentsAt(p);
   // }
 
-  private boolean fastpath(Location p, Value v) { // precondition: valuesLock held
-    int x = p.x/10;
-    int y = p.y/10;
-    if (v == Value.NIL) {
-      if (fastpath_values[y][x] != null) {
-        fastpath_values[y][x] = null;
-        return true;
-      } else {
-        return false;
-      }
-    } else {
-      if (!v.equals(fastpath_values[y][x])) {
-        fastpath_values[y][x] = v;
-        return true;
-      } else {
-        return false;
-      }
-    }
-  }
-  
-  private boolean slowpath(Location p, Value v) { // precondition: valuesLock held
-    if (v == Value.NIL) {
-      Object old = slowpath_values.remove(p);
-      return (old != null && old != Value.NIL);
-    } else {
-      Object old = slowpath_values.put(p, v);
-      return !v.equals(old);
-    }
-  }
-
   // private void markDirtyComponentsAt(Location p) {
   //   boolean found = false;
   //   for (Component comp : circuit.getComponents(p)) {
@@ -854,10 +1110,7 @@ public class CircuitState implements InstanceData {
     }
 
     synchronized (dirtyLock) {
-      if (substatesDirty) {
-        substatesDirty = false;
-        substatesWorking = substates.toArray(substatesWorking);
-      }
+      updateSubstatesWorking();
     }
     for (CircuitState substate : substatesWorking) {
       if (substate == null)
@@ -934,20 +1187,16 @@ public class CircuitState implements InstanceData {
   // DEBUG: public synchronized void dump(String msg, Object ...fmt) {
   // DEBUG:   synchronized (dumpLock) {
   // DEBUG:     synchronized (dirtyLock) {
-  // DEBUG:       synchronized (valuesLock) {
+  // DEBUG:       { // values need no lock
   // DEBUG:         String t = dumpIndent <= 0 ? "" : String.format("%"+dumpIndent+"s", "");
   // DEBUG:         dumpIndent += 2;
   // DEBUG:         // Thread.dumpStack();
   // DEBUG:         System.out.printf(t+"{ Dumping %s values: %s\n", this, String.format(msg, fmt));
   // DEBUG:         System.out.printf(t+"  Current values at canvas locations:\n");
-  // DEBUG:         slowpath_values.forEach((loc, val) ->
-  // DEBUG:             System.out.printf(t+"    at %s value = %s (from slowpath)\n", loc, val));
-  // DEBUG:         for (int i = 0; i < FASTPATH_GRID_HEIGHT; i++) {
-  // DEBUG:           for (int j = 0; j < FASTPATH_GRID_WIDTH; j++) {
-  // DEBUG:             Value val = fastpath_values[i][j];
-  // DEBUG:             if (val != null)
-  // DEBUG:               System.out.printf(t+"    at (%d,%d) value = %s\n", 10*j, 10*i, val);
-  // DEBUG:           }
+  // DEBUG:         Value[] vals = values.values;
+  // DEBUG:         for (int i = 0; i < vals.length; i++) {
+  // DEBUG:           if (vals[i] != null)
+  // DEBUG:             System.out.printf(t+"    at slot %d value = %s\n", i, vals[i]);
   // DEBUG:         }
   // DEBUG:         if (wireData != null) {
   // DEBUG:           System.out.printf(t+"  Wire data:\n");
@@ -32,6 +32,7 @@ package com.cburch.logisim.circuit;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.Stroke;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -74,7 +75,7 @@ public class CircuitWires {
   // are:
   // - WireBundle: a bus/wire as drawn by the user. Think: like an unbroken,
   //   physical ribbon cable that acts as a bundle of one or more threads. It
-  //   has a width 1 <= n <= 32 (or incompatibilityData if the width is not
+  //   has a width 1 <= n <= 64 (or incompatibilityData if the width is not
   //   consistent across the length of the bus), and touches a set of Location
   //   points (all the corners, intersections, and component port locations
   //   along the bus). It also has a pullValue, e.g. if there is a pull-down
@@ -106,6 +107,13 @@ public class CircuitWires {
     // Given a location, returns a list of Components that have a port at that location.
     HashMap<Location, ArrayList<Component>> componentsAtLocations = new HashMap<>();
 
+    // The final, representative bundles, in a fixed order, and an index
+    // mapping every point along each bundle to that bundle's position in the
+    // array. Each State (and each CircuitState) uses these positions to keep
+    // per-bundle data in right-sized arrays.
+    WireBundle[] bundleList = new WireBundle[0];
+    LocationIndex index = LocationIndex.EMPTY;
+
     // The isValid flag remains true unless something goes wrong during initialization.
     volatile boolean isValid = true;
   
@@ -137,6 +145,19 @@ public class CircuitWires {
 
     void invalidate() { isValid = false; }
     boolean isValid() { return isValid; }
+
+    void buildIndex() {
+      WireBundle[] list = bundles.toArray(new WireBundle[bundles.size()]);
+      LocationIndex idx = new LocationIndex(pointBundles.size());
+      for (int i = 0; i < list.length; i++) {
+        for (Location loc : list[i].xpoints) {
+          if (idx.put(loc, i) >= 0)
+            throw new IllegalStateException("oops, two wires occupy same location");
+        }
+      }
+      bundleList = list;
+      index = idx;
+    }
   }
 
   static class SplitterData {
@@ -255,6 +276,7 @@ public class CircuitWires {
   static class ValuedBus {
 
     int idx; // State.buses[idx] will hold this ValuedBus
+    final int slot; // position in the connectivity index, never changes
     int width; // negative for invalid width
     ValuedThread[] threads; // threads passing through this bus (or null if dependentBuses is empty, or if invalid width)
 
@@ -274,6 +296,7 @@ public class CircuitWires {
 
     ValuedBus(int i, WireBundle wb, Connectivity cmap) {
       idx = i;
+      slot = i;
       filterComponents(cmap, wb.xpoints); // initializes locations[] and connections[]
       width = wb.threads == null ? -1 : wb.getWidth().getWidth();
       pullVal = wb.getPullValue();
@@ -362,9 +385,9 @@ public class CircuitWires {
         dirty = false;
         return busVal;
       }
-      int error = 0, unknown = 0, value = 0;
+      long error = 0, unknown = 0, value = 0;
       for (int i = 0; i < width; i++) {
-        int mask = 1 << i;
+        long mask = 1L << i;
         Value tv = threads[i].threadValue();
         if (tv == Value.TRUE)
           value |= mask;
@@ -386,6 +409,12 @@ public class CircuitWires {
     return new State(getConnectivity(), circState.getWireData());
   }
 
+  // Approximate memory used by each CircuitState for this circuit to hold the
+  // values on its wires and ports.
+  long getValueBytesPerState() {
+    return getConnectivity().index.getValueArrayBytes();
+  }
+
   // DEBUG: void dump(String tab, State s) {
   // DEBUG:   for (int i = 0; i < s.buses.length; i++) {
   // DEBUG:     System.out.printf(tab+"bus %d of %d (%s):\n", i, s.buses.length,
@@ -404,25 +433,24 @@ public class CircuitWires {
 
   static class State {
     private Connectivity connectivity; // original source of connectivity info
-    HashMap<Location, ValuedBus> busAt = new HashMap<>();
-    ValuedBus[] buses;
+    final LocationIndex index; // shared with connectivity, maps points to buses[]
+    ValuedBus[] buses; // reordered as buses become dirty, see markDirty()
+    ValuedBus[] busAtSlot; // fixed order, matching index
     int numDirty;
 
     State(Connectivity cm, State prev) {
       connectivity = cm;
+      index = cm.index;
       HashMap<WireBundle, ValuedBus> allBuses = new HashMap<>();
       HashMap<ValuedBus, WireBundle> srcBuses = new HashMap<>();
-      // initialize buses[] and busAt<>
-      buses = new ValuedBus[connectivity.bundles.size()];
-      int idx = 0;
-      for (WireBundle wb : connectivity.bundles) {
-        ValuedBus vb = new ValuedBus(idx++, wb, connectivity);
-        buses[vb.idx] = vb;
-        for (Location loc : wb.xpoints) {
-          ValuedBus old = busAt.put(loc, vb);
-          if (old != null)
-            throw new IllegalStateException("oops, two wires occupy same location");
-        }
+      // initialize buses[], initially in the same order as the connectivity index
+      buses = new ValuedBus[connectivity.bundleList.length];
+      busAtSlot = new ValuedBus[buses.length];
+      for (int idx = 0; idx < buses.length; idx++) {
+        WireBundle wb = connectivity.bundleList[idx];
+        ValuedBus vb = new ValuedBus(idx, wb, connectivity);
+        buses[idx] = vb;
+        busAtSlot[idx] = vb;
         allBuses.put(wb, vb);
         srcBuses.put(vb, wb);
       }
@@ -460,8 +488,13 @@ public class CircuitWires {
     }
     static final ValuedBus[] EMPTY_DEPENDENCIES = new ValuedBus[0];
 
+    ValuedBus busAt(Location loc) {
+      int i = index.get(loc);
+      return i < 0 ? null : busAtSlot[i];
+    }
+
     Value getDrivenValue(Component c, Location loc) {
-      ValuedBus vb = busAt.get(loc);
+      ValuedBus vb = busAt(loc);
       if (vb == null)
         return null;
       for (BusConnection bc : vb.connections) {
@@ -561,7 +594,11 @@ public class CircuitWires {
   private Bounds bounds = Bounds.EMPTY_BOUNDS;
   private volatile Connectivity masterConnectivity = null;
 
-  CircuitWires() { }
+  private final Circuit circuit;
+
+  CircuitWires(Circuit circuit) {
+    this.circuit = circuit;
+  }
 
   // NOTE: this could be made much more efficient in most cases to
   // avoid voiding the connectivity map.
@@ -778,6 +815,9 @@ public class CircuitWires {
       if (e != null)
         ret.addWidthIncompatibilityData(e);
     }
+
+    // Number the bundles and index their points.
+    ret.buildIndex();
   }
 
   private void connectPullResistors(Connectivity ret) {
@@ -882,7 +922,7 @@ public class CircuitWires {
     State s = state.getWireData();
     if (s == null)
       return Value.NIL; // return state.getValue(loc); // fallback, probably wrong, who cares
-    ValuedBus vb = s.busAt.get(loc);
+    ValuedBus vb = s.busAt(loc);
     if (vb == null)
       return Value.NIL; // return state.getValue(loc); // fallback, probably wrong, who cares
     Value v = vb.busVal;
@@ -891,7 +931,10 @@ public class CircuitWires {
     return v;
   }
 
-  void draw(ComponentDrawContext context, Collection<Component> hidden) {
+  // Draws the given wires, which are normally just the ones overlapping the
+  // clip rectangle, and the junction dots within the clip (if any).
+  void draw(ComponentDrawContext context, Collection<Component> hidden,
+      Collection<Wire> visible, Rectangle clip) {
     boolean showState = context.getShowState();
     CircuitState state = context.getCircuitState();
     Graphics2D g = (Graphics2D)context.getGraphics();
@@ -902,7 +945,7 @@ public class CircuitWires {
     Connectivity cmap = getConnectivity();
     boolean isValid = cmap.isValid();
     if (hidden == null || hidden.size() == 0) {
-      for (Wire w : wires) {
+      for (Wire w : visible) {
         Location s = w.e0;
         Location t = w.e1;
         WireBundle wb = cmap.getBundleAt(s);
@@ -913,7 +956,7 @@ public class CircuitWires {
         else if (!isValid)
           g.setColor(Value.NIL_COLOR);
         else
-          g.setColor(getBusValue(state, s).getColor());
+          g.setColor(state.getPublishedValue(s).getColor());
         if (highlighted.containsWire(w)) {
           int width;
           if (wb.isBus())
@@ -940,6 +983,8 @@ public class CircuitWires {
       }
 
       for (Location loc : points.getAllLocations()) {
+        if (clip != null && !clip.intersects(loc.getX() - 10, loc.getY() - 10, 20, 20))
+          continue;
         if (points.getComponentCount(loc) > 2) {
           WireBundle wb = cmap.getBundleAt(loc);
           if (wb != null) {
@@ -949,7 +994,7 @@ public class CircuitWires {
               if (!isValid)
                 g.setColor(Value.NIL_COLOR);
               else
-                g.setColor(state.getValue(loc).getColor());
+                g.setColor(state.getPublishedValue(loc).getColor());
             } else {
               g.setColor(Color.BLACK);
             }
@@ -965,7 +1010,7 @@ public class CircuitWires {
         }
       }
     } else {
-      for (Wire w : wires) {
+      for (Wire w : visible) {
         if (!hidden.contains(w)) {
           Location s = w.e0;
           Location t = w.e1;
@@ -976,7 +1021,7 @@ public class CircuitWires {
             if (!isValid)
               g.setColor(Value.NIL_COLOR);
             else
-              g.setColor(getBusValue(state, s).getColor());
+              g.setColor(state.getPublishedValue(s).getColor());
           } else {
             g.setColor(Color.BLACK);
           }
@@ -998,6 +1043,8 @@ public class CircuitWires {
       // the problem is minor, and hidden only exists for a short
       // while at a time anyway.
       for (Location loc : points.getAllLocations()) {
+        if (clip != null && !clip.intersects(loc.getX() - 10, loc.getY() - 10, 20, 20))
+          continue;
         if (points.getComponentCount(loc) > 2) {
           int icount = 0;
           for (Component comp : points.getComponents(loc)) {
@@ -1013,7 +1060,7 @@ public class CircuitWires {
                 if (!isValid)
                   g.setColor(Value.NIL_COLOR);
                 else
-                  g.setColor(getBusValue(state, loc).getColor());
+                  g.setColor(state.getPublishedValue(loc).getColor());
               } else {
                 g.setColor(Color.BLACK);
               }
@@ -1165,7 +1212,7 @@ public class CircuitWires {
       // might no longer be connected to those same buses (or might not 
       // be connected to any bus), and vice versa. So we should mark all
       // components as dirty.
-      circState.clearValuesByWire();
+      circState.resetValuesByWire(s.index);
       circState.markComponentsDirty(map.allComponents);
       // circState.markDirtyPoints(map.allLocations);
     }
@@ -1179,7 +1226,7 @@ public class CircuitWires {
       Component cause = ev.cause;
       Value val = ev.val;
 
-      ValuedBus vb = s.busAt.get(p);
+      ValuedBus vb = s.busAt(p);
       if (vb == null) {
         // DEBUG: System.out.printf("simulator event, but no bus: comp=%s loc=%s val=%s\n", cause, p, val);
         // point is not wired: just set that point's value and be done
@@ -1241,7 +1288,7 @@ public class CircuitWires {
       Value val = vb.recalculate();
       if (Value.equal(old, val))
         continue;
-      circState.setValueByWire(val, vb.locations, vb.connections);
+      circState.setValueByWire(val, vb.slot, vb.locations, vb.connections);
       // int n = vb.componentPoints.length;
       // for (int j = 0; j < n; j++) {
       //   Location p = vb.componentPoints[j];
@@ -1339,5 +1386,6 @@ public class CircuitWires {
     // calls it during startup. It should not be called by the simulation
     // thread.
     masterConnectivity = null; // volatile write by AWT thread (and sometimes main/startup)
+    circuit.connectivityChanged();
   }
 }
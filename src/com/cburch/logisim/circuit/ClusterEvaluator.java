@@ -0,0 +1,725 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.PullResistor;
+import com.cburch.logisim.std.wiring.Tunnel;
+
+// ClusterEvaluator speeds up simulation of synchronous designs, where most of
+// the work is in clouds of gates between registers. The components of a
+// circuit that can describe themselves as a BitSliceComputer are grouped into
+// clusters, each a connected region of such components and the nets between
+// them, and each cluster is compiled into a straight-line program in
+// topological order. Whenever components of a cluster become dirty, the
+// cluster's program runs once in their place (see
+// CircuitState.processDirtyComponents), reading the nets that feed the cluster
+// and driving the nets that anything outside the cluster touches. Nets inside
+// a cluster aren't driven at all, which skips every intermediate value and the
+// events that would have carried them, but also means they stop showing
+// meaningful values. So this is only for headless simulation, where
+// Propagator.setCompiled() turns it on.
+//
+// A program only holds while every net feeding its cluster carries 0 or 1. If
+// one doesn't (e.g., right after a reset, or when a RAM output floats), the
+// cluster falls back to propagating its components one at a time, until its
+// inputs are all 0 or 1 again. Components that can't be described this way
+// (tri-state outputs, nets with more than one driver, feedback loops) are
+// left out of clusters and always simulated normally.
+//
+// Each output is driven with its component's own delay, but the components in
+// between no longer add theirs, so values settle in fewer steps. Values at the
+// clock edges of a synchronous design don't change.
+class ClusterEvaluator {
+
+  // node kinds, and also program opcodes
+  private static final int NET = 0; // a = driving node, or -1 if undriven
+  private static final int INPUT = 1; // a = input location, b = bit
+  private static final int ZERO = 2;
+  private static final int ONE = 3;
+  private static final int NOT = 4; // ~a
+  private static final int AND = 5; // a & b
+  private static final int OR = 6; // a | b
+  private static final int XOR = 7; // a ^ b
+  private static final int MUX = 8; // a ? b : c
+
+  final AttributeSet options; // options compiled for
+  private final int[] clusterOfSlot; // by Component.getSlot(), or -1
+  private final Component[][] members; // by cluster
+
+  // Straight-line program for all clusters, where cluster k is instructions
+  // progStart[k] up to progStart[k+1]. Instruction i leaves its result in
+  // register i, all bits 0 or all bits 1, and its operands name earlier
+  // registers.
+  private final int[] progStart;
+  private final int[] op, a, b, c;
+
+  // The locations read by cluster k, from inStart[k] up to inStart[k+1].
+  private final int[] inStart;
+  private final Location[] inLoc;
+
+  // The ports driven by cluster k, from portStart[k] up to portStart[k+1].
+  private final int[] portStart;
+  private final Component[] portComp;
+  private final Location[] portLoc;
+  private final int[] portDelay;
+  private final int[][] portRegs; // register for each bit
+
+  private ClusterEvaluator(AttributeSet options, int[] clusterOfSlot,
+      Component[][] members, int[] progStart, int[] op, int[] a, int[] b, int[] c,
+      int[] inStart, Location[] inLoc, int[] portStart, Component[] portComp,
+      Location[] portLoc, int[] portDelay, int[][] portRegs) {
+    this.options = options;
+    this.clusterOfSlot = clusterOfSlot;
+    this.members = members;
+    this.progStart = progStart;
+    this.op = op;
+    this.a = a;
+    this.b = b;
+    this.c = c;
+    this.inStart = inStart;
+    this.inLoc = inLoc;
+    this.portStart = portStart;
+    this.portComp = portComp;
+    this.portLoc = portLoc;
+    this.portDelay = portDelay;
+    this.portRegs = portRegs;
+  }
+
+  boolean isEmpty() {
+    return members.length == 0;
+  }
+
+  State createState() {
+    return new State();
+  }
+
+  // The simulation state of the clusters within one CircuitState, used only by
+  // whichever thread is simulating that state.
+  final class State {
+    private final boolean[] compiled = new boolean[members.length]; // else one component at a time
+    private final boolean[] touched = new boolean[members.length];
+    private final int[] touchedList = new int[members.length];
+    private int touchedCount;
+    private final long[] reg = new long[op.length];
+    private final long[] words = new long[inLoc.length];
+    private final Value[] driven = new Value[portLoc.length]; // last driven by program
+
+    ClusterEvaluator getEvaluator() {
+      return ClusterEvaluator.this;
+    }
+
+    // Notes that comp is dirty, returning true if its cluster's program will
+    // take care of it, or false if it should be propagated as usual.
+    boolean intercept(Component comp) {
+      int slot = comp.getSlot();
+      if (slot < 0 || slot >= clusterOfSlot.length)
+        return false;
+      int k = clusterOfSlot[slot];
+      if (k < 0)
+        return false;
+      if (!touched[k]) {
+        touched[k] = true;
+        touchedList[touchedCount++] = k;
+      }
+      return compiled[k];
+    }
+
+    // Runs the program of each cluster with a dirty component, or switches
+    // the cluster to or from ordinary simulation if its inputs call for it.
+    // Returns the number of components propagated in the process.
+    int evaluate(CircuitState state) {
+      int propagated = 0;
+      for (int i = 0; i < touchedCount; i++) {
+        int k = touchedList[i];
+        touched[k] = false;
+        if (readInputs(state, k)) {
+          if (!compiled[k]) {
+            // The components may have just driven the outputs with values
+            // that aren't final yet. Driving them again after the same delay
+            // supersedes those.
+            compiled[k] = true;
+            Arrays.fill(driven, portStart[k], portStart[k + 1], null);
+          }
+          run(k);
+          drive(state, k);
+        } else if (compiled[k]) {
+          // Nets inside the cluster are stale, so propagate everything.
+          compiled[k] = false;
+          for (Component comp : members[k])
+            comp.propagate(state);
+          propagated += members[k].length;
+        }
+      }
+      touchedCount = 0;
+      return propagated;
+    }
+
+    // Hands every cluster back to ordinary simulation, for when the
+    // propagator is no longer compiled, or the circuit has changed.
+    void release(CircuitState state) {
+      Circuit circuit = state.getCircuit();
+      for (int k = 0; k < members.length; k++) {
+        if (compiled[k]) {
+          compiled[k] = false;
+          for (Component comp : members[k])
+            if (circuit.contains(comp))
+              comp.propagate(state);
+        }
+      }
+    }
+
+    private boolean readInputs(CircuitState state, int k) {
+      for (int i = inStart[k]; i < inStart[k + 1]; i++) {
+        Value v = state.getValue(inLoc[i]);
+        if (!v.isFullyDefined())
+          return false;
+        words[i] = v.toLongValue();
+      }
+      return true;
+    }
+
+    private void run(int k) {
+      long[] reg = this.reg;
+      for (int i = progStart[k]; i < progStart[k + 1]; i++) {
+        switch (op[i]) {
+        case INPUT: reg[i] = ((words[a[i]] >>> b[i]) & 1) != 0 ? -1L : 0L; break;
+        case ZERO: reg[i] = 0L; break;
+        case ONE: reg[i] = -1L; break;
+        case NOT: reg[i] = ~reg[a[i]]; break;
+        case AND: reg[i] = reg[a[i]] & reg[b[i]]; break;
+        case OR: reg[i] = reg[a[i]] | reg[b[i]]; break;
+        case XOR: reg[i] = reg[a[i]] ^ reg[b[i]]; break;
+        case MUX: {
+          long s = reg[a[i]];
+          reg[i] = (s & reg[b[i]]) | (~s & reg[c[i]]);
+          break;
+        }
+        }
+      }
+    }
+
+    private void drive(CircuitState state, int k) {
+      for (int p = portStart[k]; p < portStart[k + 1]; p++) {
+        int[] regs = portRegs[p];
+        long w = 0;
+        for (int bit = 0; bit < regs.length; bit++)
+          w |= (reg[regs[bit]] & 1) << bit;
+        Value v = Value.createKnown(regs.length, w);
+        if (!v.equals(driven[p])) {
+          driven[p] = v;
+          state.setValue(portLoc[p], v, portComp[p], portDelay[p]);
+        }
+      }
+    }
+  }
+
+  // Compiles the clusters of circuit. This never fails: anything that can't be
+  // compiled is just left out.
+  static ClusterEvaluator compile(Circuit circuit, AttributeSet options) {
+    HashSet<Component> excluded = new HashSet<>();
+    while (true) {
+      Compiler cc = new Compiler(circuit, options);
+      ClusterEvaluator ret = cc.compile(excluded);
+      if (ret != null)
+        return ret;
+    }
+  }
+
+  // A port of a member, with the node that drives each bit.
+  private static class Port {
+    final int member;
+    final Location loc;
+    final int[] slots;
+    final int[] nets;
+
+    Port(int member, Location loc, int width) {
+      this.member = member;
+      this.loc = loc;
+      slots = new int[width];
+      nets = new int[width];
+      Arrays.fill(slots, -1);
+    }
+  }
+
+  private static class Compiler implements BitSliceComputer.Builder {
+    final Circuit circuit;
+    final AttributeSet options;
+
+    // Candidate members, and what they describe. Whenever a candidate turns
+    // out not to fit, it is excluded and compile() starts over.
+    final ArrayList<Component> comps = new ArrayList<>();
+    final ArrayList<Integer> delays = new ArrayList<>();
+    final ArrayList<HashMap<Location, Port>> ports = new ArrayList<>();
+    int current;
+    Component currentComp;
+    final HashSet<Component> bad = new HashSet<>();
+    final ArrayList<Object> pendingOutputs = new ArrayList<>(); // loc, bit, slot, ...
+    final ArrayList<Integer> pendingInputs = new ArrayList<>();
+    final ArrayList<int[]> readers = new ArrayList<>(); // {net, member}
+
+    int count;
+    int[] kind = new int[64], a = new int[64], b = new int[64], c = new int[64];
+    int[] owner = new int[64]; // member that created, or drives, the node
+    Location[] netLoc = new Location[64];
+    int[] netBit = new int[64];
+    HashMap<WireThread, Integer> nets = new HashMap<>();
+    boolean[] visible;
+    int zero = -1, one = -1;
+
+    Compiler(Circuit circuit, AttributeSet options) {
+      this.circuit = circuit;
+      this.options = options;
+    }
+
+    // Returns null after adding to excluded, if this attempt has to start over.
+    ClusterEvaluator compile(HashSet<Component> excluded) {
+      for (Component comp : circuit.getNonWires()) {
+        if (excluded.contains(comp) || comp.getSlot() < 0)
+          continue;
+        Object factory = comp.getFactory();
+        if (factory instanceof Pin || factory instanceof SplitterFactory
+            || factory instanceof Tunnel || factory instanceof PullResistor)
+          continue;
+        BitSliceComputer computer = (BitSliceComputer) comp.getFeature(BitSliceComputer.class);
+        if (computer == null)
+          continue;
+        current = comps.size();
+        currentComp = comp;
+        zero = one = -1;
+        pendingOutputs.clear();
+        pendingInputs.clear();
+        if (!computer.computeBitSlice(this) || !commit(comp, computer.getDelay()))
+          bad.add(comp);
+      }
+
+      // Every output of a member has to be described, and nothing outside the
+      // clusters can drive a net a member drives.
+      for (int m = 0; m < comps.size(); m++) {
+        for (EndData end : comps.get(m).getEnds()) {
+          if (!end.isOutput())
+            continue;
+          Port port = ports.get(m).get(end.getLocation());
+          if (port == null || port.slots.length != end.getWidth().getWidth())
+            bad.add(comps.get(m));
+          else
+            for (int slot : port.slots)
+              if (slot < 0)
+                bad.add(comps.get(m));
+        }
+      }
+      visible = new boolean[count];
+      HashSet<Component> members = new HashSet<>(comps);
+      for (Component comp : circuit.getNonWires()) {
+        Object factory = comp.getFactory();
+        if (members.contains(comp) || factory instanceof SplitterFactory
+            || factory instanceof Tunnel || factory instanceof PullResistor)
+          continue;
+        for (EndData end : comp.getEnds()) {
+          WireBundle bundle = circuit.wires.getWireBundle(end.getLocation());
+          if (bundle == null || !bundle.isValid() || bundle.threads == null)
+            continue;
+          for (WireThread thread : bundle.threads) {
+            Integer n = nets.get(thread);
+            if (n == null)
+              continue;
+            visible[n] = true;
+            if (end.isOutput() && a[n] >= 0)
+              bad.add(comps.get(owner[n]));
+          }
+        }
+      }
+      if (!bad.isEmpty()) {
+        excluded.addAll(bad);
+        return null;
+      }
+
+      // Members sharing a net they drive are in the same cluster.
+      int[] parent = new int[comps.size()];
+      for (int m = 0; m < parent.length; m++)
+        parent[m] = m;
+      for (int[] r : readers) {
+        int n = r[0];
+        if (a[n] >= 0)
+          union(parent, owner[n], r[1]);
+      }
+
+      // A loop anywhere in a cluster could oscillate, so it excludes the
+      // whole cluster.
+      int loop = findLoop();
+      if (loop >= 0) {
+        int root = find(parent, owner[loop]);
+        for (int m = 0; m < parent.length; m++)
+          if (find(parent, m) == root)
+            excluded.add(comps.get(m));
+        return null;
+      }
+
+      return link(parent);
+    }
+
+    private boolean commit(Component comp, int delay) {
+      HashMap<Location, Port> myPorts = new HashMap<>();
+      for (int i = 0; i < pendingOutputs.size(); i += 3) {
+        Location loc = (Location) pendingOutputs.get(i);
+        int bit = (Integer) pendingOutputs.get(i + 1);
+        int slot = (Integer) pendingOutputs.get(i + 2);
+        if (slot < 0)
+          return false;
+        Port port = myPorts.get(loc);
+        if (port == null) {
+          EndData end = null;
+          for (EndData e : comp.getEnds())
+            if (e.getLocation().equals(loc))
+              end = e;
+          if (end == null || !end.isOutput())
+            return false;
+          port = new Port(current, loc, end.getWidth().getWidth());
+          myPorts.put(loc, port);
+        }
+        if (bit >= port.slots.length || port.slots[bit] >= 0)
+          return false;
+        port.slots[bit] = slot;
+      }
+      comps.add(comp);
+      delays.add(delay);
+      ports.add(myPorts);
+      for (Port port : myPorts.values()) {
+        for (int bit = 0; bit < port.slots.length; bit++) {
+          int slot = port.slots[bit];
+          if (slot < 0)
+            continue;
+          int n = net(port.loc, bit);
+          port.nets[bit] = n;
+          if (a[n] >= 0) {
+            // two drivers, so neither can be a member
+            bad.add(comps.get(owner[n]));
+            bad.add(comp);
+          } else {
+            a[n] = slot;
+            owner[n] = current;
+          }
+        }
+      }
+      for (int n : pendingInputs)
+        readers.add(new int[] { n, current });
+      return true;
+    }
+
+    public int input(Location loc, int bit) {
+      if (!circuit.isConnected(loc, currentComp))
+        return -1;
+      int n = net(loc, bit);
+      pendingInputs.add(n);
+      return n;
+    }
+
+    public void output(Location loc, int bit, int slot) {
+      pendingOutputs.add(loc);
+      pendingOutputs.add(bit);
+      pendingOutputs.add(slot);
+    }
+
+    public AttributeSet getOptions() { return options; }
+
+    public int constant(boolean value) {
+      if (value)
+        return one >= 0 ? one : (one = node(ONE, -1, -1, -1));
+      else
+        return zero >= 0 ? zero : (zero = node(ZERO, -1, -1, -1));
+    }
+
+    public int not(int x) { return node(NOT, x, -1, -1); }
+    public int and(int x, int y) { return node(AND, x, y, -1); }
+    public int or(int x, int y) { return node(OR, x, y, -1); }
+    public int xor(int x, int y) { return node(XOR, x, y, -1); }
+    public int mux(int s, int x, int y) { return node(MUX, s, x, y); }
+
+    int node(int k, int x, int y, int z) {
+      if (count == kind.length) {
+        int n = 2 * count;
+        kind = Arrays.copyOf(kind, n);
+        a = Arrays.copyOf(a, n);
+        b = Arrays.copyOf(b, n);
+        c = Arrays.copyOf(c, n);
+        owner = Arrays.copyOf(owner, n);
+        netLoc = Arrays.copyOf(netLoc, n);
+        netBit = Arrays.copyOf(netBit, n);
+      }
+      kind[count] = k;
+      a[count] = x;
+      b[count] = y;
+      c[count] = z;
+      owner[count] = k == NET ? -1 : current;
+      return count++;
+    }
+
+    int net(Location loc, int bit) {
+      WireBundle bundle = circuit.wires.getWireBundle(loc);
+      if (bundle == null || !bundle.isValid() || bundle.threads == null
+          || bit >= bundle.threads.length)
+        return newNet(loc, bit); // touches nothing else
+      WireThread thread = bundle.threads[bit];
+      Integer n = nets.get(thread);
+      if (n == null) {
+        n = newNet(loc, bit);
+        nets.put(thread, n);
+      }
+      return n;
+    }
+
+    private int newNet(Location loc, int bit) {
+      int n = node(NET, -1, -1, -1);
+      netLoc[n] = loc;
+      netBit[n] = bit;
+      return n;
+    }
+
+    private static int find(int[] parent, int m) {
+      while (parent[m] != m)
+        m = parent[m] = parent[parent[m]];
+      return m;
+    }
+
+    private static void union(int[] parent, int m, int n) {
+      parent[find(parent, m)] = find(parent, n);
+    }
+
+    // Returns a node on a loop, or -1 if there are none. The search is
+    // depth-first with an explicit stack, since a long chain of gates could
+    // otherwise overflow the thread's stack.
+    private int findLoop() {
+      byte[] mark = new byte[count]; // 0 = unvisited, 1 = in progress, 2 = done
+      int[] stack = new int[16];
+      for (int root = 0; root < count; root++) {
+        if (mark[root] != 0)
+          continue;
+        int sp = 0;
+        stack[sp++] = root;
+        while (sp > 0) {
+          int n = stack[sp - 1];
+          if (mark[n] == 2) {
+            sp--;
+          } else if (mark[n] == 1) {
+            sp--;
+            mark[n] = 2;
+          } else {
+            mark[n] = 1;
+            if (sp + 3 > stack.length)
+              stack = Arrays.copyOf(stack, 2 * stack.length);
+            for (int m : operands(n)) {
+              if (mark[m] == 1)
+                return m;
+              if (mark[m] == 0)
+                stack[sp++] = m;
+            }
+          }
+        }
+      }
+      return -1;
+    }
+
+    private static final int[] NONE = new int[0];
+
+    private int[] operands(int n) {
+      switch (kind[n]) {
+      case NET: return a[n] < 0 ? NONE : new int[] { a[n] };
+      case NOT: return new int[] { a[n] };
+      case AND: case OR: case XOR: return new int[] { a[n], b[n] };
+      case MUX: return new int[] { a[n], b[n], c[n] };
+      default: return NONE;
+      }
+    }
+
+    // Program being emitted by link().
+    int len;
+    int[] xop = new int[64], xa = new int[64], xb = new int[64], xc = new int[64];
+
+    private int emit(int k, int x, int y, int z) {
+      if (len == xop.length) {
+        int n = 2 * len;
+        xop = Arrays.copyOf(xop, n);
+        xa = Arrays.copyOf(xa, n);
+        xb = Arrays.copyOf(xb, n);
+        xc = Arrays.copyOf(xc, n);
+      }
+      xop[len] = k;
+      xa[len] = x;
+      xb[len] = y;
+      xc[len] = z;
+      return len++;
+    }
+
+    // Emits each cluster's program: the nodes its visible ports depend on, each
+    // after its operands, with nets replaced by whatever drives them, or by an
+    // input instruction if nothing in the cluster does.
+    private ClusterEvaluator link(int[] parent) {
+      int memberCount = comps.size();
+      HashMap<Integer, Integer> byRoot = new HashMap<>();
+      ArrayList<ArrayList<Integer>> clusters = new ArrayList<>();
+      for (int m = 0; m < memberCount; m++) {
+        int root = find(parent, m);
+        Integer k = byRoot.get(root);
+        if (k == null) {
+          k = clusters.size();
+          byRoot.put(root, k);
+          clusters.add(new ArrayList<>());
+        }
+        clusters.get(k).add(m);
+      }
+
+      int clusterCount = clusters.size();
+      int[] clusterOfSlot = new int[circuit.getSlotCount()];
+      Arrays.fill(clusterOfSlot, -1);
+      Component[][] members = new Component[clusterCount][];
+      int[] progStart = new int[clusterCount + 1];
+      int[] inStart = new int[clusterCount + 1];
+      int[] portStart = new int[clusterCount + 1];
+      ArrayList<Location> inLoc = new ArrayList<>();
+      ArrayList<Port> portList = new ArrayList<>();
+      ArrayList<int[]> portRegs = new ArrayList<>();
+
+      int[] reg = new int[count];
+      byte[] mark = new byte[count]; // 0 = unvisited, 1 = in progress, 2 = done
+      ArrayList<Integer> inputNets = new ArrayList<>();
+      HashMap<Location, Integer> locs = new HashMap<>();
+      for (int k = 0; k < clusterCount; k++) {
+        ArrayList<Integer> ms = clusters.get(k);
+        members[k] = new Component[ms.size()];
+        for (int i = 0; i < ms.size(); i++) {
+          Component comp = comps.get(ms.get(i));
+          members[k][i] = comp;
+          clusterOfSlot[comp.getSlot()] = k;
+        }
+        progStart[k] = len;
+        inStart[k] = inLoc.size();
+        portStart[k] = portList.size();
+        for (int m : ms) {
+          for (Port port : ports.get(m).values()) {
+            boolean seen = false;
+            for (int n : port.nets)
+              seen |= visible[n];
+            if (!seen)
+              continue;
+            int[] regs = new int[port.slots.length];
+            for (int bit = 0; bit < regs.length; bit++) {
+              visit(port.slots[bit], mark, reg, inputNets, locs, inLoc);
+              regs[bit] = reg[port.slots[bit]];
+            }
+            portList.add(port);
+            portRegs.add(regs);
+          }
+        }
+        // The next cluster reads its inputs separately.
+        for (int n : inputNets)
+          mark[n] = 0;
+        inputNets.clear();
+        locs.clear();
+      }
+      progStart[clusterCount] = len;
+      inStart[clusterCount] = inLoc.size();
+      portStart[clusterCount] = portList.size();
+
+      int portCount = portList.size();
+      Component[] portComp = new Component[portCount];
+      Location[] portLoc = new Location[portCount];
+      int[] portDelay = new int[portCount];
+      for (int p = 0; p < portCount; p++) {
+        Port port = portList.get(p);
+        portComp[p] = comps.get(port.member);
+        portLoc[p] = port.loc;
+        portDelay[p] = delays.get(port.member);
+      }
+      return new ClusterEvaluator(options, clusterOfSlot, members, progStart,
+          Arrays.copyOf(xop, len), Arrays.copyOf(xa, len),
+          Arrays.copyOf(xb, len), Arrays.copyOf(xc, len),
+          inStart, inLoc.toArray(new Location[inLoc.size()]),
+          portStart, portComp, portLoc, portDelay,
+          portRegs.toArray(new int[portCount][]));
+    }
+
+    private void visit(int root, byte[] mark, int[] reg,
+        ArrayList<Integer> inputNets, HashMap<Location, Integer> locs,
+        ArrayList<Location> inLoc) {
+      if (mark[root] == 2)
+        return;
+      int[] stack = new int[16];
+      int sp = 0;
+      stack[sp++] = root;
+      while (sp > 0) {
+        int n = stack[sp - 1];
+        if (mark[n] == 2) {
+          sp--;
+        } else if (mark[n] == 1) {
+          sp--;
+          mark[n] = 2;
+          if (kind[n] != NET) {
+            reg[n] = emit(kind[n], operand(reg, a[n]), operand(reg, b[n]),
+                operand(reg, c[n]));
+          } else if (a[n] >= 0) {
+            reg[n] = reg[a[n]];
+          } else {
+            Integer i = locs.get(netLoc[n]);
+            if (i == null) {
+              i = inLoc.size();
+              locs.put(netLoc[n], i);
+              inLoc.add(netLoc[n]);
+            }
+            reg[n] = emit(INPUT, i, netBit[n], -1);
+            inputNets.add(n);
+          }
+        } else {
+          mark[n] = 1;
+          if (sp + 3 > stack.length)
+            stack = Arrays.copyOf(stack, 2 * stack.length);
+          for (int m : operands(n)) {
+            if (mark[m] == 0)
+              stack[sp++] = m;
+          }
+        }
+      }
+    }
+
+    private static int operand(int[] reg, int n) {
+      return n < 0 ? -1 : reg[n];
+    }
+  }
+}
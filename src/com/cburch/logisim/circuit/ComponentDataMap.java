@@ -0,0 +1,120 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.cburch.logisim.comp.Component;
+
+// ComponentDataMap holds the simulation data of each component in a
+// CircuitState, such as a flip-flop's value or a subcircuit's substate. It
+// acts like a HashMap keyed by component, but keeps the data in an array
+// indexed by Component.getSlot(), which components look up on every
+// propagate. Each slot also records its component, since the same slot
+// number means a different component in another circuit, or in this one once
+// the circuit gives a removed component's slot to a new one. The rare component
+// without a slot goes in an ordinary map.
+class ComponentDataMap {
+  private static final Object[] NO_DATA = new Object[0];
+  private static final Component[] NO_COMPS = new Component[0];
+
+  private final Circuit circuit;
+  private Object[] data = NO_DATA;
+  private Component[] owner = NO_COMPS;
+  private HashMap<Component, Object> others; // components without a slot
+
+  ComponentDataMap(Circuit circuit) {
+    this.circuit = circuit;
+  }
+
+  Object get(Component comp) {
+    int slot = comp.getSlot();
+    if (slot < 0)
+      return others == null ? null : others.get(comp);
+    if (slot >= owner.length || owner[slot] != comp)
+      return null;
+    return data[slot];
+  }
+
+  // Returns the previous data for comp, or null.
+  Object put(Component comp, Object value) {
+    if (value == null)
+      return remove(comp);
+    int slot = comp.getSlot();
+    if (slot < 0) {
+      if (others == null)
+        others = new HashMap<>();
+      return others.put(comp, value);
+    }
+    if (slot >= owner.length) {
+      int n = Math.max(slot + 1, circuit.getSlotCount());
+      data = Arrays.copyOf(data, n);
+      owner = Arrays.copyOf(owner, n);
+    }
+    Object old = owner[slot] == comp ? data[slot] : null;
+    owner[slot] = comp;
+    data[slot] = value;
+    return old;
+  }
+
+  // Returns the removed data for comp, or null.
+  Object remove(Component comp) {
+    int slot = comp.getSlot();
+    if (slot < 0)
+      return others == null ? null : others.remove(comp);
+    if (slot >= owner.length || owner[slot] != comp)
+      return null;
+    Object old = data[slot];
+    owner[slot] = null;
+    data[slot] = null;
+    return old;
+  }
+
+  void clear() {
+    data = NO_DATA;
+    owner = NO_COMPS;
+    others = null;
+  }
+
+  // Returns the components that have data, as a new list.
+  ArrayList<Component> keys() {
+    ArrayList<Component> ret = new ArrayList<>();
+    for (Component comp : owner) {
+      if (comp != null)
+        ret.add(comp);
+    }
+    if (others != null)
+      ret.addAll(others.keySet());
+    return ret;
+  }
+}
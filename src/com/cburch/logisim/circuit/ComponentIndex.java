@@ -0,0 +1,149 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Bounds;
+
+// ComponentIndex is a uniform grid over the canvas, used to find the
+// components and wires near a point or within a rectangle without looking at
+// every component in the circuit. Each component is listed in every cell its
+// bounds overlap, including its label and a little slop for painting that
+// strays outside the bounds. Results are only candidates: callers still test
+// each one against whatever condition they care about.
+//
+// Circuit adds and removes components as they are mutated, and refreshes a
+// component whenever it fires componentInvalidated or endChanged, which is
+// when its bounds can change.
+class ComponentIndex {
+  private static final int CELL_BITS = 7; // 128 x 128 cells
+  private static final int SLOP = 10;
+
+  private final HashMap<Long, ArrayList<Component>> cells = new HashMap<>();
+  private final HashMap<Component, Bounds> indexed = new HashMap<>();
+  private Graphics scratch; // for measuring labels, which needs font metrics
+
+  private static long key(int cx, int cy) {
+    return ((long)cx << 32) | (cy & 0xffffffffL);
+  }
+
+  private Bounds indexBounds(Component comp) {
+    if (scratch == null)
+      scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+    return comp.getBounds(scratch).expand(SLOP);
+  }
+
+  synchronized void add(Component comp) {
+    if (indexed.containsKey(comp))
+      return;
+    Bounds b = indexBounds(comp);
+    indexed.put(comp, b);
+    int cx0 = b.x >> CELL_BITS, cx1 = (b.x + b.width) >> CELL_BITS;
+    int cy0 = b.y >> CELL_BITS, cy1 = (b.y + b.height) >> CELL_BITS;
+    for (int cx = cx0; cx <= cx1; cx++) {
+      for (int cy = cy0; cy <= cy1; cy++) {
+        ArrayList<Component> cell = cells.get(key(cx, cy));
+        if (cell == null) {
+          cell = new ArrayList<>(4);
+          cells.put(key(cx, cy), cell);
+        }
+        cell.add(comp);
+      }
+    }
+  }
+
+  synchronized void remove(Component comp) {
+    Bounds b = indexed.remove(comp);
+    if (b == null)
+      return;
+    int cx0 = b.x >> CELL_BITS, cx1 = (b.x + b.width) >> CELL_BITS;
+    int cy0 = b.y >> CELL_BITS, cy1 = (b.y + b.height) >> CELL_BITS;
+    for (int cx = cx0; cx <= cx1; cx++) {
+      for (int cy = cy0; cy <= cy1; cy++) {
+        ArrayList<Component> cell = cells.get(key(cx, cy));
+        if (cell != null) {
+          cell.remove(comp);
+          if (cell.isEmpty())
+            cells.remove(key(cx, cy));
+        }
+      }
+    }
+  }
+
+  synchronized void update(Component comp) {
+    Bounds old = indexed.get(comp);
+    if (old != null && !old.equals(indexBounds(comp))) {
+      remove(comp);
+      add(comp);
+    }
+  }
+
+  synchronized void clear() {
+    cells.clear();
+    indexed.clear();
+  }
+
+  // Returns the components whose indexed bounds overlap the given area.
+  synchronized Collection<Component> query(Bounds area) {
+    int cx0 = area.x >> CELL_BITS, cx1 = (area.x + area.width) >> CELL_BITS;
+    int cy0 = area.y >> CELL_BITS, cy1 = (area.y + area.height) >> CELL_BITS;
+    if ((long)(cx1 - cx0 + 1) * (cy1 - cy0 + 1) > cells.size()) {
+      // Huge area, e.g. zoomed far out: scanning everything is cheaper.
+      ArrayList<Component> ret = new ArrayList<>();
+      for (Map.Entry<Component, Bounds> e : indexed.entrySet()) {
+        if (e.getValue().overlaps(area))
+          ret.add(e.getKey());
+      }
+      return ret;
+    }
+    HashSet<Component> ret = new HashSet<>();
+    for (int cx = cx0; cx <= cx1; cx++) {
+      for (int cy = cy0; cy <= cy1; cy++) {
+        ArrayList<Component> cell = cells.get(key(cx, cy));
+        if (cell == null)
+          continue;
+        for (Component comp : cell) {
+          if (indexed.get(comp).overlaps(area))
+            ret.add(comp);
+        }
+      }
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,329 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Bounds;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.PullResistor;
+import com.cburch.logisim.std.wiring.Tunnel;
+
+// A FlatCircuit is a single circuit equivalent to a circuit together with all
+// of its subcircuits, for simulating deep designs without the overhead of the
+// hierarchy. Each subcircuit instance is expanded in place: copies of its
+// wires and components go in a region of the flat circuit of their own, its
+// tunnels are relabeled so they only reach each other, and each of its pins
+// is replaced by a pair of tunnels, one at the corresponding port of the
+// instance and one where the pin was, so the nets on either side of the pin
+// become a single net. Simulating the flat circuit takes one CircuitState,
+// with no substates to visit, no wire state per instance, and no events to
+// copy values across subcircuit boundaries.
+//
+// The result differs from the hierarchical simulation in a few ways. Values no
+// longer take an extra step to cross a boundary, so the number of steps to
+// settle differs, though values at the clock edges of a synchronous design do
+// not. A pull-up or pull-down input pin becomes a pull resistor on the joined
+// net. And since the net is shared, a subcircuit driving its own input, or a
+// parent driving a subcircuit's output, is now seen on both sides.
+//
+// The flat circuit isn't part of its file and is never displayed. A component
+// or location within the hierarchy, identified by the path of subcircuit
+// components leading to it from the top circuit, maps to its counterpart in
+// the flat circuit by getComponent() and getLocation(), and a CircuitState of
+// the hierarchical simulation maps to its path by getPath(), so getValue() can
+// probe any wire of the hierarchy in a flat simulation. Going the other way,
+// each instance's copy occupies a region of its own, so getOrigin() maps a
+// location of the flat circuit back to the instance and location it came from,
+// and getNet() does the same for every location on the net through it, which
+// may cross into and out of several instances.
+public class FlatCircuit {
+
+  // Leave some room between regions, and keep them on the grid.
+  private static final int MARGIN = 100;
+
+  private static class Node {
+    final List<Component> path;
+    final int dx, dy;
+    final Bounds region; // the instance's circuit bounds, in the flat circuit
+    final HashMap<Component, Component> copies = new HashMap<>();
+    final HashMap<Component, Node> children = new HashMap<>();
+
+    Node(List<Component> path, int dx, int dy, Bounds bds) {
+      this.path = path;
+      this.dx = dx;
+      this.dy = dy;
+      this.region = bds.translate(dx, dy);
+    }
+  }
+
+  // A location within the hierarchy: loc, in the circuit of the subcircuit
+  // instance reached by path from the top circuit.
+  public static class Origin {
+    private final List<Component> path;
+    private final Location loc;
+
+    Origin(List<Component> path, Location loc) {
+      this.path = path;
+      this.loc = loc;
+    }
+
+    public List<Component> getPath() {
+      return path;
+    }
+
+    public Location getLocation() {
+      return loc;
+    }
+
+    // Returns the state of the instance in the hierarchical simulation whose
+    // root state is root, or null if it has none yet.
+    public CircuitState getState(CircuitState root) {
+      CircuitState state = root;
+      for (Component comp : path) {
+        Object data = state.getData(comp);
+        if (!(data instanceof CircuitState))
+          return null;
+        state = (CircuitState) data;
+      }
+      return state;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Origin))
+        return false;
+      Origin o = (Origin) other;
+      return path.equals(o.path) && loc.equals(o.loc);
+    }
+
+    @Override
+    public int hashCode() {
+      return path.hashCode() * 31 + loc.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return path + ":" + loc;
+    }
+  }
+
+  public static FlatCircuit create(Circuit top) {
+    return new FlatCircuit(top);
+  }
+
+  private final Circuit top;
+  private final Circuit circuit;
+  private final Node root;
+  private final ArrayList<Node> regions = new ArrayList<>();
+  private ArrayList<Component> toAdd = new ArrayList<>(); // during construction
+  private int nextY;
+  private int instanceCount;
+
+  private FlatCircuit(Circuit top) {
+    this.top = top;
+    circuit = new Circuit(top.getName(), top.getLogisimFile());
+    Bounds bds = top.getCircuitBounds(null);
+    nextY = snap(bds.getY() + bds.getHeight() + MARGIN);
+    root = expand(top, Collections.emptyList(), 0, 0, null);
+    CircuitMutation xn = new CircuitMutation(circuit);
+    xn.addAll(toAdd);
+    xn.execute();
+    toAdd = null;
+  }
+
+  private static int snap(int v) {
+    return (v + 9) / 10 * 10;
+  }
+
+  // Copies circ, the circuit of the instance reached by path, into the flat
+  // circuit, translated by (dx, dy), with tunnel labels prefixed (unless prefix
+  // is null, for the top circuit).
+  private Node expand(Circuit circ, List<Component> path, int dx, int dy,
+      String prefix) {
+    Node node = new Node(path, dx, dy, circ.getCircuitBounds(null));
+    regions.add(node);
+    for (Wire w : circ.getWires())
+      toAdd.add(Wire.create(w.getEnd0().translate(dx, dy),
+            w.getEnd1().translate(dx, dy)));
+    for (Component comp : circ.getNonWires()) {
+      ComponentFactory factory = comp.getFactory();
+      if (factory instanceof SubcircuitFactory) {
+        Circuit sub = ((SubcircuitFactory) factory).getSubcircuit();
+        Bounds bds = sub.getCircuitBounds(null);
+        int sdx = -snap(bds.getX());
+        int sdy = nextY - snap(bds.getY());
+        nextY = snap(nextY + bds.getHeight() + MARGIN);
+        String id = "\u0001" + (instanceCount++);
+        ArrayList<Component> subpath = new ArrayList<>(path);
+        subpath.add(comp);
+        node.children.put(comp, expand(sub,
+              Collections.unmodifiableList(subpath), sdx, sdy, id + "/"));
+        Instance[] pins = ((CircuitAttributes) comp.getAttributeSet()).getPinInstances();
+        for (int i = 0; i < pins.length; i++) {
+          Instance pin = pins[i];
+          BitWidth width = pin.getAttributeValue(StdAttr.WIDTH);
+          String label = id + ":" + i;
+          Location outer = comp.getEnd(i).getLocation().translate(dx, dy);
+          Location inner = pin.getLocation().translate(sdx, sdy);
+          toAdd.add(tunnel(outer, label, width));
+          toAdd.add(tunnel(inner, label, width));
+          if (Pin.FACTORY.isInputPin(pin)) {
+            Object behavior = pin.getAttributeValue(Pin.ATTR_BEHAVIOR);
+            if (behavior == Pin.PULL_UP)
+              toAdd.add(pull(inner, "1"));
+            else if (behavior == Pin.PULL_DOWN)
+              toAdd.add(pull(inner, "0"));
+          }
+        }
+      } else if (prefix != null && factory instanceof Pin) {
+        // replaced by tunnels above
+      } else {
+        AttributeSet attrs = (AttributeSet) comp.getAttributeSet().clone();
+        if (prefix != null && factory instanceof Tunnel) {
+          String label = attrs.getValue(StdAttr.LABEL);
+          if (label != null && !label.equals(""))
+            attrs.setAttr(StdAttr.LABEL, prefix + label);
+        }
+        Component copy = factory.createComponent(
+            comp.getLocation().translate(dx, dy), attrs);
+        node.copies.put(comp, copy);
+        toAdd.add(copy);
+      }
+    }
+    return node;
+  }
+
+  private static Component tunnel(Location loc, String label, BitWidth width) {
+    AttributeSet attrs = Tunnel.FACTORY.createAttributeSet();
+    attrs.setAttr(StdAttr.LABEL, label);
+    attrs.setAttr(StdAttr.WIDTH, width);
+    return Tunnel.FACTORY.createComponent(loc, attrs);
+  }
+
+  private static Component pull(Location loc, String type) {
+    AttributeSet attrs = PullResistor.FACTORY.createAttributeSet();
+    attrs.setAttr(PullResistor.ATTR_PULL_TYPE,
+        PullResistor.ATTR_PULL_TYPE.parse(type));
+    return PullResistor.FACTORY.createComponent(loc, attrs);
+  }
+
+  public Circuit getTopCircuit() {
+    return top;
+  }
+
+  public Circuit getCircuit() {
+    return circuit;
+  }
+
+  private Node find(List<Component> path) {
+    Node node = root;
+    for (Component comp : path) {
+      node = node.children.get(comp);
+      if (node == null)
+        return null;
+    }
+    return node;
+  }
+
+  // Returns the copy of comp, within the subcircuit instance reached by path,
+  // or null if there is none (as for pins of subcircuits, and subcircuit
+  // components themselves).
+  public Component getComponent(List<Component> path, Component comp) {
+    Node node = find(path);
+    return node == null ? null : node.copies.get(comp);
+  }
+
+  // Returns the location in the flat circuit corresponding to loc, within the
+  // subcircuit instance reached by path, or null for an invalid path.
+  public Location getLocation(List<Component> path, Location loc) {
+    Node node = find(path);
+    return node == null ? null : loc.translate(node.dx, node.dy);
+  }
+
+  // Returns the path from the top circuit to the instance simulated by state,
+  // a state of a hierarchical simulation of the top circuit, or null if state
+  // belongs to some other circuit.
+  public List<Component> getPath(CircuitState state) {
+    ArrayList<Component> path = new ArrayList<>();
+    for (; state.getParentState() != null; state = state.getParentState())
+      path.add(0, state.getSubcircuit());
+    return state.getCircuit() == top ? path : null;
+  }
+
+  // Returns the value, in flatState, a state of the flat circuit, at loc within
+  // the instance simulated by state, a state of the hierarchical simulation, or
+  // null if state isn't part of the top circuit's hierarchy.
+  public Value getValue(CircuitState flatState, CircuitState state,
+      Location loc) {
+    List<Component> path = getPath(state);
+    Location p = path == null ? null : getLocation(path, loc);
+    return p == null ? null : flatState.getValue(p);
+  }
+
+  // Returns the instance and location in the hierarchy that loc, in the flat
+  // circuit, was copied from, or null if it is outside every region.
+  public Origin getOrigin(Location loc) {
+    for (Node node : regions) {
+      if (node.region.contains(loc))
+        return new Origin(node.path, loc.translate(-node.dx, -node.dy));
+    }
+    return null;
+  }
+
+  // Returns every location in the hierarchy on the net through loc, in the flat
+  // circuit: the origins of each point of its wires, tunnels and component
+  // ends, across all the instances it joins.
+  public List<Origin> getNet(Location loc) {
+    LinkedHashSet<Origin> ret = new LinkedHashSet<>();
+    WireBundle bundle = circuit.wires.getWireBundle(loc);
+    Location[] points = bundle == null ? new Location[] { loc } : bundle.xpoints;
+    for (Location p : points) {
+      Origin origin = getOrigin(p);
+      if (origin != null)
+        ret.add(origin);
+    }
+    return new ArrayList<>(ret);
+  }
+
+}
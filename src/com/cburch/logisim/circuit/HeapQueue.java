@@ -0,0 +1,128 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Arrays;
+
+// A simple binary min-heap implementation, using keys of type long, and values
+// that extend type SplayQueue.Node. The keys are kept in a primitive array
+// alongside the array of nodes, so sifting up and down compares keys without
+// touching the nodes themselves, and neither array is ever shrunk, so once the
+// queue has grown to its working size add() and remove() allocate nothing.
+// Unlike LinkedQueue, the worst case for both add() and remove() is
+// logarithmic in the queue size.
+public class HeapQueue<T extends SplayQueue.Node> implements SimulatorEventQueue<T> {
+
+  private long[] keys = new long[64];
+  private SplayQueue.Node[] nodes = new SplayQueue.Node[64];
+  private int size;
+
+  // add(t) inserts a new node into the queue.
+  public void add(T t) {
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, 2 * size);
+      nodes = Arrays.copyOf(nodes, 2 * size);
+    }
+
+    // Sift the hole at the end of the heap up to where t belongs.
+    long k = t.key;
+    int i = size++;
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      long pk = keys[parent];
+      if (pk < k)
+        break;
+      keys[i] = pk;
+      nodes[i] = nodes[parent];
+      i = parent;
+    }
+    keys[i] = k;
+    nodes[i] = t;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(nodes, 0, size, null);
+    size = 0;
+  }
+
+  // Nodes are stored in a SplayQueue.Node[], as there is no way to create a
+  // T[], but only nodes of type T are ever added.
+  @SuppressWarnings("unchecked")
+  private T node(int i) {
+    return (T)nodes[i];
+  }
+
+  // peek() returns the smallest node, or null if the queue is empty.
+  public T peek() {
+    return size == 0 ? null : node(0);
+  }
+
+  // remove() removes the smallest node, or null if the queue is empty.
+  public T remove() {
+    if (size == 0)
+      return null;
+    T t = node(0);
+    size--;
+    long k = keys[size];
+    SplayQueue.Node n = nodes[size];
+    nodes[size] = null;
+    if (size == 0)
+      return t;
+
+    // Sift the hole at the root down to where the last node belongs.
+    int i = 0;
+    int half = size >>> 1;
+    while (i < half) {
+      int child = 2 * i + 1;
+      long ck = keys[child];
+      int right = child + 1;
+      if (right < size && keys[right] < ck)
+        ck = keys[child = right];
+      if (k < ck)
+        break;
+      keys[i] = ck;
+      nodes[i] = nodes[child];
+      i = child;
+    }
+    keys[i] = k;
+    nodes[i] = n;
+    return t;
+  }
+
+}
@@ -0,0 +1,142 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.data.Location;
+
+// LocationIndex maps each Location of interest within a circuit to a small
+// integer slot, so that per-instance data about those locations (e.g. the
+// values on wires and ports held by each CircuitState) can be kept in a
+// right-sized array rather than in a grid or a HashMap. Several locations can
+// share the same slot, e.g. all the points along a single bus. An index is
+// built once, along with each new wire connectivity map, and is read-only (so
+// it can be shared by any number of threads and states) after that.
+//
+// Implementation: open addressing with linear probing, with x and y packed
+// together into a single long key, so lookups neither allocate nor call
+// Location.equals().
+class LocationIndex {
+
+  static final LocationIndex EMPTY = new LocationIndex(0);
+
+  private long[] keys;
+  private int[] slots; // slot + 1 for each key, or 0 for unused entries
+  private int mask;
+  private int count;
+  private int numSlots;
+
+  LocationIndex(int expected) {
+    int n = 4;
+    while (n < 2 * expected)
+      n <<= 1;
+    keys = new long[n];
+    slots = new int[n];
+    mask = n - 1;
+  }
+
+  private static long key(Location p) {
+    return ((long)p.getX() << 32) | (p.getY() & 0xffffffffL);
+  }
+
+  private static int hash(long k) {
+    k *= 0x9e3779b97f4a7c15L;
+    return (int)(k >>> 32);
+  }
+
+  // Returns the slot previously assigned to p, or -1 if there was none.
+  int put(Location p, int slot) {
+    if (2 * (count + 1) > keys.length)
+      grow();
+    long k = key(p);
+    int i = hash(k) & mask;
+    while (slots[i] != 0) {
+      if (keys[i] == k) {
+        int old = slots[i] - 1;
+        slots[i] = slot + 1;
+        return old;
+      }
+      i = (i + 1) & mask;
+    }
+    keys[i] = k;
+    slots[i] = slot + 1;
+    count++;
+    if (slot >= numSlots)
+      numSlots = slot + 1;
+    return -1;
+  }
+
+  // Returns the slot for p, or -1 if p is not in the index.
+  int get(Location p) {
+    long k = key(p);
+    int i = hash(k) & mask;
+    int s;
+    while ((s = slots[i]) != 0) {
+      if (keys[i] == k)
+        return s - 1;
+      i = (i + 1) & mask;
+    }
+    return -1;
+  }
+
+  // Number of distinct locations in the index.
+  int size() {
+    return count;
+  }
+
+  // One more than the largest slot in the index.
+  int getSlotCount() {
+    return numSlots;
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    int[] oldSlots = slots;
+    int n = 2 * oldKeys.length;
+    keys = new long[n];
+    slots = new int[n];
+    mask = n - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldSlots[j] == 0)
+        continue;
+      int i = hash(oldKeys[j]) & mask;
+      while (slots[i] != 0)
+        i = (i + 1) & mask;
+      keys[i] = oldKeys[j];
+      slots[i] = oldSlots[j];
+    }
+  }
+
+  // Approximate heap footprint of a Value[] sized for this index, i.e. the
+  // memory needed by each CircuitState to hold values for these locations.
+  long getValueArrayBytes() {
+    return 16 + 4L * ((numSlots + 1) & ~1);
+  }
+}
@@ -30,8 +30,12 @@
 
 package com.cburch.logisim.circuit;
 
-//import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 import java.lang.ref.WeakReference;
 
 import com.cburch.logisim.comp.Component;
@@ -41,6 +45,10 @@ import com.cburch.logisim.data.AttributeListener;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.file.Options;
+import com.cburch.logisim.instance.InstanceStateImpl;
+import com.cburch.logisim.prefs.AppPreferences;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.hdl.VhdlSimulator;
 
 public class Propagator {
   // static class ComponentPoint {
@@ -106,6 +114,8 @@ public class Propagator {
     Component cause; // component emitting the value
     Value val; // value being emitted
 
+    SimulatorEvent nextFree; // links recycled events in Propagator.freeEvents
+
     private SimulatorEvent(int time, int serialNumber,
         CircuitState state, Location loc, Component cause, Value val) {
       super(((long)time << 32) | (serialNumber & 0xFFFFFFFFL));
@@ -120,10 +130,24 @@ public class Propagator {
       // catch (Exception e) { e.printStackTrace(); }
     }
 
+    // Re-initialize a recycled event, exactly as the constructor would.
+    private void reuse(int time, int serialNumber,
+        CircuitState state, Location loc, Component cause, Value val) {
+      this.key = ((long)time << 32) | (serialNumber & 0xFFFFFFFFL);
+      this.left = this.right = null;
+      this.nextFree = null;
+      this.time = time;
+      this.serialNumber = serialNumber;
+      this.state = state;
+      this.cause = cause;
+      this.loc = loc;
+      this.val = val;
+    }
+
     public SimulatorEvent cloneFor(CircuitState newState) {
       Propagator newProp = newState.getPropagator();
       int dtime = newProp.clock - state.getPropagator().clock;
-      SimulatorEvent ret = new SimulatorEvent(time + dtime,
+      SimulatorEvent ret = newProp.newEvent(time + dtime,
           newProp.eventSerialNumber++, newState, loc, cause, val);
       return ret;
     }
@@ -199,15 +223,34 @@ public class Propagator {
   private volatile int simRandomShift;
 
   // The simulator event queue can be implemented by a PriorityQueue,
-  // SplayQueue, or LinkedQueue. LinkedQueue seems fastest in practice, though
-  // it has poor worst-case performance. SplayQueue should have good
-  // expected-case performance, but it seems a bit slower than LinkedQueue.
-  // Priority queue seems slightly worse than the others. It is trivial to
-  // switch between the implementations, just re-comment these next lines.
-
-  // private PriorityQueue<SimulatorEvent> toProcess = new PriorityQueue<>();
-  // private SplayQueue<SimulatorEvent> toProcess = new SplayQueue<>();
-  private LinkedQueue<SimulatorEvent> toProcess = new LinkedQueue<>();
+  // SplayQueue, LinkedQueue, HeapQueue, or TimingWheelQueue. LinkedQueue seems
+  // fastest in practice for small circuits, though it has poor worst-case
+  // performance. SplayQueue should have good expected-case performance, but
+  // it seems a bit slower than LinkedQueue. Priority queue seems slightly
+  // worse than the others, and is no longer an option. HeapQueue keeps its
+  // keys in a primitive array and allocates nothing in steady state.
+  // TimingWheelQueue exploits the fact that nearly all delays are small, and
+  // takes constant time per event, so it is the default. The choice is made by
+  // an (experimental) user preference, and takes effect for each newly created
+  // Propagator.
+
+  private SimulatorEventQueue<SimulatorEvent> toProcess = createQueue();
+
+  // Events that have been fully processed (by CircuitWires.propagate) are
+  // returned here by recycle(), linked through their nextFree fields, to be
+  // reused by newEvent() rather than allocating a new event for each value
+  // emitted by a component. At most MAX_FREE_EVENTS are retained. LinkedQueue
+  // is the exception: its add() walks back from the tail past hundreds of
+  // nodes on large circuits, and that walk is only fast while the nodes lie in
+  // memory in roughly the order they were allocated. Recycled events end up
+  // scattered (once the collector has moved them), which made the linked queue
+  // slower on large circuits (0.28M vs 0.21M events/s), so it gets fresh
+  // events instead.
+  private static final int MAX_FREE_EVENTS = 1 << 16;
+  private final int maxFreeEvents =
+      toProcess instanceof LinkedQueue ? 0 : MAX_FREE_EVENTS;
+  private SimulatorEvent freeEvents;
+  private int freeCount;
 
   private int clock = 0;
   private boolean isOscillating = false;
@@ -219,6 +262,132 @@ public class Propagator {
 
   private int eventSerialNumber = 0;
 
+  // Optionally, sibling substates (i.e. the subcircuit instances within a
+  // circuit) can be processed concurrently, each subtree as a separate task on
+  // a shared ForkJoinPool. This only pays off for designs with many large
+  // subcircuit instances, so it is off by default, and is enabled by an
+  // (experimental) user preference when the Propagator is created. With only
+  // a single processor it is never worth it. PropagatorTest checks that the
+  // results match the serial ones.
+  //
+  // The results must be identical to the serial simulation, including event
+  // serial numbers and random noise. So tasks don't schedule anything
+  // directly. Instead, each task records its setValue() calls, in order, in a
+  // Deferral buffer belonging to the substate at the top of that subtree. Once
+  // all tasks have finished, the buffers are replayed on the simulation thread
+  // in the same order that the serial depth-first traversal would have
+  // produced them. The event free list, the only other piece of shared
+  // propagator state touched during processing, is likewise deferred. When a
+  // subcircuit pin changes, the task propagates to the parent state itself,
+  // so the parent's setValue() calls are recorded in the same buffer,
+  // interleaved exactly as in the serial traversal and computed from the same
+  // values. Tasks are never forked while oscillation points are being
+  // collected, nor from within another task.
+  //
+  // Caveat: components with external side effects (e.g. a TTY or a VHDL
+  // co-simulation socket) inside parallel subtrees may observe their inputs in
+  // a different wall-clock order than in the serial simulation, though the
+  // simulated results are the same.
+  private boolean parallel = AppPreferences.SIM_PARALLEL.get()
+      && Runtime.getRuntime().availableProcessors() > 1;
+  private volatile boolean forked;
+  private static final ThreadLocal<Deferral> deferral = new ThreadLocal<>();
+  private static ForkJoinPool pool;
+
+  static final class Deferral {
+    CircuitState top; // substate at the top of the subtree processed by task
+    int n;
+    CircuitState[] states = new CircuitState[16];
+    Location[] locs = new Location[16];
+    Value[] vals = new Value[16];
+    Component[] causes = new Component[16];
+    int[] delays = new int[16];
+    ArrayList<SimulatorEvent> spent = new ArrayList<>();
+
+    void add(CircuitState state, Location loc, Value val, Component cause, int delay) {
+      if (n == states.length) {
+        int len = 2 * n;
+        states = Arrays.copyOf(states, len);
+        locs = Arrays.copyOf(locs, len);
+        vals = Arrays.copyOf(vals, len);
+        causes = Arrays.copyOf(causes, len);
+        delays = Arrays.copyOf(delays, len);
+      }
+      states[n] = state;
+      locs[n] = loc;
+      vals[n] = val;
+      causes[n] = cause;
+      delays[n] = delay;
+      n++;
+    }
+
+    void clear() {
+      for (int i = 0; i < n; i++) {
+        states[i] = null;
+        locs[i] = null;
+        vals[i] = null;
+        causes[i] = null;
+      }
+      n = 0;
+      spent.clear();
+    }
+  }
+
+  // Each pass over the tree of states (once per step, and once at the start of
+  // each propagation) visits only the states that have something to do, or
+  // whose wire data is outdated, as described in CircuitState. For
+  // benchmarking, passes and visits are counted, with the points and
+  // components phases of a pass each counting as a visit, and so does
+  // publishing a state's values at the end of a propagation. Calls to
+  // Component.propagate() are counted too.
+  private long passCount;
+  private final LongAdder stateVisits = new LongAdder();
+  private final LongAdder componentPropagations = new LongAdder();
+
+  private void beginPass() {
+    passCount++;
+  }
+
+  void stateVisited() {
+    stateVisits.increment();
+  }
+
+  void componentsPropagated(int n) {
+    componentPropagations.add(n);
+  }
+
+  // When compiled, each state runs straight-line programs for the clusters of
+  // combinational components in its circuit, rather than propagating those
+  // components one at a time (see ClusterEvaluator). Nets inside a cluster
+  // then stop showing meaningful values, so this is for headless simulation.
+  private volatile boolean compiled;
+
+  public void setCompiled(boolean value) {
+    compiled = value;
+  }
+
+  public boolean isCompiled() {
+    return compiled;
+  }
+
+  // For testing: forks tasks even on a single processor. Call only between
+  // propagations.
+  void setParallel(boolean value) {
+    parallel = value;
+  }
+
+  public long getPassCount() {
+    return passCount;
+  }
+
+  public long getStateVisits() {
+    return stateVisits.sum();
+  }
+
+  public long getComponentPropagations() {
+    return componentPropagations.sum();
+  }
+
   static int lastId = 0;
   int id = lastId++;
 
@@ -292,18 +461,104 @@ public class Propagator {
   }
 
   void locationTouched(CircuitState state, Location loc) {
-    if (oscAdding)
+    if (oscAdding) // never true while tasks are forked
       oscPoints.add(state, loc);
   }
 
+  // Returns true if the given substates should be processed as parallel tasks.
+  boolean shouldFork(CircuitState[] substates) {
+    return parallel && !oscAdding && !forked
+        && substates.length > 1 && substates[1] != null;
+  }
+
+  // Returns true if the calling thread is running a task for the subtree
+  // rooted at state, in which case this propagates to the parent state on the
+  // task's behalf. The parent lies outside the subtree, so rather than going
+  // through the parent's shared InstanceState, this uses a private one, and
+  // the resulting setValue() calls on the parent land in the task's Deferral
+  // buffer, in order, with the pin values as they are at this point.
+  boolean deferParentPropagate(CircuitState state) {
+    if (!forked)
+      return false;
+    Deferral d = deferral.get();
+    if (d == null || d.top != state)
+      return false;
+    Component comp = state.getSubcircuit();
+    ((SubcircuitFactory)comp.getFactory()).propagate(
+        new InstanceStateImpl(state.getParentState(), comp));
+    return true;
+  }
+
+  private static synchronized ForkJoinPool getPool() {
+    if (pool == null)
+      pool = new ForkJoinPool(
+          Math.max(2, Runtime.getRuntime().availableProcessors()));
+    return pool;
+  }
+
+  // Precondition: shouldFork(substates) is true.
+  void processSubstates(CircuitState[] substates, boolean points) {
+    int n = 0;
+    while (n < substates.length && substates[n] != null)
+      n++;
+    RecursiveAction[] tasks = new RecursiveAction[n];
+    for (int i = 0; i < n; i++) {
+      CircuitState sub = substates[i];
+      if (sub.deferral == null)
+        sub.deferral = new Deferral();
+      Deferral d = sub.deferral;
+      d.top = sub;
+      tasks[i] = new RecursiveAction() {
+        protected void compute() {
+          deferral.set(d);
+          try {
+            if (points)
+              sub.processDirtyPoints();
+            else
+              sub.processDirtyComponents();
+          } finally {
+            deferral.set(null);
+          }
+        }
+      };
+    }
+    forked = true;
+    try {
+      getPool().invoke(new RecursiveAction() {
+        protected void compute() { invokeAll(tasks); }
+      });
+    } finally {
+      forked = false;
+    }
+    // Replay, in serial depth-first order.
+    for (int i = 0; i < n; i++) {
+      Deferral d = substates[i].deferral;
+      for (int k = 0; k < d.n; k++)
+        setValue(d.states[k], d.locs[k], d.vals[k], d.causes[k], d.delays[k]);
+      recycle(d.spent);
+      d.clear();
+    }
+  }
+
+  // VHDL entities are queued while components are processed, then sent to
+  // the external simulator together, once per step.
+  private void flushVhdl() {
+    Project proj = root.getProject();
+    VhdlSimulator vhdl = proj == null ? null : proj.getVhdlSimulator();
+    if (vhdl != null)
+      vhdl.flush(this);
+  }
+
   public boolean propagate() {
     return propagate(null, null);
   }
 
   public boolean propagate(Simulator.ProgressListener propListener, Simulator.Event propEvent) { // Safe to call from sim thread
     oscPoints.clear();
+    beginPass();
     root.processDirtyPoints();
     root.processDirtyComponents();
+    flushVhdl();
 
     int oscThreshold = simLimit;
     int logThreshold = 3 * oscThreshold / 4;
@@ -321,12 +576,14 @@ public class Propagator {
       } else {
         isOscillating = true;
         oscAdding = false;
+        root.publishValues();
         return true;
       }
     }
     isOscillating = false;
     oscAdding = false;
     oscPoints.clear();
+    root.publishValues();
     return iters > 0;
   }
 
@@ -361,15 +618,69 @@ public class Propagator {
     halfClockCycles = 0;
     toProcess.clear();
     root.reset();
+    root.publishValues();
     isOscillating = false;
   }
 
+  private static SimulatorEventQueue<SimulatorEvent> createQueue() {
+    String kind = AppPreferences.SIM_EVENT_QUEUE.get();
+    if (kind.equals(AppPreferences.SIM_QUEUE_SPLAY))
+      return new SplayQueue<>();
+    else if (kind.equals(AppPreferences.SIM_QUEUE_HEAP))
+      return new HeapQueue<>();
+    else if (kind.equals(AppPreferences.SIM_QUEUE_LINKED))
+      return new LinkedQueue<>();
+    else
+      return new TimingWheelQueue<>();
+  }
+
+  private SimulatorEvent newEvent(int time, int serialNumber,
+      CircuitState state, Location loc, Component cause, Value val) {
+    SimulatorEvent ev = freeEvents;
+    if (ev == null)
+      return new SimulatorEvent(time, serialNumber, state, loc, cause, val);
+    freeEvents = ev.nextFree;
+    freeCount--;
+    ev.reuse(time, serialNumber, state, loc, cause, val);
+    return ev;
+  }
+
+  // Precondition: events were all created by this propagator, and none of them
+  // are still in toProcess or in any CircuitState's list of dirty points.
+  void recycle(ArrayList<SimulatorEvent> events) {
+    if (forked) {
+      Deferral d = deferral.get();
+      if (d != null) {
+        d.spent.addAll(events);
+        return;
+      }
+    }
+    int n = events.size();
+    for (int i = 0; i < n && freeCount < maxFreeEvents; i++) {
+      SimulatorEvent ev = events.get(i);
+      ev.state = null; // don't keep stale states, components, or values alive
+      ev.loc = null;
+      ev.cause = null;
+      ev.val = null;
+      ev.nextFree = freeEvents;
+      freeEvents = ev;
+      freeCount++;
+    }
+  }
+
   void setValue(CircuitState state, Location pt, Value val, Component cause, int delay) {
     if (cause instanceof Wire || cause instanceof Splitter)
       return;
     if (delay <= 0) {
       delay = 1;
     }
+    if (forked) {
+      Deferral d = deferral.get();
+      if (d != null) {
+        d.add(state, pt, val, cause, delay);
+        return;
+      }
+    }
     int randomShift = simRandomShift;
     if (randomShift > 0) { // random noise is turned on
       // multiply the delay by 32 so that the random noise
@@ -384,7 +695,7 @@ public class Propagator {
         }
       }
     }
-    toProcess.add(new SimulatorEvent(clock + delay, eventSerialNumber, state, pt, cause, val));
+    toProcess.add(newEvent(clock + delay, eventSerialNumber, state, pt, cause, val));
 
     // DEBUG: System.out.printf("%s: set %s in %s to %s by %s after %s\n",
     // DEBUG:     clock, pt, state, val, cause, delay);
@@ -395,11 +706,15 @@ public class Propagator {
 
   boolean step(PropagationPoints changedPoints) { // Safe to call from sim thread
     oscPoints.clear();
+    beginPass();
     root.processDirtyPoints();
     root.processDirtyComponents();
+    flushVhdl();
 
-    if (toProcess.isEmpty())
+    if (toProcess.isEmpty()) {
+      root.publishValues();
       return false;
+    }
 
     PropagationPoints oldOsc = oscPoints;
     oscAdding = changedPoints != null;
@@ -407,6 +722,7 @@ public class Propagator {
     stepInternal(changedPoints);
     oscAdding = false;
     oscPoints = oldOsc;
+    root.publishValues();
     return true;
   }
 
@@ -463,10 +779,12 @@ public class Propagator {
 
 		// DEBUG: System.out.println("-- process dirty points --");
 		// DEBUG: root.dump("for %s before processDirtyPoints", this);
+    beginPass();
     root.processDirtyPoints();
 		// DEBUG: root.dump("for %s after processDirtyPoints, before processDirtyComponents", this);
 		// DEBUG: System.out.println("-- process dirty components --");
     root.processDirtyComponents();
+    flushVhdl();
 		// DEBUG: root.dump("for %s after processDirtyComponents", this);
 		// DEBUG: System.out.println("-- Done --");
   }
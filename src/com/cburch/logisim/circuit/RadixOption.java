@@ -89,6 +89,8 @@ public abstract class RadixOption extends AttributeOption {
       case 32:
         return 11; // 1G..2G
       default:
+        if (width.getWidth() > 32)
+          return Long.toString(-(1L << (width.getWidth() - 1))).length();
         return 1;
       }
     }
@@ -146,6 +148,8 @@ public abstract class RadixOption extends AttributeOption {
       case 32:
         return 10;
       default:
+        if (width.getWidth() > 32)
+          return Long.toUnsignedString(width.getLongMask()).length();
         return 1;
       }
     }
@@ -0,0 +1,54 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+// The subset of the java.util.PriorityQueue API needed by Propagator, for
+// queues holding nodes that extend type SplayQueue.Node and are ordered by
+// their (unique) keys of type long. LinkedQueue, SplayQueue, and HeapQueue all
+// implement this, so Propagator can switch between them at run time.
+public interface SimulatorEventQueue<T extends SplayQueue.Node> {
+
+  // add(t) inserts a new node into the queue.
+  public void add(T t);
+
+  public int size();
+
+  public boolean isEmpty();
+
+  public void clear();
+
+  // peek() returns the smallest node, or null if the queue is empty.
+  public T peek();
+
+  // remove() removes the smallest node, or null if the queue is empty.
+  public T remove();
+
+}
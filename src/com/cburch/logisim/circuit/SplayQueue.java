@@ -36,11 +36,13 @@ package com.cburch.logisim.circuit;
 // A simple splay tree implementation, using keys of type long, and values that
 // extend type SplayQueue.Node. This supports (approximately) a subset of the
 // java.util.PriorityQueue API, but only enough to support Propagator.
-public class SplayQueue<T extends SplayQueue.Node> {
+public class SplayQueue<T extends SplayQueue.Node> implements SimulatorEventQueue<T> {
 
-  // Objects in the queue must be subclasses of Node.
+  // Objects in the queue must be subclasses of Node. The key is not final so
+  // that Propagator can recycle nodes once they have left the queue, but it
+  // must not be changed while the node is in a queue.
   public static class Node {
-    final long key;
+    long key;
     Node left, right;
     public Node(long key) { this.key = key; }
   }
@@ -41,6 +41,7 @@ import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.Attributes;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Direction;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.gui.generic.ComboBox;
 
@@ -219,7 +220,8 @@ public class SplitterAttributes extends AbstractAttributeSet {
             APPEAR_CENTER, APPEAR_LEGACY });
 
   public static final Attribute<BitWidth> ATTR_WIDTH = Attributes
-      .forBitWidth("incoming", S.getter("splitterBitWidthAttr"));
+      .forBitWidth("incoming", S.getter("splitterBitWidthAttr"), 1,
+          Value.MAX_WIDTH);
 
   public static final Attribute<Integer> ATTR_FANOUT = Attributes
       .forIntegerRange("fanout", S.getter("splitterFanOutAttr"), 1,
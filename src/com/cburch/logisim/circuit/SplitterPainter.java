@@ -132,7 +132,7 @@ class SplitterPainter {
       int yi = y1;
       for (int i = 1; i <= fanout; i++) {
         if (context.getShowState()) {
-          g.setColor(state.getValue(Location.create(xi, yi))
+          g.setColor(state.getPublishedValue(Location.create(xi, yi))
               .getColor());
         }
         int xSpine = xi + (xi == x0 ? 0 : (xi < x0 ? 10 : -10));
@@ -157,7 +157,7 @@ class SplitterPainter {
       int yi = y1;
       for (int i = 1; i <= fanout; i++) {
         if (context.getShowState()) {
-          g.setColor(state.getValue(Location.create(xi, yi))
+          g.setColor(state.getPublishedValue(Location.create(xi, yi))
               .getColor());
         }
         int ySpine = yi + (yi == y0 ? 0 : (yi < y0 ? 10 : -10));
@@ -200,7 +200,7 @@ class SplitterPainter {
     GraphicsUtil.switchToWidth(g, Wire.WIDTH);
     for (int i = 0, n = attrs.fanout; i < n; i++) {
       if (showState) {
-        Value val = state.getValue(Location.create(x, y));
+        Value val = state.getPublishedValue(Location.create(x, y));
         g.setColor(val.getColor());
       }
       g.drawLine(x, y, x + dxEndSpine, y + dyEndSpine);
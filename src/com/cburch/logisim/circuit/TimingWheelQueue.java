@@ -0,0 +1,155 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Arrays;
+
+// A timing wheel (or calendar queue) implementation, using keys of type long
+// whose upper 32 bits are a simulation time, and values that extend type
+// SplayQueue.Node. Nearly every event scheduled by Propagator is only a few
+// time steps in the future, so the wheel keeps one bucket per time step for a
+// window of WHEEL_SIZE steps, starting at the earliest time still queued. Each
+// bucket is a list sorted by key, linked through the nodes' right pointers.
+// Because Propagator hands out keys in increasing order for any given time,
+// add() nearly always just appends to a bucket, and both add() and remove()
+// take constant time. The rare events scheduled beyond the window (or, for
+// robustness, before it) go in an overflow HeapQueue instead, and peek()
+// simply takes whichever of the two candidates has the smaller key, so the
+// overall order is exactly the same as for the other queues.
+public class TimingWheelQueue<T extends SplayQueue.Node> implements SimulatorEventQueue<T> {
+
+  private static final int WHEEL_SIZE = 1024; // must be a power of two
+  private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+  private SplayQueue.Node[] heads = new SplayQueue.Node[WHEEL_SIZE];
+  private SplayQueue.Node[] tails = new SplayQueue.Node[WHEEL_SIZE];
+  private int now; // all nodes in the wheel have times in [now, now+WHEEL_SIZE)
+  private int wheelCount; // number of nodes in the wheel
+  private HeapQueue<T> overflow = new HeapQueue<>();
+
+  private static int timeOf(SplayQueue.Node n) {
+    return (int)(n.key >> 32);
+  }
+
+  // add(t) inserts a new node into the queue.
+  public void add(T t) {
+    int time = timeOf(t);
+    if (wheelCount == 0)
+      now = time; // the wheel is empty, so we are free to move its window
+    // Yes, this subtraction may overflow. This is intentional, as it avoids
+    // potential wraparound problems as the clock increments.
+    int d = time - now;
+    if (d < 0 || d >= WHEEL_SIZE) {
+      overflow.add(t);
+      return;
+    }
+    wheelCount++;
+
+    int i = time & WHEEL_MASK;
+    SplayQueue.Node tail = tails[i];
+    t.left = null;
+    if (tail == null) {
+      t.right = null;
+      heads[i] = tails[i] = t;
+    } else if (tail.key < t.key) {
+      // Common case: append.
+      t.right = null;
+      tail.right = t;
+      tails[i] = t;
+    } else {
+      // Find node p that should preceed t.
+      SplayQueue.Node p = null;
+      SplayQueue.Node n = heads[i];
+      while (n.key < t.key) {
+        p = n;
+        n = n.right;
+      }
+      t.right = n;
+      if (p == null)
+        heads[i] = t;
+      else
+        p.right = t;
+    }
+  }
+
+  public int size() {
+    return wheelCount + overflow.size();
+  }
+
+  public boolean isEmpty() {
+    return wheelCount == 0 && overflow.isEmpty();
+  }
+
+  public void clear() {
+    Arrays.fill(heads, null);
+    Arrays.fill(tails, null);
+    wheelCount = 0;
+    overflow.clear();
+  }
+
+  // Advances the window to the earliest non-empty bucket, and returns the head
+  // of that bucket, or null if the wheel is empty. Only nodes of type T are
+  // ever added to the buckets.
+  @SuppressWarnings("unchecked")
+  private T wheelHead() {
+    if (wheelCount == 0)
+      return null;
+    SplayQueue.Node n;
+    while ((n = heads[now & WHEEL_MASK]) == null)
+      now++;
+    return (T)n;
+  }
+
+  // peek() returns the smallest node, or null if the queue is empty.
+  public T peek() {
+    T n = wheelHead();
+    T o = overflow.peek();
+    if (n == null || (o != null && o.key < n.key))
+      return o;
+    return n;
+  }
+
+  // remove() removes the smallest node, or null if the queue is empty.
+  public T remove() {
+    T n = wheelHead();
+    T o = overflow.peek();
+    if (n == null || (o != null && o.key < n.key))
+      return overflow.remove();
+    int i = now & WHEEL_MASK;
+    heads[i] = n.right;
+    if (n.right == null)
+      tails[i] = null;
+    n.right = null;
+    wheelCount--;
+    return n;
+  }
+
+}
@@ -38,9 +38,21 @@ import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Location;
 
 public abstract class AbstractComponent implements Component {
+  private int slot = -1;
+
   protected AbstractComponent() {
   }
 
+  @Override
+  public int getSlot() {
+    return slot;
+  }
+
+  @Override
+  public void setSlot(int slot) {
+    this.slot = slot;
+  }
+
   public boolean contains(Location pt) {
     Bounds bds = getBounds();
     if (bds == null)
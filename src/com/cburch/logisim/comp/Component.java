@@ -123,6 +123,16 @@ public interface Component extends Location.At {
 
   public void removeComponentWeakListener(Object owner, ComponentListener l);
 
+  // Each component other than a wire is given a slot number when it is added
+  // to a circuit, unique within that circuit, so that CircuitState can keep
+  // per-component simulation data in arrays rather than hash maps. A removed
+  // component's slot is given to a later component, so users of slots must
+  // check that an entry belongs to the component they look up. Wires, and
+  // components not yet added to a circuit, have no slot (-1).
+  default public int getSlot() { return -1; }
+
+  default public void setSlot(int slot) { }
+
   default public void fireInvalidated() { }
 
   default public String getDisplayName() {
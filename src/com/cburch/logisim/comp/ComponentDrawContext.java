@@ -34,6 +34,7 @@ import java.awt.Color;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.util.Collection;
 
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
@@ -60,6 +61,7 @@ public class ComponentDrawContext {
   private boolean printView;
   private WireSet highlightedWires;
   private InstancePainter instancePainter;
+  private Collection<Location> deferredPins;
 
   public ComponentDrawContext(java.awt.Component dest, Circuit circuit,
       CircuitState circuitState, Graphics base, Graphics g) {
@@ -157,12 +159,20 @@ public class ComponentDrawContext {
   }
 
   public void drawPin(Component comp, int i) {
-    EndData e = comp.getEnd(i);
-    Location pt = e.getLocation();
+    drawPin(comp.getEnd(i).getLocation());
+  }
+
+  // Draws one port dot, colored by its current value. If deferred pins are
+  // being collected, the location is noted and nothing is drawn.
+  public void drawPin(Location pt) {
+    if (deferredPins != null) {
+      deferredPins.add(pt);
+      return;
+    }
     Color curColor = g.getColor();
     if (getShowState()) {
       CircuitState state = getCircuitState();
-      g.setColor(state.getValue(pt).getColor());
+      g.setColor(state.getPublishedValue(pt).getColor());
     } else {
       g.setColor(Color.BLACK);
     }
@@ -171,21 +181,13 @@ public class ComponentDrawContext {
   }
 
   public void drawPin(Component comp, int i, String label, Direction dir) {
-    Color curColor = g.getColor();
     if (i < 0 || i >= comp.getEnds().size())
       return;
     EndData e = comp.getEnd(i);
     Location pt = e.getLocation();
     int x = pt.getX();
     int y = pt.getY();
-    if (getShowState()) {
-      CircuitState state = getCircuitState();
-      g.setColor(state.getValue(pt).getColor());
-    } else {
-      g.setColor(Color.BLACK);
-    }
-    g.fillOval(x - PIN_OFFS, y - PIN_OFFS, PIN_RAD, PIN_RAD);
-    g.setColor(curColor);
+    drawPin(pt);
     if (dir == Direction.EAST) {
       GraphicsUtil.drawText(g, label, x + 3, y, GraphicsUtil.H_LEFT,
           GraphicsUtil.V_CENTER);
@@ -202,19 +204,8 @@ public class ComponentDrawContext {
   }
 
   public void drawPins(Component comp) {
-    Color curColor = g.getColor();
-    for (EndData e : comp.getEnds()) {
-      Location pt = e.getLocation();
-      if (getShowState()) {
-        CircuitState state = getCircuitState();
-        g.setColor(state.getValue(pt).getColor());
-      } else {
-        g.setColor(Color.BLACK);
-      }
-      g.fillOval(pt.getX() - PIN_OFFS, pt.getY() - PIN_OFFS, PIN_RAD,
-          PIN_RAD);
-    }
-    g.setColor(curColor);
+    for (EndData e : comp.getEnds())
+      drawPin(e.getLocation());
   }
 
   public void drawRectangle(Component comp) {
@@ -303,6 +294,13 @@ public class ComponentDrawContext {
     return printView;
   }
 
+  // While non-null, port dots are added to the given collection rather than
+  // drawn. CanvasPainter uses this to leave the dots, which change color with
+  // the circuit state, out of the images it caches.
+  public void setDeferredPins(Collection<Location> pins) {
+    deferredPins = pins;
+  }
+
   public void setGraphics(Graphics g) {
     this.g = (Graphics2D)g;
   }
@@ -109,6 +109,17 @@ public interface ComponentFactory extends AttributeDefaultProvider {
 
   public boolean HasThreeStateDrivers(AttributeSet attrs);
 
+  // Returns true if drawing a component never depends on the circuit state,
+  // apart from the port dots drawn via ComponentDrawContext.drawPin(s). The
+  // canvas keeps cached images of such components rather than redrawing them
+  // every time a value changes. The context is only for getGateShape() and
+  // isPrintView(), since some components color a few lines by value only in
+  // some styles.
+  public default boolean hasStaticAppearance(AttributeSet attrs,
+      ComponentDrawContext context) {
+    return false;
+  }
+
   // default public List<Attribute<?>> getNonVolatileSimulationAttributes(Component comp) { return null; }
   default public AttributeSet getNonVolatileSimulationState(Component comp, CircuitState state) { return null; }
   default public void setNonVolatileSimulationState(Component comp, CircuitState state, AttributeSet attrs) { }
@@ -262,6 +262,45 @@ public class Attributes {
     }
   }
 
+  private static class HexLongAttribute extends Attribute<Long> {
+    private HexLongAttribute(String name, StringGetter disp) {
+      super(name, disp);
+    }
+
+    // Hex, binary and octal strings are read as unsigned, so files written
+    // when these values were 32-bit integers (e.g. "0xffffffff") still load
+    // with the same bit pattern.
+    @Override
+    public Long parse(String value) {
+      value = value.toLowerCase();
+      if (value.startsWith("0x")) {
+        value = value.substring(2);
+        return Long.valueOf(Long.parseUnsignedLong(value, 16));
+      } else if (value.startsWith("0b")) {
+        value = value.substring(2);
+        return Long.valueOf(Long.parseUnsignedLong(value, 2));
+      } else if (value.startsWith("0") && value.length() > 1) {
+        value = value.substring(1);
+        return Long.valueOf(Long.parseUnsignedLong(value, 8));
+      } else if (value.startsWith("-")) {
+        return Long.valueOf(Long.parseLong(value, 10));
+      } else {
+        return Long.valueOf(Long.parseUnsignedLong(value, 10));
+      }
+    }
+
+    @Override
+    public String toDisplayString(Long value) {
+      long val = value.longValue();
+      return "0x" + Long.toHexString(val);
+    }
+
+    @Override
+    public String toStandardString(Long value) {
+      return toDisplayString(value);
+    }
+  }
+
   private static class IntegerAttribute extends Attribute<Integer> {
     private IntegerAttribute(String name, StringGetter disp) {
       super(name, disp);
@@ -470,6 +509,15 @@ public class Attributes {
     return new HexIntegerAttribute(name, disp);
   }
 
+  public static Attribute<Long> forHexLong(String name) {
+    return forHexLong(name, getter(name));
+  }
+
+  public static Attribute<Long> forHexLong(String name,
+      StringGetter disp) {
+    return new HexLongAttribute(name, disp);
+  }
+
   public static Attribute<Integer> forInteger(String name) {
     return forInteger(name, getter(name));
   }
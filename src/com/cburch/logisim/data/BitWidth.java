@@ -38,9 +38,7 @@ public class BitWidth implements Comparable<BitWidth> {
     private BitWidth[] choices;
 
     public Attribute(String name, StringGetter disp) {
-      super(name, disp);
-      ensurePrefab();
-      choices = prefab;
+      this(name, disp, 1, 32);
     }
 
     public Attribute(String name, StringGetter disp, int min, int max) {
@@ -57,7 +55,9 @@ public class BitWidth implements Comparable<BitWidth> {
       ComboBox combo = new ComboBox<>(choices);
       if (value != null) {
         int wid = value.getWidth();
-        if (wid <= 0 || wid > prefab.length) {
+        int min = choices[0].getWidth();
+        int max = choices[choices.length - 1].getWidth();
+        if (wid < min || wid > max) {
           combo.addItem(value);
         }
         combo.setSelectedItem(value);
@@ -89,7 +89,7 @@ public class BitWidth implements Comparable<BitWidth> {
 
   private static void ensurePrefab() {
     if (prefab == null) {
-      prefab = new BitWidth[Math.min(32, Value.MAX_WIDTH)];
+      prefab = new BitWidth[Value.MAX_WIDTH];
       prefab[0] = ONE;
       for (int i = 1; i < prefab.length; i++) {
         prefab[i] = new BitWidth(i + 1);
@@ -130,15 +130,25 @@ public class BitWidth implements Comparable<BitWidth> {
     return this.width == other.width;
   }
 
+  // Mask for the low min(width, 32) bits.
   public int getMask() {
     if (width == 0)
       return 0;
-    else if (width == 32)
+    else if (width >= 32)
       return -1;
     else
       return (1 << width) - 1;
   }
 
+  public long getLongMask() {
+    if (width == 0)
+      return 0;
+    else if (width >= 64)
+      return -1;
+    else
+      return (1L << width) - 1;
+  }
+
   public int getWidth() {
     return width;
   }
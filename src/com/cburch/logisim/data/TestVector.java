@@ -35,6 +35,7 @@ package com.cburch.logisim.data;
  * http://www.cs.cornell.edu/courses/cs3410/2015sp/
  */
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -54,6 +55,11 @@ public class TestVector {
     }
   };
 
+  // Files larger than this are worth streaming rather than loading whole.
+  public static final long STREAM_THRESHOLD = 16 * 1024 * 1024;
+
+  private static final int BUFFER_SIZE = 1 << 20;
+
   private class TestVectorReader {
 
     private BufferedReader in;
@@ -81,20 +87,18 @@ public class TestVector {
     }
 
     public void parse() throws IOException {
-      if (curLine == null)
-        throw new IOException("TestVector format error: empty file");
-
       parseHeader();
       data = new ArrayList<Value[]>();
-      curLine = findNonemptyLine();
-
-      while (curLine != null) {
-        parseData();
-        curLine = findNonemptyLine();
-      }
+      Value[] vals;
+      while ((vals = nextData()) != null)
+        data.add(vals);
     }
 
-    private void parseData() throws IOException {
+    // Returns the next data row, or null at the end of the file.
+    private Value[] nextData() throws IOException {
+      curLine = findNonemptyLine();
+      if (curLine == null)
+        return null;
       Value vals[] = new Value[columnName.length];
       for (int i = 0; i < columnName.length; i++) {
         String t = curLine.nextToken();
@@ -105,16 +109,20 @@ public class TestVector {
           throw new IOException("Test Vector data format error: "
               + e.getMessage());
         }
-        if (data.isEmpty())
+        if (!radixKnown)
           columnRadix[i] = Value.radixOfLogString(columnWidth[i], t);
       }
+      radixKnown = true;
       if (curLine.hasMoreTokens())
         throw new IOException("Test Vector data format error: "
             + curLine.nextToken());
-      data.add(vals);
+      return vals;
     }
 
     private void parseHeader() throws IOException {
+      if (curLine == null)
+        throw new IOException("TestVector format error: empty file");
+
       int n = curLine.countTokens();
       columnName = new String[n];
       columnWidth = new BitWidth[n];
@@ -148,10 +156,45 @@ public class TestVector {
 
   }
 
+  // RowReader goes through the data rows in order. For a vector opened with
+  // stream(), rows are parsed from the file only as they are asked for, so
+  // even huge files need little memory and testing can start right away.
+  public class RowReader implements Closeable {
+    private TestVectorReader reader; // null when going through data
+    private int next;
+
+    private RowReader(TestVectorReader reader) {
+      this.reader = reader;
+    }
+
+    // Returns the next row, or null when there are no more.
+    public Value[] next() throws IOException {
+      if (reader != null)
+        return reader.nextData();
+      return next < data.size() ? data.get(next++) : null;
+    }
+
+    // Fills buf with up to buf.length rows, returning how many there were.
+    public int read(Value[][] buf) throws IOException {
+      int n = 0;
+      while (n < buf.length && (buf[n] = next()) != null)
+        n++;
+      return n;
+    }
+
+    public void close() throws IOException {
+      if (reader != null)
+        reader.in.close();
+    }
+  }
+
   public String[] columnName;
   public BitWidth[] columnWidth;
   public int[] columnRadix;
-  public ArrayList<Value[]> data;
+  public ArrayList<Value[]> data; // null for a streamed vector
+
+  private File src;
+  private boolean radixKnown;
 
   public TestVector(File src) throws IOException {
     BufferedReader in = new BufferedReader(new FileReader(src));
@@ -168,4 +211,46 @@ public class TestVector {
     this(new File(filename));
   }
 
+  private TestVector() { }
+
+  // Reads only the header of src. The rows are left in the file, for
+  // openRows() to parse as needed, and data stays null.
+  public static TestVector stream(File src) throws IOException {
+    TestVector vec = new TestVector();
+    vec.src = src;
+    BufferedReader in = new BufferedReader(new FileReader(src));
+    try {
+      vec.new TestVectorReader(in).parseHeader();
+    } finally {
+      in.close();
+    }
+    return vec;
+  }
+
+  public static TestVector stream(String filename) throws IOException {
+    return stream(new File(filename));
+  }
+
+  // Loads small files whole and streams large ones.
+  public static TestVector open(File src) throws IOException {
+    return src.length() > STREAM_THRESHOLD ? stream(src) : new TestVector(src);
+  }
+
+  public boolean isStreamed() {
+    return data == null;
+  }
+
+  // Starts a new pass over the rows. The caller must close the result.
+  public RowReader openRows() throws IOException {
+    if (data != null)
+      return new RowReader(null);
+    BufferedReader in = new BufferedReader(new FileReader(src), BUFFER_SIZE);
+    TestVectorReader r = new TestVectorReader(in);
+    if (r.curLine == null) { // file was emptied since stream() read it
+      in.close();
+      throw new IOException("TestVector format error: empty file");
+    }
+    return new RowReader(r); // r.curLine holds the header, so skip it
+  }
+
 }
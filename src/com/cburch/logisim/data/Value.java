@@ -32,14 +32,30 @@ package com.cburch.logisim.data;
 import static com.cburch.logisim.data.Strings.S;
 
 import java.awt.Color;
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 
-import com.cburch.logisim.util.Cache;
 import com.cburch.logisim.circuit.CircuitWires.BusConnection;
 
 public final class Value {
 
-  private static Value create(int width, int error, int unknown, int value) {
+  // Each value holds up to MAX_WIDTH = 64 bits, using one bit of each of the
+  // error, unknown, and value fields per bit of the value. Bits beyond the
+  // width are always zero. The hash code is computed so that values of 32 bits
+  // or less hash exactly as they did when these fields were ints.
+  private static int hash(int width, long error, long unknown, long value) {
+    return 31 * (31 * (31 * width + Long.hashCode(error))
+        + Long.hashCode(unknown)) + Long.hashCode(value);
+  }
+
+  private static long mask(int width) {
+    return width >= 64 ? -1L : ~(-1L << width);
+  }
+
+  private static Value create(int width, long error, long unknown, long value) {
     if (width == 0) {
       return Value.NIL;
     } else if (width == 1) {
@@ -52,31 +68,32 @@ public final class Value {
       else
         return Value.FALSE;
     } else {
-      int mask = (width == 32 ? -1 : ~(-1 << width));
+      long mask = mask(width);
       error = error & mask;
       unknown = unknown & mask & ~error;
       value = value & mask & ~unknown & ~error;
-
-      int hashCode = 31 * (31 * (31 * width + error) + unknown) + value;
-      Value val = cache.get(hashCode);
-      if (val != null && val.value == value && val.width == width
-            && val.error == error && val.unknown == unknown)
-          return val;
-      Value ret = new Value(width, error, unknown, value);
-      cache.put(hashCode, ret);
-      return ret;
+      return intern(width, error, unknown, value);
     }
   }
 
-  public static Value create_unsafe(int width, int error, int unknown, int value) {
-    int hashCode = 31 * (31 * (31 * width + error) + unknown) + value;
-    Value val = cache.get(hashCode);
-    if (val != null && val.value == value && val.width == width
-        && val.error == error && val.unknown == unknown)
-      return val;
-    Value ret = new Value(width, error, unknown, value);
-    cache.put(hashCode, ret);
-    return ret;
+  // Like create(), but the caller promises width >= 2 and that the fields
+  // are already masked and normalized.
+  public static Value create_unsafe(int width, long error, long unknown, long value) {
+    return intern(width, error, unknown, value);
+  }
+
+  private static Value intern(int width, long error, long unknown, long value) {
+    if ((error | unknown) == 0) {
+      if (width <= SMALL_WIDTH)
+        return knownTable[width][(int)value];
+    } else if (value == 0) {
+      long mask = mask(width);
+      if (error == 0 && unknown == mask)
+        return unknownTable[width];
+      if (unknown == 0 && error == mask)
+        return errorTable[width];
+    }
+    return interner.get().intern(width, error, unknown, value);
   }
 
   public static Value create(Value[] values) {
@@ -89,11 +106,11 @@ public final class Value {
           + " bits in a value");
 
     int width = values.length;
-    int value = 0;
-    int unknown = 0;
-    int error = 0;
+    long value = 0;
+    long unknown = 0;
+    long error = 0;
     for (int i = 0; i < values.length; i++) {
-      int mask = 1 << i;
+      long mask = 1L << i;
       if (values[i] == TRUE)
         value |= mask;
       else if (values[i] == FALSE) /* do nothing */
@@ -114,9 +131,17 @@ public final class Value {
   }
 
   public static Value createKnown(BitWidth bits, int value) {
+    return Value.create(bits.getWidth(), 0, 0, value); // sign-extended
+  }
+
+  public static Value createKnown(BitWidth bits, long value) {
     return Value.create(bits.getWidth(), 0, 0, value);
   }
 
+  public static Value createKnown(int bits, long value) {
+    return Value.create(bits, 0, 0, value);
+  }
+
   public static Value createUnknown(BitWidth bits) {
     return Value.create(bits.getWidth(), 0, -1, 0);
   }
@@ -147,13 +172,31 @@ public final class Value {
       throw new Exception("expected digits");
 
     int w = width.getWidth();
+    long mask = mask(w);
     long value = 0, unknown = 0;
 
+    if (radix == 10) {
+      // Decimal: unsigned, or negative in two's complement.
+      for (int i = offset; i < n; i++) {
+        char c = t.charAt(i);
+        if (c < '0' || c > '9')
+          throw new Exception("unexpected character '"
+              + t.substring(i, i + 1) + "' in \"" + t + "\"");
+      }
+      BigInteger v = new BigInteger(t);
+      BigInteger limit = BigInteger.ONE.shiftLeft(w);
+      if (v.signum() < 0 ? v.negate().compareTo(limit.shiftRight(1)) > 0
+          : v.compareTo(limit) >= 0)
+        throw new Exception("too many bits in \"" + t + "\"");
+      return create(w, 0, 0, v.longValue());
+    }
+
+    int shift = radix == 16 ? 4 : radix == 8 ? 3 : 1;
     for (int i = offset; i < n; i++) {
       char c = t.charAt(i);
       int d;
 
-      if (c == 'x' && radix != 10)
+      if (c == 'x')
         d = -1;
       else if ('0' <= c && c <= '9')
         d = c - '0';
@@ -169,39 +212,20 @@ public final class Value {
         throw new Exception("unexpected character '"
             + t.substring(i, i + 1) + "' in \"" + t + "\"");
 
-      value *= radix;
-      unknown *= radix;
-      if ((value >> (radix == 10 ? 33 : w)) != 0 || (unknown >> 36) != 0)
+      if ((value >>> (64 - shift)) != 0)
         throw new Exception("too many bits in \"" + t + "\"");
-
-      if (radix != 10) {
-        if (d == -1)
-          unknown |= (radix - 1);
-        else
-          value |= d;
-      } else {
-        if (d == -1)
-          unknown += (radix - 1);
-        else
-          value += d;
-      }
-
+      value <<= shift;
+      unknown <<= shift;
+      if (d == -1)
+        unknown |= (radix - 1);
+      else
+        value |= d;
     }
-    if (radix == 10 && t.charAt(0) == '-')
-      value = -value;
 
-    if (w == 32) {
-      if (((value & 0x7FFFFFFF) >> (w - 1)) != 0)
-        throw new Exception("too many bits in \"" + t + "\"");
-    } else {
-      if ((value >> w) != 0)
-        throw new Exception("too many bits in \"" + t + "\"");
-    }
+    if ((value & ~mask) != 0)
+      throw new Exception("too many bits in \"" + t + "\"");
 
-    unknown &= ((1L << w) - 1);
-    int v = (int) (value & 0x00000000ffffffff);
-    int u = (int) (unknown & 0x00000000ffffffff);
-    return create(w, 0, u, v);
+    return create(w, 0, unknown & mask, value);
   }
 
   /**
@@ -237,8 +261,6 @@ public final class Value {
     }
   }
 
-  private static final Cache<Value> cache = new Cache<>();
-
   // these are not cached, instead they are checked explicitly in create()
   public static final Value FALSE = new Value(1, 0, 0, 0);
   public static final Value TRUE = new Value(1, 0, 0, 1);
@@ -246,7 +268,101 @@ public final class Value {
   public static final Value ERROR = new Value(1, 1, 0, 0);
   public static final Value NIL = new Value(0, 0, 0, 0);
 
-  public static final int MAX_WIDTH = 32;
+  public static final int MAX_WIDTH = 64;
+
+  // Interning. Every fully-known value up to SMALL_WIDTH bits, and the
+  // all-unknown and all-error value of every width, is built once up front
+  // and shared by everyone. Anything else goes through a direct-mapped cache
+  // owned by the calling thread, so the simulator, the GUI and any worker
+  // threads never evict each other's entries or race on a slot. Since Value
+  // is immutable, which thread happened to create an instance is irrelevant.
+  private static final int SMALL_WIDTH = 8;
+  private static final Value[][] knownTable = new Value[SMALL_WIDTH + 1][];
+  private static final Value[] unknownTable = new Value[MAX_WIDTH + 1];
+  private static final Value[] errorTable = new Value[MAX_WIDTH + 1];
+  static {
+    for (int w = 2; w <= SMALL_WIDTH; w++) {
+      knownTable[w] = new Value[1 << w];
+      for (int v = 0; v < (1 << w); v++)
+        knownTable[w][v] = new Value(w, 0, 0, v);
+    }
+    knownTable[1] = new Value[] { FALSE, TRUE };
+    unknownTable[1] = UNKNOWN;
+    errorTable[1] = ERROR;
+    for (int w = 2; w <= MAX_WIDTH; w++) {
+      unknownTable[w] = new Value(w, 0, mask(w), 0);
+      errorTable[w] = new Value(w, mask(w), 0, 0);
+    }
+  }
+
+  private static final int INTERN_SIZE = 4096; // per thread
+
+  private static final class Interner {
+    final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+    final Value[] table = new Value[INTERN_SIZE];
+    long hits, misses; // only ever written by the owning thread
+
+    Value intern(int width, long error, long unknown, long value) {
+      int h = hash(width, error, unknown, value);
+      int idx = (h ^ (h >>> 12)) & (INTERN_SIZE - 1);
+      Value val = table[idx];
+      if (val != null && val.value == value && val.width == width
+          && val.error == error && val.unknown == unknown) {
+        hits++;
+        return val;
+      }
+      misses++;
+      val = new Value(width, error, unknown, value);
+      table[idx] = val;
+      return val;
+    }
+  }
+
+  private static final ArrayList<Interner> interners = new ArrayList<>();
+  private static long retiredHits, retiredMisses;
+
+  private static final ThreadLocal<Interner> interner = ThreadLocal.withInitial(() -> {
+    Interner ret = new Interner();
+    synchronized (interners) {
+      retireInterners();
+      interners.add(ret);
+    }
+    return ret;
+  });
+
+  // Folds the counts of interners whose threads have died into the retired
+  // totals and lets their tables go. This runs whenever a thread registers a
+  // new interner, so short-lived worker threads don't accumulate.
+  // Precondition: interners lock is held.
+  private static void retireInterners() {
+    for (Iterator<Interner> it = interners.iterator(); it.hasNext(); ) {
+      Interner i = it.next();
+      Thread t = i.owner.get();
+      if (t == null || !t.isAlive()) {
+        retiredHits += i.hits;
+        retiredMisses += i.misses;
+        it.remove();
+      }
+    }
+  }
+
+  // Returns { hits, misses } summed over all threads' interning caches. A
+  // miss is a freshly allocated Value; lookups answered by the prebuilt
+  // small-width tables never allocate and are not counted. The counters are
+  // read without synchronizing with their owners, so a running simulation
+  // will make these slightly stale, which is fine for statistics.
+  public static long[] getCacheStatistics() {
+    synchronized (interners) {
+      retireInterners();
+      long hits = retiredHits, misses = retiredMisses;
+      for (Interner i : interners) {
+        hits += i.hits;
+        misses += i.misses;
+      }
+      return new long[] { hits, misses };
+    }
+  }
+
   public static final Color NIL_COLOR = Color.GRAY;
   public static final Color FALSE_COLOR = new Color(0, 100, 0);
   public static final Color TRUE_COLOR = new Color(0, 210, 0);
@@ -262,11 +378,11 @@ public final class Value {
 
 
   private final int width;
-  private final int error;
-  private final int unknown;
-  private final int value;
+  private final long error;
+  private final long unknown;
+  private final long value;
 
-  private Value(int width, int error, int unknown, int value) {
+  private Value(int width, long error, long unknown, long value) {
     // To ensure that the one-bit values are unique, this should be called
     // only for the one-bit values and by the private create method
     this.width = width;
@@ -285,9 +401,9 @@ public final class Value {
         return TRUE;
       return ERROR;
     } else {
-      int false0 = ~this.value & ~this.error & ~this.unknown;
-      int false1 = ~other.value & ~other.error & ~other.unknown;
-      int falses = false0 | false1;
+      long false0 = ~this.value & ~this.error & ~this.unknown;
+      long false1 = ~other.value & ~other.error & ~other.unknown;
+      long falses = false0 | false1;
       return Value.create(Math.max(this.width, other.width), (this.error
             | other.error | this.unknown | other.unknown)
           & ~falses, 0, this.value & other.value);
@@ -306,8 +422,8 @@ public final class Value {
     } else if (this.width != other.width) {
       return Value.create(other.width, -1, 0, 0);
     } else {
-      int enabled = (this.value | this.unknown) & ~this.error;
-      int disabled = ~this.value & ~this.unknown & ~this.error;
+      long enabled = (this.value | this.unknown) & ~this.error;
+      long disabled = ~this.value & ~this.unknown & ~this.error;
       return Value.create(other.width,
           (this.error | (other.error & ~disabled)),
           (disabled | other.unknown),
@@ -331,16 +447,16 @@ public final class Value {
         return this;
       return ERROR;
     } else if (this.width == other.width) {
-      int disagree = (this.value ^ other.value) & ~(this.unknown | other.unknown);
+      long disagree = (this.value ^ other.value) & ~(this.unknown | other.unknown);
       return Value.create(
           width,
           this.error | other.error | disagree,
           this.unknown & other.unknown,
           this.value | other.value);
     } else {
-      int thisknown = ~this.unknown & (this.width == 32 ? -1 : ~(-1 << this.width));
-      int otherknown = ~other.unknown & (other.width == 32 ? -1 : ~(-1 << other.width));
-      int disagree = (this.value ^ other.value) & thisknown & otherknown;
+      long thisknown = ~this.unknown & mask(this.width);
+      long otherknown = ~other.unknown & mask(other.width);
+      long disagree = (this.value ^ other.value) & thisknown & otherknown;
       return Value.create(
           Math.max(this.width, other.width),
           this.error | other.error | disagree,
@@ -355,16 +471,16 @@ public final class Value {
     for (int i = 0; i < n; i++) {
       Value v = vals[i].drivenValue;
       if (v != null && v != NIL) {
-        int error = v.error;
-        int unknown = v.unknown;
-        int value = v.value;
+        long error = v.error;
+        long unknown = v.unknown;
+        long value = v.value;
         for (int j = i+1; j < n; j++) {
           v = vals[j].drivenValue;
           if (v == null || v == NIL)
             continue;
           if (v.width != width)
             throw new IllegalArgumentException("INTERNAL ERROR: mismatched widths in Value.combine");
-          int disagree = (value ^ v.value) & ~(unknown | v.unknown);
+          long disagree = (value ^ v.value) & ~(unknown | v.unknown);
           error |= v.error | disagree;
           unknown &= v.unknown;
           value |= v.value;
@@ -400,7 +516,7 @@ public final class Value {
   public Value extendWidth(int newWidth, Value others) {
     if (width == newWidth)
       return this;
-    int maskInverse = (width == 32 ? 0 : (-1 << width));
+    long maskInverse = ~mask(width);
     if (others == Value.ERROR) {
       return Value.create(newWidth, error | maskInverse, unknown, value);
     } else if (others == Value.FALSE) {
@@ -415,7 +531,7 @@ public final class Value {
   public Value get(int which) {
     if (which < 0 || which >= width)
       return ERROR;
-    int mask = 1 << which;
+    long mask = 1L << which;
     if ((error & mask) != 0)
       return ERROR;
     else if ((unknown & mask) != 0)
@@ -461,11 +577,7 @@ public final class Value {
 
   @Override
   public int hashCode() {
-    int ret = width;
-    ret = 31 * ret + error;
-    ret = 31 * ret + unknown;
-    ret = 31 * ret + value;
-    return ret;
+    return hash(width, error, unknown, value);
   }
 
   public boolean isErrorValue() {
@@ -477,11 +589,7 @@ public final class Value {
   }
 
   public boolean isUnknown() {
-    if (width == 32) {
-      return error == 0 && unknown == -1;
-    } else {
-      return error == 0 && unknown == ((1 << width) - 1);
-    }
+    return error == 0 && unknown == mask(width);
   }
 
   public Value not() {
@@ -507,9 +615,9 @@ public final class Value {
         return FALSE;
       return ERROR;
     } else {
-      int true0 = this.value & ~this.error & ~this.unknown;
-      int true1 = other.value & ~other.error & ~other.unknown;
-      int trues = true0 | true1;
+      long true0 = this.value & ~this.error & ~this.unknown;
+      long true1 = other.value & ~other.error & ~other.unknown;
+      long trues = true0 | true1;
       return Value.create(Math.max(this.width, other.width), (this.error
             | other.error | this.unknown | other.unknown)
           & ~trues, 0, this.value | other.value);
@@ -524,7 +632,7 @@ public final class Value {
     } else if (width == 1) {
       return val;
     } else {
-      int mask = ~(1 << which);
+      long mask = ~(1L << which);
       return Value.create(this.width, (this.error & mask)
           | (val.error << which), (this.unknown & mask)
           | (val.unknown << which), (this.value & mask)
@@ -562,14 +670,14 @@ public final class Value {
     if (!isFullyDefined())
       return S.get("valueUnknown");
 
-    int value = toIntValue();
+    long value = toLongValue();
     if (signed) {
-      if (width < 32 && (value >> (width - 1)) != 0) {
-        value |= (-1) << width;
+      if (width < 64 && (value >> (width - 1)) != 0) {
+        value |= (-1L) << width;
       }
       return "" + value;
     } else {
-      return "" + ((long) value & 0xFFFFFFFFL);
+      return Long.toUnsignedString(value);
     }
   }
 
@@ -612,7 +720,9 @@ public final class Value {
         return S.get("valueError");
       if (!isFullyDefined())
         return S.get("valueUnknown");
-      return Integer.toString(toIntValue(), radix);
+      if (width <= 32)
+        return Integer.toString(toIntValue(), radix);
+      return Long.toString(toLongValue(), radix);
     }
   }
 
@@ -648,7 +758,22 @@ public final class Value {
     }
   }
 
+  // Returns the value, or -1 if any bit is error or unknown. Values wider than
+  // 32 bits must use toLongValue() instead, rather than silently losing their
+  // upper bits.
   public int toIntValue() {
+    if (width > 32)
+      throw new IllegalStateException("toIntValue() on a " + width
+          + "-bit value, use toLongValue()");
+    if (error != 0)
+      return -1;
+    if (unknown != 0)
+      return -1;
+    return (int)value;
+  }
+
+  // Returns the value (zero-extended), or -1 if any bit is error or unknown.
+  public long toLongValue() {
     if (error != 0)
       return -1;
     if (unknown != 0)
@@ -746,9 +871,9 @@ public final class Value {
     // wherever this is unknown, use other's value for that bit instead
     if (width <= 0 || unknown == 0 || other.width <= 0)
       return this;
-    int e = error | (unknown & other.error);
-    int v = value | (unknown & other.value);
-    int u = unknown & (other.unknown | (other.width == 32 ? 0 : (-1 << other.width)));
+    long e = error | (unknown & other.error);
+    long v = value | (unknown & other.value);
+    long u = unknown & (other.unknown | ~mask(other.width));
     return Value.create(width, e, u, v);
   }
 
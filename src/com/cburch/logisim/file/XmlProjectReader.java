@@ -40,6 +40,8 @@ import java.util.HashSet;
 import java.util.List;
 
 import javax.swing.JOptionPane;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -67,6 +69,9 @@ public class XmlProjectReader extends XmlReader {
 
     HashMap<String, Library> libs = new HashMap<>();
     HashMap<Circuit, ArrayList<HashMap<String, AttributeSet>>> simulations = new HashMap<>();
+    List<CircuitData> circuitsData = new ArrayList<>();
+    List<Element> deferred = new ArrayList<>(); // see parseProjectChild
+    boolean streaming;
 
     ReadProjectContext(LogisimFile f, String path) { super(f, path); }
 
@@ -150,6 +155,53 @@ public class XmlProjectReader extends XmlReader {
     }
 
     private void parseProject(Element elt) throws LoadCanceledByUser {
+      beginProject(elt);
+
+      // first, load the sublibraries
+      for (Element o : XmlIterator.forChildElements(elt, "lib"))
+        parseLib(o);
+
+      // second, create the circuits - empty for now - and the vhdl entities
+      for (Element subElt : XmlIterator.forChildElements(elt)) {
+        switch (subElt.getTagName()) {
+        case "vhdl":
+        case "circuit":
+          parseDefinition(subElt);
+          break;
+        default:
+          // do nothing
+        }
+      }
+
+      endProject(XmlIterator.forChildElements(elt));
+    }
+
+    // Reads a file one child of the project element at a time, as the children
+    // stream in, instead of as a whole document: libraries are loaded and
+    // circuits created as soon as they are read, and the rest, which may refer
+    // to circuits further on, is kept for endProject(). Components from
+    // libraries not yet seen are left for XmlCircuitReader to create.
+    private void parseProjectChild(Element elt) throws LoadCanceledByUser {
+      switch (elt.getTagName()) {
+      case "lib":
+        parseLib(elt);
+        break;
+      case "vhdl":
+      case "circuit":
+        parseDefinition(elt);
+        break;
+      default:
+        deferred.add(elt);
+      }
+    }
+
+    @Override
+    boolean isLibraryPending(String libName) {
+      return streaming && libName != null && !libName.equals("")
+          && !libs.containsKey(libName);
+    }
+
+    private void beginProject(Element elt) {
       // determine the version producing this file
       String versionString = elt.getAttribute("source");
       if (versionString.equals("")) {
@@ -172,37 +224,32 @@ public class XmlProjectReader extends XmlReader {
         else
           JOptionPane.showMessageDialog(null, msg, "Warning: Legacy Circuit", JOptionPane.WARNING_MESSAGE);
       }
+    }
 
-      // first, load the sublibraries
-      for (Element o : XmlIterator.forChildElements(elt, "lib")) {
-        Library lib = toLibrary(o);
-        if (lib != null)
-          file.addLibrary(lib);
-      }
+    private void parseLib(Element elt) throws LoadCanceledByUser {
+      Library lib = toLibrary(elt);
+      if (lib != null)
+        file.addLibrary(lib);
+    }
 
-      // second, create the circuits - empty for now - and the vhdl entities
-      List<CircuitData> circuitsData = new ArrayList<>();
-      for (Element subElt : XmlIterator.forChildElements(elt)) {
-        switch (subElt.getTagName()) {
-        case "vhdl":
-          VhdlContent contents = parseVhdl(subElt);
-          if (contents != null) {
-            file.addVhdlContent(contents);
-          }
-          break;
-        case "circuit":
-          CircuitData circData = parseCircuit(subElt);
-          if (circData != null) {
-            file.addCircuit(circData.circuit);
-            circuitsData.add(circData);
-          }
-        default:
-          // do nothing
+    private void parseDefinition(Element elt) {
+      if (elt.getTagName().equals("vhdl")) {
+        VhdlContent contents = parseVhdl(elt);
+        if (contents != null)
+          file.addVhdlContent(contents);
+      } else {
+        CircuitData circData = parseCircuit(elt);
+        if (circData != null) {
+          file.addCircuit(circData.circuit);
+          circData.compact();
+          circuitsData.add(circData);
         }
       }
+    }
 
+    private void endProject(Iterable<Element> others) {
       // third, process the other child elements
-      for (Element sub_elt : XmlIterator.forChildElements(elt)) {
+      for (Element sub_elt : others) {
         String name = sub_elt.getTagName();
 
         switch (name) {
@@ -306,15 +353,30 @@ public class XmlProjectReader extends XmlReader {
 
   LogisimFile.FileWithSimulations parseProjectWithSimulations(InputStream is)
       throws IOException, SAXException, LoadCanceledByUser {
-    Document doc = loadXmlFrom(is);
-    Element elt = doc.getDocumentElement();
-
-    considerRepairs(doc, elt);
     LogisimFile file = new LogisimFile(loader);
     ReadProjectContext context = new ReadProjectContext(file,
         srcFile == null ? null : srcFile.getAbsolutePath());
 
-    context.parseProject(elt);
+    Document doc = newDocument();
+    XMLStreamReader in = openXmlStream(is);
+    try {
+      Element elt = nextElement(doc, in);
+      if (elt == null)
+        throw new SAXException("XML document has no root element");
+      doc.appendChild(elt);
+      if (isStreamable(elt)) {
+        streamProject(doc, in, elt, context);
+      } else {
+        readContent(doc, in, elt);
+        considerRepairs(doc, elt);
+        context.parseProject(elt);
+      }
+      skipToEnd(in);
+    } catch (XMLStreamException e) {
+      throw new SAXException(e.getMessage(), e);
+    } finally {
+      closeXmlStream(in);
+    }
 
     if (file.getCircuits().size() == 0)
       file.addCircuit(new Circuit("main", file));
@@ -333,6 +395,64 @@ public class XmlProjectReader extends XmlReader {
     return ret;
   }
 
+  // Files from before 4.0.3 may need repairs that look at the whole document
+  // (see considerRepairs), so only newer ones are read as they stream in.
+  private static boolean isStreamable(Element root) {
+    String source = root.getAttribute("source");
+    return !source.equals("")
+        && LogisimVersion.parse(source).compareTo(LogisimVersion.get(4, 0, 3)) >= 0;
+  }
+
+  // Reads the project one child of the root element at a time, so that only
+  // the element being read, and what is left of each circuit once its
+  // components have been created, is held as a DOM, never the whole file. The
+  // repairs that still apply to newer files are made on each child in turn.
+  private void streamProject(Document doc, XMLStreamReader in, Element root,
+      ReadProjectContext context) throws XMLStreamException, LoadCanceledByUser {
+    context.streaming = true;
+    context.beginProject(root);
+    String wiringLibName = null;
+    String tclLibName = null;
+    boolean tclComponentsRemoved = false;
+    Element elt;
+    while ((elt = nextElement(doc, in)) != null) {
+      readContent(doc, in, elt);
+      if (elt.getTagName().equals("lib")) {
+        String desc = elt.getAttribute("desc");
+        if (desc.equals("#TCL")) {
+          // As of version 4.0.0-HC, the #TCL library is gone.
+          tclLibName = elt.getAttribute("name");
+          continue;
+        }
+        if (desc.equals("#Wiring"))
+          wiringLibName = elt.getAttribute("name");
+      }
+      if (tclLibName != null) {
+        ArrayList<Element> toRemove = new ArrayList<>();
+        findLibraryUses(toRemove, tclLibName,
+            XmlIterator.forDescendantElements(elt, "comp"));
+        tclComponentsRemoved |= !toRemove.isEmpty();
+        findLibraryUses(toRemove, tclLibName,
+            XmlIterator.forDescendantElements(elt, "tool"));
+        for (Element e : toRemove)
+          e.getParentNode().removeChild(e);
+      }
+      if (wiringLibName != null) {
+        for (Element compElt : XmlIterator.forDescendantElements(elt, "comp"))
+          convertObsoletePinAttributes(doc, compElt, wiringLibName);
+        for (Element toolElt : XmlIterator.forDescendantElements(elt, "tool"))
+          convertObsoletePinAttributes(doc, toolElt, wiringLibName);
+      }
+      context.parseProjectChild(elt);
+    }
+    if (tclComponentsRemoved) {
+      Element msg = doc.createElement("message");
+      msg.setAttribute("value", S.fmt("libNoLongerSupported", "TCL"));
+      context.deferred.add(msg);
+    }
+    context.endProject(context.deferred);
+  }
+
   private Loader loader;
   private File srcFile; // used for de-relativizing paths in xml
 
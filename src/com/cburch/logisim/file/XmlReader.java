@@ -39,11 +39,17 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 import com.bfh.logisim.fpga.PinBindings;
@@ -78,6 +84,8 @@ class XmlReader {
       circuit = circ;
       // load known components
       for (Element e : XmlIterator.forChildElements(elt, "comp")) try {
+          if (ctx.isLibraryPending(e.getAttribute("lib")))
+            continue; // left for XmlCircuitReader
           Component comp = XmlCircuitReader.getComponent(e, ctx);
           if (comp != null)
             knownComponents.put(e, comp);
@@ -95,6 +103,31 @@ class XmlReader {
         loadSimulation(ctx, e, circ.getName() + ".simulation");
     }
 
+    // Drops what has already been read from the circuit's element: the
+    // content of the components in knownComponents, whose elements are still
+    // needed as keys, the static appearance shapes and the FPGA configs. What
+    // is left is what XmlCircuitReader reads once all circuits exist.
+    void compact() {
+      for (Element e : knownComponents.keySet())
+        removeChildren(e);
+      for (Element e : XmlIterator.forChildElements(circuitElement)) {
+        String tag = e.getTagName();
+        if (tag.equals("fpgaconfig")) {
+          circuitElement.removeChild(e);
+        } else if (tag.equals("appear")) {
+          for (Element shape : XmlIterator.forChildElements(e))
+            if (!shape.getTagName().startsWith("visible-"))
+              e.removeChild(shape);
+        }
+      }
+    }
+
+    private static void removeChildren(Element elt) {
+      Node child;
+      while ((child = elt.getFirstChild()) != null)
+        elt.removeChild(child);
+    }
+
     private void loadAppearance(ReadContext ctx, Element elt, String context) {
       // Dynamic shapes are skipped here. They are resolved later in
       // XmlCircuitReader once the full Circuit tree has been built.
@@ -178,6 +211,12 @@ class XmlReader {
 
     abstract Library findLibrary(String libName) throws XmlReaderException;
 
+    // Whether libName is a library that may yet be loaded, in which case its
+    // components cannot be created until later.
+    boolean isLibraryPending(String libName) {
+      return false;
+    }
+
     CircuitData parseCircuit(Element elt) {
       String name = elt.getAttribute("name");
       if (name == null || name.equals("")) {
@@ -284,6 +323,8 @@ class XmlReader {
           } catch (NumberFormatException e) {
             if (messages == null)
               messages = new ArrayList<String>();
+            if (attrVal.length() > 60) // e.g. memory contents
+              attrVal = attrVal.substring(0, 60) + "...";
             messages.add(S.fmt("attrValueInvalidError", attrVal, attrName));
           }
         }
@@ -295,14 +336,149 @@ class XmlReader {
 
   }
 
+  // Builds the document with a streaming parser rather than a DocumentBuilder,
+  // leaving out the whitespace between elements, which would otherwise be
+  // nearly half of all the nodes of a .circ file. Text in elements that have
+  // no child elements, like multi-line attribute values, is kept exactly.
+  // Comments and processing instructions are dropped, since nothing reads
+  // them.
   static Document loadXmlFrom(InputStream is) throws SAXException, IOException {
-    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    factory.setNamespaceAware(true);
+    Document doc = newDocument();
+    XMLStreamReader in = openXmlStream(is);
+    try {
+      Element root = nextElement(doc, in);
+      if (root == null)
+        throw new SAXException("XML document has no root element");
+      readContent(doc, in, root);
+      doc.appendChild(root);
+      skipToEnd(in);
+    } catch (XMLStreamException e) {
+      throw new SAXException(e.getMessage(), e);
+    } finally {
+      closeXmlStream(in);
+    }
+    return doc;
+  }
+
+  static Document newDocument() throws IOException {
     try {
-      return factory.newDocumentBuilder().parse(is);
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      return factory.newDocumentBuilder().newDocument();
     } catch (ParserConfigurationException e) {
       throw new IOException("XML parse configuration error: " + e.getMessage(), e);
     }
   }
 
+  static XMLStreamReader openXmlStream(InputStream is) throws SAXException {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    try {
+      return factory.createXMLStreamReader(is);
+    } catch (XMLStreamException e) {
+      throw new SAXException(e.getMessage(), e);
+    }
+  }
+
+  static void closeXmlStream(XMLStreamReader in) {
+    try {
+      in.close();
+    } catch (XMLStreamException e) {
+    }
+  }
+
+  // Reads on to the end of the document, so it is checked to be well formed.
+  static void skipToEnd(XMLStreamReader in) throws XMLStreamException {
+    while (in.hasNext())
+      in.next();
+  }
+
+  // Reads up to the next start tag, and returns its element, without content,
+  // or null at the end of the document. Text and end tags on the way are
+  // skipped, so this finds the next child of an element whose content is
+  // being read one child at a time, or null once that element ends.
+  static Element nextElement(Document doc, XMLStreamReader in)
+      throws XMLStreamException {
+    while (in.hasNext()) {
+      switch (in.next()) {
+      case XMLStreamConstants.START_ELEMENT:
+        return createElement(doc, in);
+      case XMLStreamConstants.END_ELEMENT:
+        return null;
+      default:
+        break;
+      }
+    }
+    return null;
+  }
+
+  private static Element createElement(Document doc, XMLStreamReader in) {
+    Element elt = doc.createElementNS(emptyToNull(in.getNamespaceURI()),
+        qualifiedName(in.getPrefix(), in.getLocalName()));
+    for (int i = 0; i < in.getNamespaceCount(); i++) {
+      String prefix = in.getNamespacePrefix(i);
+      elt.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+          prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix,
+          in.getNamespaceURI(i));
+    }
+    for (int i = 0; i < in.getAttributeCount(); i++) {
+      elt.setAttributeNS(emptyToNull(in.getAttributeNamespace(i)),
+          qualifiedName(in.getAttributePrefix(i), in.getAttributeLocalName(i)),
+          in.getAttributeValue(i));
+    }
+    return elt;
+  }
+
+  // Reads the content of top, whose start tag was just read, up to and
+  // including its end tag.
+  static void readContent(Document doc, XMLStreamReader in, Element top)
+      throws XMLStreamException {
+    Node parent = top;
+    boolean hasChildElements = false;
+    String space = null; // whitespace that may yet turn out to be content
+    while (true) {
+      switch (in.next()) {
+      case XMLStreamConstants.START_ELEMENT:
+        Element elt = createElement(doc, in);
+        parent.appendChild(elt);
+        parent = elt;
+        hasChildElements = false;
+        space = null;
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        if (space != null && !hasChildElements)
+          parent.appendChild(doc.createTextNode(space));
+        if (parent == top)
+          return;
+        parent = parent.getParentNode();
+        hasChildElements = true;
+        space = null;
+        break;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.CDATA:
+      case XMLStreamConstants.SPACE:
+        String text = in.getText();
+        if (space != null)
+          text = space + text;
+        space = null;
+        if (text.trim().isEmpty())
+          space = text;
+        else
+          parent.appendChild(doc.createTextNode(text));
+        break;
+      default:
+        break;
+      }
+    }
+  }
+
+  private static String emptyToNull(String s) {
+    return s == null || s.isEmpty() ? null : s;
+  }
+
+  private static String qualifiedName(String prefix, String localName) {
+    return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+  }
+
 }
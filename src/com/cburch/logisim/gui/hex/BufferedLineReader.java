@@ -40,6 +40,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.lang.StringBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * BufferedLineReader combines features of RandomAccessFile, StringReader, and
@@ -129,6 +130,9 @@ abstract class BufferedLineReader {
       cin = new InputStreamReader(new Adapter(bin), "UTF-8"); // ISR buffers internally
       super.reset();
     }
+    FileChannel getChannel() {
+      return bin == null ? null : bin.getChannel();
+    }
     public void close() throws IOException {
       try {
         bin.close();
@@ -180,6 +184,11 @@ abstract class BufferedLineReader {
   abstract int underlyingReadBytes(byte[] bbuf, int off, int len) throws IOException;
   public abstract void close() throws IOException;
 
+  // The underlying file, if there is one, for reading in bulk.
+  FileChannel getChannel() {
+    return null;
+  }
+
 
   public int readBytes(byte bbuf[], int off, int len) throws IOException {
     if (buf == null)
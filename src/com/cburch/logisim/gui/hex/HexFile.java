@@ -112,6 +112,13 @@
 // of the third byte of the file will go into the bottom 4 bits of the memory
 // word.
 
+// "v3.0 image [big-endian|little-endian]" -- A header line, then raw binary
+// data, with one word per 1, 2, or 4 bytes (whichever is the smallest that
+// fits the memory word width), in big-endian or little-endian order. Unused
+// high bits are ignored. Unlike the other formats, this one is not packed, so
+// it can be loaded by reading the file in bulk straight into memory, rather
+// than decoding it byte by byte, which makes loading large images quick.
+
 // Escaped Ascii -- One byte per byte, except that bytes that are not regular
 // printable ascii must be escaped using simple or hex escape sequences. Any
 // non-printable ascii found in the file will be silently ignored. This means
@@ -154,24 +161,26 @@
 package com.cburch.logisim.gui.hex;
 import static com.cburch.logisim.gui.hex.Strings.S;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
 
 import com.cburch.logisim.Main;
 import com.cburch.logisim.file.Loader;
@@ -637,7 +646,7 @@ public class HexFile {
   private static class FormatOptions {
     HashMap<String, String>  tags = new HashMap<>();
     // "version" -->  "v2.0", "v3.0", 
-    // "radix" --> "hex", "raw", "binary" (or null), or "ascii"
+    // "radix" --> "hex", "raw", "binary" (or null), "image", or "ascii"
     // "size" --> "bytes", "words"
     // "style" --> "plain", "addressed"
     // "endian" --> "little-endian", "big-endian"
@@ -691,6 +700,7 @@ public class HexFile {
         String key = null;
         switch (tag.toLowerCase()) {
         case "hex":
+        case "image":
         case "raw": key = "radix"; break;
         case "bytes":
         case "words": key = "size"; break;
@@ -730,6 +740,8 @@ public class HexFile {
     String headerToString() {
       if (tagged("radix", "raw"))
         return "v2.0 raw";
+      else if (tagged("radix", "image"))
+        return "v3.0 image " + endian();
       else if (taggedOrUnset("radix", "binary"))
         return "v3.0 binary " + endian();
       else if (tagged("radix", "ascii"))
@@ -744,7 +756,7 @@ public class HexFile {
     }
   }
 
-  private static class HexReader extends FormatOptions {
+  static class HexReader extends FormatOptions {
 
     BufferedLineReader in;
     MemContents dst;
@@ -817,7 +829,9 @@ public class HexFile {
 
     MemContents decode() throws IOException {
       reset();
-      if (taggedOrUnset("radix", "binary"))
+      if (tagged("radix", "image"))
+        decodeImage();
+      else if (taggedOrUnset("radix", "binary"))
         decodeBinary();
       else if (tagged("radix", "ascii"))
         decodeEscapedAscii();
@@ -1273,6 +1287,23 @@ public class HexFile {
     }
 
     void decodeBinary() throws IOException {
+      // Files of whole bytes, shorts, or ints are read in bulk.
+      FileChannel channel = in.getChannel();
+      int shift = mWidth == 8 ? 0 : mWidth == 16 ? 1 : mWidth == 32 ? 2 : -1;
+      if (channel != null && shift >= 0 && (in.byteLength() & ((1 << shift) - 1)) == 0) {
+        long n = in.byteLength() >> shift;
+        if (n > mEnd + 101) {
+          // as in deliver(), which would halt early
+          warn("Halting decoding early, since plenty of words have been decoded.");
+          haltedEarly = true;
+          n = mEnd + 101;
+        }
+        decodedWordCount = (int)dst.readImage(channel, 0, n,
+            bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        mAddr = n;
+        mMaxAddr = Math.max(0, n - 1);
+        return;
+      }
       bLen = 0;
       int n = in.readBytes(bytes, 0, 4096);
       while (n > 0) {
@@ -1283,6 +1314,63 @@ public class HexFile {
       }
     }
 
+    void decodeImage() throws IOException {
+      int shift = mWidth <= 8 ? 0 : mWidth <= 16 ? 1 : 2;
+      ByteOrder order = bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+
+      // skip blank lines and the header line
+      bLen = in.readBytes(bytes, 0, 4096);
+      int hdrLen = 0;
+      while (hdrLen < bLen && Character.isWhitespace(bytes[hdrLen]))
+        hdrLen++;
+      while (hdrLen < bLen && bytes[hdrLen] != '\n')
+        hdrLen++;
+      if (hdrLen >= bLen) {
+        warn("Missing end of line after image header.");
+        return;
+      }
+      hdrLen++;
+
+      long len = in.byteLength() - hdrLen;
+      long n = len >> shift;
+      if ((len & ((1 << shift) - 1)) != 0)
+        warn("File contained %d extra bytes.", len & ((1 << shift) - 1));
+      mAddr = n;
+      mMaxAddr = Math.max(0, n - 1);
+
+      FileChannel channel = in.getChannel();
+      if (channel != null) {
+        decodedWordCount = (int)dst.readImage(channel, hdrLen, n, order);
+        return;
+      }
+
+      // Otherwise, copy words in bulk, a buffer at a time, carrying any
+      // partial word at the end of a buffer over to the next.
+      int[] vals = new int[4096 >> shift];
+      bLen -= hdrLen;
+      System.arraycopy(bytes, hdrLen, bytes, 0, bLen);
+      long addr = 0;
+      while (addr <= mEnd) {
+        int got = in.readBytes(bytes, bLen, 4096 - bLen);
+        if (got > 0)
+          bLen += got;
+        int k = (int)Math.min(bLen >> shift, mEnd + 1 - addr);
+        if (k == 0) {
+          if (got <= 0)
+            break;
+          continue;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes, 0, bLen).order(order);
+        for (int i = 0; i < k; i++)
+          vals[i] = shift == 0 ? buf.get() : shift == 1 ? buf.getShort() : buf.getInt();
+        dst.set(addr, k == vals.length ? vals : Arrays.copyOf(vals, k));
+        addr += k;
+        decodedWordCount += k;
+        bLen -= k << shift;
+        System.arraycopy(bytes, k << shift, bytes, 0, bLen);
+      }
+    }
+
     static int hex2int(int c) { // byte, char
       if (c >= '0' && c <= '9')
         return c - '0';
@@ -1399,7 +1487,7 @@ public class HexFile {
     return open(dst, src, null);
   }
 
-  private static boolean open(MemContents dst, File src, String desc) throws IOException {
+  static boolean open(MemContents dst, File src, String desc) throws IOException {
     BufferedLineReader in = BufferedLineReader.forFile(src);
     try {
       HexReader r = new HexReader(in, dst.getLogLength(), dst.getValueWidth());
@@ -1437,21 +1525,37 @@ public class HexFile {
 
   public static MemContents parseFromCircFile(String src, int addrSize, int wordSize)
       throws IOException {
-    if (src.startsWith("compressed\n")) {
-      byte[] bytes = src.getBytes("UTF-8");
-      ByteArrayInputStream input = new ByteArrayInputStream(bytes, 11, bytes.length-11);
-      InputStream decoded = Base64.getMimeDecoder().wrap(input);
-      InflaterInputStream uncompress = new InflaterInputStream(decoded, new Inflater());
+    if (src.startsWith("compressed\n"))
+      src = uncompressCircFile(src, new ByteArrayOutputStream()).toString("UTF-8");
+    return parse(false, src, "v2.0 raw", addrSize, wordSize).model;
+  }
 
-      ByteArrayOutputStream result = new ByteArrayOutputStream();
-      byte[] buffer = new byte[1024];
-      int length;
-      while ((length = uncompress.read(buffer)) != -1)
+  // Throws an exception if parseFromCircFile() would, i.e. if contents that
+  // were saved compressed are corrupt, without building the memory contents
+  // or keeping the uncompressed text.
+  public static void checkCircFileContents(String src) throws IOException {
+    if (src.startsWith("compressed\n"))
+      uncompressCircFile(src, OutputStream.nullOutputStream());
+  }
+
+  private static <T extends OutputStream> T uncompressCircFile(String src, T result)
+      throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(Base64.getMimeDecoder().decode(src.substring(11)));
+      byte[] buffer = new byte[65536];
+      while (!inflater.finished()) {
+        int length = inflater.inflate(buffer);
+        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+          throw new ZipException("Compressed memory contents are truncated.");
         result.write(buffer, 0, length);
-      src = result.toString("UTF-8");
-      uncompress.close();
+      }
+    } catch (IllegalArgumentException | DataFormatException e) {
+      throw new ZipException("Compressed memory contents are corrupt: " + e.getMessage());
+    } finally {
+      inflater.end();
     }
-    return parse(false, src, "v2.0 raw", addrSize, wordSize).model;
+    return result;
   }
 
   private static ParseResult parse(boolean interactive,
@@ -1471,7 +1575,7 @@ public class HexFile {
     }
   }
 
-  private static void save(File f, MemContents src, String desc) throws IOException {
+  static void save(File f, MemContents src, String desc) throws IOException {
     OutputStream out;
     try {
       out = new FileOutputStream(f);
@@ -1520,7 +1624,7 @@ public class HexFile {
       OutputStream stream;
       if (desc == null)
         desc = "v2.0 raw";
-      if (desc.startsWith("Binary"))
+      if (desc.startsWith("Binary") || desc.startsWith("v3.0 image"))
         stream = new OutputStreamBinarySanitizer(out);
       else
         stream = new OutputStreamEscaper(out, true, 0);
@@ -1613,7 +1717,9 @@ public class HexFile {
 
     void save() throws IOException {
       try {
-        if (taggedOrUnset("radix", "binary"))
+        if (tagged("radix", "image"))
+          saveImage();
+        else if (taggedOrUnset("radix", "binary"))
           saveBinary();
         else if (tagged("radix", "ascii"))
           saveEscapedAscii();
@@ -1679,6 +1785,26 @@ public class HexFile {
       }
     }
 
+    void saveImage() throws IOException {
+      int shift = mWidth <= 8 ? 0 : mWidth <= 16 ? 1 : 2;
+      ByteBuffer buf = ByteBuffer.wrap(bytes)
+          .order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+      long addr = 0;
+      while (addr <= mEnd) {
+        buf.clear();
+        while (buf.hasRemaining() && addr <= mEnd) {
+          int val = src.get(addr++);
+          if (shift == 0)
+            buf.put((byte)val);
+          else if (shift == 1)
+            buf.putShort((short)val);
+          else
+            buf.putInt(val);
+        }
+        bOut.write(bytes, 0, buf.position());
+      }
+    }
+
     void saveEscapedAscii() throws IOException {
       buffer();
       OutputStreamEscaper escaper = new OutputStreamEscaper(new OutputStreamWriter(bOut));
@@ -1786,6 +1912,8 @@ public class HexFile {
     "v3.0 hex bytes plain big-endian",           // header = desc
     "v3.0 hex bytes plain little-endian",        // header = desc
     "v2.0 raw (run-length-endcoded hex words)",  // header = "v2.0 raw"
+    "v3.0 image big-endian",                     // header = desc
+    "v3.0 image little-endian",                  // header = desc
     "Binary data big-endian",                    // no header
     "Binary data little-endian",                 // no header
     "ASCII bytes, with escapes, big-endian",     // no header
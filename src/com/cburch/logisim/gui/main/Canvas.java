@@ -958,6 +958,7 @@ public class Canvas extends JPanel
 
   @Override
   public void localeChanged() {
+    painter.invalidateCache();
     paintThread.requestRepaint();
   }
 
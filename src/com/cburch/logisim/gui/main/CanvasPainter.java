@@ -65,13 +65,16 @@ class CanvasPainter implements PropertyChangeListener {
   private Component haloedComponent = null;
   private Circuit haloedCircuit = null;
   private WireSet highlightedWires = WireSet.EMPTY;
+  private StaticLayerCache staticLayer;
 
   CanvasPainter(Canvas canvas) {
     this.canvas = canvas;
     this.grid = new GridPainter(canvas);
+    this.staticLayer = new StaticLayerCache(canvas);
 
     AppPreferences.PRINTER_VIEW.addPropertyChangeListener(this);
     AppPreferences.ATTRIBUTE_HALO.addPropertyChangeListener(this);
+    AppPreferences.CANVAS_CACHE.addPropertyChangeListener(this);
   }
 
   private void drawWidthIncompatibilityData(Graphics base, Graphics g,
@@ -172,7 +175,18 @@ class CanvasPainter implements PropertyChangeListener {
     ComponentDrawContext context = new ComponentDrawContext(canvas, circ,
         circState, base, g, printerView);
     context.setHighlightedWires(highlightedWires);
-    circ.draw(context, hidden);
+    if (hidden.isEmpty() && AppPreferences.CANVAS_CACHE.get()) {
+      // Components that look the same whatever the state come from the cache,
+      // except for their port dots. The tiles are transparent, so drawing the
+      // wires first keeps the wires underneath components, as when drawing
+      // everything directly.
+      circ.draw(context, hidden, true, c -> false);
+      staticLayer.paint((Graphics2D) base, context);
+      circ.draw(context, hidden, false, c -> !staticLayer.isCached(c));
+      staticLayer.paintPins(context);
+    } else {
+      circ.draw(context, hidden);
+    }
     sel.draw(context, hidden);
 
     // draw tool
@@ -216,6 +230,10 @@ class CanvasPainter implements PropertyChangeListener {
     return haloedComponent;
   }
 
+  void invalidateCache() {
+    staticLayer.invalidate();
+  }
+
   //
   // painting methods
   //
@@ -255,7 +273,8 @@ class CanvasPainter implements PropertyChangeListener {
 
   public void propertyChange(PropertyChangeEvent event) {
     if (AppPreferences.PRINTER_VIEW.isSource(event)
-        || AppPreferences.ATTRIBUTE_HALO.isSource(event)) {
+        || AppPreferences.ATTRIBUTE_HALO.isSource(event)
+        || AppPreferences.CANVAS_CACHE.isSource(event)) {
       canvas.repaint();
     }
   }
@@ -0,0 +1,239 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.gui.main;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitEvent;
+import com.cburch.logisim.circuit.CircuitListener;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentDrawContext;
+import com.cburch.logisim.data.Location;
+
+// StaticLayerCache keeps tile images of those components of the current
+// circuit whose drawing doesn't depend on the simulation state (see
+// ComponentFactory.hasStaticAppearance). While a simulation runs, repainting
+// the canvas then only copies tiles and draws the wires, the stateful
+// components, and the port dots, instead of redrawing every adder body and
+// label each time a value changes. Tiles are positioned in canvas pixels, so
+// scrolling reuses them. Any change to the circuit, the zoom, or the drawing
+// style discards them all.
+//
+// The tiles are drawn over the wires and under the other components. So that
+// overlapping components still stack in circuit order, a static component
+// that overlaps one drawn directly is itself drawn directly.
+class StaticLayerCache implements CircuitListener {
+  private static final int TILE_SIZE = 256;
+  private static final long MAX_BYTES = 32L << 20; // beyond the visible tiles
+  private static final int OVERLAP_SLOP = 5; // painting strays this far
+
+  private final Canvas canvas;
+  private Circuit circuit;
+  private double zoom;
+  private double pixelScale;
+  private boolean printerView;
+  private Object gateShape;
+  private volatile boolean stale = true;
+
+  // tiles, keyed by row and column, least recently drawn first, with EMPTY
+  // standing in for tiles that have no cached components at all
+  private static final BufferedImage EMPTY =
+      new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE);
+  private final LinkedHashMap<Long, BufferedImage> tiles =
+      new LinkedHashMap<>(64, 0.75f, true);
+  private long tileBytes; // total size of the tile images
+
+  // port dots of the cached components, which get drawn on every repaint
+  private final HashSet<Location> pins = new HashSet<>();
+
+  // components drawn into the tiles
+  private final HashSet<Component> cached = new HashSet<>();
+
+  StaticLayerCache(Canvas canvas) {
+    this.canvas = canvas;
+  }
+
+  public void circuitChanged(CircuitEvent event) {
+    stale = true;
+  }
+
+  void invalidate() {
+    stale = true;
+  }
+
+  // Returns true if c is drawn in the tiles. Only valid after paint().
+  boolean isCached(Component c) {
+    return cached.contains(c);
+  }
+
+  // Chooses the components to cache: those with a static appearance, except
+  // any overlapping a component that is drawn directly, transitively.
+  private void chooseCached(ComponentDrawContext context) {
+    cached.clear();
+    Graphics g = context.getGraphics();
+    ArrayDeque<Component> direct = new ArrayDeque<>();
+    for (Component c : circuit.getNonWires()) {
+      if (c.getFactory().hasStaticAppearance(c.getAttributeSet(), context))
+        cached.add(c);
+      else
+        direct.add(c);
+    }
+    while (!direct.isEmpty()) {
+      Component d = direct.remove();
+      for (Component c : circuit.getAllIntersecting(
+            d.getBounds(g).expand(OVERLAP_SLOP), g)) {
+        if (cached.remove(c))
+          direct.add(c);
+      }
+    }
+  }
+
+  // Draws the cached components overlapping the clip of g, an unzoomed canvas
+  // graphics, first rendering any tiles that are missing.
+  void paint(Graphics2D g, ComponentDrawContext context) {
+    Circuit circ = context.getCircuit();
+    if (circ != circuit) {
+      if (circuit != null)
+        circuit.removeCircuitWeakListener(null, this);
+      circuit = circ;
+      circuit.addCircuitWeakListener(null, this);
+      stale = true;
+    }
+    double z = canvas.getZoomFactor();
+    double s = g.getTransform().getScaleX(); // e.g. 2.0 on high-DPI screens
+    boolean pv = context.isPrintView();
+    Object shape = context.getGateShape();
+    if (z != zoom || s != pixelScale || pv != printerView
+        || !shape.equals(gateShape)) {
+      zoom = z;
+      pixelScale = s;
+      printerView = pv;
+      gateShape = shape;
+      stale = true;
+    }
+    if (stale) {
+      // Clear the flag first, so changes made while rendering aren't lost.
+      stale = false;
+      tiles.clear();
+      tileBytes = 0;
+      pins.clear();
+      chooseCached(context);
+    }
+
+    Rectangle clip = g.getClipBounds();
+    if (clip == null)
+      clip = new Rectangle(canvas.getSize());
+    int tx0 = Math.floorDiv(clip.x, TILE_SIZE);
+    int ty0 = Math.floorDiv(clip.y, TILE_SIZE);
+    int tx1 = Math.floorDiv(clip.x + clip.width - 1, TILE_SIZE);
+    int ty1 = Math.floorDiv(clip.y + clip.height - 1, TILE_SIZE);
+    for (int ty = ty0; ty <= ty1; ty++) {
+      for (int tx = tx0; tx <= tx1; tx++) {
+        Long key = ((long) ty << 32) | (tx & 0xffffffffL);
+        BufferedImage img = tiles.get(key);
+        if (img == null) {
+          img = render(g, context, tx, ty);
+          tiles.put(key, img);
+          tileBytes += sizeOf(img);
+        }
+        if (img != EMPTY)
+          g.drawImage(img, tx * TILE_SIZE, ty * TILE_SIZE,
+              TILE_SIZE, TILE_SIZE, null);
+      }
+    }
+    trim((tx1 - tx0 + 1) * (ty1 - ty0 + 1));
+  }
+
+  // Discards the least recently drawn tiles until they fit in MAX_BYTES,
+  // keeping the visible ones, which were drawn last. The size of a tile grows
+  // with the square of the pixel scale, so the budget is in bytes rather than
+  // tiles.
+  private void trim(int visible) {
+    Iterator<BufferedImage> it = tiles.values().iterator();
+    while (tileBytes > MAX_BYTES && tiles.size() > visible) {
+      tileBytes -= sizeOf(it.next());
+      it.remove();
+    }
+  }
+
+  private static long sizeOf(BufferedImage img) {
+    return 4L * img.getWidth() * img.getHeight(); // TYPE_INT_ARGB_PRE
+  }
+
+  // Draws the port dots of cached components within the clip, using the
+  // current values. The context's graphics must be zoomed.
+  void paintPins(ComponentDrawContext context) {
+    Rectangle clip = context.getGraphics().getClipBounds();
+    for (Location p : pins) {
+      if (clip == null || clip.intersects(p.getX() - 2, p.getY() - 2, 4, 4))
+        context.drawPin(p);
+    }
+  }
+
+  private BufferedImage render(Graphics2D g, ComponentDrawContext context,
+      int tx, int ty) {
+    int n = (int) Math.ceil(TILE_SIZE * pixelScale);
+    BufferedImage img = new BufferedImage(n, n,
+        BufferedImage.TYPE_INT_ARGB_PRE);
+    Graphics2D base = img.createGraphics();
+    base.setRenderingHints(g.getRenderingHints());
+    base.setFont(g.getFont());
+    base.scale(pixelScale, pixelScale);
+    base.translate(-tx * TILE_SIZE, -ty * TILE_SIZE);
+    base.clipRect(tx * TILE_SIZE, ty * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+    Graphics2D gScaled = (Graphics2D) base.create();
+    if (zoom != 1.0)
+      gScaled.scale(zoom, zoom);
+    gScaled.setColor(Color.BLACK);
+
+    ComponentDrawContext tileContext = new ComponentDrawContext(canvas,
+        circuit, context.getCircuitState(), base, gScaled, printerView);
+    tileContext.setDeferredPins(pins);
+    boolean[] drawn = new boolean[1];
+    circuit.draw(tileContext, null, false, c -> {
+      boolean ok = cached.contains(c);
+      drawn[0] |= ok;
+      return ok;
+    });
+    gScaled.dispose();
+    base.dispose();
+    return drawn[0] ? img : EMPTY;
+  }
+}
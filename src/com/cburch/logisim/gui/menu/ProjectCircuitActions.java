@@ -39,6 +39,7 @@ import java.awt.event.WindowFocusListener;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.ButtonGroup;
 import javax.swing.JDialog;
@@ -48,6 +49,8 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
 import javax.swing.JTextField;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
 
 import com.cburch.hdl.HdlModel;
 import com.cburch.logisim.analyze.gui.Analyzer;
@@ -66,6 +69,7 @@ import com.cburch.logisim.std.hdl.VhdlContent;
 import com.cburch.logisim.std.wiring.Pin;
 import com.cburch.logisim.tools.AddTool;
 import com.cburch.logisim.tools.Library;
+import com.cburch.logisim.util.UniquelyNamedThread;
 
 public class ProjectCircuitActions {
   private static void analyzeError(Project proj, String message) {
@@ -97,8 +101,45 @@ public class ProjectCircuitActions {
     }
 
     // As a backup measure, we compute a truth table.
-    Analyze.computeTable(analyzer.getModel(), proj, circuit, pinNames);
-    analyzer.setSelectedTab(Analyzer.TABLE_TAB);
+    computeTable(proj, circuit, analyzer, pinNames);
+  }
+
+  // Simulating every row can take a while, so it happens on a separate thread
+  // with a progress monitor, and the finished table is handed to the analyzer
+  // back on the event thread.
+  private static void computeTable(Project proj, Circuit circuit,
+      Analyzer analyzer, Map<Instance, String> pinNames) {
+    ProgressMonitor monitor = new ProgressMonitor(proj.getFrame(),
+        S.get("analyzeTableProgress"), null, 0, 1);
+    AtomicBoolean canceled = new AtomicBoolean();
+    Thread t = new UniquelyNamedThread(() -> {
+      Analyze.Table table;
+      try {
+        table = Analyze.computeTable(proj, circuit, pinNames, (done, total) -> {
+          SwingUtilities.invokeLater(() -> {
+            monitor.setMaximum(total);
+            monitor.setProgress(done);
+            if (monitor.isCanceled())
+              canceled.set(true);
+          });
+          return !canceled.get();
+        });
+      } catch (RuntimeException e) {
+        SwingUtilities.invokeLater(() -> {
+          monitor.close();
+          analyzeError(proj, e.toString());
+        });
+        return;
+      }
+      SwingUtilities.invokeLater(() -> {
+        monitor.close();
+        if (table == null)
+          return;
+        table.applyTo(analyzer.getModel());
+        analyzer.setSelectedTab(Analyzer.TABLE_TAB);
+      });
+    }, "TruthTable");
+    t.start();
   }
 
   public static void doAddCircuit(Project proj) {
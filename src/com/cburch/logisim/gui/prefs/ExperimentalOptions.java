@@ -47,6 +47,12 @@ class ExperimentalOptions extends OptionsPanel {
   private PrefOptionList accel;
   // private JLabel dualScreenRestart = new JLabel();
   private PrefOptionList dualScreen;
+  private JLabel simQueueRestart = new JLabel();
+  private PrefOptionList simQueue;
+  private PrefBoolean simParallel;
+  private PrefBoolean canvasCache;
+  private PrefBoolean vhdlInterpreter;
+  private PrefBoolean vhdlBatch;
 
   public ExperimentalOptions(PreferencesFrame window) {
     super(window);
@@ -97,10 +103,56 @@ class ExperimentalOptions extends OptionsPanel {
     JPanel dualScreenPanel2 = new JPanel();
     dualScreenPanel2.add(dualScreenPanel);
 
+    simQueue = new PrefOptionList(AppPreferences.SIM_EVENT_QUEUE,
+        S.getter("simQueueLabel"), new PrefOption[] {
+          new PrefOption(AppPreferences.SIM_QUEUE_LINKED,
+              S.getter("simQueueLinked")),
+          new PrefOption(AppPreferences.SIM_QUEUE_SPLAY,
+              S.getter("simQueueSplay")),
+          new PrefOption(AppPreferences.SIM_QUEUE_HEAP,
+              S.getter("simQueueHeap")),
+          new PrefOption(AppPreferences.SIM_QUEUE_WHEEL,
+              S.getter("simQueueWheel")), });
+
+    JPanel simQueuePanel = new JPanel(new BorderLayout());
+    simQueuePanel.add(simQueue.getJLabel(), BorderLayout.LINE_START);
+    simQueuePanel.add(simQueue.getJComboBox(), BorderLayout.CENTER);
+    simQueuePanel.add(simQueueRestart, BorderLayout.PAGE_END);
+    simQueueRestart.setFont(simQueueRestart.getFont().deriveFont(Font.ITALIC));
+    simQueueRestart.setVisible(false);
+    simQueue.getJComboBox().addActionListener((ae) -> simQueueRestart.setVisible(true));
+    JPanel simQueuePanel2 = new JPanel();
+    simQueuePanel2.add(simQueuePanel);
+
+    simParallel = new PrefBoolean(AppPreferences.SIM_PARALLEL,
+        S.getter("simParallel"));
+    JPanel simParallelPanel = new JPanel();
+    simParallelPanel.add(simParallel);
+
+    canvasCache = new PrefBoolean(AppPreferences.CANVAS_CACHE,
+        S.getter("canvasCache"));
+    JPanel canvasCachePanel = new JPanel();
+    canvasCachePanel.add(canvasCache);
+
+    vhdlInterpreter = new PrefBoolean(AppPreferences.VHDL_INTERPRETER,
+        S.getter("vhdlInterpreter"));
+    JPanel vhdlInterpreterPanel = new JPanel();
+    vhdlInterpreterPanel.add(vhdlInterpreter);
+
+    vhdlBatch = new PrefBoolean(AppPreferences.VHDL_BATCH,
+        S.getter("vhdlBatch"));
+    JPanel vhdlBatchPanel = new JPanel();
+    vhdlBatchPanel.add(vhdlBatch);
+
     setLayout(new BoxLayout(this, BoxLayout.PAGE_AXIS));
     add(Box.createGlue());
     add(accelPanel2);
     add(dualScreenPanel2);
+    add(simQueuePanel2);
+    add(simParallelPanel);
+    add(canvasCachePanel);
+    add(vhdlInterpreterPanel);
+    add(vhdlBatchPanel);
     add(Box.createGlue());
   }
 
@@ -119,6 +171,12 @@ class ExperimentalOptions extends OptionsPanel {
     accel.localeChanged();
     accelRestart.setText(S.get("accelRestartLabel"));
     dualScreen.localeChanged();
+    simQueue.localeChanged();
+    simQueueRestart.setText(S.get("simQueueRestartLabel"));
+    simParallel.localeChanged();
+    canvasCache.localeChanged();
+    vhdlInterpreter.localeChanged();
+    vhdlBatch.localeChanged();
     // dualScreenRestart.setText(S.get("dualScreenRestartLabel"));
   }
 }
@@ -0,0 +1,337 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.gui.start;
+import static com.cburch.logisim.gui.start.Strings.S;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.cburch.logisim.circuit.Analyze;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.LoadCanceledByUser;
+import com.cburch.logisim.file.LoadFailedException;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.util.UniquelyNamedThread;
+
+// Runs many headless simulations in one JVM, for "-batch manifest". Each
+// line of the manifest names a circuit file, followed by optional key=value
+// settings:
+//
+//   # comment
+//   adder.circ circuit=main ticks=1000
+//   cpu.circ load=prog.hex halt=done ticks=500000
+//
+// Keys are circuit (default: the main circuit), load (a memory image for the
+// first RAM found, as with -load), ticks (a tick limit), and halt (the label
+// of the output pin that stops the simulation, default "halt"). Relative
+// paths are resolved against the manifest's directory, and a token can be
+// double-quoted if it contains spaces. Every job gets its own Loader,
+// LogisimFile, Project and CircuitState, so jobs share nothing but
+// immutable library code and can be simulated on a pool of threads. Each
+// job loads its file in its own task, just before simulating it, and keeps
+// it only until the job is done, so at most one file per thread is in
+// memory at a time. Loading itself is serialized by LOAD_LOCK, since it
+// updates LibraryManager's unsynchronized tables, but one thread can load
+// while the others simulate.
+//
+// Results are printed to stdout, one JSON object per job, in manifest order.
+class BatchRunner {
+
+  private static class Job {
+    int index;
+    File file;
+    String circuit;
+    File load;
+    long ticks = -1;
+    String halt = "halt";
+  }
+
+  private static class Result {
+    String status = "error";
+    long ticks;
+    long loadNanos;
+    long simNanos;
+    Map<String, Value> outputs = new TreeMap<>();
+    String message;
+  }
+
+  private static final Object LOAD_LOCK = new Object();
+
+  static int run(File manifest, Map<String, String> substitutions) {
+    ArrayList<Job> jobs;
+    try {
+      jobs = parse(manifest);
+    } catch (IOException e) {
+      System.err.println(S.fmt("batchManifestError", manifest, e.getMessage())); // OK
+      return -1;
+    }
+
+    int threads = Math.max(1, Math.min(jobs.size(),
+          Runtime.getRuntime().availableProcessors()));
+    ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new UniquelyNamedThread(r, "BatchRunner");
+      t.setDaemon(true);
+      return t;
+    });
+    ArrayList<Future<Result>> results = new ArrayList<>();
+    for (Job job : jobs)
+      results.add(pool.submit(() -> simulate(job, substitutions)));
+
+    int ret = 0;
+    for (int i = 0; i < jobs.size(); i++) {
+      Job job = jobs.get(i);
+      Result r;
+      try {
+        r = results.get(i).get();
+        results.set(i, null);
+      } catch (InterruptedException | ExecutionException e) {
+        r = new Result();
+        r.message = String.valueOf(e.getCause() != null ? e.getCause() : e);
+      }
+      if (r.status.equals("error") || r.status.equals("oscillating"))
+        ret = 1;
+      System.out.println(toJson(job, r)); // OK
+    }
+    pool.shutdown();
+    return ret;
+  }
+
+  private static Result simulate(Job job, Map<String, String> substitutions) {
+    Result r = new Result();
+    LogisimFile.FileWithSimulations loaded;
+    synchronized (LOAD_LOCK) {
+      long start = System.nanoTime();
+      try {
+        loaded = new Loader(null).openLogisimFile(job.file, substitutions);
+      } catch (LoadFailedException | LoadCanceledByUser e) {
+        r.message = S.fmt("ttyLoadError", job.file.getName());
+        return r;
+      } finally {
+        r.loadNanos = System.nanoTime() - start;
+      }
+    }
+    long start = System.nanoTime();
+    try {
+      Project proj = new Project(loaded);
+      LogisimFile file = loaded.file;
+      Circuit circuit = job.circuit == null ? file.getMainCircuit()
+          : file.getCircuit(job.circuit);
+      if (circuit == null) {
+        r.message = S.fmt("batchNoCircuitError", job.circuit);
+        return r;
+      }
+      Map<Instance, String> pinNames = Analyze.getPinLabels(circuit);
+      ArrayList<Instance> outputPins = new ArrayList<>();
+      Instance haltPin = null;
+      for (Map.Entry<Instance, String> entry : pinNames.entrySet()) {
+        Instance pin = entry.getKey();
+        if (Pin.FACTORY.isInputPin(pin))
+          continue;
+        if (entry.getValue().equals(job.halt))
+          haltPin = pin;
+        else
+          outputPins.add(pin);
+      }
+      if (haltPin == null && job.ticks < 0) {
+        r.message = S.fmt("batchNoLimitError", job.halt);
+        return r;
+      }
+
+      CircuitState circState = CircuitState.createRootState(proj, circuit);
+      Propagator prop = circState.getPropagator();
+      prop.propagate();
+      if (job.load != null && !TtyInterface.loadRam(circState, job.load)) {
+        r.message = S.get("loadNoRamError");
+        return r;
+      }
+
+      long tick = 0;
+      while (true) {
+        if (haltPin != null && Pin.FACTORY.getValue(
+              circState.getInstanceState(haltPin)) == Value.TRUE) {
+          r.status = "halted";
+          break;
+        }
+        if (prop.isOscillating()) {
+          r.status = "oscillating";
+          break;
+        }
+        if (job.ticks >= 0 && tick >= job.ticks) {
+          r.status = "limit";
+          break;
+        }
+        tick++;
+        prop.toggleClocks();
+        prop.propagate();
+      }
+      r.ticks = tick;
+      for (Instance pin : outputPins)
+        r.outputs.put(pinNames.get(pin),
+            Pin.FACTORY.getValue(circState.getInstanceState(pin)));
+    } catch (IOException e) {
+      r.message = S.get("loadIoError") + ": " + e.toString();
+    } catch (RuntimeException e) {
+      r.message = e.toString();
+    } finally {
+      r.simNanos = System.nanoTime() - start;
+    }
+    return r;
+  }
+
+  private static ArrayList<Job> parse(File manifest) throws IOException {
+    ArrayList<Job> jobs = new ArrayList<>();
+    File dir = manifest.getAbsoluteFile().getParentFile();
+    try (BufferedReader in = new BufferedReader(new FileReader(manifest))) {
+      String line;
+      int lineno = 0;
+      while ((line = in.readLine()) != null) {
+        lineno++;
+        ArrayList<String> tokens = tokenize(line);
+        if (tokens.isEmpty())
+          continue;
+        Job job = new Job();
+        job.index = jobs.size() + 1;
+        job.file = resolve(dir, tokens.get(0));
+        for (String tok : tokens.subList(1, tokens.size())) {
+          int eq = tok.indexOf('=');
+          String key = eq < 0 ? tok : tok.substring(0, eq);
+          String val = eq < 0 ? "" : tok.substring(eq + 1);
+          try {
+            if (key.equals("circuit"))
+              job.circuit = val;
+            else if (key.equals("load"))
+              job.load = resolve(dir, val);
+            else if (key.equals("ticks"))
+              job.ticks = Long.parseLong(val);
+            else if (key.equals("halt"))
+              job.halt = val;
+            else
+              throw new IOException(S.fmt("batchKeyError", lineno, key));
+          } catch (NumberFormatException e) {
+            throw new IOException(S.fmt("batchValueError", lineno, tok));
+          }
+        }
+        jobs.add(job);
+      }
+    }
+    return jobs;
+  }
+
+  private static File resolve(File dir, String name) {
+    File f = new File(name);
+    return f.isAbsolute() ? f : new File(dir, name);
+  }
+
+  private static ArrayList<String> tokenize(String line) {
+    ArrayList<String> ret = new ArrayList<>();
+    StringBuilder tok = null;
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (!quoted && tok == null && c == '#')
+        break;
+      if (c == '"') {
+        quoted = !quoted;
+        if (tok == null)
+          tok = new StringBuilder();
+      } else if (!quoted && Character.isWhitespace(c)) {
+        if (tok != null)
+          ret.add(tok.toString());
+        tok = null;
+      } else {
+        if (tok == null)
+          tok = new StringBuilder();
+        tok.append(c);
+      }
+    }
+    if (tok != null)
+      ret.add(tok.toString());
+    return ret;
+  }
+
+  private static String toJson(Job job, Result r) {
+    StringBuilder s = new StringBuilder("{");
+    s.append("\"job\":").append(job.index);
+    s.append(",\"file\":"); quote(s, job.file.getPath());
+    if (job.circuit != null) {
+      s.append(",\"circuit\":"); quote(s, job.circuit);
+    }
+    s.append(",\"status\":"); quote(s, r.status);
+    s.append(",\"ticks\":").append(r.ticks);
+    s.append(",\"loadMillis\":").append(r.loadNanos / 1000000);
+    s.append(",\"simMillis\":").append(r.simNanos / 1000000);
+    s.append(",\"outputs\":{");
+    String sep = "";
+    for (Map.Entry<String, Value> e : r.outputs.entrySet()) {
+      s.append(sep);
+      quote(s, e.getKey());
+      s.append(':');
+      quote(s, e.getValue().toHexString());
+      sep = ",";
+    }
+    s.append('}');
+    if (r.message != null) {
+      s.append(",\"message\":"); quote(s, r.message);
+    }
+    return s.append('}').toString();
+  }
+
+  private static void quote(StringBuilder s, String str) {
+    s.append('"');
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c == '"' || c == '\\')
+        s.append('\\').append(c);
+      else if (c < 0x20)
+        s.append(String.format("\\u%04x", (int) c));
+      else
+        s.append(c);
+    }
+    s.append('"');
+  }
+
+}
@@ -84,8 +84,10 @@ public class Startup {
     options.put("-nosplash", 0);
     options.put("-clearprefs", 0);
     options.put("-questa", ONEPARAM);
+    options.put("-vhdlinterp", ONEPARAM);
     options.put("-sub", TWOPARAM);
     options.put("-test", TWOPARAM); // is this a tty option? what is this?
+    options.put("-testrate", 0);
 
     options.put("-version", HEADLESS);
     options.put("-help", HEADLESS);
@@ -94,6 +96,7 @@ public class Startup {
     options.put("-tty", HEADLESS | ONEPARAM | NEEDFILE);
     options.put("-circuit", HEADLESS | ONEPARAM);
     options.put("-load", HEADLESS | ONEPARAM);
+    options.put("-batch", HEADLESS | ONEPARAM);
 
     options.put("-?", HEADLESS); // undocumented synonym for -help
     options.put("-clearprops", 0); // obsolete synonym for -clearprefs
@@ -200,6 +203,10 @@ public class Startup {
             ret.ttyFormat |= TtyInterface.FORMAT_TABLE_CSV;
           else if (fmt.equals("tabs"))
             ret.ttyFormat |= TtyInterface.FORMAT_TABLE_TABBED;
+          else if (fmt.equals("flat"))
+            ret.ttyFormat |= TtyInterface.FORMAT_FLATTEN;
+          else if (fmt.equals("compile"))
+            ret.ttyFormat |= TtyInterface.FORMAT_COMPILE;
           else if (fmt.startsWith("choose:")) {
             ret.ttyFormat |= TtyInterface.FORMAT_RANDOMIZE;
             String[] p = fmt.split(":");
@@ -240,6 +247,10 @@ public class Startup {
         if (ret.loadFile != null)
           fail(S.get("loadMultipleError"));
         ret.loadFile = new File(param0);
+      } else if (arg.equals("-batch")) {
+        if (ret.batchFile != null)
+          fail(S.get("batchMultipleError"));
+        ret.batchFile = new File(param0);
       } else if (arg.equals("-empty")) {
         if (ret.templFile != null || ret.templEmpty || ret.templPlain)
           fail(S.get("argOneTemplateError"));
@@ -317,6 +328,8 @@ public class Startup {
         ret.testVector = param1;
         ret.showSplash = false;
         ret.exitAfterStartup = true;
+      } else if (arg.equals("-testrate")) {
+        ret.testRate = true;
       } else if (arg.equals("-circuit")) {
         ret.circuitToTest = param0;
       } else if (arg.equals("-clearprefs") || arg.equals("-clearprops")) {
@@ -332,6 +345,13 @@ public class Startup {
           AppPreferences.QUESTA_VALIDATION.set(false);
         else
           fail(S.get("argQuestaOptionError"));
+      } else if (arg.equals("-vhdlinterp")) {
+        if (param0.equals("yes"))
+          AppPreferences.VHDL_INTERPRETER.set(true);
+        else if (param0.equals("no"))
+          AppPreferences.VHDL_INTERPRETER.set(false);
+        else
+          fail(S.get("argVhdlInterpOptionError"));
       } else if (arg.equals("-help") || arg.equals("-?")) {
         // already handled above
       }
@@ -354,8 +374,10 @@ public class Startup {
     System.err.println("   " + S.get("argAccentsOption")); // OK
     System.err.println("   " + S.get("argClearOption")); // OK
     System.err.println("   " + S.get("argQuestaOption")); // OK
+    System.err.println("   " + S.get("argVhdlInterpOption")); // OK
     System.err.println("   " + S.get("argSubOption")); // OK
     System.err.println("   " + S.get("argTestOption")); // OK
+    System.err.println("   " + S.get("argTestRateOption")); // OK
     System.err.println(); // OK
     System.err.println(S.get("argTTYOptionHeader")); // OK
     System.err.println("   " + S.get("argVersionOption")); // OK
@@ -366,6 +388,7 @@ public class Startup {
     System.err.println("   " + S.get("argTtyOption")); // OK
     System.err.println("   " + S.get("argCircuitOption")); // OK
     System.err.println("   " + S.get("argLoadOption")); // OK
+    System.err.println("   " + S.get("argBatchOption")); // OK
     System.exit(0);
   }
 
@@ -465,10 +488,12 @@ public class Startup {
   private boolean templPlain = false;
   private ArrayList<File> filesToOpen = new ArrayList<>();
   private String testVector = null;
+  private boolean testRate = false;
   private String circuitToTest = null;
   private boolean exitAfterStartup = false;
   private boolean showSplash;
   private File loadFile;
+  private File batchFile;
   private HashMap<String, String> substitutions = new HashMap<>();
   private int ttyFormat = 0;
   private int ttyRandomHead, ttyRandomBody, ttyRandomTail;
@@ -508,6 +533,10 @@ public class Startup {
     return loadFile;
   }
 
+  File getBatchFile() {
+    return batchFile;
+  }
+
   String getCircuitToTest() {
     return circuitToTest;
   }
@@ -624,7 +653,7 @@ public class Startup {
           if (testVector != null) {
             Project proj = ProjectActions.doOpenNoWindow(monitor,
                 fileToOpen, substitutions);
-            proj.doTestVector(testVector, circuitToTest);
+            proj.doTestVector(testVector, circuitToTest, testRate);
           } else {
             ProjectActions.doOpen(monitor, fileToOpen, substitutions);
           }
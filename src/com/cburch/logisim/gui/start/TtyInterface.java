@@ -36,8 +36,10 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
@@ -46,6 +48,7 @@ import com.cburch.logisim.analyze.model.Var;
 import com.cburch.logisim.circuit.Analyze;
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.FlatCircuit;
 import com.cburch.logisim.circuit.Propagator;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.BitWidth;
@@ -142,6 +145,13 @@ public class TtyInterface {
     System.out.println(S.fmt("ttySpeedMsg", hertzStr, tickCount, elapse));
   }
 
+  private static void displayValueCache() {
+    long[] cache = Value.getCacheStatistics();
+    long lookups = cache[0] + cache[1];
+    System.out.println(S.fmt("ttyValueCacheMsg", cache[0], cache[1],
+          lookups == 0 ? "-" : String.format("%.1f", 100.0 * cache[0] / lookups)));
+  }
+
   private static void displayStatistics(LogisimFile file) {
     FileStatistics stats = FileStatistics.compute(file,
         file.getMainCircuit());
@@ -174,6 +184,30 @@ public class TtyInterface {
         Integer.valueOf(total.getUniqueCount()),
         Integer.valueOf(total.getRecursiveCount()),
         S.get("statsTotalWith"));
+
+    // Memory needed for wire and port values by each simulation state, i.e.
+    // for each instance of each circuit within the main circuit.
+    System.out.printf("\n%s\n", S.get("statsStateMemory")); // OK
+    long totalBytes = 0;
+    int totalStates = 0;
+    for (Circuit circ : file.getCircuits()) {
+      int states = 0;
+      if (circ == file.getMainCircuit()) {
+        states = 1;
+      } else {
+        for (FileStatistics.Count count : stats.getCounts())
+          if (count.getFactory() == circ.getSubcircuitFactory())
+            states = count.getRecursiveCount();
+      }
+      if (states == 0)
+        continue;
+      long bytes = circ.getValueBytesPerState();
+      System.out.printf("%d\t%d\t%s\n", bytes, states, circ.getName()); // OK
+      totalBytes += bytes * states;
+      totalStates += states;
+    }
+    System.out.printf("%d\t%d\t%s\n", totalBytes, totalStates, // OK
+        S.get("statsStateMemoryTotal"));
   }
 
   private static boolean displayTableRow(boolean showHeader, ArrayList<Value> prevOutputs,
@@ -252,24 +286,41 @@ public class TtyInterface {
     }
   }
 
-  private static boolean loadRam(CircuitState circState, File loadFile)
+  static boolean loadRam(CircuitState circState, File loadFile)
       throws IOException {
     if (loadFile == null)
       return false;
+    return loadRam(circState, loadFile, new HashMap<>());
+  }
 
+  // The file is decoded only once for each shape of RAM, into the map. Each
+  // RAM then copies from there, which shares pages rather than copying them.
+  private static boolean loadRam(CircuitState circState, File loadFile,
+      HashMap<Long, MemContents> loaded) throws IOException {
     boolean found = false;
     for (Component comp : circState.getCircuit().getNonWires()) {
       if (comp.getFactory() instanceof Ram) {
         Ram ramFactory = (Ram) comp.getFactory();
         InstanceState ramState = circState.getInstanceState(comp);
         MemContents m = ramFactory.getContents(ramState);
-        HexFile.open(m, loadFile);
+        long shape = ((long)m.getLogLength() << 32) | m.getValueWidth();
+        MemContents image;
+        if (loaded.containsKey(shape)) {
+          image = loaded.get(shape);
+        } else {
+          image = MemContents.create(m.getLogLength(), m.getValueWidth());
+          if (!HexFile.open(image, loadFile))
+            image = null; // as before, such RAMs are left unchanged
+          loaded.put(shape, image);
+        }
+        if (image != null)
+          m.copyFrom(0, image, 0, (int)(image.getLastOffset() + 1));
         found = true;
       }
     }
 
     for (CircuitState sub : circState.getSubstates()) {
-      found |= loadRam(sub, loadFile);
+      found |= loadRam(sub, loadFile, loaded);
     }
     return found;
   }
@@ -297,6 +348,9 @@ public class TtyInterface {
   }
 
   public static void run(Startup args) {
+    if (args.getBatchFile() != null)
+      System.exit(BatchRunner.run(args.getBatchFile(), args.getSubstitutions()));
+
     File fileToOpen = args.getFilesToOpen().get(0);
     Loader loader = new Loader(null);
     LogisimFile.FileWithSimulations file;
@@ -364,11 +418,11 @@ public class TtyInterface {
 
   static int doTty(int format, File loadfile, LogisimFile.FileWithSimulations file, String circuitToTest,
       int head, int body, int tail) {
-    if ((format & FORMAT_STATISTICS) != 0) {
-      format &= ~FORMAT_STATISTICS;
+    // The statistics flag stays set, so that runSimulation() also reports
+    // on the Value cache afterwards.
+    if ((format & FORMAT_STATISTICS) != 0)
       displayStatistics(file.file);
-    }
-    if (format == 0) { // no simulation remaining to perform, so just exit
+    if ((format & ~FORMAT_STATISTICS) == 0) { // no simulation remaining to perform, so just exit
       System.exit(0);
     }
 
@@ -400,7 +454,27 @@ public class TtyInterface {
       return 0;
     }
 
+    if ((format & FORMAT_FLATTEN) != 0) {
+      // Simulate a flattened copy instead, on the corresponding pins.
+      FlatCircuit flat = FlatCircuit.create(circuit);
+      List<Component> top = Collections.emptyList();
+      HashMap<Instance, String> flatNames = new HashMap<>();
+      for (int i = 0; i < outputPins.size(); i++) {
+        Instance pin = outputPins.get(i);
+        Instance copy = Instance.getInstanceFor(
+            flat.getComponent(top, pin.getComponent()));
+        flatNames.put(copy, pinNames.get(pin));
+        outputPins.set(i, copy);
+        if (pin == haltPin)
+          haltPin = copy;
+      }
+      pinNames = flatNames;
+      circuit = flat.getCircuit();
+    }
+
     CircuitState circState = CircuitState.createRootState(proj, circuit);
+    if ((format & FORMAT_COMPILE) != 0)
+      circState.getPropagator().setCompiled(true);
     // we have to do our initial propagation before the simulation starts -
     // it's necessary to populate the circuit with substates.
     circState.getPropagator().propagate();
@@ -427,6 +501,7 @@ public class TtyInterface {
     boolean showSpeed = (format & FORMAT_SPEED) != 0;
     boolean showTty = (format & FORMAT_TTY) != 0;
     boolean showHalt = (format & FORMAT_HALT) != 0;
+    boolean showStats = (format & FORMAT_STATISTICS) != 0;
 
     ArrayList<InstanceState> keyboardStates = null;
     StdinThread stdinThread = null;
@@ -509,6 +584,8 @@ public class TtyInterface {
     if (showSpeed) {
       displaySpeed(tickCount, elapse);
     }
+    if (showStats)
+      displayValueCache();
     return retCode;
   }
 
@@ -704,6 +781,8 @@ public class TtyInterface {
   public static final int FORMAT_TABLE_BIN = 128;
   public static final int FORMAT_TABLE_HEX = 256;
   public static final int FORMAT_RANDOMIZE = 256;
+  public static final int FORMAT_FLATTEN = 512;
+  public static final int FORMAT_COMPILE = 1024;
 
   private static boolean lastIsNewline = true;
 }
@@ -42,11 +42,33 @@ import javax.swing.SwingUtilities;
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.data.TestException;
 import com.cburch.logisim.data.TestVector;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.util.EventSourceWeakSupport;
 
 class Model {
 
+  // One row of the results table.
+  static class Row {
+    final int index; // position in the vector
+    final Value[] data; // null if the row could not be read
+    final TestException err;
+    final boolean tested;
+
+    Row(int index, Value[] data, TestException err, boolean tested) {
+      this.index = index;
+      this.data = data;
+      this.err = err;
+      this.tested = tested;
+    }
+  }
+
+  // For a streamed vector, at most this many failures, and about this many
+  // of the most recent passes, are kept for display. Beyond that only the
+  // counts grow, so testing millions of rows doesn't need memory for them
+  // all. A vector loaded whole is in memory anyway, and keeps every row.
+  static final int MAX_SHOWN = 10000;
+
   private class UpdateResultSort implements Runnable {
 
     public void run() {
@@ -58,18 +80,20 @@ class Model {
   private boolean selected = false;
   private Project project;
   private Circuit circuit;
-  private boolean running, paused;
+  private boolean running, paused, done;
   private TestThread tester;
-  private int numPass = 0, numFail = 0;
+  private int numTested = 0; // rows handed over by tester, guarded by this
+  private int numPass = 0, numFail = 0; // rows sorted, used from EDT
   private TestVector vec = null;
 
-  private TestException results[];
+  // rows from the tester that are not yet sorted, guarded by this
+  private ArrayList<Row> pending = new ArrayList<Row>();
 
   private UpdateResultSort myUpdateResultSort = new UpdateResultSort();
 
-  private ArrayList<Integer> failed = new ArrayList<Integer>();
+  private ArrayList<Row> failed = new ArrayList<Row>();
 
-  private ArrayList<Integer> passed = new ArrayList<Integer>();
+  private ArrayList<Row> passed = new ArrayList<Row>();
 
   public Model(Project proj, Circuit circuit) {
     listeners = new EventSourceWeakSupport<ModelListener>();
@@ -88,9 +112,11 @@ class Model {
   public void clearResults() {
     stop();
     synchronized (this) {
-      if (vec == null || results == null)
+      if (vec == null)
         return;
-      numPass = numFail = 0;
+      numTested = numPass = numFail = 0;
+      done = false;
+      pending.clear();
       failed.clear();
       passed.clear();
     }
@@ -131,14 +157,37 @@ class Model {
     return project;
   }
 
-  public TestException[] getResults() {
-    return results;
+  // Failures come first, then passes, then, for a vector loaded whole, the
+  // rows not yet tested.
+  public Row getRow(int i) {
+    if (i < failed.size())
+      return failed.get(i);
+    i -= failed.size();
+    if (i < passed.size())
+      return passed.get(i);
+    i -= passed.size();
+    int idx = numPass + numFail + i;
+    return new Row(idx, vec.data.get(idx), null, false);
+  }
+
+  public int getRowCount() {
+    if (vec == null)
+      return 0;
+    int n = failed.size() + passed.size();
+    if (vec.data != null)
+      n += Math.max(0, vec.data.size() - (numPass + numFail));
+    return n;
   }
 
   public TestVector getVector() {
     return vec;
   }
 
+  // True once every row of the vector has been tested.
+  public boolean isDone() {
+    return done;
+  }
+
   public boolean isPaused() {
     return paused;
   }
@@ -151,6 +200,26 @@ class Model {
     return selected;
   }
 
+  void setDone(TestVector v) {
+    synchronized (this) {
+      if (v != vec)
+        return;
+      done = true;
+    }
+    SwingUtilities.invokeLater(() -> fireTestingChanged());
+  }
+
+  // Records a problem reading the vector as a failure of the next row.
+  void setError(TestVector v, TestException err) {
+    synchronized (this) {
+      if (v != vec)
+        return;
+      pending.add(new Row(numTested++, null, err, true));
+      done = true;
+    }
+    SwingUtilities.invokeLater(myUpdateResultSort);
+  }
+
   public void setPaused(boolean paused) {
     synchronized (this) {
       if (running && tester != null)
@@ -160,16 +229,13 @@ class Model {
     fireTestingChanged();
   }
 
-  public boolean setResult(TestVector v, int idx, TestException err) {
+  public boolean setResult(TestVector v, int idx, Value[] data,
+      TestException err) {
     synchronized (this) {
-      if (v != vec || idx < 0 || idx >= results.length
-          || idx != numPass + numFail)
+      if (v != vec || idx != numTested)
         return false;
-      results[idx] = err;
-      if (err == null)
-        numPass++;
-      else
-        numFail++;
+      numTested++;
+      pending.add(new Row(idx, data, err, true));
     }
     if (!SwingUtilities.isEventDispatchThread()) {
       SwingUtilities.invokeLater(myUpdateResultSort);
@@ -193,22 +259,15 @@ class Model {
     stop();
     synchronized (this) {
       vec = v;
-      results = (v != null ? new TestException[v.data.size()] : null);
-      numPass = numFail = 0;
+      numTested = numPass = numFail = 0;
+      done = false;
+      pending.clear();
       failed.clear();
       passed.clear();
     }
     fireVectorChanged();
   }
 
-  public int sortedIndex(int i) {
-    if (i < failed.size())
-      return (failed.get(i)).intValue();
-    if (i < failed.size() + passed.size())
-      return (passed.get(i - failed.size())).intValue();
-    return i;
-  }
-
   public void start() throws TestException {
     synchronized (this) {
       if (vec == null)
@@ -238,14 +297,27 @@ class Model {
   }
 
   private void updateResultSort() {
-    if (vec == null)
-      return;
-    for (int i = failed.size() + passed.size(); i < numPass + numFail; i++) {
-      if (results[i] == null)
-        passed.add(new Integer(i));
-      else
-        failed.add(new Integer(i));
+    Row[] rows;
+    boolean bounded;
+    synchronized (this) {
+      if (vec == null || pending.isEmpty())
+        return;
+      rows = pending.toArray(new Row[pending.size()]);
+      pending.clear();
+      bounded = vec.isStreamed();
+    }
+    for (Row row : rows) {
+      if (row.err == null) {
+        numPass++;
+        passed.add(row);
+      } else {
+        numFail++;
+        if (!bounded || failed.size() < MAX_SHOWN)
+          failed.add(row);
+      }
     }
+    if (bounded && passed.size() > 2 * MAX_SHOWN)
+      passed.subList(0, passed.size() - MAX_SHOWN).clear();
     fireTestResultsChanged();
   }
 
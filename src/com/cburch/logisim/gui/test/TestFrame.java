@@ -88,9 +88,8 @@ public class TestFrame extends LFrame.SubWindowWithSimulation {
           return;
         }
         try {
-          TestVector vec = new TestVector(file);
+          TestVector vec = TestVector.open(file);
           finished = 0;
-          count = vec.data.size();
           getModel().setVector(vec);
           curFile = file;
           getModel().setPaused(true);
@@ -166,7 +165,7 @@ public class TestFrame extends LFrame.SubWindowWithSimulation {
       if (getModel().isRunning() && !getModel().isPaused()) {
         run.setEnabled(false);
         stop.setEnabled(true);
-      } else if (getModel().getVector() != null && finished != count) {
+      } else if (getModel().getVector() != null && !getModel().isDone()) {
         run.setEnabled(true);
         stop.setEnabled(false);
       } else {
@@ -224,7 +223,7 @@ public class TestFrame extends LFrame.SubWindowWithSimulation {
   private Map<Circuit, Model> modelMap = new HashMap<Circuit, Model>();
   private MyListener myListener = new MyListener();
   private WindowMenuManager windowManager;
-  private int finished, count;
+  private int finished;
 
   private File curFile;
   private JFileChooser chooser = new JFileChooser();
@@ -125,16 +125,12 @@ class TestPanel extends JPanel implements ValueTable.Model {
   }
 
   public int getRowCount() {
-    TestVector vec = getModel().getVector();
-    return vec == null ? 0 : vec.data.size();
+    return getModel().getRowCount();
   }
 
   public void getRowData(int firstRow, int numRows,
       ValueTable.Cell[][] rowData) {
     Model model = getModel();
-    TestException[] results = model.getResults();
-    int numPass = model.getPass();
-    int numFail = model.getFail();
     TestVector vec = model.getVector();
     int columns = vec.columnName.length;
     String msg[] = new String[columns];
@@ -143,13 +139,13 @@ class TestPanel extends JPanel implements ValueTable.Model {
     String failMsg = S.get("failStatus");
 
     for (int i = firstRow; i < firstRow + numRows; i++) {
-      int row = model.sortedIndex(i);
-      Value[] data = vec.data.get(row);
+      Model.Row row = model.getRow(i);
+      Value[] data = row.data;
       String rowmsg = null;
       String status = null;
       boolean failed = false;
-      if (row < numPass + numFail) {
-        TestException err = results[row];
+      if (row.tested) {
+        TestException err = row.err;
         if (err != null && err instanceof FailException) {
           failed = true;
           for (FailException e = (FailException) err; e != null; e = e
@@ -170,7 +166,7 @@ class TestPanel extends JPanel implements ValueTable.Model {
 
       for (int col = 0; col < columns; col++) {
         rowData[i - firstRow][col + 1] = new ValueTable.Cell(
-            altdata[col] != null ? altdata[col] : data[col],
+            altdata[col] != null ? altdata[col] : data != null ? data[col] : null,
             msg[col] != null ? failColor : null, null, msg[col]);
         msg[col] = null;
         altdata[col] = null;
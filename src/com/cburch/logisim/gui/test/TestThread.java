@@ -36,6 +36,14 @@
 package com.cburch.logisim.gui.test;
 import static com.cburch.logisim.gui.test.Strings.S;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitEvent;
 import com.cburch.logisim.circuit.CircuitListener;
@@ -44,6 +52,7 @@ import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.FailException;
 import com.cburch.logisim.data.TestException;
 import com.cburch.logisim.data.TestVector;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.StdAttr;
@@ -55,11 +64,11 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
 
   // used only for automated testing via command line arguments
   public static int doTestVector(Project proj, Circuit circuit,
-      String vectorname) {
+      String vectorname, boolean showRate) {
     System.out.println(S.fmt("testLoadingVector", vectorname));
     TestVector vec;
     try {
-      vec = new TestVector(vectorname);
+      vec = TestVector.open(new File(vectorname));
     } catch (Exception e) {
       System.err.println(S.fmt("testLoadingFailed", e.getMessage()));
       return -1;
@@ -73,32 +82,176 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
       return -1;
     }
 
-    System.out.println(S.fmt("testRunning", Integer.toString(vec.data.size())));
+    if (vec.isStreamed())
+      System.out.println(S.get("testRunningStreamed"));
+    else
+      System.out.println(S.fmt("testRunning", Integer.toString(vec.data.size())));
 
-    int numPass = 0, numFail = 0;
-    for (int i = 0; i < vec.data.size(); i++) {
-      try {
+    int[] count = new int[2]; // pass, fail
+    long start = System.nanoTime();
+    try {
+      tester.testAll(Runtime.getRuntime().availableProcessors(), (i, err) -> {
         System.out.print((i + 1) + " \r");
-        tester.test(i);
-        numPass++;
-      } catch (FailException e) {
-        System.out.println();
-        System.err.println(S.fmt("testFailed", Integer.toString(i + 1)));
-        for (; e != null; e = e.getMore())
-          System.out.println("  " + e.getMessage());
-        numFail++;
-        continue;
-      } catch (TestException e) {
-        System.out.println();
-        System.err.println(S.fmt("testFailed", Integer.toString(i + 1) + " " + e.getMessage()));
-        numFail++;
-        continue;
-      }
+        if (err == null) {
+          count[0]++;
+        } else if (err instanceof FailException) {
+          System.out.println();
+          System.err.println(S.fmt("testFailed", Integer.toString(i + 1)));
+          for (FailException e = (FailException)err; e != null; e = e.getMore())
+            System.out.println("  " + e.getMessage());
+          count[1]++;
+        } else {
+          System.out.println();
+          System.err.println(S.fmt("testFailed", Integer.toString(i + 1) + " " + err.getMessage()));
+          count[1]++;
+        }
+      });
+    } catch (IOException e) {
+      System.out.println();
+      System.err.println(S.fmt("testLoadingFailed", e.getMessage()));
+      return -1;
     }
+    double secs = (System.nanoTime() - start) / 1e9;
+    int rows = count[0] + count[1];
     System.out.println();
-    System.out.println(S.fmt("testResults", Integer.toString(numPass), Integer.toString(numFail)));
+    System.out.println(S.fmt("testResults", Integer.toString(count[0]), Integer.toString(count[1])));
+    if (showRate)
+      System.out.println(S.fmt("testRate", Integer.toString(rows),
+            String.format("%.3f", secs),
+            String.format("%.0f", rows / Math.max(secs, 1e-9))));
     return 0;
   }
+
+  private static final int TEST_CHUNK = 64;
+
+  // Receives the outcome of each row, in row order: null for a pass,
+  // otherwise the FailException or TestException.
+  interface ResultHandler {
+    void result(int row, TestException err);
+  }
+
+  // Runs every row of the vector. Rows are independent (each starts from a
+  // reset state), so workers take chunks of rows from a shared reader and
+  // each simulates on its own clone of the project's root state, with the
+  // given number of workers. Finished chunks are handed to the handler in row
+  // order as soon as all earlier ones are done, so rows needn't all be in
+  // memory at once. As in Analyze.computeTable, the calling thread does the
+  // first chunk alone, which builds the connectivity of every subcircuit
+  // before any other thread needs it. A reset keeps the contents of
+  // non-volatile RAMs, though, so rows of a circuit containing RAM can see
+  // what earlier rows wrote, and those are tested serially, in order.
+  void testAll(int threads, ResultHandler handler) throws IOException {
+    if (circuit.containsRam())
+      threads = 1;
+    TreeMap<Integer, TestException[]> finished = new TreeMap<>();
+    int[] nextRow = new int[1]; // guarded by rows
+    int[] reported = new int[1]; // guarded by finished
+    AtomicBoolean stop = new AtomicBoolean();
+    Throwable[] failure = new Throwable[1];
+
+    try (TestVector.RowReader rows = vector.openRows()) {
+      // Tests one chunk, returning false if there were no more rows.
+      BiPredicate<CircuitState, Value[][]> chunk = (state, buf) -> {
+        int start, n;
+        synchronized (rows) {
+          try {
+            n = rows.read(buf);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          start = nextRow[0];
+          nextRow[0] += n;
+        }
+        if (n == 0)
+          return false;
+        TestException[] results = new TestException[n];
+        for (int i = 0; i < n; i++) {
+          try {
+            circuit.doTestVector(state, pin, buf[i]);
+          } catch (TestException e) {
+            results[i] = e;
+          }
+        }
+        synchronized (finished) {
+          finished.put(start, results);
+          while (!finished.isEmpty() && finished.firstKey() == reported[0]) {
+            TestException[] done = finished.pollFirstEntry().getValue();
+            for (TestException err : done)
+              handler.result(reported[0]++, err);
+          }
+        }
+        return n == buf.length;
+      };
+
+      // The clones are made before the root runs any row, so that every
+      // worker starts from the same state.
+      CircuitState root = project.getCircuitState();
+      CircuitState[] clones = new CircuitState[Math.max(0, threads - 1)];
+      for (int k = 0; k < clones.length; k++)
+        clones[k] = root.cloneAsNewRootState();
+      try {
+        // first chunk, alone
+        if (!chunk.test(root, new Value[TEST_CHUNK][]))
+          return;
+        if (threads <= 1) {
+          Value[][] buf = new Value[TEST_CHUNK][];
+          while (chunk.test(root, buf))
+            ;
+          return;
+        }
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+
+      Thread[] helpers = new Thread[clones.length];
+      Consumer<CircuitState> work = state -> {
+        Value[][] buf = new Value[TEST_CHUNK][];
+        while (!stop.get() && chunk.test(state, buf))
+          ;
+      };
+      for (int k = 0; k < helpers.length; k++) {
+        CircuitState state = clones[k];
+        helpers[k] = new UniquelyNamedThread(() -> work.accept(state), "TestVector");
+        helpers[k].setUncaughtExceptionHandler((th, e) -> {
+          stop.set(true);
+          synchronized (failure) {
+            if (failure[0] == null)
+              failure[0] = e;
+          }
+        });
+        helpers[k].start();
+      }
+      try {
+        work.accept(root);
+      } catch (RuntimeException e) {
+        stop.set(true);
+        synchronized (failure) {
+          if (failure[0] == null)
+            failure[0] = e;
+        }
+      } finally {
+        for (Thread h : helpers) {
+          while (true) {
+            try {
+              h.join();
+              break;
+            } catch (InterruptedException e) {
+              stop.set(true);
+            }
+          }
+        }
+      }
+    }
+    synchronized (failure) {
+      if (failure[0] instanceof UncheckedIOException)
+        throw ((UncheckedIOException)failure[0]).getCause();
+      else if (failure[0] instanceof RuntimeException)
+        throw (RuntimeException)failure[0];
+      else if (failure[0] != null)
+        throw new RuntimeException(failure[0]);
+    }
+  }
+
   private Instance[] pin;
   private Project project;
   private Circuit circuit;
@@ -122,7 +275,7 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
   }
 
   // used only for automated testing via command line arguments
-  private TestThread(Project proj, Circuit circuit, TestVector vec)
+  TestThread(Project proj, Circuit circuit, TestVector vec)
       throws TestException {
     super("TestThread-Project");
     this.project = proj;
@@ -175,8 +328,8 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
   }
 
   public void run() {
-    try {
-      for (int i = 0; i < vector.data.size() && !canceled; i++) {
+    try (TestVector.RowReader rows = vector.openRows()) {
+      for (int i = 0; !canceled; i++) {
         while (paused) {
           if (canceled)
             return;
@@ -185,14 +338,21 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
           } catch (InterruptedException e) {
           }
         }
+        Value[] row = rows.next();
+        if (row == null) {
+          model.setDone(vector);
+          break;
+        }
         try {
-          test(i);
-          canceled = canceled || !model.setResult(vector, i, null);
+          test(row);
+          canceled = canceled || !model.setResult(vector, i, row, null);
         } catch (TestException e) {
-          canceled = canceled || !model.setResult(vector, i, e);
+          canceled = canceled || !model.setResult(vector, i, row, e);
         }
         Thread.yield();
       }
+    } catch (IOException e) {
+      model.setError(vector, new TestException(e.getMessage()));
     } finally {
       model.stop();
     }
@@ -202,8 +362,8 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
     this.paused = paused;
   }
 
-  private void test(int idx) throws TestException {
-    circuit.doTestVector(project, pin, vector.data.get(idx));
+  private void test(Value[] row) throws TestException {
+    circuit.doTestVector(project, pin, row);
   }
 
 }
@@ -96,6 +96,7 @@ public /*final*/ class InstanceComponent
   private boolean attrListenRequested;
   private InstanceTextField textField;
   private InstanceStateImpl instanceState;
+  private int slot = -1;
 
   public InstanceComponent(InstanceFactory factory, Location loc,
       AttributeSet attrs) {
@@ -114,6 +115,16 @@ public /*final*/ class InstanceComponent
     computeEnds();
   }
 
+  @Override
+  public int getSlot() {
+    return slot;
+  }
+
+  @Override
+  public void setSlot(int slot) {
+    this.slot = slot;
+  }
+
   void addAttributeListener(/*Instance instance*/) {
     if (!attrListenRequested) {
       attrListenRequested = true;
@@ -372,7 +383,10 @@ public /*final*/ class InstanceComponent
 
   void recomputeBounds() {
     Location p = loc;
+    Bounds old = bounds;
     bounds = factory.getOffsetBounds(attrs).translate(p.getX(), p.getY());
+    if (!bounds.equals(old))
+      fireInvalidated(); // so the circuit can re-index this component
   }
 
   public void removeComponentWeakListener(Object owner, ComponentListener l) {
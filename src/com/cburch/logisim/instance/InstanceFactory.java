@@ -75,6 +75,7 @@ public abstract class InstanceFactory extends AbstractComponentFactory {
   private List<Port> portList;
   private Attribute<Direction> facingAttribute;
   private Boolean shouldSnap;
+  private boolean staticAppearance;
   private KeyConfigurator keyConfigurator;
   private Class<? extends InstancePoker> pokerClass;
   private Class<? extends InstanceLogger> loggerClass;
@@ -236,6 +237,12 @@ public abstract class InstanceFactory extends AbstractComponentFactory {
     return portList;
   }
 
+  @Override
+  public boolean hasStaticAppearance(AttributeSet attrs,
+      ComponentDrawContext context) {
+    return staticAppearance;
+  }
+
   protected void instanceAttributeChanged(Instance instance, Attribute<?> attr) {
   }
 
@@ -351,4 +358,10 @@ public abstract class InstanceFactory extends AbstractComponentFactory {
   public void setShouldSnap(boolean value) {
     shouldSnap = Boolean.valueOf(value);
   }
+
+  // See ComponentFactory.hasStaticAppearance(). Factories whose appearance
+  // depends on the drawing context override that method instead.
+  public void setStaticAppearance(boolean value) {
+    staticAppearance = value;
+  }
 }
@@ -215,7 +215,7 @@ public class InstancePainter implements InstanceState {
   public Value getPortValue(int portIndex) {
     CircuitState s = context.getCircuitState();
     if (comp != null && s != null) {
-      return s.getValue(comp.getEnd(portIndex).getLocation());
+      return s.getPublishedValue(comp.getEnd(portIndex).getLocation());
     } else {
       return Value.UNKNOWN;
     }
@@ -82,8 +82,10 @@ public class InstanceTextField
     if (attr == labelAttr) {
       updateField(comp.getAttributeSet());
     } else if (attr == fontAttr) {
-      if (field != null)
+      if (field != null) {
         field.setFont((Font) e.getValue());
+        comp.fireInvalidated(); // the component's label bounds changed
+      }
     }
   }
 
@@ -190,5 +192,6 @@ public class InstanceTextField
         field.setText(text);
       }
     }
+    comp.fireInvalidated(); // the component's label bounds changed
   }
 }
@@ -39,13 +39,14 @@ import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.Attributes;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Direction;
+import com.cburch.logisim.data.Value;
 
 public class StdAttr {
   public static final Attribute<Direction> FACING = Attributes.forDirection(
       "facing", S.getter("stdFacingAttr"));
 
   public static final Attribute<BitWidth> WIDTH = Attributes.forBitWidth(
-      "width", S.getter("stdDataWidthAttr"));
+      "width", S.getter("stdDataWidthAttr"), 1, Value.MAX_WIDTH);
 
   public static final AttributeOption TRIG_RISING = new AttributeOption(
       "rising", S.getter("stdTriggerRising"));
@@ -425,6 +425,23 @@ public class AppPreferences {
     new PrefMonitor("dualScreenFixes",
           new String[] { DUALSCREEN_NONE, DUALSCREEN_FIX, DUALSCREEN_MORE, DUALSCREEN_MOST },
           DUALSCREEN_NONE);
+  public static final String SIM_QUEUE_LINKED = "linked";
+  public static final String SIM_QUEUE_SPLAY = "splay";
+  public static final String SIM_QUEUE_HEAP = "heap";
+  public static final String SIM_QUEUE_WHEEL = "wheel";
+  public static final PrefMonitor<String> SIM_EVENT_QUEUE =
+    new PrefMonitor("simEventQueue",
+          new String[] { SIM_QUEUE_LINKED, SIM_QUEUE_SPLAY, SIM_QUEUE_HEAP,
+            SIM_QUEUE_WHEEL },
+          SIM_QUEUE_WHEEL);
+  public static final PrefMonitor<Boolean>
+      SIM_PARALLEL = new PrefMonitor("simParallel", false);
+  public static final PrefMonitor<Boolean>
+      CANVAS_CACHE = new PrefMonitor("canvasCache", true);
+  public static final PrefMonitor<Boolean>
+      VHDL_INTERPRETER = new PrefMonitor("vhdlInterpreter", false);
+  public static final PrefMonitor<Boolean>
+      VHDL_BATCH = new PrefMonitor("vhdlBatch", false);
 
   // Third party softwares preferences
   public static final PrefMonitor<String>
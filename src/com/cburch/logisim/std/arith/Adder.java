@@ -55,13 +55,22 @@ public class Adder extends InstanceFactory {
     if (c_in == Value.UNKNOWN || c_in == Value.NIL)
       c_in = Value.FALSE;
     if (a.isFullyDefined() && b.isFullyDefined() && c_in.isFullyDefined()) {
-      if (w >= 32) {
+      if (w == 64) {
+        // no spare bit to catch the carry, so detect unsigned wraparound
+        long ax = a.toLongValue();
+        long t = ax + b.toLongValue();
+        long sum = t + c_in.toLongValue();
+        boolean carry = Long.compareUnsigned(t, ax) < 0
+            || Long.compareUnsigned(sum, t) < 0;
+        return new Value[] { Value.createKnown(width, sum),
+          carry ? Value.TRUE : Value.FALSE };
+      } else if (w >= 32) {
         long mask = (1L << w) - 1;
-        long ax = (long) a.toIntValue() & mask;
-        long bx = (long) b.toIntValue() & mask;
-        long cx = (long) c_in.toIntValue() & mask;
+        long ax = a.toLongValue() & mask;
+        long bx = b.toLongValue() & mask;
+        long cx = c_in.toLongValue() & mask;
         long sum = ax + bx + cx;
-        return new Value[] { Value.createKnown(width, (int) sum),
+        return new Value[] { Value.createKnown(width, sum),
           ((sum >> w) & 1) == 0 ? Value.FALSE : Value.TRUE };
       } else {
         int sum = a.toIntValue() + b.toIntValue() + c_in.toIntValue();
@@ -112,6 +121,7 @@ public class Adder extends InstanceFactory {
     setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
     setOffsetBounds(Bounds.create(-40, -20, 40, 40));
     setIconName("adder.gif");
+    setStaticAppearance(true);
 
     Port[] ps = new Port[5];
     ps[IN0] = new Port(-40, -10, Port.INPUT, StdAttr.WIDTH);
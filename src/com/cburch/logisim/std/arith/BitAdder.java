@@ -62,6 +62,7 @@ public class BitAdder extends InstanceFactory {
     setKeyConfigurator(JoinedConfigurator.create(new IntegerConfigurator(
             NUM_INPUTS, 1, 32, 0), new BitWidthConfigurator(StdAttr.WIDTH)));
     setIconName("bitadder.gif");
+    setStaticAppearance(true);
   }
 
   private int computeOutputBits(int width, int inputs) {
@@ -68,6 +68,7 @@ public class BitFinder extends InstanceFactory {
       BitWidth.create(8), LOW_ONE });
     setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
     setIconName("bitfindr.gif");
+    setStaticAppearance(true);
   }
 
   private int computeOutputBits(int maxBits) {
@@ -57,11 +57,15 @@ public class Multiplier extends InstanceFactory {
   public static final AttributeOption UNSIGNED_OPTION = Comparator.UNSIGNED_OPTION;
   public static final Attribute<AttributeOption> MODE_ATTR = Comparator.MODE_ATTRIBUTE;
 
-  static long extend(int w, int v, boolean unsigned) {
+  static BigInteger extend(int w, long v, boolean unsigned) {
+    if (w == 64) {
+      BigInteger x = BigInteger.valueOf(v);
+      return (unsigned && v < 0) ? x.add(BigInteger.ONE.shiftLeft(64)) : x;
+    }
     long mask = (1L << w) - 1;
-    if (unsigned) return v & mask;
-    else if ((v & (1<<(w-1))) != 0) return (long)v | ~mask;
-    else return (long)v;
+    if (unsigned) return BigInteger.valueOf(v & mask);
+    else if ((v & (1L<<(w-1))) != 0) return BigInteger.valueOf(v | ~mask);
+    else return BigInteger.valueOf(v);
   }
 
   static Value[] computeProduct(BitWidth width, Value a, Value b, Value c_in, boolean unsigned) {
@@ -69,42 +73,42 @@ public class Multiplier extends InstanceFactory {
     if (c_in == Value.NIL || c_in.isUnknown())
       c_in = Value.createKnown(width, 0);
     if (a.isFullyDefined() && b.isFullyDefined() && c_in.isFullyDefined()) {
-      BigInteger aa = BigInteger.valueOf(extend(w, a.toIntValue(), unsigned));
-      BigInteger bb = BigInteger.valueOf(extend(w, b.toIntValue(), unsigned));
-      BigInteger cc = BigInteger.valueOf(extend(w, c_in.toIntValue(), unsigned));
+      BigInteger aa = extend(w, a.toLongValue(), unsigned);
+      BigInteger bb = extend(w, b.toLongValue(), unsigned);
+      BigInteger cc = extend(w, c_in.toLongValue(), unsigned);
       BigInteger rr = aa.multiply(bb).add(cc);
-      long mask = (1L << w) - 1;
-      int lo = rr.and(BigInteger.valueOf(mask)).intValue();
-      int hi = rr.shiftRight(w).and(BigInteger.valueOf(mask)).intValue();
+      // createKnown drops everything above the data width
+      long lo = rr.longValue();
+      long hi = rr.shiftRight(w).longValue();
       return new Value[] { Value.createKnown(width, lo), Value.createKnown(width, hi) };
     } else {
       Value[] avals = a.getAll();
       int aOk = findUnknown(avals);
       int aErr = findError(avals);
-      int ax = getKnown(avals);
+      long ax = getKnown(avals);
       Value[] bvals = b.getAll();
       int bOk = findUnknown(bvals);
       int bErr = findError(bvals);
-      int bx = getKnown(bvals);
+      long bx = getKnown(bvals);
       Value[] cvals = c_in.getAll();
       int cOk = findUnknown(cvals);
       int cErr = findError(cvals);
-      int cx = getKnown(cvals);
+      long cx = getKnown(cvals);
 
       int known = Math.min(Math.min(aOk, bOk), cOk);
       int error = Math.min(Math.min(aErr, bErr), cErr);
 
       // note: this is probably wrong, but the inputs were bad anyway
-      BigInteger aa = BigInteger.valueOf(extend(w, ax, unsigned));
-      BigInteger bb = BigInteger.valueOf(extend(w, bx, unsigned));
-      BigInteger cc = BigInteger.valueOf(extend(w, cx, unsigned));
+      BigInteger aa = extend(w, ax, unsigned);
+      BigInteger bb = extend(w, bx, unsigned);
+      BigInteger cc = extend(w, cx, unsigned);
       BigInteger rr = aa.multiply(bb).add(cc);
       long ret = rr.longValue();
 
       Value[] bits = new Value[w];
       for (int i = 0; i < w; i++) {
         if (i < known) {
-          bits[i] = ((ret & (1 << i)) != 0 ? Value.TRUE : Value.FALSE);
+          bits[i] = ((ret & (1L << i)) != 0 ? Value.TRUE : Value.FALSE);
         } else if (i < error) {
           bits[i] = Value.UNKNOWN;
         } else {
@@ -133,13 +137,13 @@ public class Multiplier extends InstanceFactory {
     return vals.length;
   }
 
-  private static int getKnown(Value[] vals) {
-    int ret = 0;
+  private static long getKnown(Value[] vals) {
+    long ret = 0;
     for (int i = 0; i < vals.length; i++) {
       int val = vals[i].toIntValue();
       if (val < 0)
         return ret;
-      ret |= val << i;
+      ret |= (long) val << i;
     }
     return ret;
   }
@@ -158,6 +162,7 @@ public class Multiplier extends InstanceFactory {
     setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
     setOffsetBounds(Bounds.create(-40, -20, 40, 40));
     setIconName("multiplier.gif");
+    setStaticAppearance(true);
 
     Port[] ps = new Port[5];
     ps[IN0] = new Port(-40, -10, Port.INPUT, StdAttr.WIDTH);
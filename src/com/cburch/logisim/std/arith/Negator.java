@@ -55,6 +55,7 @@ public class Negator extends InstanceFactory {
     setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
     setOffsetBounds(Bounds.create(-40, -20, 40, 40));
     setIconName("negator.gif");
+    setStaticAppearance(true);
 
     Port[] ps = new Port[2];
     ps[IN] = new Port(-40, 0, Port.INPUT, StdAttr.WIDTH);
@@ -85,7 +86,7 @@ public class Negator extends InstanceFactory {
     Value in = state.getPortValue(IN);
     Value out;
     if (in.isFullyDefined()) {
-      out = Value.createKnown(in.getBitWidth(), -in.toIntValue());
+      out = Value.createKnown(in.getBitWidth(), -in.toLongValue());
     } else {
       Value[] bits = in.getAll();
       Value fill = Value.FALSE;
@@ -137,6 +137,7 @@ public class Text extends InstanceFactory implements CustomHandles {
   private Text() {
     super("Text", S.getter("textComponent"));
     setIconName("comment.png");
+    setStaticAppearance(true);
     setShouldSnap(false);
   }
 
@@ -39,7 +39,9 @@ import javax.swing.Icon;
 import com.cburch.logisim.LogisimVersion;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitSliceComputer;
 import com.cburch.logisim.circuit.ExpressionComputer;
+import com.cburch.logisim.comp.ComponentDrawContext;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -107,6 +109,9 @@ abstract class AbstractGate extends InstanceFactory {
           new BitWidthConfigurator(StdAttr.WIDTH)));
   }
 
+  protected abstract int computeBitSlice(BitSliceComputer.Builder builder,
+      int[] inputs, int numInputs, AttributeSet attrs);
+
   protected abstract Expression computeExpression(Expression[] inputs,
       int numInputs);
 
@@ -354,6 +359,45 @@ abstract class AbstractGate extends InstanceFactory {
         }
       };
     }
+    if (key == BitSliceComputer.class) {
+      return new BitSliceComputer() {
+        public boolean computeBitSlice(BitSliceComputer.Builder builder) {
+          GateAttributes attrs = (GateAttributes) instance
+              .getAttributeSet();
+          if (attrs.out != GateAttributes.OUTPUT_01)
+            return false;
+          boolean errorIfUndefined = builder.getOptions()
+              .getValue(Options.ATTR_GATE_UNDEFINED)
+              .equals(Options.GATE_UNDEFINED_ERROR);
+          int inputCount = attrs.inputs;
+          int negated = attrs.negated;
+          int width = attrs.width.getWidth();
+
+          for (int b = 0; b < width; b++) {
+            int[] inputs = new int[inputCount];
+            int numInputs = 0;
+            for (int i = 1; i <= inputCount; i++) {
+              int in = builder.input(instance.getPortLocation(i), b);
+              if (in < 0) {
+                if (errorIfUndefined)
+                  return false; // output would be an error value
+                continue;
+              }
+              int negatedBit = (negated >> (i - 1)) & 1;
+              if (negatedBit == 1)
+                in = builder.not(in);
+              inputs[numInputs++] = in;
+            }
+            if (numInputs == 0)
+              return false;
+            int out = AbstractGate.this.computeBitSlice(builder,
+                inputs, numInputs, attrs);
+            builder.output(instance.getPortLocation(0), b, out);
+          }
+          return true;
+        }
+      };
+    }
     return super.getInstanceFeature(instance, key);
   }
 
@@ -529,6 +573,14 @@ abstract class AbstractGate extends InstanceFactory {
 
   protected abstract void paintIconShaped(InstancePainter painter);
 
+  @Override
+  public boolean hasStaticAppearance(AttributeSet attrs,
+      ComponentDrawContext context) {
+    Object shape = context.getGateShape();
+    return context.isPrintView() || shape == AppPreferences.SHAPE_RECTANGULAR
+        || (shape == AppPreferences.SHAPE_SHAPED && !paintInputLines);
+  }
+
   @Override
   public void paintInstance(InstancePainter painter) {
     paintBase(painter);
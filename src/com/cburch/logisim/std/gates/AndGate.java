@@ -36,6 +36,8 @@ import java.awt.Graphics;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitSliceComputer;
+import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
@@ -51,6 +53,12 @@ class AndGate extends AbstractGate {
     setIconNames("andGate.gif", "andGateRect.gif", "dinAndGate.gif");
   }
 
+  @Override
+  protected int computeBitSlice(BitSliceComputer.Builder builder,
+      int[] inputs, int numInputs, AttributeSet attrs) {
+    return GateFunctions.bitSliceAnd(builder, inputs, numInputs);
+  }
+
   @Override
   protected Expression computeExpression(Expression[] inputs, int numInputs) {
     Expression ret = inputs[0];
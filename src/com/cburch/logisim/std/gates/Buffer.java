@@ -37,6 +37,7 @@ import java.awt.Graphics2D;
 
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
+import com.cburch.logisim.circuit.BitSliceComputer;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -95,6 +96,7 @@ class Buffer extends InstanceFactory {
             BitWidth.ONE, GateAttributes.OUTPUT_01, "",
             StdAttr.DEFAULT_LABEL_FONT });
     setIcon(Icons.getIcon("bufferGate.gif"));
+    setStaticAppearance(true);
     setFacingAttribute(StdAttr.FACING);
     setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
     setPorts(new Port[] { new Port(0, 0, Port.OUTPUT, StdAttr.WIDTH),
@@ -137,6 +139,23 @@ class Buffer extends InstanceFactory {
         }
       };
     }
+    if (key == BitSliceComputer.class) {
+      return new BitSliceComputer() {
+        public boolean computeBitSlice(BitSliceComputer.Builder builder) {
+          Object outType = instance.getAttributeValue(GateAttributes.ATTR_OUTPUT);
+          if (outType != GateAttributes.OUTPUT_01)
+            return false;
+          int width = instance.getAttributeValue(StdAttr.WIDTH).getWidth();
+          for (int b = 0; b < width; b++) {
+            int in = builder.input(instance.getPortLocation(1), b);
+            if (in < 0)
+              return false;
+            builder.output(instance.getPortLocation(0), b, in);
+          }
+          return true;
+        }
+      };
+    }
     return super.getInstanceFeature(instance, key);
   }
 
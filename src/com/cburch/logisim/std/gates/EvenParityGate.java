@@ -34,6 +34,8 @@ import static com.cburch.logisim.std.Strings.S;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitSliceComputer;
+import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
@@ -48,6 +50,12 @@ class EvenParityGate extends AbstractGate {
     setIconNames("parityEvenGate.gif");
   }
 
+  @Override
+  protected int computeBitSlice(BitSliceComputer.Builder builder,
+      int[] inputs, int numInputs, AttributeSet attrs) {
+    return builder.not(GateFunctions.bitSliceOddParity(builder, inputs, numInputs));
+  }
+
   @Override
   protected Expression computeExpression(Expression[] inputs, int numInputs) {
     Expression ret = inputs[0];
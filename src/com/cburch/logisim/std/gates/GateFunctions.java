@@ -30,6 +30,7 @@
 
 package com.cburch.logisim.std.gates;
 
+import com.cburch.logisim.circuit.BitSliceComputer;
 import com.cburch.logisim.data.Value;
 
 class GateFunctions {
@@ -84,6 +85,41 @@ class GateFunctions {
     return ret;
   }
 
+  // Bit-sliced versions of the above, for BitSliceComputer. The inputs are
+  // builder slots, and all values are known to be 0 or 1.
+
+  static int bitSliceAnd(BitSliceComputer.Builder b, int[] inputs, int numInputs) {
+    int ret = inputs[0];
+    for (int i = 1; i < numInputs; i++)
+      ret = b.and(ret, inputs[i]);
+    return ret;
+  }
+
+  static int bitSliceExactlyOne(BitSliceComputer.Builder b, int[] inputs, int numInputs) {
+    int any = inputs[0]; // at least one input is 1
+    int many = -1; // at least two inputs are 1
+    for (int i = 1; i < numInputs; i++) {
+      int both = b.and(any, inputs[i]);
+      many = many < 0 ? both : b.or(many, both);
+      any = b.or(any, inputs[i]);
+    }
+    return many < 0 ? any : b.and(any, b.not(many));
+  }
+
+  static int bitSliceOddParity(BitSliceComputer.Builder b, int[] inputs, int numInputs) {
+    int ret = inputs[0];
+    for (int i = 1; i < numInputs; i++)
+      ret = b.xor(ret, inputs[i]);
+    return ret;
+  }
+
+  static int bitSliceOr(BitSliceComputer.Builder b, int[] inputs, int numInputs) {
+    int ret = inputs[0];
+    for (int i = 1; i < numInputs; i++)
+      ret = b.or(ret, inputs[i]);
+    return ret;
+  }
+
   private GateFunctions() {
   }
 }
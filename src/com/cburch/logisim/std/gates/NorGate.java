@@ -36,6 +36,8 @@ import java.awt.Graphics;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitSliceComputer;
+import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstancePainter;
@@ -55,6 +57,12 @@ class NorGate extends AbstractGate {
     setPaintInputLines(true);
   }
 
+  @Override
+  protected int computeBitSlice(BitSliceComputer.Builder builder,
+      int[] inputs, int numInputs, AttributeSet attrs) {
+    return builder.not(GateFunctions.bitSliceOr(builder, inputs, numInputs));
+  }
+
   @Override
   protected Expression computeExpression(Expression[] inputs, int numInputs) {
     Expression ret = inputs[0];
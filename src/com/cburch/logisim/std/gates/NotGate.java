@@ -40,7 +40,9 @@ import javax.swing.Icon;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitSliceComputer;
 import com.cburch.logisim.circuit.ExpressionComputer;
+import com.cburch.logisim.comp.ComponentDrawContext;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeOption;
@@ -159,6 +161,23 @@ class NotGate extends InstanceFactory {
         }
       };
     }
+    if (key == BitSliceComputer.class) {
+      return new BitSliceComputer() {
+        public boolean computeBitSlice(BitSliceComputer.Builder builder) {
+          Object outType = instance.getAttributeValue(GateAttributes.ATTR_OUTPUT);
+          if (outType != GateAttributes.OUTPUT_01)
+            return false;
+          int width = instance.getAttributeValue(StdAttr.WIDTH).getWidth();
+          for (int b = 0; b < width; b++) {
+            int in = builder.input(instance.getPortLocation(1), b);
+            if (in < 0)
+              return false;
+            builder.output(instance.getPortLocation(0), b, builder.not(in));
+          }
+          return true;
+        }
+      };
+    }
     return super.getInstanceFeature(instance, key);
   }
 
@@ -291,6 +310,13 @@ class NotGate extends InstanceFactory {
     }
   }
 
+  @Override
+  public boolean hasStaticAppearance(AttributeSet attrs,
+      ComponentDrawContext context) {
+    return context.isPrintView()
+        || context.getGateShape() != AppPreferences.SHAPE_DIN40700;
+  }
+
   @Override
   public void paintInstance(InstancePainter painter) {
     painter.getGraphics().setColor(Color.BLACK);
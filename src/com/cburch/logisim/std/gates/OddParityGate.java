@@ -38,6 +38,8 @@ import java.awt.Graphics;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitSliceComputer;
+import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
@@ -53,6 +55,12 @@ class OddParityGate extends AbstractGate {
     setIconNames("parityOddGate.gif");
   }
 
+  @Override
+  protected int computeBitSlice(BitSliceComputer.Builder builder,
+      int[] inputs, int numInputs, AttributeSet attrs) {
+    return GateFunctions.bitSliceOddParity(builder, inputs, numInputs);
+  }
+
   @Override
   protected Expression computeExpression(Expression[] inputs, int numInputs) {
     Expression ret = inputs[0];
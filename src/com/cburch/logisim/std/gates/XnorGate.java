@@ -36,6 +36,7 @@ import java.awt.Graphics;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitSliceComputer;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
@@ -56,6 +57,17 @@ class XnorGate extends AbstractGate {
     setPaintInputLines(true);
   }
 
+  @Override
+  protected int computeBitSlice(BitSliceComputer.Builder builder,
+      int[] inputs, int numInputs, AttributeSet attrs) {
+    Object behavior = attrs.getValue(GateAttributes.ATTR_XOR);
+    if (behavior == GateAttributes.XOR_ODD) {
+      return builder.not(GateFunctions.bitSliceOddParity(builder, inputs, numInputs));
+    } else {
+      return builder.not(GateFunctions.bitSliceExactlyOne(builder, inputs, numInputs));
+    }
+  }
+
   @Override
   protected Expression computeExpression(Expression[] inputs, int numInputs) {
     return Expressions.not(XorGate.xorExpression(inputs, numInputs));
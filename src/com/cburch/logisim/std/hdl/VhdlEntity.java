@@ -70,6 +70,7 @@ import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.Port;
 import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.prefs.AppPreferences;
 import com.cburch.logisim.std.wiring.Pin;
 import com.cburch.logisim.util.GraphicsUtil;
 import com.cburch.logisim.util.StringGetter;
@@ -87,6 +88,8 @@ public class VhdlEntity extends InstanceFactory implements HdlModelListener {
   static final int X_PADDING = 5;
 
   private VhdlContent content;
+  private VhdlInterpreter interpreter; // compiled on first use
+  private boolean interpreterCompiled;
 
   public VhdlEntity(VhdlContent content) {
     super("", null);
@@ -240,7 +243,8 @@ public class VhdlEntity extends InstanceFactory implements HdlModelListener {
   @Override
   /**
    * Propagate signals through the VHDL component.
-   * Logisim doesn't have a VHDL simulation tool. So we need to use an external tool.
+   * Entities in the subset understood by VhdlInterpreter are evaluated
+   * in-process. Otherwise, we need to use an external tool.
    * We send signals to Questasim/Modelsim through a socket and a tcl binder. Then,
    * a simulation step is done and the tcl server sends the output signals back to
    * Logisim. Then we can set the VHDL component output properly.
@@ -250,59 +254,25 @@ public class VhdlEntity extends InstanceFactory implements HdlModelListener {
    */
   public void propagate(InstanceState state) {
 
-    if (state.getProject().getVhdlSimulator().isEnabled()
-        && state.getProject().getVhdlSimulator().isRunning()) {
-
-      VhdlSimulator vhdlSimulator = state.getProject().getVhdlSimulator();
-
-      List<Port> ports = state.getInstance().getPorts();
-      int n = ports.size();
-      for (int i = 0; i < n; i++) {
-        Port p = ports.get(i);
-        Value val = state.getPortValue(i);
-        String vhdlEntityName = getHDLNameForInstanceSimulation(state.getAttributeSet());
-        String message = p.getType() + ":" + vhdlEntityName + "_"
-            + p.getToolTip() + ":" + val.toBinaryString() + ":" + i;
-        vhdlSimulator.send(message);
-      }
-
-      vhdlSimulator.send("sync");
-
-      /* Get response from tcl server */
-      String server_response = vhdlSimulator.receive();
-      while (server_response != null
-          && server_response.length() > 0
-          && !server_response.equals("sync")) {
-
-        String[] parameters = server_response.split("\\:");
-        String busValue = parameters[1];
-        Value vector_values[] = new Value[busValue.length()];
-
-        int k = busValue.length() - 1;
-        for (char bit : busValue.toCharArray()) {
-
-          try {
-            switch (Character.getNumericValue(bit)) {
-            case 0:
-              vector_values[k] = Value.FALSE;
-              break;
-            case 1:
-              vector_values[k] = Value.TRUE;
-              break;
-            default:
-              vector_values[k] = Value.UNKNOWN;
-              break;
-            }
-          } catch (NumberFormatException e) {
-            vector_values[k] = Value.UNKNOWN;
-          }
-          k--;
-        }
+    // Entities written in a simple subset of VHDL are evaluated in-process.
+    VhdlInterpreter interp = getInterpreter();
+    if (interp != null) {
+      interp.propagate(state);
+      return;
+    }
 
-        state.setPort(Integer.parseInt(parameters[2]),
-            Value.create(vector_values), 1);
+    VhdlSimulator vhdlSimulator = state.getProject().getVhdlSimulator();
+    if (vhdlSimulator.isEnabled() && vhdlSimulator.isRunning()
+        && vhdlSimulator.isBatched()) {
+      // Outputs are driven when the simulator replies, at the end of the
+      // current propagation step.
+      vhdlSimulator.queue(
+          getHDLNameForInstanceSimulation(state.getAttributeSet()), state);
+    } else if (vhdlSimulator.isEnabled() && vhdlSimulator.isRunning()) {
+      // One round-trip per entity; several propagators may share the socket.
+      synchronized (vhdlSimulator) {
+        propagateByText(vhdlSimulator, state);
       }
-
     } else { // VhdlSimulation stopped or disabled
       List<Port> ports = state.getInstance().getPorts();
       int n = ports.size();
@@ -317,6 +287,68 @@ public class VhdlEntity extends InstanceFactory implements HdlModelListener {
     }
   }
 
+  private void propagateByText(VhdlSimulator vhdlSimulator, InstanceState state) {
+    List<Port> ports = state.getInstance().getPorts();
+    int n = ports.size();
+    for (int i = 0; i < n; i++) {
+      Port p = ports.get(i);
+      Value val = state.getPortValue(i);
+      String vhdlEntityName = getHDLNameForInstanceSimulation(state.getAttributeSet());
+      String message = p.getType() + ":" + vhdlEntityName + "_"
+          + p.getToolTip() + ":" + val.toBinaryString() + ":" + i;
+      vhdlSimulator.send(message);
+    }
+
+    vhdlSimulator.send("sync");
+
+    /* Get response from tcl server */
+    String server_response = vhdlSimulator.receive();
+    while (server_response != null
+        && server_response.length() > 0
+        && !server_response.equals("sync")) {
+
+      String[] parameters = server_response.split("\\:");
+      String busValue = parameters[1];
+      Value vector_values[] = new Value[busValue.length()];
+
+      int k = busValue.length() - 1;
+      for (char bit : busValue.toCharArray()) {
+
+        try {
+          switch (Character.getNumericValue(bit)) {
+          case 0:
+            vector_values[k] = Value.FALSE;
+            break;
+          case 1:
+            vector_values[k] = Value.TRUE;
+            break;
+          default:
+            vector_values[k] = Value.UNKNOWN;
+            break;
+          }
+        } catch (NumberFormatException e) {
+          vector_values[k] = Value.UNKNOWN;
+        }
+        k--;
+      }
+
+      state.setPort(Integer.parseInt(parameters[2]),
+          Value.create(vector_values), 1);
+
+      server_response = vhdlSimulator.receive();
+    }
+  }
+
+  private synchronized VhdlInterpreter getInterpreter() {
+    if (!AppPreferences.VHDL_INTERPRETER.get())
+      return null;
+    if (!interpreterCompiled) {
+      interpreter = content.isValid() ? VhdlInterpreter.compile(content) : null;
+      interpreterCompiled = true;
+    }
+    return interpreter;
+  }
+
   /**
    * Save the VHDL entity in a file. The file is used for VHDL components
    * simulation by QUestasim/Modelsim
@@ -379,6 +411,10 @@ public class VhdlEntity extends InstanceFactory implements HdlModelListener {
       this.setIconName("vhdl-invalid.gif");
     // System.out.println("refreshing appearance");
     appearance = new VhdlAppearance(content);
+    synchronized (this) {
+      interpreter = null;
+      interpreterCompiled = false;
+    }
   }
 
   @Override
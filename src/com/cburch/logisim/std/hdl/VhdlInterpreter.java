@@ -0,0 +1,1406 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.std.hdl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.InstanceData;
+import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.Port;
+
+/**
+ * Evaluates VHDL entities in-process, for a small synthesizable subset of
+ * VHDL, so they can be simulated without an external simulator:
+ * <ul>
+ * <li>ports, signals and variables of type std_logic, std_ulogic,
+ * std_logic_vector, std_ulogic_vector or unsigned, with "downto" ranges of
+ * at most 64 bits, plus integer generics and constants;</li>
+ * <li>concurrent signal assignments, including the "when ... else" and
+ * "with ... select" forms;</li>
+ * <li>processes with a sensitivity list (or "all"), containing signal and
+ * variable assignments and if, case and null statements;</li>
+ * <li>logical and relational operators, "+", "-", "*" and "&amp;", "/",
+ * "mod" and "rem" between integers only, indexing and slicing,
+ * "(others =&gt; ...)", rising_edge, falling_edge, 'event, 'length, and the
+ * numeric_std functions unsigned, std_logic_vector, to_unsigned, to_integer,
+ * resize, shift_left and shift_right, where the width given to to_unsigned
+ * and resize depends only on generics and constants.</li>
+ * </ul>
+ * Arithmetic and ordering treat vectors as unsigned. For anything else,
+ * compile() returns null and the entity is left to the external simulator.
+ * <p/>
+ * Each time the component is propagated, changed inputs become events, and
+ * delta cycles run the processes sensitive to the events until no signal
+ * changes. The outputs are then driven with the settled values.
+ */
+class VhdlInterpreter {
+
+  // Thrown while compiling, for anything outside the supported subset.
+  static class UnsupportedException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedException(String msg) {
+      super(msg);
+    }
+  }
+
+  // Thrown while evaluating, e.g. for mismatched widths. The outputs of the
+  // component are then driven as errors.
+  private static class EvalException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    EvalException(String msg) {
+      super(msg);
+    }
+  }
+
+  private interface Expr {
+    Object eval(State s); // a Value, Long, Boolean or Others
+  }
+
+  private interface Stmt {
+    void exec(State s);
+  }
+
+  // The value of (others => bit), whose width comes from context.
+  private static class Others {
+    final Value bit;
+
+    Others(Value bit) {
+      this.bit = bit;
+    }
+  }
+
+  private static class Process {
+    final int[] sensitivity;
+    final Stmt[] body;
+
+    Process(int[] sensitivity, Stmt[] body) {
+      this.sensitivity = sensitivity;
+      this.body = body;
+    }
+  }
+
+  private static final int IN = 0, OUT = 1, SIGNAL = 2, VARIABLE = 3;
+
+  private static final int MAX_DELTAS = 1000;
+
+  public static VhdlInterpreter compile(VhdlContent content) {
+    try {
+      return new VhdlInterpreter(content);
+    } catch (UnsupportedException e) {
+      return null;
+    }
+  }
+
+  // Signals, ports and variables are all slots, indexed in declaration order.
+  private final ArrayList<String> slotName = new ArrayList<>();
+  private final ArrayList<Integer> slotKind = new ArrayList<>();
+  private final ArrayList<Expr> slotHigh = new ArrayList<>(); // null for std_logic
+  private final ArrayList<Expr> slotLow = new ArrayList<>();
+  private final ArrayList<Expr> slotInit = new ArrayList<>(); // may be null
+  private final ArrayList<Process> processes = new ArrayList<>();
+  private int[][] readers; // processes sensitive to each slot
+  private final List<Attribute<Integer>> genericAttrs;
+  private final VhdlContent.Generic[] generics;
+
+  private VhdlInterpreter(VhdlContent content) throws UnsupportedException {
+    generics = content.getGenerics();
+    genericAttrs = content.getGenericAttributes();
+    new Parser(tokenize(content.getContent())).parseDesign();
+
+    int n = slotName.size();
+    ArrayList<ArrayList<Integer>> r = new ArrayList<>();
+    for (int i = 0; i < n; i++)
+      r.add(new ArrayList<>());
+    for (int p = 0; p < processes.size(); p++)
+      for (int i : processes.get(p).sensitivity)
+        if (!r.get(i).contains(p))
+          r.get(i).add(p);
+    readers = new int[n][];
+    for (int i = 0; i < n; i++)
+      readers[i] = r.get(i).stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  void propagate(InstanceState state) {
+    List<Port> ports = state.getInstance().getPorts();
+    long[] gen = genericValues(state.getAttributeSet());
+    State s = (State)state.getData();
+    if (s == null || s.model != this || s.ports != ports
+        || !Arrays.equals(s.generics, gen)) {
+      s = new State(this, gen, ports);
+      state.setData(s);
+    }
+    if (s.failed == null) {
+      try {
+        s.run(state);
+        return;
+      } catch (EvalException e) {
+        // Signals may be half updated, so start over next time.
+        state.setData(null);
+      }
+    }
+    for (int i = 0; i < ports.size(); i++) {
+      Port p = ports.get(i);
+      if (p.getType() != EndData.INPUT_ONLY && p.getFixedBitWidth() > 0)
+        state.setPort(i, Value.createError(BitWidth.create(p.getFixedBitWidth())), 1);
+    }
+  }
+
+  private long[] genericValues(AttributeSet attrs) {
+    long[] vals = new long[generics.length];
+    for (int i = 0; i < vals.length; i++) {
+      Integer v = attrs.getValue(genericAttrs.get(i));
+      vals[i] = v != null ? v : generics[i].getDefaultIntValue();
+    }
+    return vals;
+  }
+
+  // The simulation state of one instance.
+  private static class State implements InstanceData, Cloneable {
+    VhdlInterpreter model;
+    List<Port> ports;
+    long[] generics;
+    String failed; // why elaboration failed, if it did
+    int[] portSlot; // for each component port, or -1
+    int[] width, low;
+    Value[] cur; // current values
+    Value[] next; // values assigned during the current delta, or null
+    Value[] last; // values before the most recent event
+    int[] eventDelta; // delta cycle of the most recent event
+    int delta;
+    boolean initialized;
+    int[] written, changed, triggered;
+    int numWritten;
+
+    State(VhdlInterpreter m, long[] generics, List<Port> ports) {
+      model = m;
+      this.ports = ports;
+      this.generics = generics;
+      int n = m.slotName.size();
+      width = new int[n];
+      low = new int[n];
+      cur = new Value[n];
+      next = new Value[n];
+      last = new Value[n];
+      eventDelta = new int[n];
+      written = new int[n];
+      changed = new int[n];
+      triggered = new int[m.processes.size()];
+      portSlot = new int[ports.size()];
+      try {
+        for (int i = 0; i < n; i++) {
+          Expr hi = m.slotHigh.get(i);
+          if (hi != null) {
+            low[i] = (int)integer(m.slotLow.get(i).eval(this));
+            width[i] = (int)integer(hi.eval(this)) - low[i] + 1;
+            if (width[i] < 1 || width[i] > Value.MAX_WIDTH)
+              throw new EvalException("bad width for " + m.slotName.get(i));
+          } else {
+            width[i] = 1;
+          }
+          Expr init = m.slotInit.get(i);
+          cur[i] = init != null ? vec(init.eval(this), width[i])
+              : Value.createUnknown(width[i]);
+          last[i] = cur[i];
+        }
+        for (int i = 0; i < portSlot.length; i++) {
+          String name = ports.get(i).getToolTip();
+          int slot = name == null ? -1
+              : m.slotName.indexOf(name.toLowerCase(Locale.ROOT));
+          int kind = slot < 0 ? -1 : m.slotKind.get(slot);
+          boolean input = ports.get(i).getType() == EndData.INPUT_ONLY;
+          if ((input ? kind != IN : kind != OUT)
+              || width[slot] != ports.get(i).getFixedBitWidth())
+            slot = -1;
+          portSlot[i] = slot;
+        }
+      } catch (EvalException e) {
+        failed = e.getMessage();
+      }
+    }
+
+    @Override
+    public State clone() {
+      try {
+        State s = (State)super.clone();
+        s.cur = cur.clone();
+        s.next = next.clone();
+        s.last = last.clone();
+        s.eventDelta = eventDelta.clone();
+        s.written = written.clone();
+        s.changed = changed.clone();
+        s.triggered = triggered.clone();
+        return s;
+      } catch (CloneNotSupportedException e) {
+        return null;
+      }
+    }
+
+    void assign(int slot, Value val) {
+      if (next[slot] == null)
+        written[numWritten++] = slot;
+      next[slot] = val;
+    }
+
+    Value pending(int slot) {
+      return next[slot] != null ? next[slot] : cur[slot];
+    }
+
+    void run(InstanceState state) {
+      int d = ++delta;
+      int numChanged = 0;
+      for (int i = 0; i < portSlot.length; i++) {
+        int slot = portSlot[i];
+        if (slot < 0 || model.slotKind.get(slot) != IN)
+          continue;
+        Value v = state.getPortValue(i);
+        if (v.getWidth() != width[slot])
+          v = Value.createUnknown(BitWidth.create(width[slot]));
+        if (!v.equals(cur[slot])) {
+          last[slot] = cur[slot];
+          cur[slot] = v;
+          eventDelta[slot] = d;
+          changed[numChanged++] = slot;
+        }
+      }
+
+      // As in VHDL, every process runs once at initialization.
+      boolean all = !initialized;
+      initialized = true;
+      ArrayList<Process> procs = model.processes;
+      for (int iter = 0; ; iter++) {
+        boolean any = all;
+        for (int k = 0; k < numChanged; k++) {
+          for (int p : model.readers[changed[k]]) {
+            triggered[p] = d;
+            any = true;
+          }
+        }
+        if (!any)
+          break;
+        if (iter >= MAX_DELTAS)
+          throw new EvalException("signals do not settle");
+        for (int p = 0; p < procs.size(); p++) {
+          if (all || triggered[p] == d) {
+            for (Stmt st : procs.get(p).body)
+              st.exec(this);
+          }
+        }
+        all = false;
+
+        d = ++delta;
+        numChanged = 0;
+        for (int k = 0; k < numWritten; k++) {
+          int slot = written[k];
+          Value v = next[slot];
+          next[slot] = null;
+          if (!v.equals(cur[slot])) {
+            last[slot] = cur[slot];
+            cur[slot] = v;
+            eventDelta[slot] = d;
+            changed[numChanged++] = slot;
+          }
+        }
+        numWritten = 0;
+      }
+
+      for (int i = 0; i < portSlot.length; i++) {
+        int slot = portSlot[i];
+        if (slot >= 0 && model.slotKind.get(slot) == OUT)
+          state.setPort(i, cur[slot], 1);
+        else if (ports.get(i).getType() != EndData.INPUT_ONLY
+            && ports.get(i).getFixedBitWidth() > 0)
+          state.setPort(i, Value.createError(
+                BitWidth.create(ports.get(i).getFixedBitWidth())), 1);
+      }
+    }
+  }
+
+  // ---- values ----
+
+  private static Value logic(char c) {
+    switch (c) {
+    case '0':
+    case 'L':
+      return Value.FALSE;
+    case '1':
+    case 'H':
+      return Value.TRUE;
+    case 'Z':
+    case 'U':
+    case 'W':
+      return Value.UNKNOWN;
+    default:
+      return Value.ERROR;
+    }
+  }
+
+  // Converts o to a vector of the given width, or of any width if width <= 0.
+  private static Value vec(Object o, int width) {
+    if (o instanceof Value) {
+      Value v = (Value)o;
+      if (width > 0 && v.getWidth() != width)
+        throw new EvalException("width mismatch");
+      return v;
+    } else if (width <= 0) {
+      throw new EvalException("vector expected");
+    } else if (o instanceof Long) {
+      return Value.createKnown(width, (Long)o);
+    } else if (o instanceof Others) {
+      return Value.repeat(((Others)o).bit, width);
+    } else {
+      throw new EvalException("vector expected");
+    }
+  }
+
+  private static long integer(Object o) {
+    if (o instanceof Long)
+      return (Long)o;
+    throw new EvalException("integer expected");
+  }
+
+  private static int width(Object o) {
+    long w = integer(o);
+    if (w < 1 || w > Value.MAX_WIDTH)
+      throw new EvalException("bad width " + w);
+    return (int)w;
+  }
+
+  private static boolean cond(Object o) {
+    if (o instanceof Boolean)
+      return (Boolean)o;
+    if (o instanceof Value && ((Value)o).getWidth() == 1)
+      return o == Value.TRUE;
+    throw new EvalException("condition expected");
+  }
+
+  private static int widthOf(Object a, Object b) {
+    if (a instanceof Value)
+      return ((Value)a).getWidth();
+    if (b instanceof Value)
+      return ((Value)b).getWidth();
+    throw new EvalException("vector expected");
+  }
+
+  // Zero-extends or truncates.
+  private static Value resize(Value v, int width) {
+    int w = v.getWidth();
+    if (w == width)
+      return v;
+    if (w < width)
+      return v.extendWidth(width, Value.FALSE);
+    return Value.create(Arrays.copyOf(v.getAll(), width));
+  }
+
+  private static Value slice(Value v, int hi, int lo) {
+    if (lo < 0 || hi >= v.getWidth() || hi < lo)
+      throw new EvalException("slice out of range");
+    return Value.create(Arrays.copyOfRange(v.getAll(), lo, hi + 1));
+  }
+
+  private static Value splice(Value v, int hi, int lo, Value part) {
+    if (lo < 0 || hi >= v.getWidth() || hi < lo)
+      throw new EvalException("slice out of range");
+    Value[] bits = v.getAll();
+    System.arraycopy(vec(part, hi - lo + 1).getAll(), 0, bits, lo, hi - lo + 1);
+    return Value.create(bits);
+  }
+
+  private static Value shift(Value v, long n, boolean left) {
+    Value[] bits = v.getAll();
+    Value[] res = new Value[bits.length];
+    for (int i = 0; i < bits.length; i++) {
+      long j = left ? i - n : i + n;
+      res[i] = j >= 0 && j < bits.length ? bits[(int)j] : Value.FALSE;
+    }
+    return Value.create(res);
+  }
+
+  private static Object logical(String op, Object a, Object b) {
+    if (a instanceof Boolean && b instanceof Boolean) {
+      boolean x = (Boolean)a, y = (Boolean)b;
+      switch (op) {
+      case "and": return x && y;
+      case "or": return x || y;
+      case "xor": return x ^ y;
+      case "nand": return !(x && y);
+      case "nor": return !(x || y);
+      default: return x == y;
+      }
+    }
+    int w = widthOf(a, b);
+    Value x = vec(a, w), y = vec(b, w);
+    switch (op) {
+    case "and": return x.and(y);
+    case "or": return x.or(y);
+    case "xor": return x.xor(y);
+    case "nand": return x.and(y).not();
+    case "nor": return x.or(y).not();
+    default: return x.xor(y).not();
+    }
+  }
+
+  // Compares a and b, returning null if either has undefined bits.
+  private static Integer compare(Object a, Object b) {
+    if (a instanceof Long && b instanceof Long)
+      return Long.compare((Long)a, (Long)b);
+    if (a instanceof Others || b instanceof Others) {
+      int w = widthOf(a, b);
+      a = vec(a, w);
+      b = vec(b, w);
+    }
+    long x, y;
+    if (a instanceof Value) {
+      if (!((Value)a).isFullyDefined())
+        return null;
+      x = ((Value)a).toLongValue();
+    } else {
+      x = integer(a);
+    }
+    if (b instanceof Value) {
+      if (!((Value)b).isFullyDefined())
+        return null;
+      y = ((Value)b).toLongValue();
+    } else {
+      y = integer(b);
+    }
+    return Long.compareUnsigned(x, y);
+  }
+
+  private static Object relational(String op, Object a, Object b) {
+    if (a instanceof Boolean || b instanceof Boolean) {
+      if (!(a instanceof Boolean && b instanceof Boolean) || !(op.equals("=") || op.equals("/=")))
+        throw new EvalException("bad comparison");
+      return a.equals(b) == op.equals("=");
+    }
+    if (a instanceof Value && b instanceof Value
+        && ((Value)a).getWidth() == ((Value)b).getWidth()) {
+      if (op.equals("="))
+        return a.equals(b);
+      if (op.equals("/="))
+        return !a.equals(b);
+    }
+    Integer c = compare(a, b);
+    if (c == null)
+      return op.equals("/=");
+    switch (op) {
+    case "=": return c == 0;
+    case "/=": return c != 0;
+    case "<": return c < 0;
+    case "<=": return c <= 0;
+    case ">": return c > 0;
+    default: return c >= 0;
+    }
+  }
+
+  private static Object arithmetic(String op, Object a, Object b) {
+    if (a instanceof Long && b instanceof Long) {
+      long x = (Long)a, y = (Long)b;
+      switch (op) {
+      case "+": return x + y;
+      case "-": return x - y;
+      case "*": return x * y;
+      case "/":
+      case "mod":
+      case "rem":
+        if (y == 0)
+          throw new EvalException("division by zero");
+        return op.equals("/") ? x / y : op.equals("rem") ? x % y : Math.floorMod(x, y);
+      }
+    }
+    if (!(op.equals("+") || op.equals("-") || op.equals("*")))
+      throw new EvalException("integer expected");
+    int w;
+    if (op.equals("*"))
+      w = a instanceof Value && b instanceof Value
+          ? ((Value)a).getWidth() + ((Value)b).getWidth()
+          : 2 * widthOf(a, b);
+    else if (a instanceof Value && b instanceof Value)
+      w = Math.max(((Value)a).getWidth(), ((Value)b).getWidth());
+    else
+      w = widthOf(a, b);
+    if (w > Value.MAX_WIDTH)
+      throw new EvalException("result too wide");
+    Value x = a instanceof Value ? resize((Value)a, w) : vec(a, w);
+    Value y = b instanceof Value ? resize((Value)b, w) : vec(b, w);
+    if (!x.isFullyDefined() || !y.isFullyDefined())
+      return Value.createError(BitWidth.create(w));
+    long r;
+    switch (op) {
+    case "+": r = x.toLongValue() + y.toLongValue(); break;
+    case "-": r = x.toLongValue() - y.toLongValue(); break;
+    default: r = x.toLongValue() * y.toLongValue(); break;
+    }
+    return Value.createKnown(w, r);
+  }
+
+  private static Value concat(Object a, Object b) {
+    Value[] x = vec(a, 0).getAll(), y = vec(b, 0).getAll();
+    if (x.length + y.length > Value.MAX_WIDTH)
+      throw new EvalException("result too wide");
+    Value[] bits = Arrays.copyOf(y, x.length + y.length);
+    System.arraycopy(x, 0, bits, y.length, x.length);
+    return Value.create(bits);
+  }
+
+  // ---- lexer ----
+
+  private static final int ID = 0, NUM = 1, CHR = 2, STR = 3, SYM = 4, EOF = 5;
+
+  private static class Token {
+    final int kind;
+    final String text; // lower case for identifiers, upper case for literals
+
+    Token(int kind, String text) {
+      this.kind = kind;
+      this.text = text;
+    }
+  }
+
+  // Reserved words that may directly precede a character literal.
+  private static final HashSet<String> BEFORE_LITERAL = new HashSet<>(Arrays.asList(
+        "and", "or", "xor", "nand", "nor", "xnor", "not", "when", "else",
+        "return", "then", "is", "mod", "rem", "abs"));
+
+  private static final String SYMBOLS2[] = { "<=", ">=", "/=", ":=", "=>", "**" };
+  private static final String SYMBOLS1 = "();:,&+-*/=<>|.";
+
+  private static ArrayList<Token> tokenize(String src) throws UnsupportedException {
+    ArrayList<Token> toks = new ArrayList<>();
+    int n = src.length();
+    int i = 0;
+    outer:
+    while (i < n) {
+      char c = src.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '-' && i + 1 < n && src.charAt(i + 1) == '-') {
+        while (i < n && src.charAt(i) != '\n')
+          i++;
+      } else if (Character.isLetter(c)) {
+        int j = i;
+        while (j < n && (Character.isLetterOrDigit(src.charAt(j)) || src.charAt(j) == '_'))
+          j++;
+        String word = src.substring(i, j).toLowerCase(Locale.ROOT);
+        if (j < n && src.charAt(j) == '"' && (word.equals("b") || word.equals("o") || word.equals("x"))) {
+          int k = src.indexOf('"', j + 1);
+          if (k < 0)
+            throw new UnsupportedException("unterminated string");
+          toks.add(new Token(STR, bitString(word.charAt(0), src.substring(j + 1, k))));
+          i = k + 1;
+        } else {
+          toks.add(new Token(ID, word));
+          i = j;
+        }
+      } else if (Character.isDigit(c)) {
+        int j = i;
+        while (j < n && (Character.isDigit(src.charAt(j)) || src.charAt(j) == '_'))
+          j++;
+        if (j < n && (src.charAt(j) == '#' || src.charAt(j) == '.'
+              || Character.isLetter(src.charAt(j))))
+          throw new UnsupportedException("unsupported number");
+        toks.add(new Token(NUM, src.substring(i, j).replace("_", "")));
+        i = j;
+      } else if (c == '\'') {
+        Token prev = toks.isEmpty() ? null : toks.get(toks.size() - 1);
+        boolean attr = prev != null && ((prev.kind == ID && !BEFORE_LITERAL.contains(prev.text))
+            || prev.text.equals(")"));
+        if (!attr && i + 2 < n && src.charAt(i + 2) == '\'') {
+          toks.add(new Token(CHR, src.substring(i + 1, i + 2).toUpperCase(Locale.ROOT)));
+          i += 3;
+        } else {
+          toks.add(new Token(SYM, "'"));
+          i++;
+        }
+      } else if (c == '"') {
+        int k = src.indexOf('"', i + 1);
+        if (k < 0)
+          throw new UnsupportedException("unterminated string");
+        toks.add(new Token(STR, src.substring(i + 1, k).toUpperCase(Locale.ROOT)));
+        i = k + 1;
+      } else {
+        for (String sym : SYMBOLS2) {
+          if (src.startsWith(sym, i)) {
+            toks.add(new Token(SYM, sym));
+            i += 2;
+            continue outer;
+          }
+        }
+        if (SYMBOLS1.indexOf(c) < 0)
+          throw new UnsupportedException("unexpected character " + c);
+        toks.add(new Token(SYM, String.valueOf(c)));
+        i++;
+      }
+    }
+    toks.add(new Token(EOF, ""));
+    return toks;
+  }
+
+  private static String bitString(char base, String digits) throws UnsupportedException {
+    int bits = base == 'x' ? 4 : base == 'o' ? 3 : 1;
+    StringBuilder s = new StringBuilder();
+    for (char c : digits.replace("_", "").toCharArray()) {
+      int d = Character.digit(c, 1 << bits);
+      if (d < 0)
+        throw new UnsupportedException("bad bit string");
+      for (int k = bits - 1; k >= 0; k--)
+        s.append((d >> k) & 1);
+    }
+    return s.toString();
+  }
+
+  // ---- parser ----
+
+  // Named things other than slots.
+  private static class Generic {
+    final int index;
+
+    Generic(int index) {
+      this.index = index;
+    }
+  }
+
+  private static class Constant {
+    final Expr value;
+
+    Constant(Expr value) {
+      this.value = value;
+    }
+  }
+
+  private class Parser {
+    final ArrayList<Token> toks;
+    int pos;
+    HashMap<String, Object> names = new HashMap<>(); // Integer slot, Generic, or Constant
+    BitSet reads = new BitSet();
+    // Expressions that evaluate to an integer, and those of them that depend
+    // only on generics and constants.
+    Set<Expr> integers = Collections.newSetFromMap(new IdentityHashMap<>());
+    Set<Expr> statics = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    Parser(ArrayList<Token> toks) {
+      this.toks = toks;
+    }
+
+    Token peek() {
+      return toks.get(pos);
+    }
+
+    boolean at(String text) {
+      Token t = peek();
+      return (t.kind == ID || t.kind == SYM) && t.text.equals(text);
+    }
+
+    boolean accept(String text) {
+      if (!at(text))
+        return false;
+      pos++;
+      return true;
+    }
+
+    void expect(String text) throws UnsupportedException {
+      if (!accept(text))
+        throw new UnsupportedException("expected " + text + " but found " + peek().text);
+    }
+
+    String ident() throws UnsupportedException {
+      Token t = peek();
+      if (t.kind != ID)
+        throw new UnsupportedException("expected a name but found " + t.text);
+      pos++;
+      return t.text;
+    }
+
+    Expr integerExpr(Expr e, boolean isStatic) {
+      integers.add(e);
+      if (isStatic)
+        statics.add(e);
+      return e;
+    }
+
+    void optionalIdent() {
+      if (peek().kind == ID)
+        pos++;
+    }
+
+    void declare(String name, Object what) throws UnsupportedException {
+      if (names.containsKey(name))
+        throw new UnsupportedException("duplicate name " + name);
+      names.put(name, what);
+    }
+
+    int addSlot(String name, int kind, Expr[] range, Expr init) throws UnsupportedException {
+      int slot = slotName.size();
+      declare(name, slot);
+      slotName.add(name);
+      slotKind.add(kind);
+      slotHigh.add(range == null ? null : range[0]);
+      slotLow.add(range == null ? null : range[1]);
+      slotInit.add(init);
+      return slot;
+    }
+
+    void parseDesign() throws UnsupportedException {
+      while (accept("library") || accept("use")) {
+        while (!accept(";"))
+          if (peek().kind == EOF)
+            throw new UnsupportedException("unexpected end");
+          else
+            pos++;
+      }
+      expect("entity");
+      ident();
+      expect("is");
+      if (accept("generic"))
+        parseInterfaceList(true);
+      if (accept("port"))
+        parseInterfaceList(false);
+      expect("end");
+      accept("entity");
+      optionalIdent();
+      expect(";");
+
+      expect("architecture");
+      ident();
+      expect("of");
+      ident();
+      expect("is");
+      while (!accept("begin"))
+        parseDeclaration();
+      while (!at("end"))
+        parseConcurrent();
+      expect("end");
+      accept("architecture");
+      optionalIdent();
+      expect(";");
+      if (peek().kind != EOF)
+        throw new UnsupportedException("more than one design unit");
+    }
+
+    void parseInterfaceList(boolean isGeneric) throws UnsupportedException {
+      expect("(");
+      do {
+        ArrayList<String> ids = new ArrayList<>();
+        ids.add(ident());
+        while (accept(","))
+          ids.add(ident());
+        expect(":");
+        if (isGeneric) {
+          parseType(true);
+          if (accept(":="))
+            parseExpr();
+          for (String id : ids) {
+            int index = -1;
+            for (int i = 0; i < generics.length; i++)
+              if (generics[i].getName().equalsIgnoreCase(id))
+                index = i;
+            if (index < 0)
+              throw new UnsupportedException("unknown generic " + id);
+            declare(id, new Generic(index));
+          }
+        } else {
+          int kind;
+          if (accept("in"))
+            kind = IN;
+          else if (accept("out") || accept("buffer"))
+            kind = OUT;
+          else
+            throw new UnsupportedException("unsupported port mode");
+          Expr[] range = parseType(false);
+          if (at(":="))
+            throw new UnsupportedException("port default");
+          for (String id : ids)
+            addSlot(id, kind, range, null);
+        }
+      } while (accept(";"));
+      expect(")");
+      expect(";");
+    }
+
+    // Returns the range of a vector type, null for std_logic. Integer types
+    // are allowed only if integerOk, and also return null.
+    Expr[] parseType(boolean integerOk) throws UnsupportedException {
+      String type = ident();
+      switch (type) {
+      case "std_logic":
+      case "std_ulogic":
+        return null;
+      case "std_logic_vector":
+      case "std_ulogic_vector":
+      case "unsigned":
+        expect("(");
+        Expr hi = parseExpr();
+        expect("downto");
+        Expr lo = parseExpr();
+        expect(")");
+        return new Expr[] { hi, lo };
+      case "integer":
+      case "natural":
+      case "positive":
+        if (!integerOk)
+          throw new UnsupportedException("integer signal");
+        if (accept("range")) {
+          parseExpr();
+          if (!accept("to"))
+            expect("downto");
+          parseExpr();
+        }
+        return null;
+      default:
+        throw new UnsupportedException("unsupported type " + type);
+      }
+    }
+
+    void parseDeclaration() throws UnsupportedException {
+      if (accept("signal")) {
+        ArrayList<String> ids = new ArrayList<>();
+        ids.add(ident());
+        while (accept(","))
+          ids.add(ident());
+        expect(":");
+        Expr[] range = parseType(false);
+        Expr init = accept(":=") ? parseExpr() : null;
+        expect(";");
+        for (String id : ids)
+          addSlot(id, SIGNAL, range, init);
+      } else if (accept("constant")) {
+        String id = ident();
+        expect(":");
+        boolean integer = peek().text.equals("integer")
+            || peek().text.equals("natural") || peek().text.equals("positive");
+        Expr[] range = parseType(true);
+        expect(":=");
+        Expr value = parseExpr();
+        expect(";");
+        if (integer) {
+          declare(id, new Constant(integerExpr(s -> integer(value.eval(s)),
+              statics.contains(value))));
+        } else if (range == null) {
+          declare(id, new Constant(s -> vec(value.eval(s), 1)));
+        } else {
+          declare(id, new Constant(s -> vec(value.eval(s),
+                  (int)(integer(range[0].eval(s)) - integer(range[1].eval(s)) + 1))));
+        }
+      } else {
+        throw new UnsupportedException("unsupported declaration " + peek().text);
+      }
+    }
+
+    void parseConcurrent() throws UnsupportedException {
+      if (peek().kind == ID && toks.get(pos + 1).text.equals(":"))
+        pos += 2; // label
+      reads.clear();
+      if (accept("process")) {
+        parseProcess();
+      } else if (accept("with")) {
+        Expr sel = parseExpr();
+        expect("select");
+        Target t = parseTarget(false);
+        expect("<=");
+        ArrayList<Expr[]> choices = new ArrayList<>();
+        ArrayList<Stmt[]> bodies = new ArrayList<>();
+        do {
+          Expr e = parseExpr();
+          expect("when");
+          choices.add(parseChoices());
+          bodies.add(new Stmt[] { t.assign(e) });
+        } while (accept(","));
+        expect(";");
+        processes.add(new Process(reads.stream().toArray(),
+              new Stmt[] { caseStmt(sel, choices, bodies) }));
+      } else {
+        Target t = parseTarget(false);
+        expect("<=");
+        ArrayList<Expr> conds = new ArrayList<>();
+        ArrayList<Stmt[]> bodies = new ArrayList<>();
+        Stmt[] otherwise = null;
+        while (true) {
+          Expr e = parseExpr();
+          if (accept("when")) {
+            conds.add(parseExpr());
+            bodies.add(new Stmt[] { t.assign(e) });
+            if (accept("else"))
+              continue;
+          } else {
+            otherwise = new Stmt[] { t.assign(e) };
+          }
+          break;
+        }
+        expect(";");
+        Stmt st = conds.isEmpty() ? otherwise[0] : ifStmt(conds, bodies, otherwise);
+        processes.add(new Process(reads.stream().toArray(), new Stmt[] { st }));
+      }
+    }
+
+    void parseProcess() throws UnsupportedException {
+      if (!accept("("))
+        throw new UnsupportedException("process without sensitivity list");
+      int[] sensitivity = null;
+      if (!accept("all")) {
+        ArrayList<Integer> list = new ArrayList<>();
+        do {
+          String id = ident();
+          Object o = names.get(id);
+          if (!(o instanceof Integer) || slotKind.get((Integer)o) == VARIABLE)
+            throw new UnsupportedException("bad sensitivity list");
+          list.add((Integer)o);
+        } while (accept(","));
+        sensitivity = list.stream().mapToInt(Integer::intValue).toArray();
+      }
+      expect(")");
+      accept("is");
+      HashMap<String, Object> outer = new HashMap<>(names);
+      while (accept("variable")) {
+        ArrayList<String> ids = new ArrayList<>();
+        ids.add(ident());
+        while (accept(","))
+          ids.add(ident());
+        expect(":");
+        Expr[] range = parseType(false);
+        Expr init = accept(":=") ? parseExpr() : null;
+        expect(";");
+        for (String id : ids)
+          addSlot(id, VARIABLE, range, init);
+      }
+      expect("begin");
+      Stmt[] body = parseSequence();
+      expect("end");
+      expect("process");
+      optionalIdent();
+      expect(";");
+      names = outer;
+      if (sensitivity == null)
+        sensitivity = reads.stream().toArray();
+      processes.add(new Process(sensitivity, body));
+    }
+
+    Stmt[] parseSequence() throws UnsupportedException {
+      ArrayList<Stmt> list = new ArrayList<>();
+      while (!at("end") && !at("elsif") && !at("else") && !at("when"))
+        list.add(parseStatement());
+      return list.toArray(new Stmt[list.size()]);
+    }
+
+    Stmt parseStatement() throws UnsupportedException {
+      if (accept("null")) {
+        expect(";");
+        return s -> { };
+      } else if (accept("if")) {
+        ArrayList<Expr> conds = new ArrayList<>();
+        ArrayList<Stmt[]> bodies = new ArrayList<>();
+        Stmt[] otherwise = null;
+        do {
+          conds.add(parseExpr());
+          expect("then");
+          bodies.add(parseSequence());
+        } while (accept("elsif"));
+        if (accept("else"))
+          otherwise = parseSequence();
+        expect("end");
+        expect("if");
+        expect(";");
+        return ifStmt(conds, bodies, otherwise);
+      } else if (accept("case")) {
+        Expr sel = parseExpr();
+        expect("is");
+        ArrayList<Expr[]> choices = new ArrayList<>();
+        ArrayList<Stmt[]> bodies = new ArrayList<>();
+        while (accept("when")) {
+          choices.add(parseChoices());
+          expect("=>");
+          bodies.add(parseSequence());
+        }
+        expect("end");
+        expect("case");
+        expect(";");
+        return caseStmt(sel, choices, bodies);
+      } else {
+        Target t = parseTarget(true);
+        boolean variable = slotKind.get(t.slot) == VARIABLE;
+        expect(variable ? ":=" : "<=");
+        Expr e = parseExpr();
+        if (at("after"))
+          throw new UnsupportedException("delays");
+        expect(";");
+        return t.assign(e);
+      }
+    }
+
+    // A null entry stands for "others".
+    Expr[] parseChoices() throws UnsupportedException {
+      ArrayList<Expr> list = new ArrayList<>();
+      do {
+        list.add(accept("others") ? null : parseSimple());
+      } while (accept("|"));
+      return list.toArray(new Expr[list.size()]);
+    }
+
+    Stmt ifStmt(ArrayList<Expr> condList, ArrayList<Stmt[]> bodyList, Stmt[] otherwise) {
+      Expr[] conds = condList.toArray(new Expr[condList.size()]);
+      Stmt[][] bodies = bodyList.toArray(new Stmt[bodyList.size()][]);
+      return s -> {
+        Stmt[] body = otherwise;
+        for (int i = 0; i < conds.length; i++) {
+          if (cond(conds[i].eval(s))) {
+            body = bodies[i];
+            break;
+          }
+        }
+        if (body != null)
+          for (Stmt st : body)
+            st.exec(s);
+      };
+    }
+
+    Stmt caseStmt(Expr sel, ArrayList<Expr[]> choiceList, ArrayList<Stmt[]> bodyList) {
+      Expr[][] choices = choiceList.toArray(new Expr[choiceList.size()][]);
+      Stmt[][] bodies = bodyList.toArray(new Stmt[bodyList.size()][]);
+      return s -> {
+        Object v = sel.eval(s);
+        for (int i = 0; i < choices.length; i++) {
+          for (Expr c : choices[i]) {
+            if (c == null || cond(relational("=", v, c.eval(s)))) {
+              for (Stmt st : bodies[i])
+                st.exec(s);
+              return;
+            }
+          }
+        }
+      };
+    }
+
+    // The left side of an assignment, with optional index or slice.
+    class Target {
+      int slot;
+      Expr hi, lo;
+
+      Stmt assign(Expr e) {
+        int slot = this.slot;
+        Expr hi = this.hi, lo = this.lo;
+        boolean variable = slotKind.get(slot) == VARIABLE;
+        if (hi == null) {
+          if (variable)
+            return s -> s.cur[slot] = vec(e.eval(s), s.width[slot]);
+          else
+            return s -> s.assign(slot, vec(e.eval(s), s.width[slot]));
+        }
+        return s -> {
+          int h = (int)integer(hi.eval(s)) - s.low[slot];
+          int l = lo == null ? h : (int)integer(lo.eval(s)) - s.low[slot];
+          Value v = variable ? s.cur[slot] : s.pending(slot);
+          v = splice(v, h, l, vec(e.eval(s), h - l + 1));
+          if (variable)
+            s.cur[slot] = v;
+          else
+            s.assign(slot, v);
+        };
+      }
+    }
+
+    Target parseTarget(boolean variableOk) throws UnsupportedException {
+      String id = ident();
+      Object o = names.get(id);
+      if (!(o instanceof Integer))
+        throw new UnsupportedException("bad assignment target " + id);
+      Target t = new Target();
+      t.slot = (Integer)o;
+      int kind = slotKind.get(t.slot);
+      if (kind == IN || (kind == VARIABLE && !variableOk))
+        throw new UnsupportedException("bad assignment target " + id);
+      if (accept("(")) {
+        if (slotHigh.get(t.slot) == null)
+          throw new UnsupportedException("indexing a scalar");
+        t.hi = parseExpr();
+        if (accept("downto"))
+          t.lo = parseExpr();
+        expect(")");
+      }
+      return t;
+    }
+
+    // ---- expressions ----
+
+    Expr parseExpr() throws UnsupportedException {
+      Expr e = parseRelation();
+      while (true) {
+        String op = peek().text;
+        if (peek().kind != ID || !(op.equals("and") || op.equals("or")
+              || op.equals("xor") || op.equals("nand") || op.equals("nor")
+              || op.equals("xnor")))
+          return e;
+        pos++;
+        Expr a = e, b = parseRelation();
+        e = s -> logical(op, a.eval(s), b.eval(s));
+      }
+    }
+
+    Expr parseRelation() throws UnsupportedException {
+      Expr a = parseSimple();
+      String op = peek().text;
+      if (peek().kind == SYM && (op.equals("=") || op.equals("/=") || op.equals("<")
+            || op.equals("<=") || op.equals(">") || op.equals(">="))) {
+        pos++;
+        Expr b = parseSimple();
+        return s -> relational(op, a.eval(s), b.eval(s));
+      }
+      return a;
+    }
+
+    Expr parseSimple() throws UnsupportedException {
+      Expr e;
+      if (accept("-")) {
+        Expr a = parseTerm();
+        if (!integers.contains(a))
+          throw new UnsupportedException("negating a vector");
+        e = integerExpr(s -> -integer(a.eval(s)), statics.contains(a));
+      } else {
+        accept("+");
+        e = parseTerm();
+      }
+      while (true) {
+        String op = peek().text;
+        if (peek().kind != SYM || !(op.equals("+") || op.equals("-") || op.equals("&")))
+          return e;
+        pos++;
+        Expr a = e, b = parseTerm();
+        if (op.equals("&"))
+          e = s -> concat(a.eval(s), b.eval(s));
+        else
+          e = arithmetic(op, a, b);
+      }
+    }
+
+    Expr parseTerm() throws UnsupportedException {
+      Expr e = parseFactor();
+      while (true) {
+        Token t = peek();
+        String op = t.text;
+        if (!(t.kind == SYM && (op.equals("*") || op.equals("/")))
+            && !(t.kind == ID && (op.equals("mod") || op.equals("rem"))))
+          return e;
+        pos++;
+        Expr a = e, b = parseFactor();
+        if (!op.equals("*") && !(integers.contains(a) && integers.contains(b)))
+          throw new UnsupportedException(op + " of vectors");
+        e = arithmetic(op, a, b);
+      }
+    }
+
+    Expr arithmetic(String op, Expr a, Expr b) {
+      Expr e = s -> VhdlInterpreter.arithmetic(op, a.eval(s), b.eval(s));
+      if (integers.contains(a) && integers.contains(b))
+        integerExpr(e, statics.contains(a) && statics.contains(b));
+      return e;
+    }
+
+    Expr parseFactor() throws UnsupportedException {
+      if (accept("not")) {
+        Expr a = parsePrimary();
+        return s -> {
+          Object v = a.eval(s);
+          if (v instanceof Boolean)
+            return !(Boolean)v;
+          return vec(v, 0).not();
+        };
+      }
+      return parsePrimary();
+    }
+
+    Expr parsePrimary() throws UnsupportedException {
+      Token t = peek();
+      pos++;
+      switch (t.kind) {
+      case NUM: {
+        Long v = Long.valueOf(t.text);
+        return integerExpr(s -> v, true);
+      }
+      case CHR: {
+        Value v = logic(t.text.charAt(0));
+        return s -> v;
+      }
+      case STR: {
+        int n = t.text.length();
+        if (n == 0 || n > Value.MAX_WIDTH)
+          throw new UnsupportedException("bad string literal");
+        Value[] bits = new Value[n];
+        for (int i = 0; i < n; i++)
+          bits[n - 1 - i] = logic(t.text.charAt(i));
+        Value v = Value.create(bits);
+        return s -> v;
+      }
+      case SYM:
+        if (t.text.equals("(")) {
+          if (accept("others")) {
+            expect("=>");
+            Expr bit = parseExpr();
+            expect(")");
+            return s -> new Others(vec(bit.eval(s), 1));
+          }
+          Expr e = parseExpr();
+          expect(")");
+          return e;
+        }
+        break;
+      case ID:
+        return parseName(t.text);
+      }
+      throw new UnsupportedException("unexpected " + t.text);
+    }
+
+    Expr parseName(String id) throws UnsupportedException {
+      Object o = names.get(id);
+      if (o instanceof Generic) {
+        int g = ((Generic)o).index;
+        return integerExpr(s -> s.generics[g], true);
+      } else if (o instanceof Constant) {
+        if (at("(") || at("'"))
+          throw new UnsupportedException("indexing a constant");
+        return ((Constant)o).value;
+      } else if (o instanceof Integer) {
+        int slot = (Integer)o;
+        if (slotKind.get(slot) != VARIABLE)
+          reads.set(slot);
+        if (accept("'")) {
+          String attr = ident();
+          if (attr.equals("event"))
+            return s -> s.eventDelta[slot] == s.delta;
+          if (attr.equals("length"))
+            return integerExpr(s -> (long)s.width[slot], true);
+          throw new UnsupportedException("unsupported attribute " + attr);
+        }
+        if (accept("(")) {
+          if (slotHigh.get(slot) == null)
+            throw new UnsupportedException("indexing a scalar");
+          Expr hi = parseExpr();
+          Expr lo = accept("downto") ? parseExpr() : null;
+          expect(")");
+          if (lo == null)
+            return s -> s.cur[slot].get((int)integer(hi.eval(s)) - s.low[slot]);
+          return s -> slice(s.cur[slot],
+              (int)integer(hi.eval(s)) - s.low[slot],
+              (int)integer(lo.eval(s)) - s.low[slot]);
+        }
+        return s -> s.cur[slot];
+      }
+
+      switch (id) {
+      case "true":
+        return s -> Boolean.TRUE;
+      case "false":
+        return s -> Boolean.FALSE;
+      case "rising_edge":
+      case "falling_edge": {
+        expect("(");
+        Object arg = names.get(ident());
+        expect(")");
+        if (!(arg instanceof Integer) || slotKind.get((Integer)arg) == VARIABLE)
+          throw new UnsupportedException(id + " of a non-signal");
+        int slot = (Integer)arg;
+        reads.set(slot);
+        Value now = id.equals("rising_edge") ? Value.TRUE : Value.FALSE;
+        Value before = id.equals("rising_edge") ? Value.FALSE : Value.TRUE;
+        return s -> s.eventDelta[slot] == s.delta
+            && s.cur[slot].equals(now) && s.last[slot].equals(before);
+      }
+      }
+
+      Expr[] args = parseArgs();
+      switch (id) {
+      case "unsigned":
+      case "std_logic_vector":
+      case "std_ulogic_vector":
+        if (args.length == 1)
+          return s -> vec(args[0].eval(s), 0);
+        break;
+      case "to_unsigned":
+      case "conv_std_logic_vector":
+        if (args.length == 2) {
+          if (!statics.contains(args[1]))
+            throw new UnsupportedException("non-constant width for " + id);
+          return s -> Value.createKnown(width(args[1].eval(s)),
+              integer(args[0].eval(s)));
+        }
+        break;
+      case "to_integer":
+      case "conv_integer":
+        if (args.length == 1)
+          return integerExpr(s -> {
+            Value v = vec(args[0].eval(s), 0);
+            return v.isFullyDefined() ? v.toLongValue() : 0L;
+          }, false);
+        break;
+      case "resize":
+        if (args.length == 2) {
+          if (!statics.contains(args[1]))
+            throw new UnsupportedException("non-constant width for " + id);
+          return s -> resize(vec(args[0].eval(s), 0), width(args[1].eval(s)));
+        }
+        break;
+      case "shift_left":
+      case "shift_right":
+        if (args.length == 2) {
+          boolean left = id.equals("shift_left");
+          return s -> shift(vec(args[0].eval(s), 0), integer(args[1].eval(s)), left);
+        }
+        break;
+      default:
+        throw new UnsupportedException("unknown name " + id);
+      }
+      throw new UnsupportedException("wrong arguments to " + id);
+    }
+
+    Expr[] parseArgs() throws UnsupportedException {
+      ArrayList<Expr> args = new ArrayList<>();
+      expect("(");
+      do {
+        args.add(parseExpr());
+      } while (accept(","));
+      expect(")");
+      return args.toArray(new Expr[args.size()]);
+    }
+  }
+
+}
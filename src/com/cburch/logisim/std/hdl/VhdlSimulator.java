@@ -29,6 +29,7 @@
  */
 package com.cburch.logisim.std.hdl;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -37,6 +38,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -46,7 +48,14 @@ import com.bfh.logisim.netlist.Netlist;
 import com.cburch.logisim.circuit.CircuitEvent;
 import com.cburch.logisim.circuit.CircuitListener;
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
 import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.InstanceStateImpl;
+import com.cburch.logisim.instance.Port;
+import com.cburch.logisim.prefs.AppPreferences;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.util.SocketClient;
 
@@ -54,7 +63,9 @@ import com.cburch.logisim.util.SocketClient;
  * VHDL simulator allows Logisim to simulate the behavior of VHDL architectures.
  * It delegate this task to Questasim. Communication between Logisim and
  * Questasim is done by a TCL socket (TclBinder). Path to Questasim has to be
- * specified in Logisim's preferences.
+ * specified in Logisim's preferences. Entities evaluated during a propagation
+ * step are queued and sent to the simulator together at the end of the step,
+ * in one binary request (see VhdlSimulatorProtocol).
  *
  * @author christian.mueller@heig-vd.ch
  * @since 2.12.0
@@ -105,6 +116,37 @@ public class VhdlSimulator implements CircuitListener {
 
   private State state = State.DISABLED;
 
+  // Whether the binder on the current connection takes a whole step's
+  // entities per request (questasim_binder_batch.tcl), or one entity at a
+  // time as lines of text (questasim_binder.tcl).
+  private volatile boolean batched;
+
+  // An entity to be sent to the simulator, with the values at its ports.
+  private static class Evaluation {
+    final InstanceStateImpl state;
+    final String entityName;
+    final Value[] values;
+
+    Evaluation(InstanceStateImpl state, String entityName, Value[] values) {
+      this.state = state;
+      this.entityName = entityName;
+      this.values = values;
+    }
+  }
+
+  // Entities queued during the current propagation step, per propagator, as
+  // several may be running at once (e.g. when testing vectors in parallel).
+  // Guarded by itself.
+  private final HashMap<Propagator, ArrayList<Evaluation>> pending = new HashMap<>();
+  private volatile boolean anyPending;
+
+  // Handles of the port names declared on the current connection, their
+  // widths, and the last value forced on each input. Guarded by handles,
+  // which also serializes requests on the socket.
+  private final HashMap<String, Integer> handles = new HashMap<>();
+  private final ArrayList<Integer> handleWidths = new ArrayList<>();
+  private final ArrayList<Value> forced = new ArrayList<>();
+
   public VhdlSimulator(Project circuitState) {
     this.project = circuitState;
   }
@@ -215,10 +257,13 @@ public class VhdlSimulator implements CircuitListener {
     new File(SIM_SRC_PATH).mkdirs();
     new File(SIM_COMP_PATH).mkdirs();
 
+    batched = AppPreferences.VHDL_BATCH.get();
+
     try {
       Files.copy(
           this.getClass().getResourceAsStream(
-            SIM_RESOURCES_PATH + "questasim_binder.tcl"),
+            SIM_RESOURCES_PATH + (batched ? "questasim_binder_batch.tcl"
+                : "questasim_binder.tcl")),
           Paths.get(SIM_PATH + "questasim_binder.tcl"),
           StandardCopyOption.REPLACE_EXISTING);
       Files.copy(
@@ -287,6 +332,10 @@ public class VhdlSimulator implements CircuitListener {
     return hasVhdlComponent(p.getCircuitState());
   }
 
+  public boolean isBatched() {
+    return batched;
+  }
+
   public boolean isEnabled() {
     return state != State.DISABLED;
   }
@@ -296,10 +345,125 @@ public class VhdlSimulator implements CircuitListener {
   }
 
   /**
-   * Receive a message from the VHDL simulator
-   *
-   * @return
+   * Queue a VHDL entity, with its current port values, to be evaluated at the
+   * end of the current propagation step. Called from VhdlEntity.propagate().
    */
+  public void queue(String entityName, InstanceState state) {
+    InstanceStateImpl s = (InstanceStateImpl)state;
+    int n = s.getInstance().getPorts().size();
+    Value[] values = new Value[n];
+    for (int i = 0; i < n; i++)
+      values[i] = s.getPortValue(i);
+    // The state passed to propagate() gets reused, so keep a copy.
+    Evaluation e = new Evaluation(
+        new InstanceStateImpl(s.getCircuitState(), s.getComponent()),
+        entityName, values);
+    Propagator prop = s.getCircuitState().getPropagator();
+    synchronized (pending) {
+      ArrayList<Evaluation> batch = pending.get(prop);
+      if (batch == null) {
+        batch = new ArrayList<>();
+        pending.put(prop, batch);
+      }
+      batch.add(e);
+      anyPending = true;
+    }
+  }
+
+  /**
+   * Send the entities queued by the given propagator during the step it just
+   * finished, and drive their outputs with the simulator's results. This is
+   * normally a single round trip, but an entity appearing more than once
+   * (e.g. within two instances of the same subcircuit) gets a request of its
+   * own each time, as the simulator has only one copy of it.
+   */
+  public void flush(Propagator prop) {
+    if (!anyPending)
+      return;
+    ArrayList<Evaluation> batch;
+    synchronized (pending) {
+      batch = pending.remove(prop);
+      anyPending = !pending.isEmpty();
+    }
+    if (batch == null || !isRunning())
+      return;
+
+    synchronized (handles) {
+      VhdlSimulatorProtocol.Step step = new VhdlSimulatorProtocol.Step();
+      HashMap<Integer, Evaluation> targets = new HashMap<>();
+      HashMap<Integer, Integer> targetPorts = new HashMap<>();
+      for (Evaluation e : batch) {
+        List<Port> ports = e.state.getInstance().getPorts();
+        int n = ports.size();
+        int[] h = new int[n];
+        boolean conflict = false;
+        for (int i = 0; i < n; i++) {
+          Port p = ports.get(i);
+          String name = e.entityName + "_" + p.getToolTip();
+          Integer handle = handles.get(name);
+          if (handle == null) {
+            handle = handleWidths.size();
+            handles.put(name, handle);
+            handleWidths.add(p.getFixedBitWidth());
+            forced.add(null);
+            step.declare(handle, p.getType(), p.getFixedBitWidth(), name);
+          }
+          h[i] = handle;
+          conflict |= targets.containsKey(handle);
+        }
+        if (conflict) {
+          exchange(step, targets, targetPorts);
+          step = new VhdlSimulatorProtocol.Step();
+          targets.clear();
+          targetPorts.clear();
+        }
+        for (int i = 0; i < n; i++) {
+          int type = ports.get(i).getType();
+          int width = handleWidths.get(h[i]);
+          Value val = e.values[i];
+          if (type == EndData.OUTPUT_ONLY) {
+            step.port(h[i], width, null);
+          } else if (type == EndData.INPUT_OUTPUT || !val.equals(forced.get(h[i]))) {
+            step.port(h[i], width, val);
+            forced.set(h[i], val);
+          } else {
+            step.port(h[i], width, null);
+          }
+          targets.put(h[i], e);
+          targetPorts.put(h[i], i);
+        }
+      }
+      exchange(step, targets, targetPorts);
+    }
+  }
+
+  // Sends one request and applies the reply.
+  private void exchange(VhdlSimulatorProtocol.Step step,
+      HashMap<Integer, Evaluation> targets,
+      HashMap<Integer, Integer> targetPorts) {
+    if (step.isEmpty())
+      return;
+    socketClient.sendFrame(step.toFrame());
+    byte[] reply = socketClient.receiveFrame();
+    if (reply == null)
+      return;
+    try {
+      DataInputStream in = VhdlSimulatorProtocol.reader(reply);
+      if (in.readByte() != VhdlSimulatorProtocol.STEP)
+        throw new IOException("unexpected reply");
+      int n = in.readUnsignedShort();
+      for (int k = 0; k < n; k++) {
+        int handle = in.readUnsignedShort();
+        Value val = VhdlSimulatorProtocol.readBits(in, handleWidths.get(handle));
+        Evaluation e = targets.get(handle);
+        if (e != null)
+          e.state.setPort(targetPorts.get(handle), val, 1);
+      }
+    } catch (IOException | IndexOutOfBoundsException e) {
+      System.err.printf("Bad reply from VHDL simulator: %s\n", e.getMessage());
+    }
+  }
+
   public String receive() {
     if (!isRunning())
       throw new UnsupportedOperationException();
@@ -312,8 +476,17 @@ public class VhdlSimulator implements CircuitListener {
   }
 
   public void reset() {
-    if (isEnabled())
-      socketClient.send("restart");
+    if (!isRunning())
+      return;
+    synchronized (handles) {
+      for (int i = 0; i < forced.size(); i++)
+        forced.set(i, null);
+      if (batched)
+        socketClient.sendFrame(
+            VhdlSimulatorProtocol.command(VhdlSimulatorProtocol.RESTART));
+      else
+        socketClient.send("restart");
+    }
   }
 
   /**
@@ -338,11 +511,6 @@ public class VhdlSimulator implements CircuitListener {
     }
   }
 
-  /**
-   * Send a message to the VHDL simulator
-   *
-   * @param message
-   */
   public void send(String message) {
     if (!isRunning())
       throw new UnsupportedOperationException();
@@ -412,13 +580,35 @@ public class VhdlSimulator implements CircuitListener {
           "Cannot stop VHDL simulator from " + state + " state");
     }
 
-    tclBinder.stop();
+    if (tclBinder != null)
+      tclBinder.stop();
     socketClient.stop();
 
     setState(State.ENABLED);
   }
 
+  /**
+   * Start against an in-process stub rather than Questasim, e.g. to exercise
+   * VHDL entities on a machine without an HDL simulator installed.
+   */
+  public void startStub(VhdlSimulatorStub stub) {
+    stop();
+    batched = stub.isBatched();
+    try {
+      stub.connect(getSocketClient().getServerPort());
+    } catch (IOException e) {
+      System.err.printf("Cannot connect VHDL simulator stub: %s\n", e.getMessage());
+      return;
+    }
+    tclStartCallback();
+  }
+
   public void tclStartCallback() {
+    synchronized (handles) {
+      handles.clear();
+      handleWidths.clear();
+      forced.clear();
+    }
     socketClient.start();
     setState(State.RUNNING);
   }
@@ -0,0 +1,168 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.std.hdl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.cburch.logisim.data.Value;
+
+/**
+ * Messages exchanged with the VHDL simulator binder. Each message is one
+ * frame on the socket (see SocketClient), starting with a one-byte opcode.
+ * All integers are big-endian.
+ * <p/>
+ * A STEP request carries every port of every VHDL entity evaluated during
+ * one propagation step:
+ * <pre>
+ *   'S' u16 ndecls { u16 handle, u8 type, u16 width, utf name } ...
+ *       u16 nports { u16 handle, u8 hasValue, [bits] } ...
+ * </pre>
+ * A port name is declared once per connection, the first time it is sent,
+ * after which only its handle is used. The type is the port's EndData type
+ * (1 in, 2 out, 3 inout). Input values are sent only when they changed, as
+ * the simulator holds on to forced values. The binder applies the values,
+ * runs the simulation, and replies with the outputs and inouts:
+ * <pre>
+ *   'S' u16 nports { u16 handle, bits } ...
+ * </pre>
+ * where bits is two planes of ceil(width/8) bytes each, most significant bit
+ * first: the bit values, then a mask of unknown bits. RESTART and END
+ * requests have no payload and no reply.
+ */
+class VhdlSimulatorProtocol {
+
+  static final byte STEP = 'S';
+  static final byte RESTART = 'R';
+  static final byte END = 'E';
+
+  static byte[] command(byte op) {
+    return new byte[] { op };
+  }
+
+  // Builds one STEP request.
+  static class Step {
+    private ByteArrayOutputStream declBytes = new ByteArrayOutputStream();
+    private ByteArrayOutputStream portBytes = new ByteArrayOutputStream();
+    private DataOutputStream decls = new DataOutputStream(declBytes);
+    private DataOutputStream ports = new DataOutputStream(portBytes);
+    private int numDecls, numPorts;
+
+    void declare(int handle, int type, int width, String name) {
+      try {
+        decls.writeShort(handle);
+        decls.writeByte(type);
+        decls.writeShort(width);
+        decls.writeUTF(name);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      numDecls++;
+    }
+
+    // Adds a port, with val null if there is no value to drive.
+    void port(int handle, int width, Value val) {
+      try {
+        ports.writeShort(handle);
+        ports.writeByte(val == null ? 0 : 1);
+        if (val != null)
+          writeBits(ports, width, val);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      numPorts++;
+    }
+
+    boolean isEmpty() {
+      return numPorts == 0;
+    }
+
+    byte[] toFrame() {
+      ByteArrayOutputStream buf = new ByteArrayOutputStream(
+          6 + declBytes.size() + portBytes.size());
+      DataOutputStream out = new DataOutputStream(buf);
+      try {
+        out.writeByte(STEP);
+        out.writeShort(numDecls);
+        declBytes.writeTo(out);
+        out.writeShort(numPorts);
+        portBytes.writeTo(out);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return buf.toByteArray();
+    }
+  }
+
+  static DataInputStream reader(byte[] frame) {
+    return new DataInputStream(new ByteArrayInputStream(frame));
+  }
+
+  // Bits of val beyond its width, if any, are sent as unknown.
+  static void writeBits(DataOutputStream out, int width, Value val)
+      throws IOException {
+    int n = (width + 7) / 8;
+    byte[] bits = new byte[2 * n];
+    int vw = val.getWidth();
+    for (int i = 0; i < width; i++) {
+      int b = width - 1 - i; // position in the planes, msb first
+      Value v = i < vw ? val.get(i) : Value.UNKNOWN;
+      if (v == Value.TRUE)
+        bits[b / 8] |= 0x80 >>> (b % 8);
+      else if (v != Value.FALSE)
+        bits[n + b / 8] |= 0x80 >>> (b % 8);
+    }
+    out.write(bits);
+  }
+
+  static Value readBits(DataInputStream in, int width) throws IOException {
+    int n = (width + 7) / 8;
+    byte[] bits = new byte[2 * n];
+    in.readFully(bits);
+    Value[] vals = new Value[width];
+    for (int i = 0; i < width; i++) {
+      int b = width - 1 - i;
+      int m = 0x80 >>> (b % 8);
+      if ((bits[n + b / 8] & m) != 0)
+        vals[i] = Value.UNKNOWN;
+      else if ((bits[b / 8] & m) != 0)
+        vals[i] = Value.TRUE;
+      else
+        vals[i] = Value.FALSE;
+    }
+    return Value.create(vals);
+  }
+
+}
@@ -0,0 +1,259 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.std.hdl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.util.UniquelyNamedThread;
+
+/**
+ * An in-process stand-in for the Questasim binder, speaking the same protocol,
+ * so that VHDL entities can be exercised without an HDL simulator installed.
+ * It speaks either the batched binary protocol of questasim_binder_batch.tcl
+ * (see VhdlSimulatorProtocol) or the lines of text of questasim_binder.tcl.
+ * Each signal holds the last value driven on it, and the outputs are computed
+ * by a Model. Start it with VhdlSimulator.startStub().
+ */
+public class VhdlSimulatorStub {
+
+  /**
+   * Computes the outputs of the simulated design.
+   */
+  public interface Model {
+    /**
+     * Returns the value of an out or inout signal, given the values of all
+     * signals driven so far. Signals are named as in the simulation top
+     * level: the entity's simulation name, an underscore, then the port name.
+     */
+    public Value evaluate(String name, int width, Map<String, Value> signals);
+  }
+
+  private final Model model;
+  private final boolean batched;
+  private volatile int requests;
+
+  public VhdlSimulatorStub(Model model) {
+    this(model, true);
+  }
+
+  public VhdlSimulatorStub(Model model, boolean batched) {
+    this.model = model;
+    this.batched = batched;
+  }
+
+  /**
+   * Returns whether this speaks the batched binary protocol, rather than
+   * lines of text.
+   */
+  public boolean isBatched() {
+    return batched;
+  }
+
+  /**
+   * Returns the number of step requests served, i.e. simulator round trips.
+   */
+  public int getRequestCount() {
+    return requests;
+  }
+
+  void connect(int port) throws IOException {
+    Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    socket.setTcpNoDelay(true);
+    Thread t = new UniquelyNamedThread(
+        () -> { if (batched) serve(socket); else serveText(socket); },
+        "VhdlSimulatorStub");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  // Lines of "type:name:value:index" for each port of an entity, then "sync",
+  // answered by "name:value:index" for each out or inout port, then "sync".
+  private void serveText(Socket socket) {
+    ArrayList<String[]> msgs = new ArrayList<>();
+    HashMap<String, Value> signals = new HashMap<>();
+    try (Socket s = socket) {
+      BufferedReader in = new BufferedReader(new InputStreamReader(
+          s.getInputStream(), StandardCharsets.UTF_8));
+      Writer out = new BufferedWriter(new OutputStreamWriter(
+          s.getOutputStream(), StandardCharsets.UTF_8));
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.equals("end")) {
+          return;
+        } else if (line.equals("restart")) {
+          signals.clear();
+          msgs.clear();
+        } else if (line.equals("sync")) {
+          for (String[] msg : msgs) {
+            int type = Integer.parseInt(msg[0]);
+            if (type != EndData.OUTPUT_ONLY)
+              signals.put(msg[1], parseBits(msg[2]));
+          }
+          for (String[] msg : msgs) {
+            if (Integer.parseInt(msg[0]) == EndData.INPUT_ONLY)
+              continue;
+            int w = msg[2].length();
+            Value v = model.evaluate(msg[1], w, signals);
+            out.write(msg[1] + ":" + toBits(v != null ? v : Value.createUnknown(w))
+                + ":" + msg[3] + "\n");
+          }
+          requests++;
+          out.write("sync\n");
+          out.flush();
+          msgs.clear();
+        } else {
+          String[] msg = line.split(":");
+          if (msg.length != 4)
+            throw new IOException("bad message " + line);
+          msgs.add(msg);
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      System.err.printf("VHDL simulator stub: %s\n", e.getMessage());
+    }
+  }
+
+  // Most significant bit first, as Logisim sends them; anything but 0 or 1 is
+  // unknown.
+  private static Value parseBits(String bits) {
+    int w = bits.length();
+    Value[] v = new Value[w];
+    for (int i = 0; i < w; i++) {
+      char c = bits.charAt(w - 1 - i);
+      v[i] = c == '0' ? Value.FALSE : c == '1' ? Value.TRUE : Value.UNKNOWN;
+    }
+    return Value.create(v);
+  }
+
+  // As Questasim's examine prints std_logic values.
+  private static String toBits(Value v) {
+    StringBuilder s = new StringBuilder();
+    for (int i = v.getWidth() - 1; i >= 0; i--) {
+      Value b = v.get(i);
+      s.append(b == Value.TRUE ? '1' : b == Value.FALSE ? '0' : b == Value.ERROR ? 'X' : 'U');
+    }
+    return s.toString();
+  }
+
+  private void serve(Socket socket) {
+    ArrayList<String> names = new ArrayList<>();
+    ArrayList<Integer> types = new ArrayList<>();
+    ArrayList<Integer> widths = new ArrayList<>();
+    HashMap<String, Value> signals = new HashMap<>();
+    try (Socket s = socket) {
+      DataInputStream in = new DataInputStream(
+          new BufferedInputStream(s.getInputStream()));
+      DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(s.getOutputStream()));
+      while (true) {
+        byte[] frame = new byte[in.readInt()];
+        in.readFully(frame);
+        DataInputStream req = VhdlSimulatorProtocol.reader(frame);
+        byte op = req.readByte();
+        if (op == VhdlSimulatorProtocol.END) {
+          return;
+        } else if (op == VhdlSimulatorProtocol.RESTART) {
+          signals.clear();
+          continue;
+        } else if (op != VhdlSimulatorProtocol.STEP) {
+          throw new IOException("unknown request " + op);
+        }
+
+        int n = req.readUnsignedShort();
+        for (int k = 0; k < n; k++) {
+          int handle = req.readUnsignedShort();
+          while (names.size() <= handle) {
+            names.add(null);
+            types.add(0);
+            widths.add(0);
+          }
+          types.set(handle, req.readUnsignedByte());
+          widths.set(handle, req.readUnsignedShort());
+          names.set(handle, req.readUTF());
+        }
+        n = req.readUnsignedShort();
+        int[] handles = new int[n];
+        for (int k = 0; k < n; k++) {
+          int handle = handles[k] = req.readUnsignedShort();
+          if (req.readUnsignedByte() != 0)
+            signals.put(names.get(handle),
+                VhdlSimulatorProtocol.readBits(req, widths.get(handle)));
+        }
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream reply = new DataOutputStream(buf);
+        int count = 0;
+        for (int handle : handles)
+          if (types.get(handle) != EndData.INPUT_ONLY)
+            count++;
+        reply.writeByte(VhdlSimulatorProtocol.STEP);
+        reply.writeShort(count);
+        for (int handle : handles) {
+          if (types.get(handle) == EndData.INPUT_ONLY)
+            continue;
+          int w = widths.get(handle);
+          Value v = model.evaluate(names.get(handle), w, signals);
+          reply.writeShort(handle);
+          VhdlSimulatorProtocol.writeBits(reply, w,
+              v != null ? v : Value.createUnknown(w));
+        }
+        requests++;
+        out.writeInt(buf.size());
+        buf.writeTo(out);
+        out.flush();
+      }
+    } catch (EOFException e) {
+      // connection closed by the simulator
+    } catch (IOException e) {
+      System.err.printf("VHDL simulator stub: %s\n", e.getMessage());
+    }
+  }
+
+}
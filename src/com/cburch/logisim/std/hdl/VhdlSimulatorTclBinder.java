@@ -55,7 +55,7 @@ import com.cburch.logisim.util.Softwares;
  * binder is ready. This way we ensure the socket is started before trying to
  * connect.
  * <p/>
- * To end the binder, we send an "end" flag through the socket and wait for it
+ * To end the binder, we send an END request through the socket and wait for it
  * to finish. This causes Logisim to hang if the binder doesn't listen to the
  * socker. That can happen when unexpected behavior of the simulation occurs.
  *
@@ -173,7 +173,11 @@ class VhdlSimulatorTclBinder {
       return;
 
     /* We ask the binder to end itself */
-    vhdlSimulator.getSocketClient().send("end");
+    if (vhdlSimulator.isBatched())
+      vhdlSimulator.getSocketClient().sendFrame(
+          VhdlSimulatorProtocol.command(VhdlSimulatorProtocol.END));
+    else
+      vhdlSimulator.getSocketClient().send("end");
 
     /* Wait for the process to end */
     /*
@@ -138,7 +138,7 @@ public class DipSwitch extends InstanceFactory {
     setFacingAttribute(StdAttr.FACING);
     setIconName("dipswitch.gif");
     setKeyConfigurator(JoinedConfigurator.create(
-          new BitWidthConfigurator(ATTR_SIZE),
+          new BitWidthConfigurator(ATTR_SIZE, MIN_SWITCH, MAX_SWITCH),
           new DirectionConfigurator(StdAttr.LABEL_LOC, KeyEvent.ALT_DOWN_MASK)));
     setInstancePoker(Poker.class);
   }
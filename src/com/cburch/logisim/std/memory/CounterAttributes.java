@@ -43,7 +43,7 @@ class CounterAttributes extends AttributeSets.ArrayBacked {
       Counter.ATTR_MAX, Counter.ATTR_ON_GOAL, StdAttr.EDGE_TRIGGER,
       StdAttr.LABEL, StdAttr.LABEL_FONT, StdAttr.LABEL_LOC, 
       Register.ATTR_SHOW_IN_TAB, StdAttr.APPEARANCE },
-      new Object[] { BitWidth.create(8), Integer.valueOf(0xFF),
+      new Object[] { BitWidth.create(8), Long.valueOf(0xFF),
         Counter.ON_GOAL_WRAP, StdAttr.TRIG_RISING, "",
         StdAttr.DEFAULT_LABEL_FONT, Direction.NORTH,
         true, StdAttr.APPEAR_CLASSIC});
@@ -56,17 +56,17 @@ class CounterAttributes extends AttributeSets.ArrayBacked {
       super.updateAttr(attr, value);
       // if width changes, update max accordingly
       BitWidth newWidth = (BitWidth) value;
-      int oldMax = getValue(Counter.ATTR_MAX);
-      int newMax;
+      long oldMax = getValue(Counter.ATTR_MAX);
+      long newMax;
       if (newWidth.getWidth() > oldWidth.getWidth())
-        newMax = Integer.valueOf(newWidth.getMask());
+        newMax = newWidth.getLongMask();
       else
-        newMax = oldMax & newWidth.getMask();
+        newMax = oldMax & newWidth.getLongMask();
       setAttr(Counter.ATTR_MAX, newMax);
     } else if (attr == Counter.ATTR_MAX) {
       // if max changes, ensure it fits within existing width
       BitWidth width = getValue(StdAttr.WIDTH);
-      int newVal = ((Integer) value).intValue() & width.getMask();
+      long newVal = ((Long) value).longValue() & width.getLongMask();
       super.updateAttr(Counter.ATTR_MAX, newVal);
     } else {
       super.updateAttr(attr, value);
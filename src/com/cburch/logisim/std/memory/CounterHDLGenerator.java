@@ -37,7 +37,8 @@ public class CounterHDLGenerator extends HDLGenerator {
   public CounterHDLGenerator(ComponentContext ctx) {
     super(ctx, "memory", "Counter", "i_Ctr");
     parameters.add("BitWidth", stdWidth());
-    parameters.add("MaxVal", _attrs.getValue(Counter.ATTR_MAX));
+    // HDL integer generics are only 32 bits
+    parameters.add("MaxVal", (int) _attrs.getValue(Counter.ATTR_MAX).longValue());
     parameters.add("Mode", mode());
 
     inPorts.add("LoadData", "BitWidth", Counter.IN, false);
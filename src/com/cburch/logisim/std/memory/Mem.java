@@ -113,7 +113,7 @@ public abstract class Mem extends InstanceFactory {
     currentInstanceFiles = new WeakHashMap<Instance, File>();
     setInstancePoker(MemPoker.class);
     setKeyConfigurator(JoinedConfigurator.create(new BitWidthConfigurator(
-            ADDR_ATTR, 2, 24, 0), new BitWidthConfigurator(DATA_ATTR)));
+            ADDR_ATTR, 2, 24, 0), new BitWidthConfigurator(DATA_ATTR, 1, 32)));
 
     setOffsetBounds(Bounds.create(-140, -40, 140, 80));
   }
@@ -30,7 +30,14 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.cburch.hex.HexModel;
 import com.cburch.hex.HexModelListener;
@@ -41,6 +48,51 @@ public class MemContents implements Cloneable, HexModel {
     return new MemContents(addrBits, width);
   }
 
+  // Creates contents that aren't decoded until they are first used, so that
+  // opening a project with large memories is quick, and memories that are
+  // never simulated or viewed are never decoded at all. The decoder must
+  // return contents of the same dimensions. If it fails, every use of the
+  // contents throws an UncheckedIOException carrying the decoder's error.
+  // Callers should check the contents when deferring, so that corrupt
+  // contents are reported while loading rather than when first used.
+  public static MemContents createDeferred(int addrBits, int width,
+      Decoder decoder) {
+    MemContents ret = new MemContents(addrBits, width);
+    ret.deferred = new Deferred(decoder);
+    return ret;
+  }
+
+  public interface Decoder {
+    MemContents decode() throws IOException;
+  }
+
+  // Clones made before the contents are used share this, so the contents are
+  // decoded only once.
+  private static class Deferred {
+    private Decoder decoder;
+    private MemContents decoded;
+    private IOException failure;
+
+    Deferred(Decoder decoder) {
+      this.decoder = decoder;
+    }
+
+    synchronized MemContents get() {
+      if (decoder != null) {
+        try {
+          decoded = decoder.decode();
+        } catch (IOException e) {
+          failure = e;
+        }
+        decoder = null;
+      }
+      if (failure != null)
+        throw new UncheckedIOException("memory contents could not be decoded",
+            failure);
+      return decoded;
+    }
+  }
+
   private static final int PAGE_SIZE_BITS = 14;
   private static final int PAGE_SIZE = 1 << PAGE_SIZE_BITS;
 
@@ -51,6 +103,7 @@ public class MemContents implements Cloneable, HexModel {
   private int addrBits;
   private int mask;
   private Page[] pages;
+  private volatile Deferred deferred; // null once decoded
 
   private MemContents(int addrBits, int width) {
     listeners = null;
@@ -64,6 +117,7 @@ public class MemContents implements Cloneable, HexModel {
   }
 
   public void clear() {
+    load();
     for (int i = 0; i < pages.length; i++) {
       if (pages[i] != null) {
         if (pages[i] != null)
@@ -83,22 +137,24 @@ public class MemContents implements Cloneable, HexModel {
         changed = true;
     }
     if (changed) {
+      page.release();
       pages[index] = null;
       fireBytesChanged(index << PAGE_SIZE_BITS, oldValues.length,
           oldValues);
     }
   }
 
+  // The clone shares all pages with this one. Either copies a page before
+  // writing it, so only the pages written afterwards are ever copied.
   @Override
   public MemContents clone() {
     try {
       MemContents ret = (MemContents) super.clone();
       ret.listeners = null;
-      ret.pages = new Page[this.pages.length];
-      for (int i = 0; i < ret.pages.length; i++) {
-        if (this.pages[i] != null) {
-          ret.pages[i] = this.pages[i].clone();
-        }
+      ret.pages = this.pages.clone();
+      for (Page page : ret.pages) {
+        if (page != null)
+          page.share();
       }
       return ret;
     } catch (CloneNotSupportedException ex) {
@@ -107,13 +163,42 @@ public class MemContents implements Cloneable, HexModel {
     }
   }
 
-  private void ensurePage(int index) {
-    if (pages[index] == null) {
-      pages[index] = MemContentsSub.createPage(PAGE_SIZE, width);
+  // Decodes deferred contents, sharing the decoded pages.
+  private void load() {
+    if (deferred == null)
+      return;
+    synchronized (this) {
+      Deferred d = deferred;
+      if (d == null)
+        return;
+      MemContents src = d.get();
+      if (src == null || src.addrBits != addrBits || src.width != width)
+        throw new IllegalStateException("decoded memory contents do not have "
+            + addrBits + " address bits and " + width + " data bits");
+      for (int i = 0; i < pages.length; i++) {
+        if (src.pages[i] != null)
+          (pages[i] = src.pages[i]).share();
+      }
+      deferred = null;
     }
   }
 
+  // Returns the page at index, ready to be written: a new page if there was
+  // none, or a copy if it was shared or read-only.
+  private Page ensurePage(int index) {
+    Page page = pages[index];
+    if (page == null) {
+      page = pages[index] = MemContentsSub.createPage(PAGE_SIZE, width);
+    } else if (page.isReadOnly()) {
+      Page copy = page.clone();
+      page.release();
+      page = pages[index] = copy;
+    }
+    return page;
+  }
+
   public void fill(long start, long len, int value) {
+    load();
     if (len == 0)
       return;
 
@@ -180,7 +265,7 @@ public class MemContents implements Cloneable, HexModel {
         if (value == 0 && page == null) {
           // nothing to do
         } else {
-          ensurePage(pageEnd);
+          page = ensurePage(pageEnd);
           int[] vals = new int[endOffs + 1];
           Arrays.fill(vals, value);
           if (!page.matches(vals, 0, mask)) {
@@ -221,6 +306,7 @@ public class MemContents implements Cloneable, HexModel {
   }
 
   public int get(long addr) {
+    load();
     int page = (int) (addr >>> PAGE_SIZE_BITS);
     int offs = (int) (addr & PAGE_MASK);
     if (page < 0 || page >= pages.length || pages[page] == null)
@@ -249,6 +335,7 @@ public class MemContents implements Cloneable, HexModel {
   }
 
   public boolean isClear() {
+    load();
     for (int i = 0; i < pages.length; i++) {
       Page page = pages[i];
       if (page != null) {
@@ -270,6 +357,7 @@ public class MemContents implements Cloneable, HexModel {
   }
 
   public void set(long addr, int value) {
+    load();
     int page = (int) (addr >>> PAGE_SIZE_BITS);
     int offs = (int) (addr & PAGE_MASK);
     if (page < 0 || page >= pages.length)
@@ -277,15 +365,13 @@ public class MemContents implements Cloneable, HexModel {
     int old = pages[page] == null ? 0 : pages[page].get(offs) & mask;
     int val = value & mask;
     if (old != val) {
-      if (pages[page] == null) {
-        pages[page] = MemContentsSub.createPage(PAGE_SIZE, width);
-      }
-      pages[page].set(offs, val);
+      ensurePage(page).set(offs, val);
       fireBytesChanged(addr, 1, new int[] { old });
     }
   }
 
   public void set(long start, int[] values) {
+    load();
     if (values.length == 0)
       return;
 
@@ -344,6 +430,7 @@ public class MemContents implements Cloneable, HexModel {
           System.arraycopy(values, offs, vals, 0, PAGE_SIZE);
           if (!page.matches(vals, startOffs, mask)) {
             int[] oldValues = page.get(0, PAGE_SIZE);
+            page = ensurePage(i);
             page.load(0, vals, mask);
             if (page.isClear())
               pages[i] = null;
@@ -373,6 +460,8 @@ public class MemContents implements Cloneable, HexModel {
     count = (int)Math.min(count, getLastOffset() - start + 1);
     if (count <= 0)
       return;
+    load();
+    src.load();
     if (src.width != width)
       throw new IllegalArgumentException(String.format(
             "memory width mismatch: src is %d bits wide, dest is %d bits wide",
@@ -402,11 +491,19 @@ public class MemContents implements Cloneable, HexModel {
       } else if (srcPage == null) {
         // clearing locations di..di+n on this page
         fill(dp*PAGE_SIZE+di, n, 0);
+      } else if (n == PAGE_SIZE) {
+        // the whole page can be shared rather than copied
+        int[] oldVals = listeners == null ? null
+            : dstPage == null ? new int[n] : dstPage.get(0, n);
+        if (dstPage != null)
+          dstPage.release();
+        srcPage.share();
+        pages[dp] = srcPage;
+        fireBytesChanged((long)dp*PAGE_SIZE, n, oldVals);
       } else {
-        if (dstPage == null)
-          dstPage = pages[dp] = MemContentsSub.createPage(PAGE_SIZE, width);
+        int[] oldVals = dstPage == null ? new int[n] : dstPage.get(di, n);
+        dstPage = ensurePage(dp);
         // copy locations di..di+n on this page
-        int[] oldVals = dstPage.get(di, n);
         int[] vals = srcPage.get(si, n);
         dstPage.set(di, vals);
         // fire here
@@ -429,6 +526,7 @@ public class MemContents implements Cloneable, HexModel {
   public void setDimensions(int addrBits, int width) {
     if (addrBits == this.addrBits && width == this.width)
       return;
+    load();
     this.addrBits = addrBits;
     this.width = width;
     this.mask = width == 32 ? 0xffffffff : ((1 << width) - 1);
@@ -453,6 +551,7 @@ public class MemContents implements Cloneable, HexModel {
           for (int j = 0; j < m; j++) {
             pages[i].set(j, oldPages[i].get(j));
           }
+          oldPages[i].release();
         }
       }
     }
@@ -462,18 +561,71 @@ public class MemContents implements Cloneable, HexModel {
     fireMetainfoChanged();
   }
 
+  // Replaces the contents with up to count words from an image file, starting
+  // at the given position. Each word is stored in 1, 2, or 4 bytes, whichever
+  // is the smallest that fits the width, in the given byte order, and any
+  // unused high bits are ignored. The file is read in bulk, a page at a time,
+  // straight into new pages, and isn't referenced once this returns. Returns
+  // the number of words read.
+  public long readImage(FileChannel in, long position, long count,
+      ByteOrder order) throws IOException {
+    int shift = width <= 8 ? 0 : width <= 16 ? 1 : 2;
+    deferred = null;
+    clear();
+    long words = Math.min((in.size() - position) >> shift, getLastOffset() + 1);
+    words = Math.min(words, count);
+    int pageLength = (int)Math.min(PAGE_SIZE, getLastOffset() + 1);
+    ByteBuffer buf = ByteBuffer.allocate(pageLength << shift).order(order);
+    int[] vals = new int[pageLength];
+    for (long start = 0; start < words; start += pageLength) {
+      int len = (int)Math.min(pageLength, words - start);
+      buf.clear().limit(len << shift);
+      long pos = position + (start << shift);
+      while (buf.hasRemaining()) {
+        if (in.read(buf, pos + buf.position()) < 0)
+          throw new EOFException("image file was truncated while reading");
+      }
+      buf.flip();
+      for (int i = 0; i < len; i++)
+        vals[i] = shift == 0 ? buf.get() : shift == 1 ? buf.getShort() : buf.getInt();
+      Arrays.fill(vals, len, pageLength, 0);
+      Page page = MemContentsSub.createPage(pageLength, width);
+      page.load(0, vals, mask);
+      int index = (int)(start >>> PAGE_SIZE_BITS);
+      if (!page.isClear())
+        pages[index] = page;
+      fireBytesChanged(start, len, listeners == null ? null : new int[len]);
+    }
+    return words;
+  }
+
   static abstract class Page implements Cloneable {
+    // The number of MemContents holding this page. While there is more than
+    // one, the page is read-only, and each must copy it before writing.
+    private AtomicInteger owners = new AtomicInteger(1);
+
     abstract void clear();
 
+    // Returns a private, writable copy.
     @Override
     public Page clone() {
       try {
-        return (Page) super.clone();
+        Page ret = (Page) super.clone();
+        ret.owners = new AtomicInteger(1);
+        return ret;
       } catch (CloneNotSupportedException e) {
         return this;
       }
     }
 
+    void share() {
+      owners.incrementAndGet();
+    }
+
+    void release() {
+      owners.decrementAndGet();
+    }
+
     abstract int get(int addr);
 
     int[] get(int start, int len) {
@@ -490,6 +642,10 @@ public class MemContents implements Cloneable, HexModel {
 
     abstract int getLength();
 
+    boolean isReadOnly() {
+      return owners.get() > 1;
+    }
+
     boolean isClear() {
       for (int i = 0, n = getLength(); i < n; i++) {
         if (get(i) != 0)
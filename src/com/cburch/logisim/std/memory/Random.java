@@ -152,7 +152,7 @@ public class Random extends InstanceFactory {
 
     private long initSeed;
     private long curSeed;
-    private int value;
+    private long value;
     private boolean isResetting;
 
     public StateData(Object seed) {
@@ -187,7 +187,9 @@ public class Random extends InstanceFactory {
       long v = curSeed;
       v = (v * multiplier + addend) & mask;
       curSeed = v;
-      value = (int) (v >> 12);
+      // the low 32 bits are the classic sequence; widths past 32 take
+      // their upper word from a multiplicative hash of the same seed
+      value = ((v >> 12) & 0xffffffffL) | ((v * 0x9e3779b97f4a7c15L) & ~0xffffffffL);
     }
   }
 
@@ -269,7 +271,7 @@ public class Random extends InstanceFactory {
   }
 
   private void DrawData(InstancePainter painter, int xpos, int ypos,
-      int NrOfBits, int Value) {
+      int NrOfBits, long Value) {
     Graphics g = painter.getGraphics();
     GraphicsUtil.switchToWidth(g, 2);
     g.drawRect(xpos, ypos, 80, 20);
@@ -305,7 +307,7 @@ public class Random extends InstanceFactory {
     String a;
     String b = null;
     if (painter.getShowState()) {
-      int val = state == null ? 0 : state.value;
+      long val = state == null ? 0 : state.value;
       String str = StringUtil.toHexString(width, val);
       if (str.length() <= 4) {
         a = str;
@@ -352,7 +354,7 @@ public class Random extends InstanceFactory {
     int x = bds.getX();
     int y = bds.getY();
     StateData state = (StateData) painter.getData();
-    int val = state == null ? 0 : state.value;
+    long val = state == null ? 0 : state.value;
     BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
     int width = widthVal == null ? 8 : widthVal.getWidth();
 
@@ -213,7 +213,7 @@ public class Register extends InstanceFactory implements DynamicElementProvider
     String a;
     String b = null;
     if (painter.getShowState()) {
-      int val = state == null ? 0 : state.value;
+      long val = state == null ? 0 : state.value;
       String str = StringUtil.toHexString(width, val);
       if (str.length() <= 4) {
         a = str;
@@ -272,7 +272,7 @@ public class Register extends InstanceFactory implements DynamicElementProvider
 
       // determine text to draw in label
       String a;
-      int val = state == null ? 0 : state.value;
+      long val = state == null ? 0 : state.value;
       a = StringUtil.toHexString(width, val);
       Object Trigger = painter.getAttributeValue(StdAttr.TRIGGER);
       boolean IsLatch = Trigger.equals(StdAttr.TRIG_HIGH)
@@ -311,7 +311,7 @@ public class Register extends InstanceFactory implements DynamicElementProvider
     } else if (triggered && state.getPortValue(EN) != Value.FALSE) {
       Value in = state.getPortValue(IN);
       if (in.isFullyDefined())
-        data.value = in.toIntValue();
+        data.value = in.toLongValue();
     }
 
     state.setPort(OUT, Value.createKnown(dataWidth, data.value), DELAY);
@@ -64,6 +64,8 @@ import com.cburch.logisim.util.GraphicsUtil;
 
 public class Rom extends Mem {
   static class ContentsAttribute extends Attribute<MemContents> {
+    private static final int DEFER_LENGTH = 4096;
+
     public ContentsAttribute() {
       super("contents", S.getter("romContentsAttr"));
     }
@@ -91,10 +93,16 @@ public class Rom extends Mem {
           return null;
         int addr = Integer.parseInt(toks.nextToken());
         int data = Integer.parseInt(toks.nextToken());
-        return HexFile.parseFromCircFile(rest, addr, data);
+        if (rest.length() < DEFER_LENGTH)
+          return HexFile.parseFromCircFile(rest, addr, data);
+        // Large contents are decoded only when first used, but are checked
+        // now, so that corrupt contents are reported while loading.
+        HexFile.checkCircFileContents(rest);
+        return MemContents.createDeferred(addr, data,
+            () -> HexFile.parseFromCircFile(rest, addr, data));
       } catch (IOException e) {
-        e.printStackTrace();
-        return null;
+        // reported by the loader, like other invalid attribute values
+        throw new NumberFormatException(e.getMessage());
       } catch (NumberFormatException e) {
         e.printStackTrace();
         return null;
@@ -218,7 +218,7 @@ public class ShiftRegister extends InstanceFactory {
 
   private void DrawDataBlock(InstancePainter painter, int xpos, int ypos,
       int nr_of_stages, int nr_of_bits, int current_stage,
-      Integer data_value, boolean has_load) {
+      Long data_value, boolean has_load) {
     int real_ypos = ypos + 70 + current_stage * 20;
     if (current_stage > 0)
       real_ypos += 10;
@@ -308,7 +308,7 @@ public class ShiftRegister extends InstanceFactory {
           16);
       if (data_value != null) {
         g.setColor(Color.DARK_GRAY);
-        String Value = StringUtil.toHexString(nr_of_bits, data_value.intValue());
+        String Value = StringUtil.toHexString(nr_of_bits, data_value.longValue());
         GraphicsUtil.drawText(g, MemState.FONT, Value, real_xpos + boxXpos + 1, real_ypos
             + yoff + 10, GraphicsUtil.H_LEFT, GraphicsUtil.V_CENTER);
         g.setColor(Color.BLACK);
@@ -383,9 +383,9 @@ public class ShiftRegister extends InstanceFactory {
     DrawControl(painter, xpos, ypos, len, wid, parallelObj, Negedge);
     ShiftRegisterData data = (ShiftRegisterData) painter.getData();
     for (int stage = 0; stage < len; stage++) {
-      Integer val = null;
+      Long val = null;
       if (data != null && data.get(len - stage - 1) != null)
-        val = new Integer(data.get(len - stage - 1).toIntValue());
+        val = Long.valueOf(data.get(len - stage - 1).toLongValue());
       DrawDataBlock(painter, xpos, ypos, len, wid, stage,
           val, parallelObj);
     }
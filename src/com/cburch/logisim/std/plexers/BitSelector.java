@@ -55,7 +55,8 @@ import com.cburch.logisim.util.GraphicsUtil;
 
 public class BitSelector extends InstanceFactory {
   public static final Attribute<BitWidth> GROUP_ATTR = Attributes
-      .forBitWidth("group", S.getter("bitSelectorGroupAttr"));
+      .forBitWidth("group", S.getter("bitSelectorGroupAttr"), 1,
+          Value.MAX_WIDTH);
 
   public BitSelector() {
     super("BitSelector", S.getter("bitSelectorComponent"));
@@ -67,6 +68,8 @@ public class BitSelector extends InstanceFactory {
               StdAttr.WIDTH)));
 
     setIconName("bitSelector.gif");
+
+    setStaticAppearance(true);
     setFacingAttribute(StdAttr.FACING);
   }
 
@@ -36,6 +36,7 @@ import java.awt.Graphics;
 
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.LogisimVersion;
+import com.cburch.logisim.circuit.BitSliceComputer;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
@@ -121,6 +122,47 @@ public class Multiplexer extends InstanceFactory {
     }
   }
 
+  @Override
+  protected Object getInstanceFeature(final Instance instance, Object key) {
+    if (key == BitSliceComputer.class) {
+      return new BitSliceComputer() {
+        public boolean computeBitSlice(BitSliceComputer.Builder builder) {
+          if (instance.getAttributeValue(Plexers.ATTR_ENABLE))
+            return false;
+          int data = instance.getAttributeValue(StdAttr.WIDTH).getWidth();
+          int select = instance.getAttributeValue(Plexers.ATTR_SELECT).getWidth();
+          int inputs = 1 << select;
+          int[] sel = new int[select];
+          for (int k = 0; k < select; k++) {
+            sel[k] = builder.input(instance.getPortLocation(inputs), k);
+            if (sel[k] < 0)
+              return false;
+          }
+          for (int b = 0; b < data; b++) {
+            // a tree of 2:1 muxes, one level per select bit
+            int[] level = new int[inputs];
+            for (int i = 0; i < inputs; i++) {
+              level[i] = builder.input(instance.getPortLocation(i), b);
+              if (level[i] < 0)
+                return false;
+            }
+            for (int k = 0, n = inputs; k < select; k++, n /= 2) {
+              for (int i = 0; i < n / 2; i++)
+                level[i] = builder.mux(sel[k], level[2*i+1], level[2*i]);
+            }
+            builder.output(instance.getPortLocation(inputs + 1), b, level[0]);
+          }
+          return true;
+        }
+
+        public int getDelay() {
+          return Plexers.DELAY;
+        }
+      };
+    }
+    return super.getInstanceFeature(instance, key);
+  }
+
   @Override
   public Bounds getOffsetBounds(AttributeSet attrs) {
     Object size = attrs.getValue(Plexers.ATTR_SIZE);
@@ -63,6 +63,7 @@ public class PriorityEncoder extends InstanceFactory {
         BitWidth.create(3), Plexers.DISABLED_ZERO });
     setKeyConfigurator(new BitWidthConfigurator(Plexers.ATTR_SELECT, 1, 5, 0));
     setIconName("priencod.gif");
+    setStaticAppearance(true);
     setFacingAttribute(StdAttr.FACING);
   }
 
@@ -54,9 +54,9 @@ import com.cburch.logisim.util.GraphicsUtil;
 
 public class BitExtender extends InstanceFactory {
   private static final Attribute<BitWidth> ATTR_IN_WIDTH = Attributes
-      .forBitWidth("in_width", S.getter("extenderInAttr"));
+      .forBitWidth("in_width", S.getter("extenderInAttr"), 1, Value.MAX_WIDTH);
   private static final Attribute<BitWidth> ATTR_OUT_WIDTH = Attributes
-      .forBitWidth("out_width", S.getter("extenderOutAttr"));
+      .forBitWidth("out_width", S.getter("extenderOutAttr"), 1, Value.MAX_WIDTH);
   static final Attribute<AttributeOption> ATTR_TYPE = Attributes.forOption(
       "type",
       S.getter("extenderTypeAttr"),
@@ -71,6 +71,7 @@ public class BitExtender extends InstanceFactory {
   public BitExtender() {
     super("Bit Extender", S.getter("extenderComponent"));
     setIconName("extender.gif");
+    setStaticAppearance(true);
     setAttributes(new Attribute[] { ATTR_IN_WIDTH, ATTR_OUT_WIDTH,
       ATTR_TYPE },
       new Object[] { BitWidth.create(8), BitWidth.create(16),
@@ -39,6 +39,7 @@ import java.util.List;
 
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitSliceComputer;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.data.AbstractAttributeSet;
 import com.cburch.logisim.data.Attribute;
@@ -85,7 +86,7 @@ public class Constant extends InstanceFactory {
       if (attr == StdAttr.WIDTH)
         return (V) width;
       if (attr == ATTR_VALUE)
-        return (V) Integer.valueOf(value.toIntValue());
+        return (V) Long.valueOf(value.toLongValue());
       return null;
     }
 
@@ -98,7 +99,7 @@ public class Constant extends InstanceFactory {
         this.value = this.value.extendWidth(width.getWidth(),
             this.value.get(this.value.getWidth() - 1));
       } else if (attr == ATTR_VALUE) {
-        int val = ((Integer) value).intValue();
+        long val = ((Long) value).longValue();
         this.value = Value.createKnown(width, val);
       }
     }
@@ -122,8 +123,27 @@ public class Constant extends InstanceFactory {
     }
   }
 
-  public static final Attribute<Integer> ATTR_VALUE = Attributes
-      .forHexInteger("value", S.getter("constantValueAttr"));
+  private static class ConstantBitSlice implements BitSliceComputer {
+    private Instance instance;
+
+    public ConstantBitSlice(Instance instance) {
+      this.instance = instance;
+    }
+
+    public boolean computeBitSlice(BitSliceComputer.Builder builder) {
+      AttributeSet attrs = instance.getAttributeSet();
+      BitWidth width = attrs.getValue(StdAttr.WIDTH);
+      Value v = Value.createKnown(width, attrs.getValue(ATTR_VALUE));
+      for (int b = 0; b < width.getWidth(); b++) {
+        builder.output(instance.getLocation(), b,
+            builder.constant(v.get(b) == Value.TRUE));
+      }
+      return true;
+    }
+  }
+
+  public static final Attribute<Long> ATTR_VALUE = Attributes
+      .forHexLong("value", S.getter("constantValueAttr"));
 
   public static InstanceFactory FACTORY = new Constant();
 
@@ -138,6 +158,7 @@ public class Constant extends InstanceFactory {
   public Constant() {
     super("Constant", S.getter("constantComponent"));
     setFacingAttribute(StdAttr.FACING);
+    setStaticAppearance(true);
     setKeyConfigurator(JoinedConfigurator.create(
           new ConstantConfigurator(), new BitWidthConfigurator(
             StdAttr.WIDTH)));
@@ -158,6 +179,8 @@ public class Constant extends InstanceFactory {
   protected Object getInstanceFeature(Instance instance, Object key) {
     if (key == ExpressionComputer.class)
       return new ConstantExpression(instance);
+    if (key == BitSliceComputer.class)
+      return new ConstantBitSlice(instance);
     return super.getInstanceFeature(instance, key);
   }
 
@@ -198,8 +221,8 @@ public class Constant extends InstanceFactory {
 
   @Override
   public void paintGhost(InstancePainter painter) {
-    int v = painter.getAttributeValue(ATTR_VALUE).intValue();
-    String vStr = Integer.toHexString(v);
+    long v = painter.getAttributeValue(ATTR_VALUE).longValue();
+    String vStr = Long.toHexString(v);
     Bounds bds = getOffsetBounds(painter.getAttributeSet());
 
     Graphics g = painter.getGraphics();
@@ -233,7 +256,7 @@ public class Constant extends InstanceFactory {
 
     Graphics g = painter.getGraphics();
     if (w == 1) {
-      int v = painter.getAttributeValue(ATTR_VALUE).intValue();
+      long v = painter.getAttributeValue(ATTR_VALUE).longValue();
       Value val = v == 1 ? Value.TRUE : Value.FALSE;
       g.setColor(val.getColor());
       GraphicsUtil.drawCenteredText(g, "" + v, 10, 9);
@@ -248,8 +271,8 @@ public class Constant extends InstanceFactory {
   public void paintInstance(InstancePainter painter) {
     Bounds bds = painter.getOffsetBounds();
     BitWidth width = painter.getAttributeValue(StdAttr.WIDTH);
-    int intValue = painter.getAttributeValue(ATTR_VALUE).intValue();
-    Value v = Value.createKnown(width, intValue);
+    long longValue = painter.getAttributeValue(ATTR_VALUE).longValue();
+    Value v = Value.createKnown(width, longValue);
     Location loc = painter.getLocation();
     int x = loc.getX();
     int y = loc.getY();
@@ -280,7 +303,7 @@ public class Constant extends InstanceFactory {
   @Override
   public void propagate(InstanceState state) {
     BitWidth width = state.getAttributeValue(StdAttr.WIDTH);
-    int value = state.getAttributeValue(ATTR_VALUE).intValue();
+    long value = state.getAttributeValue(ATTR_VALUE).longValue();
     state.setPort(0, Value.createKnown(width, value), 1);
   }
 
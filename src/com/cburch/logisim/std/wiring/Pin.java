@@ -172,9 +172,11 @@ public class Pin extends InstanceFactory {
         hi = (1L << bitWidth-1) - 1;
       } else {
         lo = 0;
-        hi = (1L << bitWidth) - 1;
+        hi = bitWidth == 64 ? -1L : (1L << bitWidth) - 1;
       }
-      add(new JLabel(S.fmt(tristate ? "pinEditRangeTristate" : "pinEditRange", lo, hi)), gbc);
+      add(new JLabel(S.fmt(tristate ? "pinEditRangeTristate" : "pinEditRange",
+              lo, radix == RadixOption.RADIX_10_SIGNED ? Long.toString(hi)
+              : Long.toUnsignedString(hi))), gbc);
       gbc.gridy++;
       add(text, gbc);
 
@@ -189,7 +191,7 @@ public class Pin extends InstanceFactory {
           newVal = Value.createUnknown(BitWidth.create(bitWidth));
         } else {
           try {
-            int n = (int) Long.parseLong(s);
+            long n = parse(s);
             newVal = Value.createKnown(BitWidth.create(bitWidth), n);
           } catch (NumberFormatException exception) {
             return;
@@ -210,8 +212,10 @@ public class Pin extends InstanceFactory {
       if (tristate && (s.matches("x+") || s.matches("\\?+")))
         return true;
       try {
-        long n = Long.parseLong(s);
-        if (radix == RadixOption.RADIX_10_SIGNED)
+        long n = parse(s);
+        if (bitWidth == 64)
+          return true;
+        else if (radix == RadixOption.RADIX_10_SIGNED)
           return (n >= -(1L << (bitWidth-1)) && n < (1L << bitWidth-1));
         else
           return (n >= 0 && n < (1L << bitWidth));
@@ -220,6 +224,14 @@ public class Pin extends InstanceFactory {
       }
     }
 
+    // a full 64-bit unsigned value does not fit in a signed long
+    private long parse(String s) {
+      s = s.trim();
+      if (bitWidth == 64 && radix != RadixOption.RADIX_10_SIGNED)
+        return Long.parseUnsignedLong(s);
+      return Long.parseLong(s);
+    }
+
     @Override
     public void keyPressed(KeyEvent e) {
       if (e.getKeyCode() == KeyEvent.VK_ENTER) {
@@ -62,6 +62,7 @@ public class Tunnel extends InstanceFactory {
   public Tunnel() {
     super("Tunnel", S.getter("tunnelComponent"));
     setIconName("tunnel.gif");
+    setStaticAppearance(true);
     setFacingAttribute(StdAttr.FACING);
     setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
   }
@@ -54,6 +54,7 @@ import com.cburch.logisim.comp.ComponentDrawContext;
 import com.cburch.logisim.comp.ComponentFactory;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
@@ -263,7 +264,7 @@ public final class EditTool extends Tool {
     if (at != null && at.size() > 0)
       return wiring;
 
-    for (Wire w : circ.getWires()) {
+    for (Wire w : circ.getWiresIntersecting(Bounds.create(loc))) {
       if (w.contains(loc)) {
         return wiring;
       }
@@ -378,7 +379,7 @@ public final class EditTool extends Tool {
       Circuit circ = canvas.getCircuit();
       Collection<Component> selected = sel.getAnchoredComponents();
       ArrayList<Component> suppress = null;
-      for (Wire w : circ.getWires()) {
+      for (Wire w : circ.getWiresIntersecting(Bounds.create(oldWireLoc))) {
         if (selected.contains(w)) {
           if (w.contains(oldWireLoc)) {
             if (suppress == null)
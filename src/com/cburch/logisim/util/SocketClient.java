@@ -29,17 +29,20 @@
  */
 package com.cburch.logisim.util;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 
 /**
- * Socket client to talk to the binder.
+ * Socket client to talk to the binder. Messages are exchanged either as lines
+ * of text, or as frames: a 4-byte big-endian length followed by that many
+ * bytes of payload. Which one depends on the binder script in use.
  *
  * @author christian.mueller@heig-vd.ch
  */
@@ -51,8 +54,8 @@ public class SocketClient {
 
   private Socket socket;
 
-  private BufferedReader socket_reader;
-  private PrintWriter socket_writer;
+  private DataInputStream socket_reader;
+  private DataOutputStream socket_writer;
 
   public SocketClient() {
 
@@ -86,33 +89,73 @@ public class SocketClient {
   public String receive() {
 
     try {
-      return socket_reader.readLine();
+      ByteArrayOutputStream line = new ByteArrayOutputStream();
+      int c;
+      while ((c = socket_reader.read()) != '\n') {
+        if (c < 0) {
+          if (line.size() == 0)
+            return null;
+          break;
+        }
+        if (c != '\r')
+          line.write(c);
+      }
+      return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    } catch (Exception e) {
+      System.err.printf("Cannot read from socket : %s\n", e.getMessage());
+      return null;
+    }
+  }
+
+  public byte[] receiveFrame() {
+
+    try {
+      int n = socket_reader.readInt();
+      byte[] frame = new byte[n];
+      socket_reader.readFully(frame);
+      return frame;
     } catch (Exception e) {
       System.err.printf("Cannot read from socket : %s\n", e.getMessage());
       return null;
     }
   }
 
-  public void send(String message) {
+  public synchronized void send(String message) {
 
     try {
-      socket_writer.println(message);
+      socket_writer.write((message + System.lineSeparator())
+          .getBytes(StandardCharsets.UTF_8));
+      socket_writer.flush();
     } catch (Exception e) {
       System.err.printf("Cannot write %s to socket %s\n", message,
           e.getMessage());
     }
   }
 
+  public synchronized void sendFrame(byte[] frame) {
+
+    try {
+      socket_writer.writeInt(frame.length);
+      socket_writer.write(frame);
+      socket_writer.flush();
+    } catch (Exception e) {
+      System.err.printf("Cannot write %d bytes to socket %s\n", frame.length,
+          e.getMessage());
+    }
+  }
+
   public void start() {
 
     try {
       socket = server.accept();
 
-      socket_reader = new BufferedReader(new InputStreamReader(
+      socket.setTcpNoDelay(true);
+
+      socket_reader = new DataInputStream(new BufferedInputStream(
             socket.getInputStream()));
 
-      socket_writer = new PrintWriter(new BufferedWriter(
-            new OutputStreamWriter(socket.getOutputStream())), true);
+      socket_writer = new DataOutputStream(new BufferedOutputStream(
+            socket.getOutputStream()));
 
       connected = true;
       return;
@@ -82,6 +82,18 @@ public class StringUtil {
     return ret;
   }
 
+  public static String toHexString(int bits, long value) {
+    if (bits < 64)
+      value &= (1L << bits) - 1;
+    String ret = Long.toHexString(value);
+    int len = (bits + 3) / 4;
+    while (ret.length() < len)
+      ret = "0" + ret;
+    if (ret.length() > len)
+      ret = ret.substring(ret.length() - len);
+    return ret;
+  }
+
   public static Bounds estimateBounds(String text, Font font) {
     return estimateBounds(text, font, GraphicsUtil.H_LEFT, GraphicsUtil.V_TOP);
   }
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.HashMap;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitMutation;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Constant;
+import com.cburch.logisim.std.wiring.Tunnel;
+
+// Builds the projects and circuits that tests use. A test's circuit is written
+// as the XML of a .circ file, usually with its components spread out along x
+// and left unconnected, and then joined by tunnels added at their ends.
+// Tests of circuit bookkeeping instead add and remove loose constants.
+public class TestProjects {
+
+	private TestProjects() {
+	}
+
+	// Returns a headless project opened from the given .circ file contents.
+	public static Project load(String xml) throws Exception {
+		Main.headless = true;
+		File circFile = File.createTempFile("test", ".circ");
+		try {
+			try (PrintWriter out = new PrintWriter(circFile, "UTF-8")) {
+				out.print(xml);
+			}
+			return new Project(new Loader(null).openLogisimFile(circFile));
+		} finally {
+			circFile.delete();
+		}
+	}
+
+	// Returns the components of circ, other than wires, by their x coordinate.
+	public static HashMap<Integer, Component> byX(Circuit circ) {
+		HashMap<Integer, Component> ret = new HashMap<>();
+		for (Component comp : circ.getNonWires())
+			ret.put(comp.getLocation().getX(), comp);
+		return ret;
+	}
+
+	// Returns a new constant at (x, 100), not yet in any circuit.
+	public static Component constant(int x) {
+		return Constant.FACTORY.createComponent(Location.create(x, 100),
+				Constant.FACTORY.createAttributeSet());
+	}
+
+	// Adds comp to circ, returning comp.
+	public static Component add(Circuit circ, Component comp) {
+		CircuitMutation m = new CircuitMutation(circ);
+		m.add(comp);
+		m.execute();
+		return comp;
+	}
+
+	public static void remove(Circuit circ, Component comp) {
+		CircuitMutation m = new CircuitMutation(circ);
+		m.remove(comp);
+		m.execute();
+	}
+
+	// Adds a tunnel to the given net, as wide as the end it sits on.
+	public static void addTunnel(CircuitMutation m, EndData end, String net) {
+		AttributeSet attrs = Tunnel.FACTORY.createAttributeSet();
+		attrs.setAttr(StdAttr.LABEL, net);
+		attrs.setAttr(StdAttr.WIDTH, end.getWidth());
+		m.add(Tunnel.FACTORY.createComponent(end.getLocation(), attrs));
+	}
+
+	// Joins the components of circ with tunnels. Each row of nets holds the x
+	// coordinate of a component followed by the net at each of its ends, in
+	// order, with null for ends left unconnected. Returns the components by x.
+	public static HashMap<Integer, Component> addTunnels(Circuit circ,
+			Object[][] nets) {
+		HashMap<Integer, Component> byX = byX(circ);
+		CircuitMutation m = new CircuitMutation(circ);
+		for (Object[] row : nets) {
+			Component comp = byX.get(row[0]);
+			for (int i = 1; i < row.length; i++) {
+				if (row[i] != null)
+					addTunnel(m, comp.getEnd(i - 1), (String) row[i]);
+			}
+		}
+		m.execute();
+		return byX;
+	}
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.TestProjects;
+import com.cburch.logisim.analyze.model.Entry;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.proj.Project;
+
+public class AnalyzeTest {
+
+	// A non-volatile RAM that writes 5 to address a while c is high, and
+	// shows the word at a on d. The pins are ordered x, a, c, d, with x
+	// unconnected, so c is the low bit of the row number, and the rows of
+	// each x write every address after reading it. The components are spread
+	// out, unconnected, and joined by the tunnels that setUp() adds at their
+	// ends.
+	private static final String RAM_CIRC = ""
+			+ "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+			+ "<project source=\"4.0.4-HC\" version=\"1.0\">\n"
+			+ "  <lib desc=\"#Wiring\" name=\"0\"/>\n"
+			+ "  <lib desc=\"#Memory\" name=\"4\"/>\n"
+			+ "  <main name=\"main\"/>\n"
+			+ "  <circuit name=\"main\">\n"
+			+ "    <comp lib=\"0\" loc=\"(100,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"label\" val=\"x\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(400,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"label\" val=\"a\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(700,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"label\" val=\"c\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(1000,100)\" name=\"Constant\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"value\" val=\"0x5\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(1300,100)\" name=\"Constant\"/>\n"
+			+ "    <comp lib=\"4\" loc=\"(1600,100)\" name=\"RAM\">\n"
+			+ "      <a name=\"addrWidth\" val=\"4\"/>\n"
+			+ "      <a name=\"dataWidth\" val=\"4\"/>\n"
+			+ "      <a name=\"trigger\" val=\"high\"/>\n"
+			+ "      <a name=\"type\" val=\"nonvolatile\"/>\n"
+			+ "      <a name=\"appearance\" val=\"classic\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(1900,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/>\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"label\" val=\"d\"/>\n"
+			+ "    </comp>\n"
+			+ "  </circuit>\n"
+			+ "</project>\n";
+
+	// The net at each end of the component at each x. The RAM's ends are its
+	// data out, address, data in, clock and write enable.
+	private static final Object[][] NETS = {
+		{ 400, "a" },
+		{ 700, "c" },
+		{ 1000, "k" },
+		{ 1300, "we" },
+		{ 1600, "d", "a", "k", "c", "we" },
+		{ 1900, "d" },
+	};
+
+	private Project proj;
+	private Circuit main;
+
+	@Before
+	public void setUp() throws Exception {
+		proj = TestProjects.load(RAM_CIRC);
+		main = proj.getLogisimFile().getMainCircuit();
+		TestProjects.addTunnels(main, NETS);
+	}
+
+	private Entry[][] table(int threads) {
+		Map<Instance, String> pins = Analyze.getPinLabels(main);
+		return Analyze.computeTable(proj, main, pins, null, true, threads).columns;
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.Analyze#computeTable}.
+	 * Each row of a circuit with a non-volatile RAM starts from an empty RAM,
+	 * as if no other row had been simulated, so the table doesn't depend on
+	 * the order of the rows or on how many threads simulated them.
+	 */
+	@Test
+	public void testRamRowsIndependent() {
+		Entry[][] serial = table(1);
+		assertEquals(4, serial.length);
+		assertEquals(512, serial[0].length);
+		Entry one = Entry.ONE, zero = Entry.ZERO;
+		for (int row = 0; row < 512; row++) {
+			boolean c = (row & 1) != 0;
+			Entry[] expected = { zero, c ? one : zero, zero, c ? one : zero };
+			for (int b = 0; b < 4; b++)
+				assertEquals("row " + row + " bit " + b, expected[b], serial[b][row]);
+		}
+		assertArrayEquals(serial, table(4));
+		assertArrayEquals(serial, table(3));
+	}
+}
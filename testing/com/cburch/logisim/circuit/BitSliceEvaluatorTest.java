@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.TestProjects;
+import com.cburch.logisim.analyze.model.Entry;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.proj.Project;
+
+public class BitSliceEvaluatorTest {
+
+	private static final String PIN_IN = "lib=\"0\" name=\"Pin\"";
+	private static final String PIN_OUT = "lib=\"0\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/";
+	private static final String WIDTH_2 = ">\n      <a name=\"width\" val=\"2\"/";
+
+	// Each circuit's components are spread out along y = 100, one every 300
+	// units of x, and joined by the tunnels that setUp() adds at their ends,
+	// one net per name in NETS.
+	private static final String[][] CIRCUITS = {
+		{ "gates",
+			PIN_IN, PIN_IN, PIN_IN, PIN_IN + WIDTH_2,
+			"lib=\"1\" name=\"AND Gate\">\n      <a name=\"inputs\" val=\"3\"/",
+			"lib=\"1\" name=\"OR Gate\">\n      <a name=\"inputs\" val=\"2\"/",
+			"lib=\"1\" name=\"XOR Gate\">\n      <a name=\"inputs\" val=\"2\"/",
+			"lib=\"1\" name=\"NAND Gate\">\n      <a name=\"inputs\" val=\"2\"/",
+			"lib=\"1\" name=\"NOT Gate\"" + WIDTH_2,
+			"lib=\"1\" name=\"XNOR Gate\">\n      <a name=\"inputs\" val=\"2\"/",
+			"lib=\"1\" name=\"Odd Parity\">\n      <a name=\"inputs\" val=\"3\"/",
+			PIN_OUT, PIN_OUT, PIN_OUT, PIN_OUT, PIN_OUT + WIDTH_2, PIN_OUT, PIN_OUT },
+		{ "mux",
+			PIN_IN + WIDTH_2, PIN_IN + WIDTH_2, PIN_IN,
+			"lib=\"2\" name=\"Multiplexer\">\n      <a name=\"enable\" val=\"false\"/"
+				+ WIDTH_2,
+			PIN_OUT + WIDTH_2 },
+		{ "muxen",
+			PIN_IN + WIDTH_2, PIN_IN + WIDTH_2, PIN_IN, PIN_IN,
+			"lib=\"2\" name=\"Multiplexer\">\n      <a name=\"enable\" val=\"true\"/"
+				+ WIDTH_2,
+			PIN_OUT + WIDTH_2 },
+		{ "floating",
+			PIN_IN, PIN_IN,
+			"lib=\"1\" name=\"AND Gate\">\n      <a name=\"inputs\" val=\"2\"/",
+			"lib=\"1\" name=\"OR Gate\">\n      <a name=\"inputs\" val=\"2\"/",
+			PIN_OUT, PIN_OUT },
+		{ "loop",
+			PIN_IN, PIN_IN,
+			"lib=\"1\" name=\"NOR Gate\">\n      <a name=\"inputs\" val=\"2\"/",
+			"lib=\"1\" name=\"NOR Gate\">\n      <a name=\"inputs\" val=\"2\"/",
+			PIN_OUT, PIN_OUT },
+	};
+
+	// The net at each end of each component of each circuit, in the same order.
+	private static final String[][][] NETS = {
+		{ { "a" }, { "b" }, { "c" }, { "v" },
+			{ "o1", "a", "b", "c" }, { "o2", "a", "b" }, { "o3", "a", "c" },
+			{ "o4", "b", "c" }, { "o5", "v" }, { "o6", "a", "b" },
+			{ "o7", "a", "b", "c" },
+			{ "o1" }, { "o2" }, { "o3" }, { "o4" }, { "o5" }, { "o6" }, { "o7" } },
+		{ { "d0" }, { "d1" }, { "s" }, { "d0", "d1", "s", "m" }, { "m" } },
+		{ { "d0" }, { "d1" }, { "s" }, { "e" }, { "d0", "d1", "s", "e", "m" }, { "m" } },
+		// u has no driver
+		{ { "a" }, { "b" }, { "o1", "a", "u" }, { "o2", "a", "b" }, { "o1" }, { "o2" } },
+		// a set-reset latch
+		{ { "r" }, { "s" }, { "q", "r", "nq" }, { "nq", "s", "q" }, { "q" }, { "nq" } },
+	};
+
+	private Project proj;
+
+	@Before
+	public void setUp() throws Exception {
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+				+ "<project source=\"4.0.4-HC\" version=\"1.0\">\n"
+				+ "  <lib desc=\"#Wiring\" name=\"0\"/>\n"
+				+ "  <lib desc=\"#Gates\" name=\"1\"/>\n"
+				+ "  <lib desc=\"#Plexers\" name=\"2\"/>\n"
+				+ "  <main name=\"gates\"/>\n");
+		for (String[] circ : CIRCUITS) {
+			xml.append("  <circuit name=\"" + circ[0] + "\">\n");
+			for (int i = 1; i < circ.length; i++)
+				xml.append("    <comp loc=\"(" + (300 * i) + ",100)\" " + circ[i] + ">\n"
+						+ "    </comp>\n");
+			xml.append("  </circuit>\n");
+		}
+		xml.append("</project>\n");
+		proj = TestProjects.load(xml.toString());
+
+		for (int k = 0; k < CIRCUITS.length; k++) {
+			Object[][] nets = new Object[NETS[k].length][];
+			for (int i = 0; i < nets.length; i++) {
+				nets[i] = new Object[NETS[k][i].length + 1];
+				nets[i][0] = 300 * (i + 1);
+				System.arraycopy(NETS[k][i], 0, nets[i], 1, NETS[k][i].length);
+			}
+			TestProjects.addTunnels(proj.getLogisimFile().getCircuit(CIRCUITS[k][0]), nets);
+		}
+	}
+
+	// Checks that the truth table is the same whether or not it may be done by
+	// BitSliceEvaluator, and whether BitSliceEvaluator could do it. Returns the
+	// table.
+	private Entry[][] check(String name, boolean bitSlice) {
+		Circuit circ = proj.getLogisimFile().getCircuit(name);
+		Map<Instance, String> pins = Analyze.getPinLabels(circ);
+		BitSliceEvaluator fast = BitSliceEvaluator.compile(circ, Analyze.newTable(pins),
+				proj.getOptions().getAttributeSet());
+		if (bitSlice)
+			assertNotNull(name, fast);
+		else
+			assertNull(name, fast);
+		Entry[][] expected = Analyze.computeTable(proj, circ, pins, null, false,
+				Runtime.getRuntime().availableProcessors()).columns;
+		Entry[][] actual = Analyze.computeTable(proj, circ, pins, null).columns;
+		assertArrayEquals(name, expected, actual);
+		return actual;
+	}
+
+	private static boolean hasUnknown(Entry[][] columns) {
+		for (Entry[] column : columns)
+			for (Entry e : column)
+				if (e != Entry.ZERO && e != Entry.ONE)
+					return true;
+		return false;
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.BitSliceEvaluator#computeTable}.
+	 * Gates, wide gates and parity gates give the same table 64 rows at a time
+	 * as simulated row by row.
+	 */
+	@Test
+	public void testGates() {
+		Entry[][] t = check("gates", true);
+		assertEquals(8, t.length); // o5 has two bits
+		assertEquals(32, t[0].length);
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.BitSliceEvaluator#computeTable}.
+	 * A multiplexer without an enable is done 64 rows at a time, and one with
+	 * an enable is simulated, and both match simulating every row.
+	 */
+	@Test
+	public void testMultiplexers() {
+		check("mux", true);
+		check("muxen", false);
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.BitSliceEvaluator#compile}.
+	 * Circuits with a floating net or a loop are left to simulation, which
+	 * reports the values that aren't 0 or 1.
+	 */
+	@Test
+	public void testFloatingAndLoop() {
+		assertTrue(hasUnknown(check("floating", false)));
+		assertTrue(hasUnknown(check("loop", false)));
+	}
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.TestProjects;
+import com.cburch.logisim.comp.Component;
+
+public class CircuitTest {
+
+	private Circuit circ;
+
+	@Before
+	public void setUp() {
+		circ = new Circuit("main", null);
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.Circuit#getSlotCount()}.
+	 * Each component in the circuit has its own slot, however many components
+	 * were added and removed before it.
+	 */
+	@Test
+	public void testSlotsReused() {
+		ArrayList<Component> kept = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Component comp = TestProjects.constant(10 * i);
+			TestProjects.add(circ, comp);
+			kept.add(comp);
+		}
+		for (int i = 0; i < 1000; i++) {
+			Component comp = TestProjects.constant(1000 + 10 * i);
+			TestProjects.add(circ, comp);
+			TestProjects.remove(circ, comp);
+			assertTrue(circ.getSlotCount() <= kept.size() + 1);
+		}
+		TestProjects.remove(circ, kept.get(1));
+		Component comp = TestProjects.constant(500);
+		TestProjects.add(circ, comp);
+		kept.set(1, comp);
+		HashSet<Integer> slots = new HashSet<>();
+		for (Component c : kept)
+			slots.add(c.getSlot());
+		assertEquals(3, slots.size());
+		assertEquals(3, circ.getSlotCount());
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.Circuit#getSlotCount()}.
+	 * Clearing the circuit gives back every slot.
+	 */
+	@Test
+	public void testClearFreesSlots() {
+		for (int i = 0; i < 10; i++)
+			TestProjects.add(circ, TestProjects.constant(10 * i));
+		assertEquals(10, circ.getSlotCount());
+		CircuitMutation m = new CircuitMutation(circ);
+		m.clear();
+		m.execute();
+		assertEquals(0, circ.getSlotCount());
+		Component comp = TestProjects.constant(10);
+		TestProjects.add(circ, comp);
+		assertEquals(0, comp.getSlot());
+	}
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.TestProjects;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+
+public class ClusterEvaluatorTest {
+
+	// A 4-bit register, clocked by its own clock, whose next value is
+	//   d = (s ? ~q : (q ^ 5) & a) | (q ^ 5)
+	// where a is an input pin, and s is the input pin sd passed through a
+	// controlled buffer enabled by the input pin en, so it floats while en is
+	// 0. The components are spread out, unconnected, and joined by the tunnels
+	// that setUp() adds at their ends, one net per name in NETS.
+	private static final String REG_CIRC = ""
+			+ "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+			+ "<project source=\"4.0.4-HC\" version=\"1.0\">\n"
+			+ "  <lib desc=\"#Wiring\" name=\"0\"/>\n"
+			+ "  <lib desc=\"#Gates\" name=\"1\"/>\n"
+			+ "  <lib desc=\"#Plexers\" name=\"2\"/>\n"
+			+ "  <lib desc=\"#Memory\" name=\"4\"/>\n"
+			+ "  <main name=\"main\"/>\n"
+			+ "  <circuit name=\"main\">\n"
+			+ "    <comp lib=\"0\" loc=\"(100,100)\" name=\"Clock\"/>\n"
+			+ "    <comp lib=\"4\" loc=\"(400,100)\" name=\"Register\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"appearance\" val=\"classic\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(700,100)\" name=\"Constant\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"value\" val=\"0x5\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"1\" loc=\"(1000,100)\" name=\"XOR Gate\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"inputs\" val=\"2\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(1300,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"label\" val=\"a\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"1\" loc=\"(1600,100)\" name=\"AND Gate\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"inputs\" val=\"2\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"1\" loc=\"(1900,100)\" name=\"NOT Gate\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"2\" loc=\"(2200,100)\" name=\"Multiplexer\">\n"
+			+ "      <a name=\"enable\" val=\"false\"/>\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(2500,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"label\" val=\"en\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(2800,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"label\" val=\"sd\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"1\" loc=\"(3100,100)\" name=\"Controlled Buffer\"/>\n"
+			+ "    <comp lib=\"1\" loc=\"(3400,100)\" name=\"OR Gate\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"inputs\" val=\"2\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(3700,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/>\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(4000,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/>\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(4300,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/>\n"
+			+ "    </comp>\n"
+			+ "  </circuit>\n"
+			+ "</project>\n";
+
+	// The net at each end of the component at each x, with null for ends left
+	// unconnected (the register's clear and enable).
+	private static final Object[][] NETS = {
+		{ 100, "clk" },
+		{ 400, "q", "d", "clk", null, null },
+		{ 700, "k" },
+		{ 1000, "x", "q", "k" },
+		{ 1300, "a" },
+		{ 1600, "n", "x", "a" },
+		{ 1900, "nq", "q" },
+		{ 2200, "n", "nq", "s", "m" },
+		{ 2500, "en" },
+		{ 2800, "sd" },
+		{ 3100, "s", "sd", "en" },
+		{ 3400, "d", "m", "x" },
+		{ 3700, "d" },
+		{ 4000, "m" },
+		{ 4300, "s" },
+	};
+
+	private Project proj;
+	private Circuit main;
+	private HashMap<Integer, Component> byX;
+
+	@Before
+	public void setUp() throws Exception {
+		proj = TestProjects.load(REG_CIRC);
+		main = proj.getLogisimFile().getMainCircuit();
+		byX = TestProjects.addTunnels(main, NETS);
+	}
+
+	private static void drive(CircuitState state, Component pin, Value v) {
+		Pin.FACTORY.driveInputPin(state.getInstanceState(pin), v);
+		state.markComponentAsDirty(pin);
+	}
+
+	// Returns every output pin's value, and the register's, after each tick,
+	// as the inputs change: a counts, sd flips every 3 ticks, and en is 0 (so
+	// the multiplexer's select floats) on ticks 10 to 19 and 45 to 49. The
+	// simulation is reset on tick 30, which clears the register and leaves
+	// the input pins at 0, so the select floats again until tick 34.
+	private ArrayList<String> trace(boolean compiled, long[] propagations) {
+		CircuitState state = CircuitState.createRootState(proj, main);
+		Propagator p = state.getPropagator();
+		p.setCompiled(compiled);
+		long before = p.getComponentPropagations();
+		Component a = byX.get(1300), en = byX.get(2500), sd = byX.get(2800);
+		Component reg = byX.get(400);
+		ArrayList<String> ret = new ArrayList<>();
+		p.propagate();
+		for (int t = 0; t < 60; t++) {
+			if (t == 30) {
+				p.reset();
+				p.propagate();
+			} else if (t < 30 || t > 33) {
+				drive(state, a, Value.createKnown(4, t & 0xf));
+				drive(state, en, (t >= 10 && t < 20) || (t >= 45 && t < 50)
+						? Value.FALSE : Value.TRUE);
+				drive(state, sd, (t / 3) % 2 == 0 ? Value.FALSE : Value.TRUE);
+			}
+			p.toggleClocks();
+			p.propagate();
+			StringBuilder s = new StringBuilder(t + ":");
+			for (int x : new int[] { 3700, 4000, 4300 })
+				s.append(' ').append(state.getValue(byX.get(x).getLocation()));
+			s.append(' ').append(state.getValue(reg.getEnd(0).getLocation()));
+			ret.add(s.toString());
+		}
+		propagations[0] = p.getComponentPropagations() - before;
+		return ret;
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.Propagator#setCompiled(boolean)}.
+	 * Running the combinational components as compiled clusters gives the same
+	 * value at every pin and register after every clock tick, including while
+	 * a cluster input floats and after a reset, while propagating fewer
+	 * components.
+	 */
+	@Test
+	public void testCompiledMatchesInterpreted() {
+		long[] interpreted = new long[1], compiled = new long[1];
+		ArrayList<String> expected = trace(false, interpreted);
+		assertEquals(expected, trace(true, compiled));
+		assertTrue(compiled[0] + " vs " + interpreted[0],
+				compiled[0] < interpreted[0]);
+
+		// the traces cover floating values, before and after the reset, and
+		// a register that takes several values
+		assertTrue(expected.get(12), expected.get(12).contains("x"));
+		assertTrue(expected.get(31), expected.get(31).contains("x"));
+		HashSet<String> regValues = new HashSet<>();
+		for (String line : expected)
+			regValues.add(line.substring(line.lastIndexOf(' ') + 1));
+		assertTrue(regValues.toString(), regValues.size() >= 4);
+	}
+}
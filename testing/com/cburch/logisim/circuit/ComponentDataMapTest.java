@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.TestProjects;
+import com.cburch.logisim.comp.Component;
+
+public class ComponentDataMapTest {
+
+	private Circuit a, b;
+
+	@Before
+	public void setUp() {
+		a = new Circuit("a", null);
+		b = new Circuit("b", null);
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.circuit.ComponentDataMap#put(Component, Object)}.
+	 * It behaves like a map keyed by component, growing as components are
+	 * added after it was created.
+	 */
+	@Test
+	public void testPutGetRemove() {
+		ComponentDataMap map = new ComponentDataMap(a);
+		Component c0 = TestProjects.add(a, TestProjects.constant(10));
+		assertNull(map.put(c0, "x"));
+		assertEquals("x", map.put(c0, "y"));
+		assertEquals("y", map.get(c0));
+		Component c1 = TestProjects.add(a, TestProjects.constant(20));
+		Component c2 = TestProjects.add(a, TestProjects.constant(30));
+		assertNull(map.get(c1));
+		map.put(c2, "z");
+		assertEquals("z", map.get(c2));
+		assertEquals(new HashSet<>(Arrays.asList(c0, c2)), new HashSet<>(map.keys()));
+		assertEquals("y", map.put(c0, null));
+		assertNull(map.get(c0));
+		assertEquals("z", map.remove(c2));
+		assertNull(map.remove(c2));
+		assertEquals(0, map.keys().size());
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.circuit.ComponentDataMap#get(Component)}.
+	 * Components of different circuits can have the same slot, and never see
+	 * each other's data.
+	 */
+	@Test
+	public void testSameSlotInOtherCircuit() {
+		Component ca = TestProjects.add(a, TestProjects.constant(10));
+		Component cb = TestProjects.add(b, TestProjects.constant(10));
+		assertEquals(ca.getSlot(), cb.getSlot());
+		ComponentDataMap map = new ComponentDataMap(a);
+		map.put(ca, "a");
+		assertNull(map.get(cb));
+		assertNull(map.remove(cb));
+		assertEquals("a", map.get(ca));
+		assertNull(map.put(cb, "b"));
+		assertNull(map.get(ca));
+		assertNull(map.remove(ca));
+		assertEquals("b", map.get(cb));
+		assertEquals(Arrays.asList(cb), map.keys());
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.circuit.ComponentDataMap#put(Component, Object)}.
+	 * A removed component's slot is given to the next component added, which
+	 * doesn't see the data left there, and takes the slot over when it puts
+	 * its own.
+	 */
+	@Test
+	public void testRecycledSlot() {
+		ComponentDataMap map = new ComponentDataMap(a);
+		Component c = TestProjects.add(a, TestProjects.constant(10));
+		Component keep = TestProjects.add(a, TestProjects.constant(20));
+		map.put(c, "c");
+		map.put(keep, "keep");
+		TestProjects.remove(a, c);
+		Component d = TestProjects.add(a, TestProjects.constant(30));
+		assertEquals(c.getSlot(), d.getSlot());
+		assertEquals(2, a.getSlotCount());
+		assertNull(map.get(d));
+		assertNull(map.remove(d));
+		assertEquals("c", map.get(c));
+		assertNull(map.put(d, "d"));
+		assertEquals("d", map.get(d));
+		assertNull(map.get(c));
+		assertNull(map.remove(c));
+		assertEquals("keep", map.get(keep));
+		assertEquals(new HashSet<>(Arrays.asList(d, keep)), new HashSet<>(map.keys()));
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.circuit.ComponentDataMap#get(Component)}.
+	 * A component removed and added again, as by undo, after its slot was
+	 * given to another component, gets a new slot, and starts without data
+	 * even if its old slot still held some.
+	 */
+	@Test
+	public void testReaddedComponent() {
+		ComponentDataMap map = new ComponentDataMap(a);
+		Component c = TestProjects.add(a, TestProjects.constant(10));
+		int slot = c.getSlot();
+		map.put(c, "old");
+		TestProjects.remove(a, c);
+		Component d = TestProjects.add(a, TestProjects.constant(20));
+		TestProjects.add(a, c);
+		assertNotEquals(slot, c.getSlot());
+		assertNull(map.get(c));
+		assertNull(map.remove(c));
+		map.put(c, "new");
+		assertEquals("new", map.get(c));
+		assertNull(map.get(d));
+		map.put(d, "d");
+		assertEquals("new", map.get(c));
+		assertEquals("d", map.get(d));
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.circuit.ComponentDataMap#keys()}.
+	 * Components without a slot are kept too, and clear() forgets everything.
+	 */
+	@Test
+	public void testComponentsWithoutSlot() {
+		ComponentDataMap map = new ComponentDataMap(a);
+		Component loose = TestProjects.constant(10);
+		assertEquals(-1, loose.getSlot());
+		Component c = TestProjects.add(a, TestProjects.constant(20));
+		map.put(loose, "loose");
+		map.put(c, "c");
+		assertEquals("loose", map.get(loose));
+		assertEquals(new HashSet<>(Arrays.asList(loose, c)), new HashSet<>(map.keys()));
+		map.clear();
+		assertNull(map.get(loose));
+		assertNull(map.get(c));
+		assertEquals(0, map.keys().size());
+	}
+}
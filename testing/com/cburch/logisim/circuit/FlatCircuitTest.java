@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.TestProjects;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Direction;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Constant;
+import com.cburch.logisim.std.wiring.Pin;
+
+public class FlatCircuitTest {
+
+	// An accumulator: an 8-bit register, clocked by its own clock, that adds
+	// its input to its value on every tick. The "wrap" circuit, holding one
+	// accumulator, and the main circuit, holding several wraps, are filled in
+	// by setUp().
+	private static final String CELL_CIRC = ""
+			+ "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+			+ "<project source=\"4.0.4-HC\" version=\"1.0\">\n"
+			+ "  <lib desc=\"#Wiring\" name=\"1\"/>\n"
+			+ "  <lib desc=\"#Arithmetic\" name=\"3\"/>\n"
+			+ "  <lib desc=\"#Memory\" name=\"4\"/>\n"
+			+ "  <main name=\"main\"/>\n"
+			+ "  <circuit name=\"main\">\n"
+			+ "  </circuit>\n"
+			+ "  <circuit name=\"wrap\">\n"
+			+ "  </circuit>\n"
+			+ "  <circuit name=\"cell\">\n"
+			+ "    <wire from=\"(240,200)\" to=\"(270,200)\"/>\n"
+			+ "    <wire from=\"(280,220)\" to=\"(280,240)\"/>\n"
+			+ "    <wire from=\"(300,200)\" to=\"(320,200)\"/>\n"
+			+ "    <wire from=\"(320,200)\" to=\"(320,260)\"/>\n"
+			+ "    <wire from=\"(200,260)\" to=\"(320,260)\"/>\n"
+			+ "    <wire from=\"(200,210)\" to=\"(200,260)\"/>\n"
+			+ "    <comp lib=\"1\" loc=\"(200,190)\" name=\"Pin\">\n"
+			+ "      <a name=\"width\" val=\"8\"/>\n"
+			+ "      <a name=\"label\" val=\"in\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"3\" loc=\"(240,200)\" name=\"Adder\">\n"
+			+ "      <a name=\"width\" val=\"8\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"4\" loc=\"(300,200)\" name=\"Register\">\n"
+			+ "      <a name=\"width\" val=\"8\"/>\n"
+			+ "      <a name=\"appearance\" val=\"classic\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"1\" loc=\"(280,240)\" name=\"Clock\"/>\n"
+			+ "    <comp lib=\"1\" loc=\"(300,200)\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/>\n"
+			+ "      <a name=\"width\" val=\"8\"/>\n"
+			+ "      <a name=\"label\" val=\"out\"/>\n"
+			+ "    </comp>\n"
+			+ "  </circuit>\n"
+			+ "</project>\n";
+
+	private static final int WRAPS = 6;
+	private static final Location REGISTER = Location.create(300, 200);
+
+	private Project proj;
+	private Circuit main;
+	private ArrayList<Location> outs = new ArrayList<>();
+
+	@Before
+	public void setUp() throws Exception {
+		proj = TestProjects.load(CELL_CIRC);
+		LogisimFile file = proj.getLogisimFile();
+		main = file.getMainCircuit();
+
+		// wrap: a cell whose ports are wrap's own pins
+		Circuit wrap = file.getCircuit("wrap");
+		SubcircuitFactory cell = file.getCircuit("cell").getSubcircuitFactory();
+		Component sub = cell.createComponent(Location.create(200, 100),
+				cell.createAttributeSet());
+		CircuitMutation m = new CircuitMutation(wrap);
+		m.add(sub);
+		for (EndData end : sub.getEnds()) {
+			AttributeSet attrs = Pin.FACTORY.createAttributeSet();
+			attrs.setAttr(StdAttr.WIDTH, BitWidth.create(8));
+			if (end.isOutput()) {
+				attrs.setAttr(Pin.ATTR_TYPE, Pin.OUTPUT);
+				attrs.setAttr(StdAttr.FACING, Direction.WEST);
+			}
+			m.add(Pin.FACTORY.createComponent(end.getLocation(), attrs));
+		}
+		m.execute();
+
+		// main: wraps, each adding a different constant
+		SubcircuitFactory wrapper = wrap.getSubcircuitFactory();
+		m = new CircuitMutation(main);
+		for (int i = 0; i < WRAPS; i++) {
+			Component w = wrapper.createComponent(Location.create(200, 100 + 80 * i),
+					wrapper.createAttributeSet());
+			m.add(w);
+			for (EndData end : w.getEnds()) {
+				if (end.isOutput()) {
+					outs.add(end.getLocation());
+				} else {
+					AttributeSet attrs = Constant.FACTORY.createAttributeSet();
+					attrs.setAttr(StdAttr.WIDTH, BitWidth.create(8));
+					attrs.setAttr(Constant.ATTR_VALUE,
+							Constant.ATTR_VALUE.parse("" + (5 * i + 1)));
+					m.add(Constant.FACTORY.createComponent(end.getLocation(), attrs));
+				}
+			}
+		}
+		m.execute();
+	}
+
+	// Returns the states of the cells within the wraps of a hierarchical
+	// simulation, once it has propagated.
+	private static ArrayList<CircuitState> cellStates(CircuitState root) {
+		ArrayList<CircuitState> ret = new ArrayList<>();
+		for (Component w : root.getCircuit().getNonWires()) {
+			if (!(root.getData(w) instanceof CircuitState))
+				continue;
+			CircuitState wrapState = (CircuitState) root.getData(w);
+			for (Component c : wrapState.getCircuit().getNonWires()) {
+				Object data = wrapState.getData(c);
+				if (data instanceof CircuitState)
+					ret.add((CircuitState) data);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.FlatCircuit#create(Circuit)}.
+	 * After every clock tick, the flat simulation has the same values as the
+	 * hierarchical one, both at the top circuit's outputs and, probed through
+	 * the mapping, in the registers two levels down.
+	 */
+	@Test
+	public void testFlatMatchesHierarchical() {
+		FlatCircuit flat = FlatCircuit.create(main);
+		CircuitState hier = CircuitState.createRootState(proj, main);
+		CircuitState flatState = CircuitState.createRootState(proj, flat.getCircuit());
+		Propagator hp = hier.getPropagator();
+		Propagator fp = flatState.getPropagator();
+		hp.propagate();
+		fp.propagate();
+		ArrayList<CircuitState> cells = cellStates(hier);
+		assertEquals(WRAPS, cells.size());
+		List<Component> top = Collections.emptyList();
+
+		for (int t = 0; t < 40; t++) {
+			for (Location loc : outs)
+				assertEquals("tick " + t, hier.getValue(loc).toHexString(),
+						flatState.getValue(flat.getLocation(top, loc)).toHexString());
+			for (CircuitState cellState : cells)
+				assertEquals("tick " + t, cellState.getValue(REGISTER).toHexString(),
+						flat.getValue(flatState, cellState, REGISTER).toHexString());
+			hp.toggleClocks();
+			hp.propagate();
+			fp.toggleClocks();
+			fp.propagate();
+		}
+		// 20 rising edges
+		for (int i = 0; i < WRAPS; i++)
+			assertEquals(String.format("%02x", (20 * (5 * i + 1)) & 0xff),
+					flatState.getValue(flat.getLocation(top, outs.get(i))).toHexString());
+	}
+
+	private static Location output(Component sub) {
+		for (EndData end : sub.getEnds()) {
+			if (end.isOutput())
+				return end.getLocation();
+		}
+		return null;
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.FlatCircuit#getOrigin(Location)}.
+	 * Locations of the flat circuit map back to the instance and location they
+	 * came from, and a net to every location it joins across instances.
+	 */
+	@Test
+	public void testOrigins() {
+		FlatCircuit flat = FlatCircuit.create(main);
+		CircuitState hier = CircuitState.createRootState(proj, main);
+		hier.getPropagator().propagate();
+		for (CircuitState cellState : cellStates(hier)) {
+			List<Component> path = flat.getPath(cellState);
+			assertEquals(2, path.size());
+			Location p = flat.getLocation(path, REGISTER);
+			FlatCircuit.Origin origin = flat.getOrigin(p);
+			assertEquals(new FlatCircuit.Origin(path, REGISTER), origin);
+			assertTrue(origin.getState(hier) == cellState);
+
+			// the wrap's output, in main, reaches the cell's output pin
+			Location out = output(path.get(0));
+			List<FlatCircuit.Origin> net = flat.getNet(
+					flat.getLocation(Collections.emptyList(), out));
+			assertTrue(net.toString(), net.contains(origin));
+			assertTrue(net.toString(),
+					net.contains(new FlatCircuit.Origin(Collections.emptyList(), out)));
+			assertTrue(net.toString(), net.contains(new FlatCircuit.Origin(
+					path.subList(0, 1), output(path.get(1)))));
+		}
+		assertNotNull(flat.getOrigin(outs.get(0)));
+		assertEquals(Arrays.asList(), flat.getPath(CircuitState.createRootState(proj,
+				main)));
+	}
+}
@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.TestProjects;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Constant;
+
+public class PropagatorTest {
+
+	// Three instances of "sub", in which a constant and an output pin are not
+	// yet connected, and an unrelated circuit "other".
+	private static final String SUBS_CIRC = ""
+			+ "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+			+ "<project source=\"4.0.4-HC\" version=\"1.0\">\n"
+			+ "  <lib desc=\"#Wiring\" name=\"1\"/>\n"
+			+ "  <main name=\"main\"/>\n"
+			+ "  <circuit name=\"main\">\n"
+			+ "    <comp loc=\"(100,100)\" name=\"sub\"/>\n"
+			+ "    <comp loc=\"(100,200)\" name=\"sub\"/>\n"
+			+ "    <comp loc=\"(100,300)\" name=\"sub\"/>\n"
+			+ "  </circuit>\n"
+			+ "  <circuit name=\"sub\">\n"
+			+ "    <comp lib=\"1\" loc=\"(100,100)\" name=\"Constant\"/>\n"
+			+ "    <comp lib=\"1\" loc=\"(200,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/>\n"
+			+ "    </comp>\n"
+			+ "  </circuit>\n"
+			+ "  <circuit name=\"other\">\n"
+			+ "    <comp lib=\"1\" loc=\"(100,100)\" name=\"Constant\"/>\n"
+			+ "  </circuit>\n"
+			+ "</project>\n";
+
+	// An accumulator: an 8-bit register, clocked by its own clock, that adds
+	// its input to its value on every tick. The main circuit is filled in by
+	// addCells().
+	private static final String CELL_CIRC = ""
+			+ "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+			+ "<project source=\"4.0.4-HC\" version=\"1.0\">\n"
+			+ "  <lib desc=\"#Wiring\" name=\"1\"/>\n"
+			+ "  <lib desc=\"#Arithmetic\" name=\"3\"/>\n"
+			+ "  <lib desc=\"#Memory\" name=\"4\"/>\n"
+			+ "  <main name=\"main\"/>\n"
+			+ "  <circuit name=\"main\">\n"
+			+ "  </circuit>\n"
+			+ "  <circuit name=\"cell\">\n"
+			+ "    <wire from=\"(240,200)\" to=\"(270,200)\"/>\n"
+			+ "    <wire from=\"(280,220)\" to=\"(280,240)\"/>\n"
+			+ "    <wire from=\"(300,200)\" to=\"(320,200)\"/>\n"
+			+ "    <wire from=\"(320,200)\" to=\"(320,260)\"/>\n"
+			+ "    <wire from=\"(200,260)\" to=\"(320,260)\"/>\n"
+			+ "    <wire from=\"(200,210)\" to=\"(200,260)\"/>\n"
+			+ "    <comp lib=\"1\" loc=\"(200,190)\" name=\"Pin\">\n"
+			+ "      <a name=\"width\" val=\"8\"/>\n"
+			+ "      <a name=\"label\" val=\"in\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"3\" loc=\"(240,200)\" name=\"Adder\">\n"
+			+ "      <a name=\"width\" val=\"8\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"4\" loc=\"(300,200)\" name=\"Register\">\n"
+			+ "      <a name=\"width\" val=\"8\"/>\n"
+			+ "      <a name=\"appearance\" val=\"classic\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"1\" loc=\"(280,240)\" name=\"Clock\"/>\n"
+			+ "    <comp lib=\"1\" loc=\"(300,200)\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/>\n"
+			+ "      <a name=\"width\" val=\"8\"/>\n"
+			+ "      <a name=\"label\" val=\"out\"/>\n"
+			+ "    </comp>\n"
+			+ "  </circuit>\n"
+			+ "</project>\n";
+
+	private static final int CELLS = 12;
+	private static final Location REGISTER = Location.create(300, 200);
+
+	private LogisimFile file;
+	private CircuitState root;
+	private Propagator prop;
+
+	@Before
+	public void setUp() throws Exception {
+		Project proj = TestProjects.load(SUBS_CIRC);
+		file = proj.getLogisimFile();
+		root = CircuitState.createRootState(proj, file.getMainCircuit());
+		prop = root.getPropagator();
+		prop.propagate();
+		prop.propagate();
+	}
+
+	private static void addWire(Circuit circ, int x0, int x1) {
+		CircuitMutation m = new CircuitMutation(circ);
+		m.add(Wire.create(Location.create(x0, 100), Location.create(x1, 100)));
+		m.execute();
+	}
+
+	// Returns the number of state visits made by one (idle) propagation.
+	private long visitsToPropagate() {
+		long before = prop.getStateVisits();
+		prop.propagate();
+		return prop.getStateVisits() - before;
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.Propagator#propagate()}.
+	 * An edit to a circuit that isn't part of the simulated hierarchy must not
+	 * make the propagator visit every state.
+	 */
+	@Test
+	public void testUnrelatedEditVisitsNothing() {
+		long idle = visitsToPropagate();
+		addWire(file.getCircuit("other"), 100, 150);
+		assertEquals(idle, visitsToPropagate());
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.Propagator#propagate()}.
+	 * After an edit to a subcircuit, each of its states is visited and sees
+	 * the new wiring, even though none of them had anything else to do.
+	 */
+	@Test
+	public void testSubcircuitEditRebuildsWires() {
+		Location out = Location.create(200, 100);
+		ArrayList<CircuitState> subs = new ArrayList<>();
+		for (Component comp : file.getMainCircuit().getNonWires())
+			subs.add((CircuitState) root.getData(comp));
+		assertEquals(3, subs.size());
+		for (CircuitState sub : subs)
+			assertTrue(sub.getValue(out) != Value.TRUE);
+
+		long idle = visitsToPropagate();
+		addWire(file.getCircuit("sub"), 100, 200);
+		assertTrue(visitsToPropagate() > idle);
+		for (CircuitState sub : subs)
+			assertEquals(Value.TRUE, sub.getValue(out));
+		assertEquals(idle, visitsToPropagate());
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.CircuitState#publishValues()}.
+	 * An idle propagation publishes only the states whose values changed, so
+	 * it costs the same however many subcircuit states there are.
+	 */
+	@Test
+	public void testIdlePublishesNothing() {
+		long idle = visitsToPropagate();
+		Circuit main = file.getMainCircuit();
+		SubcircuitFactory sub = file.getCircuit("sub").getSubcircuitFactory();
+		CircuitMutation m = new CircuitMutation(main);
+		for (int i = 0; i < 30; i++)
+			m.add(sub.createComponent(Location.create(300, 100 + 100 * i),
+					sub.createAttributeSet()));
+		m.execute();
+		prop.propagate();
+		prop.propagate();
+		assertEquals(idle, visitsToPropagate());
+	}
+
+	// Fills the main circuit with CELLS accumulators, each adding a different
+	// constant, and returns the locations of their outputs.
+	private static ArrayList<Location> addCells(LogisimFile file) {
+		Circuit main = file.getMainCircuit();
+		SubcircuitFactory cell = file.getCircuit("cell").getSubcircuitFactory();
+		CircuitMutation m = new CircuitMutation(main);
+		ArrayList<Location> outs = new ArrayList<>();
+		for (int i = 0; i < CELLS; i++) {
+			Component sub = cell.createComponent(Location.create(200, 100 + 80 * i),
+					cell.createAttributeSet());
+			m.add(sub);
+			for (EndData end : sub.getEnds()) {
+				if (end.isOutput()) {
+					outs.add(end.getLocation());
+				} else {
+					AttributeSet attrs = Constant.FACTORY.createAttributeSet();
+					attrs.setAttr(StdAttr.WIDTH, BitWidth.create(8));
+					attrs.setAttr(Constant.ATTR_VALUE,
+							Constant.ATTR_VALUE.parse("" + (3 * i + 1)));
+					m.add(Constant.FACTORY.createComponent(end.getLocation(), attrs));
+				}
+			}
+		}
+		m.execute();
+		return outs;
+	}
+
+	// Returns every cell output and every register value, after each step.
+	private static ArrayList<String> trace(CircuitState state,
+			ArrayList<Location> outs, int ticks) {
+		ArrayList<String> ret = new ArrayList<>();
+		Propagator p = state.getPropagator();
+		p.propagate();
+		for (int t = 0; t < ticks; t++) {
+			p.toggleClocks();
+			do {
+				StringBuilder s = new StringBuilder(t + ":");
+				for (Location loc : outs)
+					s.append(' ').append(state.getValue(loc).toHexString());
+				for (Component comp : state.getCircuit().getNonWires()) {
+					Object data = state.getData(comp);
+					if (data instanceof CircuitState)
+						s.append(' ').append(((CircuitState) data).getValue(REGISTER).toHexString());
+				}
+				ret.add(s.toString());
+			} while (p.step(null));
+		}
+		return ret;
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.Propagator#step(PropagationPoints)}.
+	 * Clocks inside subcircuits tick every instance, though a tick leaves those
+	 * states with dirty components but no dirty points.
+	 */
+	@Test
+	public void testClockInSubcircuit() throws Exception {
+		Project proj = TestProjects.load(CELL_CIRC);
+		ArrayList<Location> outs = addCells(proj.getLogisimFile());
+		assertEquals(CELLS, outs.size());
+		CircuitState state = CircuitState.createRootState(proj,
+				proj.getLogisimFile().getMainCircuit());
+		ArrayList<String> values = trace(state, outs, 40);
+
+		// Cell i holds 20 * (3i+1) after 20 rising edges, modulo 256.
+		String last = values.get(values.size() - 1);
+		StringBuilder expected = new StringBuilder("39:");
+		for (int i = 0; i < CELLS; i++)
+			expected.append(String.format(" %02x", (20 * (3 * i + 1)) & 0xff));
+		assertTrue(last, last.startsWith(expected.toString()));
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.circuit.Propagator#step(PropagationPoints)}.
+	 * Processing sibling subcircuit states as parallel tasks must give the
+	 * same values after every step as the serial simulation, including the
+	 * register kept by each instance.
+	 */
+	@Test
+	public void testParallelMatchesSerial() throws Exception {
+		Project proj = TestProjects.load(CELL_CIRC);
+		ArrayList<Location> outs = addCells(proj.getLogisimFile());
+		Circuit main = proj.getLogisimFile().getMainCircuit();
+
+		CircuitState serial = CircuitState.createRootState(proj, main);
+		serial.getPropagator().setParallel(false);
+		ArrayList<String> expected = trace(serial, outs, 40);
+
+		CircuitState parallel = CircuitState.createRootState(proj, main);
+		parallel.getPropagator().setParallel(true);
+		assertEquals(expected, trace(parallel, outs, 40));
+
+		// and each state has published the values it changed
+		for (CircuitState state : new CircuitState[] { serial, parallel }) {
+			for (Location loc : outs)
+				assertEquals(state.getValue(loc), state.getPublishedValue(loc));
+			for (Component comp : main.getNonWires()) {
+				Object data = state.getData(comp);
+				if (data instanceof CircuitState) {
+					CircuitState cell = (CircuitState) data;
+					assertEquals(cell.getValue(REGISTER), cell.getPublishedValue(REGISTER));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.Main;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.Wire;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.tools.Tool;
+
+public class XmlProjectReaderTest {
+
+	// The main element and the subcircuit come after the circuit that uses them,
+	// as does the library of the register.
+	private static final String CIRC = ""
+			+ "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+			+ "<project source=\"%s\" version=\"1.0\">\n"
+			+ "  <lib desc=\"#Wiring\" name=\"0\"/>\n"
+			+ "  <lib desc=\"#Gates\" name=\"1\"/>\n"
+			+ "  <toolbar>\n"
+			+ "    <tool lib=\"1\" name=\"AND Gate\"/>\n"
+			+ "    <sep/>\n"
+			+ "    <tool lib=\"4\" name=\"Register\"/>\n"
+			+ "  </toolbar>\n"
+			+ "  <circuit name=\"top\">\n"
+			+ "    <a name=\"circuit\" val=\"top\"/>\n"
+			+ "    <comp lib=\"0\" loc=\"(100,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"label\" val=\"A\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp loc=\"(200,100)\" name=\"half\"/>\n"
+			+ "    <comp lib=\"4\" loc=\"(300,200)\" name=\"Register\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "    </comp>\n"
+			+ "    <wire from=\"(100,100)\" to=\"(180,100)\"/>\n"
+			+ "  </circuit>\n"
+			+ "  <circuit name=\"half\">\n"
+			+ "    <a name=\"circuit\" val=\"half\"/>\n"
+			+ "    <comp lib=\"0\" loc=\"(100,100)\" name=\"Pin\"/>\n"
+			+ "    <comp lib=\"1\" loc=\"(200,100)\" name=\"AND Gate\">\n"
+			+ "      <a name=\"inputs\" val=\"3\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(300,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/>\n"
+			+ "    </comp>\n"
+			+ "    <wire from=\"(100,100)\" to=\"(150,100)\"/>\n"
+			+ "  </circuit>\n"
+			+ "  <main name=\"half\"/>\n"
+			+ "  <lib desc=\"#Memory\" name=\"4\"/>\n"
+			+ "</project>\n";
+
+	@Before
+	public void setUp() {
+		Main.headless = true;
+	}
+
+	private static LogisimFile load(String source) throws Exception {
+		String xml = String.format(CIRC, source);
+		XmlProjectReader reader = new XmlProjectReader(new Loader(null), null);
+		return reader.parseProjectWithSimulations(
+				new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))).file;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static String describe(Component comp) {
+		StringBuilder s = new StringBuilder(comp.getFactory().getName() + comp.getLocation());
+		AttributeSet attrs = comp.getAttributeSet();
+		for (Attribute a : attrs.getAttributes())
+			s.append(" " + a.getName() + "=" + a.toStandardString(attrs.getValue(a)));
+		return s.toString();
+	}
+
+	private static List<String> describe(LogisimFile file) {
+		List<String> ret = new ArrayList<>();
+		for (Circuit circ : file.getCircuits()) {
+			ret.add("circuit " + circ.getName());
+			List<String> comps = new ArrayList<>();
+			for (Component comp : circ.getNonWires())
+				comps.add(describe(comp));
+			for (Wire w : circ.getWires())
+				comps.add(w.toString());
+			Collections.sort(comps);
+			ret.addAll(comps);
+		}
+		ret.add("main " + file.getMainCircuit().getName());
+		for (Object item : file.getOptions().getToolbarData().getContents())
+			ret.add("toolbar " + (item instanceof Tool ? ((Tool) item).getName() : item));
+		return ret;
+	}
+
+	/**
+	 * Test method for {@link XmlProjectReader#parseProjectWithSimulations(java.io.InputStream)}.
+	 * A file new enough to be read as it streams in loads the same as one that
+	 * is read as a whole document.
+	 */
+	@Test
+	public void testStreamedMatchesWholeDocument() throws Exception {
+		List<String> streamed = describe(load("4.0.4-HC"));
+		List<String> whole = describe(load("4.0.2-HC"));
+		assertEquals(whole, streamed);
+		assertTrue(streamed.contains("main half"));
+		assertEquals(14, streamed.size());
+	}
+
+}
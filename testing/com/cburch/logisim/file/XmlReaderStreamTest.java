@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.file;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+public class XmlReaderStreamTest {
+
+	private static final String CIRC = ""
+			+ "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+			+ "<project source=\"4.0.4-HC\" version=\"1.0\">\n"
+			+ "  This file is intended to be loaded by Logisim-evolution.\n"
+			+ "\n"
+			+ "  <lib desc=\"#Wiring\" name=\"0\"/>\n"
+			+ "  <!-- a comment -->\n"
+			+ "  <main name=\"main\"/>\n"
+			+ "  <circuit name=\"main\">\n"
+			+ "    <a name=\"circuit\" val=\"main\"/>\n"
+			+ "    <comp lib=\"0\" loc=\"(100,100)\" name=\"Text\">\n"
+			+ "      <a name=\"text\">  two\n"
+			+ "  lines &amp; more  </a>\n"
+			+ "      <a name=\"blank\">   </a>\n"
+			+ "      <a name=\"cdata\"><![CDATA[<x>]]> and text</a>\n"
+			+ "      <a name=\"empty\"></a>\n"
+			+ "    </comp>\n"
+			+ "    <wire from=\"(100,100)\" to=\"(200,100)\"/>\n"
+			+ "  </circuit>\n"
+			+ "</project>\n";
+
+	private static Document stream(String xml) throws Exception {
+		return XmlReader.loadXmlFrom(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static Document dom(String xml) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		factory.setCoalescing(true);
+		return factory.newDocumentBuilder().parse(
+				new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static boolean hasChildElements(Node n) {
+		for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling())
+			if (c.getNodeType() == Node.ELEMENT_NODE)
+				return true;
+		return false;
+	}
+
+	// Compares the elements of a streamed document with those of a DOM parse.
+	private static void assertSameElements(Element expected, Element actual) {
+		assertEquals(expected.getTagName(), actual.getTagName());
+		NamedNodeMap attrs = expected.getAttributes();
+		assertEquals(attrs.getLength(), actual.getAttributes().getLength());
+		for (int i = 0; i < attrs.getLength(); i++) {
+			Node a = attrs.item(i);
+			assertEquals(a.getNodeValue(), actual.getAttribute(a.getNodeName()));
+		}
+		if (!hasChildElements(expected)) {
+			assertEquals(expected.getTextContent(), actual.getTextContent());
+			return;
+		}
+		NodeList kids = actual.getChildNodes();
+		Node e = expected.getFirstChild();
+		for (int i = 0; i < kids.getLength(); i++) {
+			Node k = kids.item(i);
+			if (k.getNodeType() == Node.TEXT_NODE) {
+				assertEquals("whitespace between elements", false, k.getNodeValue().trim().isEmpty());
+				continue;
+			}
+			assertEquals(Node.ELEMENT_NODE, k.getNodeType());
+			while (e.getNodeType() != Node.ELEMENT_NODE)
+				e = e.getNextSibling();
+			assertSameElements((Element)e, (Element)k);
+			e = e.getNextSibling();
+		}
+		while (e != null) {
+			assertEquals("missing element", false, e.getNodeType() == Node.ELEMENT_NODE);
+			e = e.getNextSibling();
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.file.XmlReader#loadXmlFrom(java.io.InputStream)}.
+	 * The streamed document has the same elements and attributes as a DOM
+	 * parse, without the whitespace between elements.
+	 */
+	@Test
+	public void testMatchesDom() throws Exception {
+		assertSameElements(dom(CIRC).getDocumentElement(), stream(CIRC).getDocumentElement());
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.file.XmlReader#loadXmlFrom(java.io.InputStream)}.
+	 * Text in elements without child elements is kept exactly, including
+	 * leading, trailing and whitespace-only text.
+	 */
+	@Test
+	public void testLeafTextKept() throws Exception {
+		NodeList attrs = stream(CIRC).getElementsByTagName("a");
+		assertEquals(5, attrs.getLength());
+		assertEquals("main", ((Element)attrs.item(0)).getAttribute("val"));
+		assertEquals("  two\n  lines & more  ", attrs.item(1).getTextContent());
+		assertEquals("   ", attrs.item(2).getTextContent());
+		assertEquals("<x> and text", attrs.item(3).getTextContent());
+		assertEquals("", attrs.item(4).getTextContent());
+		assertEquals(1, attrs.item(1).getChildNodes().getLength());
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.file.XmlReader#loadXmlFrom(java.io.InputStream)}.
+	 * Only whitespace is dropped between elements; other text is kept.
+	 */
+	@Test
+	public void testWhitespaceBetweenElements() throws Exception {
+		Element project = stream(CIRC).getDocumentElement();
+		NodeList kids = project.getChildNodes();
+		assertEquals(Node.TEXT_NODE, kids.item(0).getNodeType());
+		assertEquals("This file is intended to be loaded by Logisim-evolution.",
+				kids.item(0).getNodeValue().trim());
+		int elements = 0;
+		for (int i = 1; i < kids.getLength(); i++) {
+			assertEquals(Node.ELEMENT_NODE, kids.item(i).getNodeType());
+			elements++;
+		}
+		assertEquals(3, elements);
+		Node comp = project.getElementsByTagName("comp").item(0);
+		for (Node c = comp.getFirstChild(); c != null; c = c.getNextSibling())
+			assertEquals(Node.ELEMENT_NODE, c.getNodeType());
+	}
+}
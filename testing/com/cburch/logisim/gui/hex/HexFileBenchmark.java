@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.gui.hex;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.cburch.logisim.Main;
+import com.cburch.logisim.std.memory.MemContents;
+
+/**
+ * Compares saving and loading a memory image in the "v3.0 image" format with
+ * the text formats, and with headerless binary. Run it by hand, from the
+ * directory with the resources, as:
+ *
+ * <pre>
+ * java -cp ... com.cburch.logisim.gui.hex.HexFileBenchmark [addrBits [width [runs]]]
+ * </pre>
+ *
+ * The defaults are 22 address bits (4M words), 32-bit words and 5 timed runs.
+ * The contents are random words from a fixed seed, so every run of the
+ * benchmark works on the same data. For each format it reports the file size,
+ * the time to save, the best and median time of HexFile.open() and the best
+ * time of open() followed by reading every word back, which counts the pages
+ * that the image format maps lazily.
+ */
+public class HexFileBenchmark {
+
+	private static final String[] FORMATS = {
+		"v2.0 raw",
+		"v3.0 hex words plain",
+		"v3.0 hex words addressed",
+		"Binary data big-endian",
+		"v3.0 image big-endian",
+		"v3.0 image little-endian",
+	};
+
+	private static final int WARMUP = 2;
+
+	public static void main(String[] args) throws Exception {
+		Main.headless = true;
+		int addrBits = args.length > 0 ? Integer.parseInt(args[0]) : 22;
+		int width = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+		int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		MemContents src = MemContents.create(addrBits, width);
+		int[] words = new int[1 << addrBits];
+		Random rng = new Random(1234L);
+		for (int i = 0; i < words.length; i++)
+			words[i] = rng.nextInt();
+		src.set(0, words);
+
+		System.out.printf("%d words of %d bits, best of %d runs after %d warm-up\n",
+				words.length, width, runs, WARMUP);
+		System.out.printf("%-26s %10s %9s %10s %10s %12s\n", "format", "bytes",
+				"save ms", "open ms", "median ms", "open+read ms");
+		for (String desc : FORMATS) {
+			File f = File.createTempFile("hexbench", ".bin");
+			try {
+				long t0 = System.nanoTime();
+				HexFile.save(f, src, desc);
+				double save = (System.nanoTime() - t0) / 1e6;
+
+				double[] open = new double[runs];
+				double read = Double.MAX_VALUE;
+				for (int i = -WARMUP; i < runs; i++) {
+					MemContents dst = MemContents.create(addrBits, width);
+					t0 = System.nanoTime();
+					if (!HexFile.open(dst, f, desc))
+						throw new IllegalStateException("could not load " + desc);
+					long t1 = System.nanoTime();
+					check(dst, src);
+					long t2 = System.nanoTime();
+					if (i >= 0) {
+						open[i] = (t1 - t0) / 1e6;
+						read = Math.min(read, (t2 - t0) / 1e6);
+					}
+				}
+				Arrays.sort(open);
+				System.out.printf("%-26s %10d %9.1f %10.1f %10.1f %12.1f\n", desc,
+						f.length(), save, open[0], open[runs / 2], read);
+			} finally {
+				f.delete();
+			}
+		}
+	}
+
+	private static void check(MemContents dst, MemContents src) {
+		long end = src.getLastOffset();
+		for (long a = 0; a <= end; a++) {
+			if (dst.get(a) != src.get(a))
+				throw new IllegalStateException(
+						String.format("mem[0x%x] = 0x%x, expected 0x%x", a, dst.get(a), src.get(a)));
+		}
+	}
+
+}
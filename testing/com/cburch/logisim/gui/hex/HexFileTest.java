@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.gui.hex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.Main;
+import com.cburch.logisim.std.memory.MemContents;
+
+public class HexFileTest {
+
+	@Before
+	public void setUp() {
+		Main.headless = true;
+	}
+
+	// The raw words of a "v3.0 image" file: 1, 2 or 4 bytes each.
+	private static byte[] imageData(int[] words, int width, ByteOrder order) {
+		int size = width <= 8 ? 1 : width <= 16 ? 2 : 4;
+		ByteBuffer buf = ByteBuffer.allocate(words.length * size).order(order);
+		for (int w : words) {
+			if (size == 1)
+				buf.put((byte)w);
+			else if (size == 2)
+				buf.putShort((short)w);
+			else
+				buf.putInt(w);
+		}
+		return buf.array();
+	}
+
+	private static String header(ByteOrder order) {
+		return "v3.0 image "
+				+ (order == ByteOrder.BIG_ENDIAN ? "big-endian" : "little-endian") + "\n";
+	}
+
+	private static void assertContents(int[] words, int width, MemContents m) {
+		int mask = width == 32 ? -1 : (1 << width) - 1;
+		long n = Math.min(words.length, m.getLastOffset() + 1);
+		for (int i = 0; i < n; i++)
+			assertEquals("word " + i, words[i] & mask, m.get(i));
+		for (long i = n; i <= m.getLastOffset(); i++)
+			assertEquals("word " + i, 0, m.get(i));
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.gui.hex.HexFile#open(MemContents, File)}.
+	 * Image files of each word size and byte order are detected by their
+	 * header and read in bulk, ignoring the unused high bits of each word.
+	 */
+	@Test
+	public void testOpenImageFile() throws Exception {
+		Random rng = new Random(1234);
+		for (int width : new int[] { 5, 8, 12, 16, 24, 32 }) {
+			for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+				int[] words = new int[20000]; // more than one page
+				for (int i = 0; i < words.length; i++)
+					words[i] = i % 3 == 0 ? rng.nextInt() : 0;
+				File f = File.createTempFile("image", ".dat");
+				try {
+					try (FileOutputStream out = new FileOutputStream(f)) {
+						out.write(header(order).getBytes(StandardCharsets.UTF_8));
+						out.write(imageData(words, width, order));
+					}
+					MemContents m = MemContents.create(15, width);
+					assertTrue(HexFile.open(m, f));
+					assertContents(words, width, m);
+				} finally {
+					f.delete();
+				}
+			}
+		}
+	}
+
+	// Decodes an image held in a string, which has no file to read in bulk.
+	private static MemContents decodeString(int[] words, int addrBits) throws Exception {
+		byte[] data = imageData(words, 32, ByteOrder.BIG_ENDIAN);
+		String src = header(ByteOrder.BIG_ENDIAN) + new String(data, StandardCharsets.US_ASCII);
+		HexFile.HexReader r = new HexFile.HexReader(BufferedLineReader.forString(src), addrBits, 32);
+		r.parseFormat("v3.0 image big-endian");
+		return r.decode();
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.gui.hex.HexFile.HexReader#decode()}.
+	 * Without an underlying file, words that straddle the internal buffers are
+	 * carried over rather than dropped.
+	 */
+	@Test
+	public void testDecodeImageString() throws Exception {
+		// ASCII-only bytes, so the string encodes them unchanged.
+		int[] words = new int[3001];
+		for (int i = 0; i < words.length; i++)
+			words[i] = 0x41424344 + ((i % 26) << 24) + ((i % 7) << 8);
+		assertContents(words, 32, decodeString(words, 12));
+		// Smaller than the data: the rest is ignored.
+		assertContents(words, 32, decodeString(words, 8));
+	}
+}
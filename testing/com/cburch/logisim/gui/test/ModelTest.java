@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.gui.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.data.TestException;
+import com.cburch.logisim.data.TestVector;
+
+public class ModelTest {
+
+	private static final int ROWS = 4 * Model.MAX_SHOWN;
+	private static final int FAILS = (ROWS + 2) / 3;
+
+	private File vectorFile;
+
+	@Before
+	public void setUp() throws Exception {
+		vectorFile = File.createTempFile("vector", ".txt");
+		try (PrintWriter out = new PrintWriter(vectorFile, "UTF-8")) {
+			out.println("A[8]");
+			for (int i = 0; i < ROWS; i++)
+				out.println(i & 0xff);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		vectorFile.delete();
+	}
+
+	// Hands the model a result for every row, failing every third one.
+	private static void testAll(Model model, TestVector vec) throws Exception {
+		SwingUtilities.invokeAndWait(() -> {
+			for (int i = 0; i < ROWS; i++) {
+				TestException err = i % 3 == 0 ? new TestException("bad") : null;
+				assertEquals(true, model.setResult(vec, i, null, err));
+			}
+		});
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.gui.test.Model#getRowCount()}.
+	 * A vector loaded whole shows every row once tested, failures first.
+	 */
+	@Test
+	public void testWholeVectorShowsAllRows() throws Exception {
+		Model model = new Model(null, null);
+		TestVector vec = new TestVector(vectorFile);
+		model.setVector(vec);
+		assertEquals(ROWS, model.getRowCount());
+		testAll(model, vec);
+		assertEquals(FAILS, model.getFail());
+		assertEquals(ROWS - FAILS, model.getPass());
+		assertEquals(ROWS, model.getRowCount());
+		for (int i = 0; i < ROWS; i++)
+			assertEquals(i < FAILS, model.getRow(i).err != null);
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.gui.test.Model#getRowCount()}.
+	 * A streamed vector shows at most MAX_SHOWN failures and a bounded window
+	 * of the latest passes, while counting them all.
+	 */
+	@Test
+	public void testStreamedVectorIsBounded() throws Exception {
+		Model model = new Model(null, null);
+		TestVector vec = TestVector.stream(vectorFile);
+		model.setVector(vec);
+		testAll(model, vec);
+		assertEquals(FAILS, model.getFail());
+		assertEquals(ROWS - FAILS, model.getPass());
+		assertEquals(true, model.getRowCount() < ROWS);
+		assertEquals(true, model.getRowCount() <= 3 * Model.MAX_SHOWN);
+		assertEquals(true, model.getRow(0).err != null);
+	}
+}
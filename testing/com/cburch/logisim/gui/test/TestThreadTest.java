@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.gui.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.TestProjects;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.data.TestVector;
+import com.cburch.logisim.proj.Project;
+
+public class TestThreadTest {
+
+	// An 8-bit adder, with pins connected straight to its ports.
+	private static final String ADDER_CIRC = ""
+			+ "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+			+ "<project source=\"4.0.4-HC\" version=\"1.0\">\n"
+			+ "  <lib desc=\"#Wiring\" name=\"1\"/>\n"
+			+ "  <lib desc=\"#Arithmetic\" name=\"4\"/>\n"
+			+ "  <main name=\"main\"/>\n"
+			+ "  <circuit name=\"main\">\n"
+			+ "    <comp lib=\"1\" loc=\"(200,190)\" name=\"Pin\">\n"
+			+ "      <a name=\"width\" val=\"8\"/>\n"
+			+ "      <a name=\"label\" val=\"A\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"1\" loc=\"(200,210)\" name=\"Pin\">\n"
+			+ "      <a name=\"width\" val=\"8\"/>\n"
+			+ "      <a name=\"label\" val=\"B\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"4\" loc=\"(240,200)\" name=\"Adder\">\n"
+			+ "      <a name=\"width\" val=\"8\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"1\" loc=\"(240,200)\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/>\n"
+			+ "      <a name=\"width\" val=\"8\"/>\n"
+			+ "      <a name=\"label\" val=\"S\"/>\n"
+			+ "    </comp>\n"
+			+ "  </circuit>\n"
+			+ "</project>\n";
+
+	// A non-volatile RAM that writes 5 to address A while W is high, and
+	// shows the word at A on D. The components are spread out, unconnected,
+	// and joined by the tunnels that testRamRowsInOrder() adds at their ends.
+	private static final String RAM_CIRC = ""
+			+ "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+			+ "<project source=\"4.0.4-HC\" version=\"1.0\">\n"
+			+ "  <lib desc=\"#Wiring\" name=\"0\"/>\n"
+			+ "  <lib desc=\"#Memory\" name=\"4\"/>\n"
+			+ "  <main name=\"main\"/>\n"
+			+ "  <circuit name=\"main\">\n"
+			+ "    <comp lib=\"0\" loc=\"(100,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"label\" val=\"A\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(400,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"label\" val=\"W\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(700,100)\" name=\"Constant\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"value\" val=\"0x5\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(1000,100)\" name=\"Constant\"/>\n"
+			+ "    <comp lib=\"4\" loc=\"(1300,100)\" name=\"RAM\">\n"
+			+ "      <a name=\"addrWidth\" val=\"4\"/>\n"
+			+ "      <a name=\"dataWidth\" val=\"4\"/>\n"
+			+ "      <a name=\"trigger\" val=\"high\"/>\n"
+			+ "      <a name=\"type\" val=\"nonvolatile\"/>\n"
+			+ "      <a name=\"appearance\" val=\"classic\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(1600,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/>\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "      <a name=\"label\" val=\"D\"/>\n"
+			+ "    </comp>\n"
+			+ "  </circuit>\n"
+			+ "</project>\n";
+
+	// The net at each end of the component at each x. The RAM's ends are its
+	// data out, address, data in, clock and write enable.
+	private static final Object[][] RAM_NETS = {
+		{ 100, "a" },
+		{ 400, "w" },
+		{ 700, "k" },
+		{ 1000, "we" },
+		{ 1300, "d", "a", "k", "w", "we" },
+		{ 1600, "d" },
+	};
+
+	private static final int ROWS = 500; // several chunks
+
+	private File vectorFile;
+	private Project proj;
+	private Circuit circuit;
+
+	@Before
+	public void setUp() throws Exception {
+		vectorFile = File.createTempFile("adder", ".txt");
+		try (PrintWriter out = new PrintWriter(vectorFile, "UTF-8")) {
+			out.println("A[8] B[8] S[8]");
+			for (int i = 0; i < ROWS; i++) {
+				int a = i & 0xff, b = (i * 7) & 0xff;
+				int s = (a + b + (isBad(i) ? 1 : 0)) & 0xff;
+				out.println(a + " " + b + " " + s);
+			}
+		}
+		proj = TestProjects.load(ADDER_CIRC);
+		circuit = proj.getLogisimFile().getMainCircuit();
+	}
+
+	@After
+	public void tearDown() {
+		vectorFile.delete();
+	}
+
+	private static boolean isBad(int row) {
+		return row % 37 == 5;
+	}
+
+	private List<String> run(int threads) throws Exception {
+		return run(proj, circuit, threads);
+	}
+
+	private List<String> run(Project proj, Circuit circuit, int threads)
+			throws Exception {
+		TestThread tester = new TestThread(proj, circuit,
+				TestVector.open(vectorFile));
+		ArrayList<String> results = new ArrayList<>();
+		tester.testAll(threads, (row, err) ->
+				results.add(row + ": " + (err == null ? "pass" : err.getMessage())));
+		return results;
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.gui.test.TestThread#testAll(int, TestThread.ResultHandler)}.
+	 * Running on several cloned states must report the same outcome for every
+	 * row, in the same order, as running serially.
+	 */
+	@Test
+	public void testParallelMatchesSerial() throws Exception {
+		List<String> serial = run(1);
+		assertEquals(ROWS, serial.size());
+		for (int i = 0; i < ROWS; i++) {
+			String r = serial.get(i);
+			assertEquals(i + ": ", r.substring(0, r.indexOf(' ') + 1));
+			assertEquals("row " + i, !isBad(i), r.endsWith(": pass"));
+		}
+		assertEquals(serial, run(4));
+		assertEquals(serial, run(3));
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.gui.test.TestThread#testAll(int, TestThread.ResultHandler)}.
+	 * Rows of a circuit with a non-volatile RAM see what earlier rows wrote,
+	 * whatever number of threads is asked for.
+	 */
+	@Test
+	public void testRamRowsInOrder() throws Exception {
+		boolean[] written = new boolean[16];
+		try (PrintWriter out = new PrintWriter(vectorFile, "UTF-8")) {
+			out.println("A[4] W D[4]");
+			for (int i = 0; i < ROWS; i++) {
+				int a = (i * 5) & 0xf, w = i % 7 == 3 ? 1 : 0;
+				written[a] |= w == 1;
+				out.println(a + " " + w + " " + (written[a] ? 5 : 0));
+			}
+		}
+		for (int threads : new int[] { 1, 4 }) {
+			Project ram = TestProjects.load(RAM_CIRC);
+			Circuit main = ram.getLogisimFile().getMainCircuit();
+			TestProjects.addTunnels(main, RAM_NETS);
+			List<String> results = run(ram, main, threads);
+			assertEquals(ROWS, results.size());
+			for (int i = 0; i < ROWS; i++)
+				assertEquals(i + ": pass", results.get(i));
+		}
+	}
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.std.hdl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.InstanceData;
+import com.cburch.logisim.instance.InstanceFactory;
+import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.Port;
+import com.cburch.logisim.proj.Project;
+
+public class VhdlInterpreterTest {
+
+	// Drives the ports of one instance directly, without a circuit.
+	private static class Harness implements InstanceState {
+		final VhdlContent content;
+		final VhdlInterpreter interp;
+		final Instance instance;
+		final Value[] values;
+		InstanceData data;
+
+		Harness(String name, String vhdl) {
+			content = VhdlContent.parse(name, vhdl, null);
+			interp = VhdlInterpreter.compile(content);
+			assertNotNull("should compile", interp);
+			VhdlEntity factory = content.getEntityFactory();
+			instance = Instance.getInstanceFor(factory.createComponent(
+					Location.create(0, 0), factory.createAttributeSet()));
+			values = new Value[instance.getPorts().size()];
+		}
+
+		int port(String name) {
+			List<Port> ports = instance.getPorts();
+			for (int i = 0; i < ports.size(); i++)
+				if (ports.get(i).getToolTip().equals(name))
+					return i;
+			throw new IllegalArgumentException(name);
+		}
+
+		Harness set(String name, Value v) {
+			values[port(name)] = v;
+			return this;
+		}
+
+		Harness set(String name, int width, long v) {
+			return set(name, Value.createKnown(width, v));
+		}
+
+		Value get(String name) {
+			return values[port(name)];
+		}
+
+		Harness run() {
+			interp.propagate(this);
+			return this;
+		}
+
+		public void fireInvalidated() { }
+		public AttributeSet getAttributeSet() { return instance.getAttributeSet(); }
+		public <E> E getAttributeValue(Attribute<E> attr) { return instance.getAttributeValue(attr); }
+		public InstanceData getData() { return data; }
+		public InstanceFactory getFactory() { return instance.getFactory(); }
+		public Instance getInstance() { return instance; }
+		public Project getProject() { return null; }
+		public int getTickCount() { return 0; }
+		public boolean isCircuitRoot() { return true; }
+		public boolean isPortConnected(int portIndex) { return true; }
+		public CircuitState createCircuitSubstateFor(Circuit circ) { return null; }
+		public void setData(InstanceData value) { data = value; }
+
+		public Value getPortValue(int portIndex) {
+			Value v = values[portIndex];
+			if (v == null || instance.getPorts().get(portIndex).getType() != EndData.INPUT_ONLY)
+				return Value.createUnknown(instance.getPorts().get(portIndex).getFixedBitWidth());
+			return v;
+		}
+
+		public void setPort(int portIndex, Value value, int delay) {
+			values[portIndex] = value;
+		}
+	}
+
+	private static String entity(String name, String ports, String decls, String body) {
+		return "library ieee;\n"
+				+ "use ieee.std_logic_1164.all;\n"
+				+ "use ieee.numeric_std.all;\n\n"
+				+ "entity " + name + " is\n"
+				+ "  port (\n" + ports + "\n  );\n"
+				+ "end " + name + ";\n\n"
+				+ "architecture behavior of " + name + " is\n"
+				+ decls
+				+ "begin\n"
+				+ body
+				+ "end behavior;\n";
+	}
+
+	private static final String BYTE_PORTS = ""
+			+ "    a : in std_logic_vector(7 downto 0);\n"
+			+ "    b : in std_logic_vector(7 downto 0);\n"
+			+ "    y : out std_logic_vector(7 downto 0)";
+
+	private static VhdlInterpreter compileByteOp(String expr) {
+		return VhdlInterpreter.compile(VhdlContent.parse("op", entity("op", BYTE_PORTS, "",
+						"  y <= " + expr + ";\n"), null));
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.std.hdl.VhdlInterpreter#propagate(InstanceState)}.
+	 * Vector arithmetic wraps around, and undefined inputs give an error.
+	 */
+	@Test
+	public void testAdder() {
+		Harness h = new Harness("adder", entity("adder", BYTE_PORTS, "",
+					"  y <= std_logic_vector(unsigned(a) + unsigned(b));\n"));
+		assertEquals(Value.createKnown(8, 30), h.set("a", 8, 10).set("b", 8, 20).run().get("y"));
+		assertEquals(Value.createKnown(8, 4), h.set("a", 8, 250).set("b", 8, 10).run().get("y"));
+		h.set("a", Value.createUnknown(8)).run();
+		assertEquals(false, h.get("y").isFullyDefined());
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.std.hdl.VhdlInterpreter#propagate(InstanceState)}.
+	 * Conditional and selected assignments pick the first matching choice.
+	 */
+	@Test
+	public void testConditionalAssignments() {
+		Harness h = new Harness("mux", entity("mux", ""
+					+ "    s : in std_logic_vector(1 downto 0);\n"
+					+ "    a : in std_logic_vector(3 downto 0);\n"
+					+ "    y : out std_logic_vector(3 downto 0);\n"
+					+ "    z : out std_logic",
+					"",
+					"  with s select y <=\n"
+					+ "    a when \"00\",\n"
+					+ "    not a when \"01\",\n"
+					+ "    a(1 downto 0) & a(3 downto 2) when \"10\",\n"
+					+ "    (others => '0') when others;\n"
+					+ "  z <= '1' when a = \"1010\" else a(0);\n"));
+		h.set("a", 4, 0xa);
+		assertEquals(Value.createKnown(4, 0xa), h.set("s", 2, 0).run().get("y"));
+		assertEquals(Value.TRUE, h.get("z"));
+		assertEquals(Value.createKnown(4, 0x5), h.set("s", 2, 1).run().get("y"));
+		assertEquals(Value.createKnown(4, 0xa), h.set("s", 2, 2).run().get("y"));
+		assertEquals(Value.createKnown(4, 0x0), h.set("s", 2, 3).run().get("y"));
+		h.set("a", 4, 0x3).run();
+		assertEquals(Value.TRUE, h.get("z"));
+		h.set("a", 4, 0x6).run();
+		assertEquals(Value.FALSE, h.get("z"));
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.std.hdl.VhdlInterpreter#propagate(InstanceState)}.
+	 * A clocked process with an asynchronous reset keeps its state between
+	 * propagations and only changes on rising edges.
+	 */
+	@Test
+	public void testCounter() {
+		Harness h = new Harness("counter", entity("counter", ""
+					+ "    clk : in std_logic;\n"
+					+ "    rst : in std_logic;\n"
+					+ "    q : out std_logic_vector(3 downto 0)",
+					"  signal count : unsigned(3 downto 0);\n",
+					"  process (clk, rst)\n"
+					+ "  begin\n"
+					+ "    if rst = '1' then\n"
+					+ "      count <= (others => '0');\n"
+					+ "    elsif rising_edge(clk) then\n"
+					+ "      count <= count + 1;\n"
+					+ "    end if;\n"
+					+ "  end process;\n"
+					+ "  q <= std_logic_vector(count);\n"));
+		h.set("clk", Value.FALSE).set("rst", Value.TRUE).run();
+		assertEquals(Value.createKnown(4, 0), h.get("q"));
+		h.set("rst", Value.FALSE).run();
+		for (int i = 1; i <= 17; i++) {
+			h.set("clk", Value.TRUE).run();
+			assertEquals(Value.createKnown(4, i & 15), h.get("q"));
+			h.set("clk", Value.FALSE).run();
+			assertEquals(Value.createKnown(4, i & 15), h.get("q"));
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.std.hdl.VhdlInterpreter#propagate(InstanceState)}.
+	 * Integer constants, division between integers, to_integer, to_unsigned
+	 * and shifts.
+	 */
+	@Test
+	public void testIntegers() {
+		Harness h = new Harness("ints", entity("ints", BYTE_PORTS, ""
+					+ "  constant W : integer := 8;\n"
+					+ "  constant HALF : integer := W / 2;\n",
+					"  y <= std_logic_vector(shift_left(to_unsigned(to_integer(unsigned(a)) mod 10, W), HALF)\n"
+					+ "       or resize(unsigned(b(HALF - 1 downto 0)), W));\n"));
+		h.set("a", 8, 47).set("b", 8, 0xff).run();
+		assertEquals(Value.createKnown(8, 0x7f), h.get("y"));
+		h.set("a", 8, 3).set("b", 8, 0x10).run();
+		assertEquals(Value.createKnown(8, 0x30), h.get("y"));
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.std.hdl.VhdlInterpreter#compile(VhdlContent)}.
+	 * Entities outside the supported subset are left to the external
+	 * simulator.
+	 */
+	@Test
+	public void testUnsupported() {
+		assertNotNull(compileByteOp("std_logic_vector(unsigned(a) - unsigned(b))"));
+		assertNull(compileByteOp("std_logic_vector(unsigned(a) / unsigned(b))"));
+		assertNull(compileByteOp("std_logic_vector(unsigned(a) mod unsigned(b))"));
+		assertNull(compileByteOp("std_logic_vector(unsigned(a) rem 3)"));
+		assertNull(compileByteOp("std_logic_vector(-unsigned(a))"));
+		assertNull(compileByteOp("std_logic_vector(to_unsigned(5, to_integer(unsigned(b))))"));
+		assertNull(compileByteOp("std_logic_vector(resize(unsigned(a), to_integer(unsigned(b))))"));
+		assertNull(compileByteOp("a after 1 ns"));
+		assertNull(VhdlInterpreter.compile(VhdlContent.parse("op", entity("op", BYTE_PORTS, "",
+						"  process\n  begin\n    y <= a;\n  end process;\n"), null)));
+	}
+}
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.std.hdl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cburch.logisim.TestProjects;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitMutation;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.Port;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+
+public class VhdlSimulatorTest {
+
+	// A 4-bit adder. The simulator has one copy of each entity, shared by all
+	// of its instances, so each adder in ADDERS_CIRC is an entity of its own.
+	private static final String VHDL = ""
+			+ "  <vhdl name=\"NAME\">library ieee;\n"
+			+ "use ieee.std_logic_1164.all;\n"
+			+ "use ieee.numeric_std.all;\n"
+			+ "\n"
+			+ "entity NAME is\n"
+			+ "  port (\n"
+			+ "    a : in std_logic_vector(3 downto 0);\n"
+			+ "    b : in std_logic_vector(3 downto 0);\n"
+			+ "    y : out std_logic_vector(3 downto 0)\n"
+			+ "  );\n"
+			+ "end NAME;\n"
+			+ "\n"
+			+ "architecture behavior of NAME is\n"
+			+ "begin\n"
+			+ "  y &lt;= std_logic_vector(unsigned(a) + unsigned(b));\n"
+			+ "end behavior;\n"
+			+ "</vhdl>\n";
+
+	// Four 4-bit adders, adder1 to adder4, with
+	//   n1 = p + q, n2 = n1 + q, n3 = q + p, n4 = n3 + n1
+	// so adder1 and adder3 are evaluated in the same step, then adder2 and
+	// adder4. The components are spread out, unconnected, and joined by the
+	// tunnels that run() adds at their ports, one net per name in NETS.
+	private static final String ADDERS_CIRC = ""
+			+ "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+			+ "<project source=\"4.0.4-HC\" version=\"1.0\">\n"
+			+ "  <lib desc=\"#Wiring\" name=\"0\"/>\n"
+			+ "  <main name=\"main\"/>\n"
+			+ "  <circuit name=\"main\">\n"
+			+ "    <comp lib=\"0\" loc=\"(100,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(400,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp loc=\"(700,100)\" name=\"adder1\"/>\n"
+			+ "    <comp loc=\"(1000,100)\" name=\"adder2\"/>\n"
+			+ "    <comp loc=\"(1300,100)\" name=\"adder3\"/>\n"
+			+ "    <comp loc=\"(1600,100)\" name=\"adder4\"/>\n"
+			+ "    <comp lib=\"0\" loc=\"(1900,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/>\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "    </comp>\n"
+			+ "    <comp lib=\"0\" loc=\"(2200,100)\" name=\"Pin\">\n"
+			+ "      <a name=\"facing\" val=\"west\"/>\n"
+			+ "      <a name=\"type\" val=\"output\"/>\n"
+			+ "      <a name=\"width\" val=\"4\"/>\n"
+			+ "    </comp>\n"
+			+ "  </circuit>\n"
+			+ VHDL.replace("NAME", "adder1")
+			+ VHDL.replace("NAME", "adder2")
+			+ VHDL.replace("NAME", "adder3")
+			+ VHDL.replace("NAME", "adder4")
+			+ "</project>\n";
+
+	// The net at each port, by port name for the adders, of the component at
+	// each x.
+	private static final Object[][] NETS = {
+		{ 100, "", "p" },
+		{ 400, "", "q" },
+		{ 700, "a", "p", "b", "q", "y", "n1" },
+		{ 1000, "a", "n1", "b", "q", "y", "n2" },
+		{ 1300, "a", "q", "b", "p", "y", "n3" },
+		{ 1600, "a", "n3", "b", "n1", "y", "n4" },
+		{ 1900, "", "n2" },
+		{ 2200, "", "n4" },
+	};
+
+	// What the stub's simulator computes: for each entity's y, the sum of its
+	// a and b.
+	private static final VhdlSimulatorStub.Model ADDERS = (name, width, signals) -> {
+		if (!name.endsWith("_y"))
+			return null;
+		String entity = name.substring(0, name.length() - 1);
+		Value a = signals.get(entity + "a"), b = signals.get(entity + "b");
+		if (a == null || b == null || !a.isFullyDefined() || !b.isFullyDefined())
+			return Value.createUnknown(width);
+		return Value.createKnown(width, a.toLongValue() + b.toLongValue());
+	};
+
+	private static void drive(CircuitState state, Component pin, int v) {
+		Pin.FACTORY.driveInputPin(state.getInstanceState(pin), Value.createKnown(4, v));
+		state.markComponentAsDirty(pin);
+	}
+
+	// Runs every p and q through the adders on the stub, restarting the
+	// simulator halfway through, and returns n2 and n4 for each.
+	private List<String> run(VhdlSimulatorStub stub) throws Exception {
+		Project proj = TestProjects.load(ADDERS_CIRC);
+		Circuit main = proj.getLogisimFile().getMainCircuit();
+		HashMap<Integer, Component> byX = TestProjects.byX(main);
+		CircuitMutation m = new CircuitMutation(main);
+		for (Object[] row : NETS) {
+			List<Port> ports = Instance.getInstanceFor(byX.get(row[0])).getPorts();
+			Component comp = byX.get(row[0]);
+			for (int i = 1; i < row.length; i += 2) {
+				int k = 0;
+				while (!row[i].equals("") && !ports.get(k).getToolTip().equals(row[i]))
+					k++;
+				TestProjects.addTunnel(m, comp.getEnd(k), (String) row[i + 1]);
+			}
+		}
+		m.execute();
+
+		VhdlSimulator sim = proj.getVhdlSimulator();
+		sim.startStub(stub);
+		assertEquals(stub.isBatched(), sim.isBatched());
+		try {
+			CircuitState state = CircuitState.createRootState(proj, main);
+			Propagator prop = state.getPropagator();
+			ArrayList<String> ret = new ArrayList<>();
+			for (int i = 0; i < 256; i++) {
+				if (i == 128)
+					sim.reset();
+				drive(state, byX.get(100), i >> 4);
+				drive(state, byX.get(400), i & 0xf);
+				prop.propagate();
+				ret.add(state.getValue(byX.get(1900).getLocation()) + " "
+						+ state.getValue(byX.get(2200).getLocation()));
+			}
+			return ret;
+		} finally {
+			sim.stop();
+		}
+	}
+
+	/**
+	 * Test method for {@link com.cburch.logisim.std.hdl.VhdlSimulator#flush}.
+	 * Sending each step's entities to the simulator in one batched request
+	 * gives the same outputs as sending them one at a time as text, including
+	 * after a restart, with fewer round trips.
+	 */
+	@Test
+	public void testBatchedMatchesText() throws Exception {
+		VhdlSimulatorStub text = new VhdlSimulatorStub(ADDERS, false);
+		VhdlSimulatorStub batched = new VhdlSimulatorStub(ADDERS, true);
+		List<String> expected = run(text);
+		assertEquals(expected, run(batched));
+		for (int i = 0; i < 256; i++) {
+			int p = i >> 4, q = i & 0xf, n1 = (p + q) & 0xf;
+			assertEquals(Value.createKnown(4, (n1 + q) & 0xf) + " "
+					+ Value.createKnown(4, (q + p + n1) & 0xf), expected.get(i));
+		}
+		assertTrue(batched.getRequestCount() + " vs " + text.getRequestCount(),
+				batched.getRequestCount() < text.getRequestCount());
+	}
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.std.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.instance.StdAttr;
+
+public class CounterTest {
+
+	private static long load(int width, String max) {
+		AttributeSet attrs = new Counter().createAttributeSet();
+		attrs.setAttr(StdAttr.WIDTH, BitWidth.create(width));
+		attrs.setAttr(Counter.ATTR_MAX, Counter.ATTR_MAX.parse(max));
+		return attrs.getValue(Counter.ATTR_MAX).longValue();
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.std.memory.Counter#ATTR_MAX}.
+	 * Maximums written when the attribute was a 32-bit integer load with the
+	 * same bits.
+	 */
+	@Test
+	public void testOldMaximums() {
+		assertEquals(0xffL, load(8, "0xff"));
+		assertEquals(0xffL, load(8, "0xffffffff"));
+		assertEquals(0xffffffffL, load(32, "0xffffffff"));
+		assertEquals(0xffffffffL, load(32, "-1"));
+		assertEquals("0xffffffff",
+				Counter.ATTR_MAX.toStandardString(load(32, "-1")));
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.std.memory.Counter#ATTR_MAX}.
+	 * Counters wider than 32 bits keep the upper bits of their maximum, and
+	 * a maximum with bit 31 set is not sign-extended.
+	 */
+	@Test
+	public void testWideMaximums() {
+		assertEquals(0x80000000L, load(40, "0x80000000"));
+		assertEquals(0xfedcba9876L, load(40, "0xfedcba9876"));
+		assertEquals(0xba9876L, load(24, "0xfedcba9876"));
+		assertEquals("0xfedcba9876543210",
+				Counter.ATTR_MAX.toStandardString(load(64, "0xfedcba9876543210")));
+
+		AttributeSet attrs = new Counter().createAttributeSet();
+		attrs.setAttr(StdAttr.WIDTH, BitWidth.create(48));
+		assertEquals(0xffffffffffffL, attrs.getValue(Counter.ATTR_MAX).longValue());
+		attrs.setAttr(StdAttr.WIDTH, BitWidth.create(36));
+		assertEquals(0xfffffffffL, attrs.getValue(Counter.ATTR_MAX).longValue());
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.std.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.cburch.logisim.gui.hex.HexFile;
+
+public class RomTest {
+
+	private static MemContents random(int addrBits, int width, long seed) {
+		Random rng = new Random(seed);
+		MemContents m = MemContents.create(addrBits, width);
+		for (long a = 0; a <= m.getLastOffset(); a++)
+			m.set(a, rng.nextInt(1 << width));
+		return m;
+	}
+
+	private static String save(MemContents m) {
+		return "addr/data: " + m.getLogLength() + " " + m.getWidth() + "\n"
+				+ HexFile.saveToStringForCircFile(m);
+	}
+
+	private static void assertInvalid(String value) {
+		try {
+			Rom.CONTENTS_ATTR.parse(value);
+			fail("corrupt contents should be reported");
+		} catch (NumberFormatException e) {
+			// reported as an invalid attribute value by the loader
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.std.memory.Rom#CONTENTS_ATTR}.
+	 * Large contents decode lazily to the same words as small ones decode
+	 * eagerly.
+	 */
+	@Test
+	public void testParseRoundTrip() {
+		for (int addrBits : new int[] { 6, 12 }) {
+			MemContents m = random(addrBits, 16, addrBits);
+			String saved = save(m);
+			MemContents parsed = Rom.CONTENTS_ATTR.parse(saved);
+			assertEquals(m.getLastOffset(), parsed.getLastOffset());
+			for (long a = 0; a <= m.getLastOffset(); a++)
+				assertEquals("word " + a, m.get(a), parsed.get(a));
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.std.memory.Rom#CONTENTS_ATTR}.
+	 * Corrupt compressed contents are reported when parsed, even when their
+	 * decoding is deferred.
+	 */
+	@Test
+	public void testCorruptContentsReported() {
+		String saved = save(random(12, 16, 1));
+		int start = saved.indexOf("compressed\n");
+		assertTrue(start > 0 && saved.length() > 4096);
+		int mid = saved.length() / 2;
+		assertInvalid(saved.substring(0, mid));
+		assertInvalid(saved.substring(0, mid) + "AAAAAAAA" + saved.substring(mid + 8));
+		assertInvalid(saved.substring(0, start) + "compressed\n"
+				+ "not base64 at all!!!=");
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.std.memory.MemContents#createDeferred}.
+	 * A decoder failure is raised, with its cause, on every use of the
+	 * contents rather than leaving them silently empty.
+	 */
+	@Test
+	public void testDeferredFailureRaised() {
+		IOException cause = new IOException("corrupt");
+		MemContents m = MemContents.createDeferred(8, 16, () -> {
+			throw cause;
+		});
+		MemContents copy = m.clone();
+		for (MemContents c : new MemContents[] { m, m, copy }) {
+			try {
+				c.get(0);
+				fail("decoder failure should be raised");
+			} catch (UncheckedIOException e) {
+				assertSame(cause, e.getCause());
+			}
+		}
+	}
+}
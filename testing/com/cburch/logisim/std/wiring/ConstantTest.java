@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.std.wiring;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.instance.StdAttr;
+
+public class ConstantTest {
+
+	private static long load(int width, String value) {
+		AttributeSet attrs = Constant.FACTORY.createAttributeSet();
+		attrs.setAttr(StdAttr.WIDTH, BitWidth.create(width));
+		attrs.setAttr(Constant.ATTR_VALUE, Constant.ATTR_VALUE.parse(value));
+		return attrs.getValue(Constant.ATTR_VALUE).longValue();
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.std.wiring.Constant#ATTR_VALUE}.
+	 * Values written when the attribute was a 32-bit integer load with the
+	 * same bits.
+	 */
+	@Test
+	public void testOldValues() {
+		assertEquals(0x5L, load(8, "0x5"));
+		assertEquals(0xffL, load(8, "0xffffffff"));
+		assertEquals(0xffffffffL, load(32, "0xffffffff"));
+		assertEquals(0x80000000L, load(32, "0x80000000"));
+		assertEquals(0xffffffffL, load(32, "-1"));
+		assertEquals("0xffffffff",
+				Constant.ATTR_VALUE.toStandardString(load(32, "-1")));
+	}
+
+	/**
+	 * Test method for
+	 * {@link com.cburch.logisim.std.wiring.Constant#ATTR_VALUE}.
+	 * Values wider than 32 bits keep their upper bits when saved and loaded.
+	 */
+	@Test
+	public void testWideValues() {
+		long v = load(64, "0xfedcba9876543210");
+		assertEquals(0xfedcba9876543210L, v);
+		assertEquals("0xfedcba9876543210",
+				Constant.ATTR_VALUE.toStandardString(v));
+		assertEquals(0x123456789L, load(40, "0x123456789"));
+	}
+}